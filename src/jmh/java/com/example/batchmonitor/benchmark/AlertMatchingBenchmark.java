@@ -0,0 +1,62 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.util.MultiPatternMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per line of finding which alert patterns occur in it, with
+ * the automaton AlertService uses against one String.contains per pattern.
+ * The automaton should cost about the same whatever the number of patterns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class AlertMatchingBenchmark {
+
+    @Param({"1", "100", "500"})
+    private int patterns;
+
+    private String[] lines;
+    private List<String> patternList;
+    private MultiPatternMatcher matcher;
+    private final BitSet found = new BitSet();
+    private int index;
+
+    @Setup
+    public void setUp() {
+        lines = SyntheticOutput.lineList(1_000, 80).toArray(String[]::new);
+        patternList = new ArrayList<>(patterns);
+        patternList.add("[WARN]");
+        for (int i = 1; i < patterns; i++) {
+            patternList.add("ERR-" + i + ":");
+        }
+        matcher = new MultiPatternMatcher(patternList);
+    }
+
+    @Benchmark
+    public BitSet automaton() {
+        String line = lines[index];
+        index = (index + 1) % lines.length;
+        found.clear();
+        matcher.match(line, found);
+        return found;
+    }
+
+    @Benchmark
+    public BitSet containsPerPattern() {
+        String line = lines[index];
+        index = (index + 1) % lines.length;
+        found.clear();
+        for (int i = 0; i < patternList.size(); i++) {
+            if (line.contains(patternList.get(i))) {
+                found.set(i);
+            }
+        }
+        return found;
+    }
+}
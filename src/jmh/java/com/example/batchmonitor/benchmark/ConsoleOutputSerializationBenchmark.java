@@ -0,0 +1,105 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.util.ConsoleFrameCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a console line as JSON, with the same ObjectMapper
+ * defaults Spring Boot uses for STOMP payloads, and as a ConsoleFrameCodec
+ * frame, alone or in a frame of {@value #LINES} lines. Batched results are
+ * per line. The bytes per line of each encoding, with and without the STOMP
+ * MESSAGE frame around it, are printed when a trial ends.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ConsoleOutputSerializationBenchmark {
+
+    private static final int LINES = 50;
+
+    @Param({"16", "120"})
+    private int messageLength;
+
+    private ObjectMapper objectMapper;
+    private ConsoleOutput output;
+    private List<ConsoleOutput> batch;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        LocalDateTime start = LocalDateTime.of(2025, 5, 17, 12, 0, 0, 123_456_000);
+        List<String> messages = SyntheticOutput.lineList(LINES, messageLength);
+        batch = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            batch.add(ConsoleOutput.builder()
+                    .executionId(42L)
+                    .message(messages.get(i))
+                    .timestamp(start.plusNanos(i * 250_000L))
+                    .type(ConsoleOutput.OutputType.STDOUT)
+                    .sequence(1_000_000L + i)
+                    .build());
+        }
+        output = batch.get(0);
+    }
+
+    @TearDown
+    public void reportSizes() throws JsonProcessingException {
+        byte[] json = objectMapper.writeValueAsBytes(output);
+        byte[] frame = ConsoleFrameCodec.encode(List.of(output));
+        double batched = (double) ConsoleFrameCodec.encode(batch).length / LINES;
+        double batchedOnWire = (double) stompMessage(ConsoleFrameCodec.encode(batch), false).length / LINES;
+        System.out.printf("%nBytes per %d character line: JSON %d (%d as a STOMP message), frame %d (%d),"
+                        + " frame of %d lines %.1f (%.1f)%n",
+                messageLength, json.length, stompMessage(json, true).length, frame.length,
+                stompMessage(frame, false).length, LINES, batched, batchedOnWire);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(output);
+    }
+
+    @Benchmark
+    public byte[] encodeFrame() {
+        return ConsoleFrameCodec.encode(List.of(output));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void serializeBatch(Blackhole blackhole) throws JsonProcessingException {
+        for (ConsoleOutput line : batch) {
+            blackhole.consume(objectMapper.writeValueAsBytes(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public byte[] encodeBatchFrame() {
+        return ConsoleFrameCodec.encode(batch);
+    }
+
+    /** The MESSAGE frame a subscriber of the console topic receives for the payload. */
+    private static byte[] stompMessage(byte[] payload, boolean json) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        headers.setDestination(json ? "/topic/console-output" : "/topic/console-output-binary");
+        headers.setContentType(json ? MimeTypeUtils.APPLICATION_JSON : MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        headers.setSubscriptionId("sub-0");
+        headers.setMessageId("m3x1sgeq-1042");
+        return new StompEncoder().encode(MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+    }
+}
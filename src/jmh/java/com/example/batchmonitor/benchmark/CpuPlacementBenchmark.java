@@ -0,0 +1,130 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.service.CpuPlacementService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a batch of CPU-bound synthetic scripts started at once,
+ * unpinned against pinned by CpuPlacementService. One operation is the whole
+ * batch running to completion. The gap only shows on a machine with several
+ * cores (and ideally several NUMA nodes) and concurrency at or below the
+ * pool size; on a single core both variants measure the same thing. The
+ * benchmark JVM itself is never pinned, so the unpinned variant runs as it
+ * would under a monitor without placement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@State(Scope.Benchmark)
+public class CpuPlacementBenchmark {
+
+    /** Integer arithmetic over a working set large enough to care about cache and memory locality. */
+    private static final String SCRIPT = """
+            #!/bin/sh
+            exec awk 'BEGIN { n = 200000; for (i = 0; i < n; i++) a[i] = i; s = 0;
+                              for (r = 0; r < 5; r++) for (i = 0; i < n; i++) s += a[(i * 7919) % n];
+                              print s }'
+            """;
+
+    @Param({"4"})
+    public int concurrency;
+
+    /** CPUs runs are placed on, e.g. "1-7" to leave CPU 0 to the benchmark JVM; empty uses every online CPU. */
+    @Param({""})
+    public String pool;
+
+    private Path baseDir;
+    private Path script;
+    private CpuPlacementService placement;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("cpu-placement-bench");
+        script = Files.writeString(baseDir.resolve("crunch.sh"), SCRIPT);
+
+        placement = new CpuPlacementService();
+        setField(placement, "enabled", true);
+        setField(placement, "poolConfig", pool);
+        // Reserving CPUs would pin this JVM, and with it the unpinned scripts it starts
+        setField(placement, "reservedConfig", "");
+        setField(placement, "cpusPerRun", 1);
+        setField(placement, "scriptCpus", "");
+        setField(placement, "baseScriptsDir", baseDir.toString());
+        placement.start();
+        if (!placement.isActive()) {
+            throw new IllegalStateException("CPU placement is not available on this machine");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public int unpinned() throws Exception {
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            processes.add(start(List.of("/bin/sh", script.toString())));
+        }
+        return waitForAll(processes);
+    }
+
+    @Benchmark
+    public int pinned() throws Exception {
+        List<Process> processes = new ArrayList<>();
+        List<CpuPlacementService.Placement> placements = new ArrayList<>();
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                BatchExecution execution = BatchExecution.builder()
+                        .id(++nextId)
+                        .scriptPath(script.toString())
+                        .build();
+                CpuPlacementService.Placement cpus = placement.acquire(execution).orElseThrow();
+                placements.add(cpus);
+                processes.add(start(placement.wrap(cpus, List.of("/bin/sh", script.toString()))));
+            }
+            return waitForAll(processes);
+        } finally {
+            placements.forEach(placement::release);
+        }
+    }
+
+    private Process start(List<String> command) throws IOException {
+        return new ProcessBuilder(command)
+                .directory(baseDir.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static int waitForAll(List<Process> processes) throws InterruptedException {
+        int failed = 0;
+        for (Process process : processes) {
+            if (process.waitFor() != 0) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " benchmark script(s) failed");
+        }
+        return processes.size();
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
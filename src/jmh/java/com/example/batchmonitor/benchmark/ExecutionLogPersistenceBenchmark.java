@@ -0,0 +1,107 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.ExecutionLogRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ExecutionLog persistence to in-memory H2 through the Spring Data
+ * repository, comparing one save per line (the current hot path) against
+ * saveAll under different Hibernate JDBC batch sizes. Each invocation writes
+ * {@link #LINES} log entries.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ExecutionLogPersistenceBenchmark {
+
+    static final int LINES = 100;
+
+    @Param({"1", "50"})
+    private int jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+    private ExecutionLogRepository logRepository;
+    private TransactionTemplate transactionTemplate;
+    private BatchExecution execution;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(PersistenceConfig.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.main.banner-mode=off",
+                        "--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize,
+                        "--spring.jpa.properties.hibernate.order_inserts=true",
+                        "--logging.level.root=WARN");
+        logRepository = context.getBean(ExecutionLogRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        execution = context.getBean(BatchExecutionRepository.class).save(BatchExecution.builder()
+                .scriptPath("/bench/script.sh")
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build());
+    }
+
+    @Setup(Level.Iteration)
+    public void clearLogs() {
+        logRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void saveEachLine() {
+        for (int i = 0; i < LINES; i++) {
+            logRepository.save(logEntry(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void saveAllInOneTransaction() {
+        List<ExecutionLog> entries = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            entries.add(logEntry(i));
+        }
+        transactionTemplate.executeWithoutResult(status -> logRepository.saveAll(entries));
+    }
+
+    private ExecutionLog logEntry(int i) {
+        return ExecutionLog.builder()
+                .batchExecution(execution)
+                .message("Processed record " + i)
+                .timestamp(LocalDateTime.now())
+                .logType(ExecutionLog.LogType.STDOUT)
+                .build();
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = BatchExecution.class)
+    @EnableJpaRepositories(basePackageClasses = ExecutionLogRepository.class)
+    static class PersistenceConfig {
+    }
+}
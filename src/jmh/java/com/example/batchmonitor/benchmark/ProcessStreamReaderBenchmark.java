@@ -0,0 +1,39 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.util.ProcessStreamReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast ProcessStreamReader can split a stream into lines and hand
+ * them to a consumer. Each invocation reads {@link #LINES} lines.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ProcessStreamReaderBenchmark {
+
+    static final int LINES = 10_000;
+
+    @Param({"16", "128", "1024"})
+    private int lineLength;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = SyntheticOutput.lines(LINES, lineLength).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void readLines(Blackhole blackhole) throws InterruptedException {
+        ProcessStreamReader reader = new ProcessStreamReader(new ByteArrayInputStream(data), blackhole::consume);
+        reader.start();
+        reader.waitFor();
+    }
+}
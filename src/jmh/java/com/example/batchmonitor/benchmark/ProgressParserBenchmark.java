@@ -0,0 +1,39 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.service.ProgressParserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ProgressParserService cost per line, over synthetic output and over the
+ * recorded output of the bundled example script.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ProgressParserBenchmark {
+
+    @Param({"synthetic", "test-script-output.log"})
+    private String corpus;
+
+    private final ProgressParserService parser = new ProgressParserService();
+    private String[] lines;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        List<String> source = "synthetic".equals(corpus)
+                ? SyntheticOutput.lineList(1_000, 80)
+                : SyntheticOutput.corpus(corpus);
+        lines = source.toArray(String[]::new);
+    }
+
+    @Benchmark
+    public Double parseLine() {
+        String line = lines[index];
+        index = (index + 1) % lines.length;
+        return parser.parseProgress(line);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.service.ScriptCommandResolver;
+import com.example.batchmonitor.service.ScriptDirectoryMonitor;
+import com.example.batchmonitor.util.ScriptUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bookkeeping done before a script is spawned: the uncached
+ * ScriptUtils.buildCommand against ScriptCommandResolver with modification-time
+ * validation and with WatchService invalidation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ScriptCommandResolverBenchmark {
+
+    private static final String PARAMETERS = "--input data.csv --limit 100";
+
+    @Param({"false", "true"})
+    private boolean watch;
+
+    private Path baseDir;
+    private String scriptPath;
+    private ScriptDirectoryMonitor directoryMonitor;
+    private ScriptCommandResolver resolver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("resolver-bench");
+        scriptPath = Files.writeString(baseDir.resolve("job.sh"), "#!/bin/bash\necho done\n").toString();
+
+        directoryMonitor = new ScriptDirectoryMonitor();
+        setField(directoryMonitor, "baseScriptsDir", baseDir.toString());
+        setField(directoryMonitor, "watchEnabled", watch);
+        directoryMonitor.start();
+        resolver = new ScriptCommandResolver(directoryMonitor);
+        resolver.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        directoryMonitor.stop();
+        FileSystemUtils.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public List<String> buildCommandUncached() {
+        return ScriptUtils.buildCommand(scriptPath, PARAMETERS);
+    }
+
+    @Benchmark
+    public List<String> resolveCached() {
+        return resolver.resolve(scriptPath, PARAMETERS);
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.util.JsonLineParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures structured output extraction per line: the streaming JsonLineParser
+ * against reading the line into a Jackson tree, and the cost a plain text
+ * line pays for the JSON check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class StructuredOutputBenchmark {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final String jsonLine =
+            "{\"progress\":0.4,\"rowsDone\":1200,\"stage\":\"load\",\"stats\":{\"rejected\":3,\"dbMillis\":41.5}}";
+    private final String textLine = SyntheticOutput.lineList(1, 80).get(0);
+
+    @Benchmark
+    public JsonLineParser.Result streamingParse() {
+        return JsonLineParser.parse(jsonLine);
+    }
+
+    @Benchmark
+    public JsonNode treeParse() throws Exception {
+        return JSON.readTree(jsonLine);
+    }
+
+    @Benchmark
+    public JsonLineParser.Result plainTextLine() {
+        return JsonLineParser.parse(textLine);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.batchmonitor.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates deterministic script-like console output for benchmarks and loads
+ * the recorded corpora shipped under src/jmh/resources/corpus.
+ */
+final class SyntheticOutput {
+
+    private static final String[] PREFIXES = {"[INFO] ", "[DEBUG] ", "[WARN] ", ""};
+
+    private SyntheticOutput() {
+    }
+
+    /**
+     * Builds newline-terminated lines of roughly the given length. About one line
+     * in ten carries a progress marker in one of the formats the parser supports.
+     */
+    static String lines(int count, int lineLength) {
+        StringBuilder builder = new StringBuilder(count * (lineLength + 1));
+        for (String line : lineList(count, lineLength)) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+
+    static List<String> lineList(int count, int lineLength) {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder(lineLength);
+            switch (i % 10) {
+                case 0 -> line.append("Progress: ").append(i % 100).append('.').append(random.nextInt(10)).append('%');
+                case 5 -> line.append("Task ").append(i % 50).append(" of 50");
+                default -> line.append(PREFIXES[random.nextInt(PREFIXES.length)]).append("Processed record ").append(i);
+            }
+            while (line.length() < lineLength) {
+                line.append((char) ('a' + random.nextInt(26)));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    static List<String> corpus(String name) {
+        try (InputStream in = SyntheticOutput.class.getResourceAsStream("/corpus/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Corpus not found: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
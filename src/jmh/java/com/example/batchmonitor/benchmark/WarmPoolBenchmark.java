@@ -0,0 +1,98 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.service.CpuPlacementService;
+import com.example.batchmonitor.service.ScriptCommandResolver;
+import com.example.batchmonitor.service.ScriptDirectoryMonitor;
+import com.example.batchmonitor.service.WarmPoolService;
+import com.example.batchmonitor.util.WarmInterpreter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of a short Python job: spawning python3 for every run
+ * against dispatching it to a pre-started interpreter from WarmPoolService.
+ * Both variants read every output line and wait for the exit code.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class WarmPoolBenchmark {
+
+    /** Imports typical of our report jobs, so start-up cost is realistic. */
+    private static final String SCRIPT = """
+            import json, csv, datetime, logging, re, sys
+            for i in range(5):
+                print(json.dumps({"row": i, "at": datetime.date(2024, 1, 1).isoformat()}))
+            """;
+
+    private Path baseDir;
+    private Path script;
+    private ScriptCommandResolver resolver;
+    private WarmPoolService warmPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("warm-pool-bench");
+        script = Files.writeString(baseDir.resolve("report.py"), SCRIPT);
+
+        ScriptDirectoryMonitor directoryMonitor = new ScriptDirectoryMonitor();
+        setField(directoryMonitor, "baseScriptsDir", baseDir.toString());
+        resolver = new ScriptCommandResolver(directoryMonitor);
+        resolver.start();
+
+        warmPool = new WarmPoolService(resolver, new CpuPlacementService());
+        setField(warmPool, "enabled", true);
+        setField(warmPool, "poolSize", 2);
+        setField(warmPool, "maxJobsPerWorker", Integer.MAX_VALUE);
+        setField(warmPool, "preload", "json,re,datetime,collections,csv,logging");
+        warmPool.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        warmPool.stop();
+        FileSystemUtils.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public int coldSpawn(Blackhole blackhole) throws Exception {
+        List<String> command = resolver.resolve(script.toString(), null);
+        Process process = new ProcessBuilder(command).directory(baseDir.toFile()).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(line);
+            }
+        }
+        return process.waitFor();
+    }
+
+    @Benchmark
+    public int warmPool(Blackhole blackhole) throws Exception {
+        WarmInterpreter.Job job = warmPool.submit(script.toString(), null, baseDir.toFile(),
+                blackhole::consume, blackhole::consume);
+        if (!job.waitFor(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Warm pool job did not finish");
+        }
+        return job.exitValue();
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.batchmonitor.benchmark;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.service.ConsoleLiveView;
+import com.example.batchmonitor.service.InJvmMessageRelay;
+import com.example.batchmonitor.service.MetricsService;
+import com.example.batchmonitor.service.WebSocketService;
+import com.example.batchmonitor.service.WebSocketSubscriptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures WebSocketService.sendConsoleOutput up to the broker channel: message
+ * conversion, header creation, metrics and the reactive sink. The channel itself
+ * discards messages, so broker fan-out is not included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class WebSocketServiceBenchmark {
+
+    private WebSocketService webSocketService;
+    private ConsoleOutput output;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        template.setMessageConverter(converter);
+
+        webSocketService = new WebSocketService(new InJvmMessageRelay(template, new WebSocketSubscriptions()),
+                new MetricsService(new SimpleMeterRegistry(), 50), new ConsoleLiveView());
+        setField(webSocketService, "progressTopic", "/topic/progress");
+        setField(webSocketService, "consoleTopic", "/topic/console-output");
+        setField(webSocketService, "consoleBinaryTopic", "/topic/console-output-binary");
+        setField(webSocketService, "statusTopic", "/topic/status");
+        setField(webSocketService, "resourcesTopic", "/topic/resources");
+        setField(webSocketService, "pipelinesTopic", "/topic/pipeline-progress");
+
+        output = ConsoleOutput.builder()
+                .executionId(42L)
+                .message(SyntheticOutput.lineList(1, 80).get(0))
+                .timestamp(LocalDateTime.now())
+                .type(ConsoleOutput.OutputType.STDOUT)
+                .build();
+    }
+
+    @Benchmark
+    public void sendConsoleOutput() {
+        webSocketService.sendConsoleOutput(output);
+    }
+
+    private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.batchmonitor.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line options for the load generator, given as {@code --name=value}.
+ *
+ * @param executions Number of synthetic scripts to launch
+ * @param subscribers Number of STOMP subscribers attached to the console topic
+ * @param linesPerSecond Output rate of each script
+ * @param lineLength Approximate length of each output line in characters
+ * @param progressEvery Emit a progress line every N output lines (0 disables)
+ * @param durationSeconds How long each script keeps writing
+ * @param rampUpSeconds Spread the launches of all executions over this many seconds
+ * @param reportIntervalSeconds How often interval statistics are printed
+ */
+public record LoadTestOptions(
+        int executions,
+        int subscribers,
+        double linesPerSecond,
+        int lineLength,
+        int progressEvery,
+        int durationSeconds,
+        int rampUpSeconds,
+        int reportIntervalSeconds) {
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                Integer.parseInt(values.getOrDefault("executions", "10")),
+                Integer.parseInt(values.getOrDefault("subscribers", "2")),
+                Double.parseDouble(values.getOrDefault("linesPerSecond", "100")),
+                Integer.parseInt(values.getOrDefault("lineLength", "120")),
+                Integer.parseInt(values.getOrDefault("progressEvery", "100")),
+                Integer.parseInt(values.getOrDefault("duration", "30")),
+                Integer.parseInt(values.getOrDefault("rampUp", "0")),
+                Integer.parseInt(values.getOrDefault("reportInterval", "5")));
+
+        if (options.executions() <= 0 || options.linesPerSecond() <= 0 || options.durationSeconds() <= 0
+                || options.reportIntervalSeconds() <= 0) {
+            throw new IllegalArgumentException("executions, linesPerSecond, duration and reportInterval must be positive");
+        }
+        return options;
+    }
+
+    /**
+     * Parameters passed to the synthetic script through BatchExecutionRequest.parameters.
+     */
+    String scriptParameters() {
+        return linesPerSecond + " " + lineLength + " " + progressEvery + " " + durationSeconds;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.batchmonitor.loadtest;
+
+import com.example.batchmonitor.BatchMonitorApplication;
+import com.example.batchmonitor.dto.BatchExecutionResponse;
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.entity.BatchExecution;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.search.Search;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Self-contained load generator and soak harness.
+ * Boots the monitor in-process against in-memory H2, launches synthetic scripts
+ * through the REST API, attaches STOMP subscribers to the console topic and
+ * reports end-to-end line latency (script write to subscriber receive), DB write
+ * rate, heap usage and thread count.
+ *
+ * <p>Run with {@code ./gradlew loadTest -PloadTestArgs="--executions=20 --linesPerSecond=500"}.
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final Set<BatchExecution.ExecutionStatus> TERMINAL = EnumSet.of(
+            BatchExecution.ExecutionStatus.COMPLETED,
+            BatchExecution.ExecutionStatus.FAILED,
+            BatchExecution.ExecutionStatus.TIMED_OUT,
+            BatchExecution.ExecutionStatus.OOM_KILLED);
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final LoadTestOptions options;
+    private final Recorder latencyRecorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram totalLatency = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder dataLinesReceived = new LongAdder();
+
+    private ConfigurableApplicationContext context;
+    private RestTemplate restTemplate;
+    private String baseUrl;
+
+    public LoadTestRunner(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        int exitCode = new LoadTestRunner(options).run();
+        System.exit(exitCode);
+    }
+
+    public int run() throws Exception {
+        Path workDir = Files.createTempDirectory("batch-loadtest");
+        SyntheticScript.write(workDir);
+        log.info("Load test options: {}", options);
+        log.info("Working directory: {}", workDir);
+
+        context = new SpringApplicationBuilder(BatchMonitorApplication.class).run(
+                "--server.port=0",
+                "--batch.scripts.baseDir=" + workDir,
+                "--batch.execution.logs.directory=" + workDir.resolve("logs"),
+                "--batch.execution.timeout=" + (options.durationSeconds() * 4L + 60),
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.batchmonitor.service.WebSocketService=ERROR",
+                "--logging.level.com.example.batchmonitor.loadtest=INFO");
+
+        List<StompSession> sessions = new ArrayList<>();
+        List<WebSocketStompClient> clients = new ArrayList<>();
+        try {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            String endpoint = context.getEnvironment().getRequiredProperty("batch.websocket.endpoint");
+            String consoleTopic = context.getEnvironment().getRequiredProperty("batch.websocket.topic.console");
+            baseUrl = "http://localhost:" + port;
+            restTemplate = new RestTemplate();
+
+            for (int i = 0; i < options.subscribers(); i++) {
+                WebSocketStompClient client = stompClient();
+                clients.add(client);
+                sessions.add(subscribe(client, "ws://localhost:" + port + endpoint, consoleTopic));
+            }
+            log.info("Attached {} STOMP subscriber(s) to {}", options.subscribers(), consoleTopic);
+
+            List<Long> executionIds = launchExecutions();
+            boolean finished = monitor(executionIds);
+            printSummary(executionIds);
+            return finished ? 0 : 1;
+        } finally {
+            sessions.forEach(StompSession::disconnect);
+            clients.forEach(WebSocketStompClient::stop);
+            // Give the broker a moment to process the DISCONNECT frames before shutdown
+            Thread.sleep(500);
+            context.close();
+        }
+    }
+
+    private static WebSocketStompClient stompClient() {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        client.setMessageConverter(converter);
+        client.setInboundMessageSizeLimit(1024 * 1024);
+        return client;
+    }
+
+    private StompSession subscribe(WebSocketStompClient client, String url, String topic) throws Exception {
+        StompSession session = client.connectAsync(url, new StompSessionHandlerAdapter() { })
+                .get(10, TimeUnit.SECONDS);
+        session.subscribe(topic, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ConsoleOutput.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                onConsoleOutput((ConsoleOutput) payload);
+            }
+        });
+        return session;
+    }
+
+    private void onConsoleOutput(ConsoleOutput output) {
+        framesReceived.increment();
+        long writtenAt = SyntheticScript.writtenAtNanos(output.getMessage());
+        if (writtenAt < 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        long nowNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+        long latencyMicros = Math.max(0, (nowNanos - writtenAt) / 1_000);
+        latencyRecorder.recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+        dataLinesReceived.increment();
+    }
+
+    private List<Long> launchExecutions() throws InterruptedException {
+        List<Long> ids = new ArrayList<>();
+        long delayMillis = options.executions() > 1
+                ? TimeUnit.SECONDS.toMillis(options.rampUpSeconds()) / (options.executions() - 1)
+                : 0;
+        for (int i = 0; i < options.executions(); i++) {
+            BatchExecutionResponse response = restTemplate.postForObject(baseUrl + "/api/executions",
+                    Map.of("scriptName", SyntheticScript.FILE_NAME, "parameters", options.scriptParameters()),
+                    BatchExecutionResponse.class);
+            ids.add(response.getId());
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+        }
+        log.info("Launched {} execution(s)", ids.size());
+        return ids;
+    }
+
+    private boolean monitor(List<Long> executionIds) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(options.durationSeconds() * 4L + options.rampUpSeconds() + 60);
+        long lastLogWrites = logWrites();
+        long lastFrames = 0;
+        long lastTick = start;
+
+        log.info(String.format("%8s %6s %10s %10s %9s %9s %9s %9s %10s %8s",
+                "elapsed", "done", "frames/s", "lines/s", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)",
+                "dbWrites/s", "heapMB"));
+
+        while (true) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.reportIntervalSeconds()));
+            long now = System.nanoTime();
+            double seconds = (now - lastTick) / 1e9;
+
+            Histogram interval = latencyRecorder.getIntervalHistogram();
+            totalLatency.add(interval);
+            long frames = framesReceived.sum();
+            long logWrites = logWrites();
+            long done = countFinished(executionIds);
+
+            log.info(String.format("%7.0fs %6d %10.0f %10.0f %9.2f %9.2f %9.2f %9.2f %10.0f %8d",
+                    (now - start) / 1e9,
+                    done,
+                    (frames - lastFrames) / seconds,
+                    interval.getTotalCount() / seconds,
+                    millis(interval.getValueAtPercentile(50)),
+                    millis(interval.getValueAtPercentile(99)),
+                    millis(interval.getValueAtPercentile(99.9)),
+                    millis(interval.getMaxValue()),
+                    (logWrites - lastLogWrites) / seconds,
+                    usedHeapMegabytes()));
+
+            lastFrames = frames;
+            lastLogWrites = logWrites;
+            lastTick = now;
+
+            if (done == executionIds.size()) {
+                return true;
+            }
+            if (now > deadline) {
+                log.warn("Gave up waiting: {} of {} executions finished", done, executionIds.size());
+                return false;
+            }
+        }
+    }
+
+    private void printSummary(List<Long> executionIds) {
+        totalLatency.add(latencyRecorder.getIntervalHistogram());
+        BatchExecutionResponse[] executions = restTemplate.getForObject(baseUrl + "/api/executions",
+                BatchExecutionResponse[].class);
+        Map<BatchExecution.ExecutionStatus, Long> byStatus = new EnumMap<>(BatchExecution.ExecutionStatus.class);
+        for (BatchExecutionResponse execution : executions) {
+            if (executionIds.contains(execution.getId())) {
+                byStatus.merge(execution.getStatus(), 1L, Long::sum);
+            }
+        }
+
+        long expectedLines = Math.max(1, (long) (options.linesPerSecond() * options.durationSeconds()))
+                * options.executions() * Math.max(1, options.subscribers());
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        log.info("===== Load test summary =====");
+        log.info("Executions: {} launched, by status {}", executionIds.size(), byStatus);
+        log.info("Data lines received: {} of {} expected across {} subscriber(s)",
+                dataLinesReceived.sum(), expectedLines, options.subscribers());
+        log.info(String.format("End-to-end latency (ms): p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f",
+                millis(totalLatency.getValueAtPercentile(50)),
+                millis(totalLatency.getValueAtPercentile(90)),
+                millis(totalLatency.getValueAtPercentile(99)),
+                millis(totalLatency.getValueAtPercentile(99.9)),
+                millis(totalLatency.getMaxValue())));
+        log.info("ExecutionLog writes: {}", logWrites());
+        log.info("Heap used: {} MB (committed {} MB)", usedHeapMegabytes(),
+                memory.getHeapMemoryUsage().getCommitted() / (1024 * 1024));
+        log.info("Threads: {} live, {} peak", threads.getThreadCount(), threads.getPeakThreadCount());
+    }
+
+    private long countFinished(List<Long> executionIds) {
+        BatchExecutionResponse[] executions = restTemplate.getForObject(baseUrl + "/api/executions",
+                BatchExecutionResponse[].class);
+        long done = 0;
+        for (BatchExecutionResponse execution : executions) {
+            if (executionIds.contains(execution.getId()) && TERMINAL.contains(execution.getStatus())) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    private long logWrites() {
+        MeterRegistry registry = context.getBean(MeterRegistry.class);
+        return Search.in(registry).name("batch.log.persist").timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    private static long usedHeapMegabytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.batchmonitor.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the synthetic Python script launched by the load generator.
+ * Every data line carries the wall-clock time at which it was written so
+ * subscribers can compute end-to-end latency.
+ */
+final class SyntheticScript {
+
+    static final String FILE_NAME = "loadtest_script.py";
+    static final String LINE_MARKER = "LT ";
+
+    private static final String SOURCE = """
+            import sys, time
+
+            rate = float(sys.argv[1])
+            length = int(sys.argv[2])
+            progress_every = int(sys.argv[3])
+            duration = float(sys.argv[4])
+
+            total = max(1, int(rate * duration))
+            interval = 1.0 / rate
+            padding = "x" * max(0, length - 40)
+            start = time.monotonic()
+
+            for i in range(total):
+                target = start + i * interval
+                now = time.monotonic()
+                if target > now:
+                    time.sleep(target - now)
+                if progress_every > 0 and i % progress_every == 0:
+                    print("Progress: %.1f%%" % (i * 100.0 / total))
+                print("LT %d %d %s" % (time.time_ns(), i, padding), flush=True)
+            """;
+
+    private SyntheticScript() {
+    }
+
+    static Path write(Path directory) throws IOException {
+        Path script = directory.resolve(FILE_NAME);
+        Files.writeString(script, SOURCE);
+        return script;
+    }
+
+    /**
+     * Extracts the write timestamp from a data line.
+     *
+     * @param line A console line
+     * @return Epoch nanoseconds at which the script wrote the line, or -1 for non-data lines
+     */
+    static long writtenAtNanos(String line) {
+        if (line == null || !line.startsWith(LINE_MARKER)) {
+            return -1;
+        }
+        int end = line.indexOf(' ', LINE_MARKER.length());
+        try {
+            return Long.parseLong(line.substring(LINE_MARKER.length(), end < 0 ? line.length() : end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,27 +1,99 @@
 package com.example.batchmonitor.config;
 
+import com.example.batchmonitor.service.ClusterMessageRelay;
+import com.example.batchmonitor.service.SlowConsumerPolicy;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
     @Value("${batch.websocket.endpoint}")
     private String endpoint;
 
+    @Value("${batch.websocket.transport.compression:true}")
+    private boolean compression;
+
+    @Value("${batch.websocket.transport.sendTimeLimit:15000}")
+    private int sendTimeLimit;
+
+    @Value("${batch.websocket.transport.sendBufferSizeLimit:1048576}")
+    private int sendBufferSizeLimit;
+
+    @Value("${batch.websocket.transport.messageSizeLimit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${batch.websocket.transport.outboundThreads:0}")
+    private int outboundThreads;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        // The relay prefix carries events to subscribers on other nodes (see ClusterMessageRelay)
+        config.enableSimpleBroker("/topic", ClusterMessageRelay.RELAY_PREFIX);
         config.setApplicationDestinationPrefixes("/app");
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        registry.addEndpoint(endpoint);
+        registry.addEndpoint(endpoint).setHandshakeHandler(new CompressionHandshakeHandler(compression));
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Past these limits Spring closes the session; slow clients are thinned out before that
+        registration.setSendTimeLimit(sendTimeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(slowConsumerPolicy::decorate);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (outboundThreads > 0) {
+            registration.taskExecutor().corePoolSize(outboundThreads).maxPoolSize(outboundThreads);
+        }
+        registration.interceptors(slowConsumerPolicy);
+    }
+
+    /**
+     * Negotiates the extensions a client offers that the container supports,
+     * leaving out permessage-deflate when compression is off.
+     */
+    static final class CompressionHandshakeHandler extends DefaultHandshakeHandler {
+
+        private final boolean compression;
+
+        CompressionHandshakeHandler(boolean compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                     List<WebSocketExtension> requestedExtensions,
+                                                                     List<WebSocketExtension> supportedExtensions) {
+            List<WebSocketExtension> extensions =
+                    super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+            return compression
+                    ? extensions
+                    : extensions.stream().filter(extension -> !PERMESSAGE_DEFLATE.equals(extension.getName())).toList();
+        }
     }
 }
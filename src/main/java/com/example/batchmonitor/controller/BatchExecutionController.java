@@ -3,8 +3,12 @@ package com.example.batchmonitor.controller;
 import com.example.batchmonitor.dto.BatchExecutionRequest;
 import com.example.batchmonitor.dto.BatchExecutionResponse;
 import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.dto.MetricPoint;
+import com.example.batchmonitor.dto.ResourceUsageSample;
 import com.example.batchmonitor.service.BatchExecutionService;
 import com.example.batchmonitor.service.ConsoleOutputService;
+import com.example.batchmonitor.service.ResourceUsageSampler;
+import com.example.batchmonitor.service.StructuredOutputService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +16,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/executions")
@@ -21,6 +26,8 @@ public class BatchExecutionController {
 
     private final BatchExecutionService batchExecutionService;
     private final ConsoleOutputService consoleOutputService;
+    private final ResourceUsageSampler resourceUsageSampler;
+    private final StructuredOutputService structuredOutputService;
 
     @PostMapping
     public ResponseEntity<BatchExecutionResponse> startExecution(
@@ -46,4 +53,22 @@ public class BatchExecutionController {
         log.info("REST request to get console output for execution: {}", id);
         return ResponseEntity.ok(consoleOutputService.getConsoleOutput(id));
     }
+
+    @GetMapping("/{id}/resources")
+    public ResponseEntity<List<ResourceUsageSample>> getResourceUsage(@PathVariable Long id) {
+        log.info("REST request to get resource usage for execution: {}", id);
+        return ResponseEntity.ok(resourceUsageSampler.getSamples(id));
+    }
+
+    @GetMapping("/{id}/metrics")
+    public ResponseEntity<Map<String, Double>> getMetrics(@PathVariable Long id) {
+        log.info("REST request to get structured output metrics for execution: {}", id);
+        return ResponseEntity.ok(structuredOutputService.getLatestMetrics(id));
+    }
+
+    @GetMapping("/{id}/metrics/{name}")
+    public ResponseEntity<List<MetricPoint>> getMetric(@PathVariable Long id, @PathVariable String name) {
+        log.info("REST request to get structured output metric {} for execution: {}", name, id);
+        return ResponseEntity.ok(structuredOutputService.getMetric(id, name));
+    }
 }
@@ -0,0 +1,27 @@
+package com.example.batchmonitor.controller;
+
+import com.example.batchmonitor.dto.ClusterNodeResponse;
+import com.example.batchmonitor.service.ClusterCoordinator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cluster")
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterController {
+
+    private final ClusterCoordinator clusterCoordinator;
+
+    @GetMapping("/nodes")
+    public ResponseEntity<List<ClusterNodeResponse>> getNodes() {
+        log.debug("REST request to list cluster nodes");
+        return ResponseEntity.ok(clusterCoordinator.getNodes());
+    }
+}
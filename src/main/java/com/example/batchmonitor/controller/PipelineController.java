@@ -0,0 +1,53 @@
+package com.example.batchmonitor.controller;
+
+import com.example.batchmonitor.dto.PipelineRequest;
+import com.example.batchmonitor.dto.PipelineResponse;
+import com.example.batchmonitor.dto.SweepRequest;
+import com.example.batchmonitor.service.PipelineService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/pipelines")
+@RequiredArgsConstructor
+@Slf4j
+public class PipelineController {
+
+    private final PipelineService pipelineService;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PipelineResponse> startPipeline(@Valid @RequestBody PipelineRequest request) {
+        log.info("REST request to start pipeline: {}", request);
+        return ResponseEntity.ok(pipelineService.startPipeline(request));
+    }
+
+    @PostMapping(consumes = {"application/yaml", "application/x-yaml", "text/yaml"})
+    public ResponseEntity<PipelineResponse> startPipelineFromYaml(@RequestBody String definition) {
+        log.info("REST request to start pipeline from YAML definition");
+        return ResponseEntity.ok(pipelineService.startPipeline(pipelineService.parseDefinition(definition)));
+    }
+
+    @PostMapping("/sweep")
+    public ResponseEntity<PipelineResponse> startSweep(@Valid @RequestBody SweepRequest request) {
+        log.info("REST request to start sweep of {} with parameters {}", request.getScriptName(), request.getParameters());
+        return ResponseEntity.ok(pipelineService.startSweep(request));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<PipelineResponse> getPipeline(@PathVariable Long id) {
+        log.info("REST request to get pipeline: {}", id);
+        return ResponseEntity.ok(pipelineService.getPipeline(id));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<PipelineResponse>> getAllPipelines() {
+        log.info("REST request to get all pipelines");
+        return ResponseEntity.ok(pipelineService.getAllPipelines());
+    }
+}
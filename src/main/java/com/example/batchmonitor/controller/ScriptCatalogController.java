@@ -0,0 +1,41 @@
+package com.example.batchmonitor.controller;
+
+import com.example.batchmonitor.dto.ScriptInfo;
+import com.example.batchmonitor.dto.ScriptPage;
+import com.example.batchmonitor.service.ScriptCatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/scripts")
+@RequiredArgsConstructor
+@Slf4j
+public class ScriptCatalogController {
+
+    private final ScriptCatalogService scriptCatalogService;
+
+    @GetMapping
+    public ResponseEntity<ScriptPage> listScripts(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) ScriptInfo.ScriptType type,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        log.debug("REST request to list scripts: q={}, type={}, page={}, size={}", q, type, page, size);
+        return ResponseEntity.ok(scriptCatalogService.listScripts(q, type, page, size));
+    }
+
+    @GetMapping("/info")
+    public ResponseEntity<ScriptInfo> getScript(@RequestParam String name) {
+        log.info("REST request to get script: {}", name);
+        return ResponseEntity.ok(scriptCatalogService.getScript(name));
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<Void> refresh() {
+        log.info("REST request to rescan the scripts directory");
+        scriptCatalogService.rescan();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.batchmonitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An alert rule that fired on an execution's console output.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertEvent {
+
+    private Long executionId;
+    private Long pipelineId;
+    private String scriptPath;
+    private LocalDateTime timestamp;
+
+    /** Name of the rule, and the text and stream (STDOUT, STDERR, or null for both) it looks for. */
+    private String rule;
+    private String pattern;
+    private String stream;
+
+    /** Matching lines that made the rule fire, and the window in seconds they arrived in (0 for a single line). */
+    private int count;
+    private long windowSeconds;
+
+    /** The line that made the rule fire. */
+    private String line;
+}
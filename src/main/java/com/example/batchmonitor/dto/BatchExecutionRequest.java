@@ -1,8 +1,11 @@
 package com.example.batchmonitor.dto;
 
+import com.example.batchmonitor.entity.BatchExecution;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class BatchExecutionRequest {
 
@@ -10,4 +13,34 @@ public class BatchExecutionRequest {
     private String scriptName;
 
     private String parameters;
+
+    /** Team or user the run is accounted to for fair sharing; defaults to "default". */
+    private String owner;
+
+    /** Defaults to NORMAL. */
+    private BatchExecution.Priority priority;
+
+    /**
+     * Opts in to the result cache: the script is declared a pure function of its
+     * content, parameters and inputFiles, so an earlier successful run may be reused.
+     */
+    private boolean useCache;
+
+    /**
+     * Parses JSON lines the script prints, e.g. {"progress":0.4,"rowsDone":1200},
+     * for progress, metrics and fields (structured output mode).
+     */
+    private boolean structuredOutput;
+
+    /**
+     * Gives the script a named pipe for progress records, passed as
+     * BATCH_PROGRESS_PATH, instead of parsing progress from its stdout.
+     */
+    private boolean progressChannel;
+
+    /**
+     * Files the script reads, relative to the scripts directory or absolute.
+     * Their content is part of the cache key.
+     */
+    private List<String> inputFiles;
 }
@@ -1,6 +1,7 @@
 package com.example.batchmonitor.dto;
 
 import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.repository.projection.ExecutionSummary;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,6 +18,8 @@ public class BatchExecutionResponse {
     private Long id;
     private String scriptPath;
     private String parameters;
+    private String owner;
+    private BatchExecution.Priority priority;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private BatchExecution.ExecutionStatus status;
@@ -24,18 +27,42 @@ public class BatchExecutionResponse {
     private Double progress;
     private String result;
     private String errorMessage;
+    private String cpuSet;
+    private String nodeId;
 
     public static BatchExecutionResponse fromEntity(BatchExecution execution) {
         return BatchExecutionResponse.builder()
                 .id(execution.getId())
                 .scriptPath(execution.getScriptPath())
                 .parameters(execution.getParameters())
+                .owner(execution.getOwner())
+                .priority(execution.getPriority())
                 .startTime(execution.getStartTime())
                 .endTime(execution.getEndTime())
                 .status(execution.getStatus())
                 .exitCode(execution.getExitCode())
                 .progress(execution.getProgress())
                 .errorMessage(execution.getErrorMessage())
+                .cpuSet(execution.getCpuSet())
+                .nodeId(execution.getNodeId())
+                .build();
+    }
+
+    public static BatchExecutionResponse fromSummary(ExecutionSummary summary) {
+        return BatchExecutionResponse.builder()
+                .id(summary.id())
+                .scriptPath(summary.scriptPath())
+                .parameters(summary.parameters())
+                .owner(summary.owner())
+                .priority(summary.priority())
+                .startTime(summary.startTime())
+                .endTime(summary.endTime())
+                .status(summary.status())
+                .exitCode(summary.exitCode())
+                .progress(summary.progress())
+                .errorMessage(summary.errorMessage())
+                .cpuSet(summary.cpuSet())
+                .nodeId(summary.nodeId())
                 .build();
     }
 }
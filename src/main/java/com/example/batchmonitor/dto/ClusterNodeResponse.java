@@ -0,0 +1,44 @@
+package com.example.batchmonitor.dto;
+
+import com.example.batchmonitor.entity.ClusterNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterNodeResponse {
+
+    private String nodeId;
+    private String host;
+    private String url;
+    private Integer capacity;
+    private Integer running;
+    private LocalDateTime startedAt;
+    private LocalDateTime heartbeatAt;
+
+    /** Whether the node's last heartbeat is recent enough for its leases to be valid. */
+    private boolean alive;
+
+    /** Whether this is the node that answered the request. */
+    private boolean local;
+
+    public static ClusterNodeResponse fromEntity(ClusterNode node, boolean alive, boolean local) {
+        return ClusterNodeResponse.builder()
+                .nodeId(node.getNodeId())
+                .host(node.getHost())
+                .url(node.getUrl())
+                .capacity(node.getCapacity())
+                .running(node.getRunning())
+                .startedAt(node.getStartedAt())
+                .heartbeatAt(node.getHeartbeatAt())
+                .alive(alive)
+                .local(local)
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.batchmonitor.dto;
 
 import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.repository.projection.ConsoleLine;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,6 +20,9 @@ public class ConsoleOutput {
     private LocalDateTime timestamp;
     private OutputType type;
 
+    /** Output spool sequence; a line delivered twice after a stall carries the same value. */
+    private Long sequence;
+
     public enum OutputType {
         STDOUT, STDERR
     }
@@ -31,6 +35,18 @@ public class ConsoleOutput {
                 .type(log.getLogType() == ExecutionLog.LogType.STDOUT
                         ? OutputType.STDOUT
                         : OutputType.STDERR)
+                .sequence(log.getSequence())
+                .build();
+    }
+
+    public static ConsoleOutput fromLine(ConsoleLine line) {
+        return ConsoleOutput.builder()
+                .executionId(line.executionId())
+                .message(line.message())
+                .timestamp(line.timestamp())
+                .type(line.logType() == ExecutionLog.LogType.STDOUT
+                        ? OutputType.STDOUT
+                        : OutputType.STDERR)
                 .build();
     }
 }
@@ -0,0 +1,41 @@
+package com.example.batchmonitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * What an execution printed during one summary interval, published while its
+ * live console is sampled. Counts cover every line, not just the ones sent.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsoleSummary {
+
+    private Long executionId;
+    private LocalDateTime timestamp;
+
+    /** Whether the live console stays sampled after this summary; false on the last one. */
+    private boolean sampled;
+
+    private double linesPerSecond;
+    private long lines;
+
+    /** Lines of the interval sent to the live console. */
+    private long linesSent;
+
+    private long stderrLines;
+
+    /** Lines containing one of the error patterns, and the count per pattern found. */
+    private long errorLines;
+    private Map<String, Long> errorPatterns;
+
+    private String lastLine;
+    private String lastErrorLine;
+}
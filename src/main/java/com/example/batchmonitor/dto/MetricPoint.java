@@ -0,0 +1,21 @@
+package com.example.batchmonitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A value a metric reported in an execution's structured output took.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricPoint {
+
+    private LocalDateTime timestamp;
+    private double value;
+}
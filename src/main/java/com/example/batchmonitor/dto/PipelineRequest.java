@@ -0,0 +1,33 @@
+package com.example.batchmonitor.dto;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineRequest {
+
+    private String name;
+
+    /** Owner and priority of every run started for this request. */
+    private String owner;
+    private BatchExecution.Priority priority;
+
+    @NotEmpty(message = "A pipeline needs at least one step")
+    @Valid
+    private List<PipelineStep> steps;
+
+    /** Steps of this pipeline allowed to run at once, capped by batch.execution.maxConcurrent. */
+    @Positive(message = "maxParallel must be positive")
+    private Integer maxParallel;
+}
@@ -0,0 +1,93 @@
+package com.example.batchmonitor.dto;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.PipelineExecution;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineResponse {
+
+    private Long id;
+    private String name;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private BatchExecution.ExecutionStatus status;
+    private Double progress;
+    private String errorMessage;
+    private Integer totalSteps;
+    private Integer completedSteps;
+    private Integer failedSteps;
+    private Integer runningSteps;
+    private List<Step> steps;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Step {
+
+        private String id;
+        private List<String> dependsOn;
+        private BatchExecutionResponse execution;
+    }
+
+    /** Pipeline fields only, for listings. */
+    public static PipelineResponse fromEntity(PipelineExecution pipeline) {
+        return PipelineResponse.builder()
+                .id(pipeline.getId())
+                .name(pipeline.getName())
+                .startTime(pipeline.getStartTime())
+                .endTime(pipeline.getEndTime())
+                .status(pipeline.getStatus())
+                .progress(pipeline.getProgress())
+                .errorMessage(pipeline.getErrorMessage())
+                .build();
+    }
+
+    public static PipelineResponse fromEntity(PipelineExecution pipeline, List<BatchExecution> steps) {
+        Map<BatchExecution.ExecutionStatus, Long> counts = steps.stream()
+                .collect(Collectors.groupingBy(BatchExecution::getStatus, Collectors.counting()));
+        return PipelineResponse.builder()
+                .id(pipeline.getId())
+                .name(pipeline.getName())
+                .startTime(pipeline.getStartTime())
+                .endTime(pipeline.getEndTime())
+                .status(pipeline.getStatus())
+                .progress(pipeline.getProgress())
+                .errorMessage(pipeline.getErrorMessage())
+                .totalSteps(steps.size())
+                .completedSteps(count(counts, BatchExecution.ExecutionStatus.COMPLETED))
+                .failedSteps(count(counts, BatchExecution.ExecutionStatus.FAILED)
+                        + count(counts, BatchExecution.ExecutionStatus.TIMED_OUT)
+                        + count(counts, BatchExecution.ExecutionStatus.OOM_KILLED))
+                .runningSteps(count(counts, BatchExecution.ExecutionStatus.RUNNING))
+                .steps(steps.stream()
+                        .map(step -> Step.builder()
+                                .id(step.getPipelineStep())
+                                .dependsOn(splitDependencies(step.getPipelineDependsOn()))
+                                .execution(BatchExecutionResponse.fromEntity(step))
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    private static int count(Map<BatchExecution.ExecutionStatus, Long> counts, BatchExecution.ExecutionStatus status) {
+        return counts.getOrDefault(status, 0L).intValue();
+    }
+
+    private static List<String> splitDependencies(String dependsOn) {
+        return dependsOn == null || dependsOn.isEmpty() ? List.of() : Arrays.asList(dependsOn.split(","));
+    }
+}
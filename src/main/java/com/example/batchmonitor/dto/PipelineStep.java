@@ -0,0 +1,33 @@
+package com.example.batchmonitor.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStep {
+
+    @NotBlank(message = "Step id is required")
+    @Pattern(regexp = "[A-Za-z0-9_-]+", message = "Step id may only contain letters, digits, '_' and '-'")
+    private String id;
+
+    @NotBlank(message = "Script name is required")
+    private String scriptName;
+
+    /**
+     * May reference earlier steps as ${steps.<id>.output} (path of that step's
+     * output file) or ${steps.<id>.executionId}; a referenced step is an
+     * implicit dependency.
+     */
+    private String parameters;
+
+    private List<String> dependsOn;
+}
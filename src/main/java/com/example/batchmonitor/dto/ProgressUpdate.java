@@ -12,6 +12,12 @@ import lombok.NoArgsConstructor;
 public class ProgressUpdate {
 
     private Long executionId;
+    private Long pipelineId;
     private Double progress;
     private String status;
+
+    /** Step counts, set on pipeline and sweep updates only. */
+    private Integer totalSteps;
+    private Integer completedSteps;
+    private Integer failedSteps;
 }
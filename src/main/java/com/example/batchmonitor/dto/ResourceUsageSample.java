@@ -0,0 +1,22 @@
+package com.example.batchmonitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResourceUsageSample {
+
+    private Long executionId;
+    private LocalDateTime timestamp;
+    private long cpuTimeMillis;
+    private double cpuPercent;
+    private long rssBytes;
+    private int processCount;
+}
@@ -0,0 +1,58 @@
+package com.example.batchmonitor.dto;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptInfo {
+
+    private String name;
+    private String scriptPath;
+    private ScriptType type;
+    private long sizeBytes;
+    private LocalDateTime lastModified;
+    private String checksum;
+    private long runCount;
+    private Long lastExecutionId;
+    private LocalDateTime lastRunStartTime;
+    private LocalDateTime lastRunEndTime;
+    private BatchExecution.ExecutionStatus lastRunStatus;
+    private Integer lastExitCode;
+
+    public enum ScriptType {
+        SHELL, PYTHON, PERL, RUBY, BATCH, POWERSHELL, EXECUTABLE;
+
+        /**
+         * Classifies a file the same way ScriptUtils picks an interpreter for it.
+         *
+         * @param fileName The file name
+         * @return The script type, or null if the file is not a runnable script
+         */
+        public static ScriptType fromFileName(String fileName) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            int dot = lower.lastIndexOf('.');
+            if (dot < 0) {
+                return SHELL;
+            }
+            return switch (lower.substring(dot + 1)) {
+                case "sh" -> SHELL;
+                case "py" -> PYTHON;
+                case "pl" -> PERL;
+                case "rb" -> RUBY;
+                case "bat", "cmd" -> BATCH;
+                case "ps1" -> POWERSHELL;
+                case "exe" -> EXECUTABLE;
+                default -> null;
+            };
+        }
+    }
+}
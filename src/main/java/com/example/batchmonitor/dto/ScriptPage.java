@@ -0,0 +1,20 @@
+package com.example.batchmonitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptPage {
+
+    private int page;
+    private int size;
+    private long total;
+    private List<ScriptInfo> scripts;
+}
@@ -0,0 +1,29 @@
+package com.example.batchmonitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * What a JSON line printed by an execution with structured output carried.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StructuredOutputEvent {
+
+    private Long executionId;
+    private LocalDateTime timestamp;
+
+    /** Progress in percent, or null if the line gave none. */
+    private Double progress;
+
+    /** Numeric values by path (nested keys joined by dots), and string values likewise. */
+    private Map<String, Double> metrics;
+    private Map<String, String> fields;
+}
@@ -0,0 +1,45 @@
+package com.example.batchmonitor.dto;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Runs one script once per item, e.g. for every partition. Either items or a
+ * rangeStart/rangeEnd pair is given.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SweepRequest {
+
+    private String name;
+
+    /** Owner and priority of every run started for this request. */
+    private String owner;
+    private BatchExecution.Priority priority;
+
+    @NotBlank(message = "Script name is required")
+    private String scriptName;
+
+    /** Parameters of every run; ${item} is replaced by the run's item. */
+    @NotBlank(message = "Parameters with an ${item} placeholder are required")
+    private String parameters;
+
+    private List<String> items;
+
+    /** Every integer from rangeStart to rangeEnd, both inclusive. */
+    private Integer rangeStart;
+    private Integer rangeEnd;
+
+    /** Runs of this sweep allowed at once, capped by batch.execution.maxConcurrent. */
+    @Positive(message = "maxParallel must be positive")
+    private Integer maxParallel;
+}
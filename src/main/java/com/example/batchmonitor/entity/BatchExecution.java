@@ -4,21 +4,33 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_batch_execution_script_path", columnList = "scriptPath"),
+        @Index(name = "idx_batch_execution_pipeline_id", columnList = "pipelineId"),
+        @Index(name = "idx_batch_execution_status", columnList = "status, nodeId")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class BatchExecution {
 
+    /**
+     * Pooled sequence rather than IDENTITY so that a bulk saveAll can be sent
+     * as JDBC batches (hibernate.jdbc.batch_size).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "batch_execution_seq")
+    @SequenceGenerator(name = "batch_execution_seq", sequenceName = "batch_execution_seq", allocationSize = 50)
     private Long id;
 
     private String scriptPath;
@@ -34,11 +46,67 @@ public class BatchExecution {
     private String outputFilePath;
     private String errorMessage;
 
+    /** Who the run is accounted to when the scheduler shares execution slots. */
+    private String owner;
+
+    @Enumerated(EnumType.STRING)
+    private Priority priority;
+
+    /**
+     * Script process, recorded at launch so a restarted monitor can find it again.
+     * The start time tells the process apart from a later one that reused the pid.
+     */
+    private Long pid;
+    private LocalDateTime processStartedAt;
+
+    /** CPUs the run was pinned to, e.g. "8-15"; null when it was not placed. */
+    private String cpuSet;
+
+    /** When the run became claimable by cluster nodes; null until it is submitted or outside a cluster. */
+    private LocalDateTime queuedAt;
+
+    /**
+     * Cluster node that claimed the run. This and the lease are written only by
+     * the claim and lease queries, so saving the entity never undoes a claim.
+     */
+    @Column(updatable = false)
+    private String nodeId;
+
+    /** The claim lapses unless its node renews it before then. */
+    @Column(updatable = false)
+    private LocalDateTime leaseExpiresAt;
+
+    /** Times the run went back to the queue because its node stopped renewing the lease. */
+    @Column(updatable = false)
+    private Integer retries;
+
+    /** Whether JSON lines the script prints are parsed for progress and metrics. */
+    private Boolean structuredOutput;
+
+    /** Whether the script reports progress on its own named pipe instead of stdout. */
+    private Boolean progressChannel;
+
+    /** Pipeline this execution is a step of, null for standalone executions. */
+    private Long pipelineId;
+    private String pipelineStep;
+
+    /** Comma-separated ids of the steps this one waits for. */
+    private String pipelineDependsOn;
+
     @OneToMany(mappedBy = "batchExecution", cascade = CascadeType.ALL)
     @Builder.Default
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<ExecutionLog> logs = new ArrayList<>();
 
     public enum ExecutionStatus {
-        PENDING, RUNNING, COMPLETED, FAILED, TIMED_OUT
+        PENDING, RUNNING, COMPLETED, FAILED, TIMED_OUT,
+        /** Killed by the kernel for exceeding its cgroup memory limit. */
+        OOM_KILLED
+    }
+
+    /** Scheduling class; a queued run of a higher class always starts first. */
+    public enum Priority {
+        LOW, NORMAL, HIGH
     }
 }
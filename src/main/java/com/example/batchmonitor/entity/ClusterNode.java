@@ -0,0 +1,39 @@
+package com.example.batchmonitor.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A monitor instance taking part in the cluster, refreshed by its heartbeat.
+ * Runs it has claimed carry its id in {@link BatchExecution#getNodeId()}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClusterNode {
+
+    @Id
+    private String nodeId;
+
+    private String host;
+
+    /** Base URL the other nodes reach it at, e.g. http://host:8080. */
+    private String url;
+
+    /** Runs the node executes at once. */
+    private Integer capacity;
+
+    /** Runs it held at its last heartbeat. */
+    private Integer running;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime heartbeatAt;
+}
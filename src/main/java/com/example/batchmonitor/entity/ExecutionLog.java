@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
@@ -15,15 +17,26 @@ import java.time.LocalDateTime;
 @Builder
 public class ExecutionLog {
 
+    /** Longest message stored; longer lines are cut to this many characters. */
+    public static final int MESSAGE_LENGTH = 2000;
+
+    /**
+     * Taken from a pooled sequence so the output spool's saveAll goes out as
+     * JDBC batches; an IDENTITY column forces one INSERT per line. One
+     * allocation covers a default spool batch (batch.execution.spool.batchSize).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "execution_log_seq")
+    @SequenceGenerator(name = "execution_log_seq", sequenceName = "execution_log_seq", allocationSize = 500)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "batch_execution_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private BatchExecution batchExecution;
 
-    @Column(length = 2000)
+    @Column(length = MESSAGE_LENGTH)
     private String message;
 
     private LocalDateTime timestamp;
@@ -31,6 +44,9 @@ public class ExecutionLog {
     @Enumerated(EnumType.STRING)
     private LogType logType;
 
+    /** Output spool sequence of a console line; null for entries that did not go through the spool. */
+    private Long sequence;
+
     public enum LogType {
         STDOUT, STDERR, SYSTEM
     }
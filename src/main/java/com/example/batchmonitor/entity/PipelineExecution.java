@@ -0,0 +1,35 @@
+package com.example.batchmonitor.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A run of a pipeline definition. Each step is a BatchExecution carrying this
+ * run's id in {@link BatchExecution#getPipelineId()}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PipelineExecution {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String name;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+
+    @Enumerated(EnumType.STRING)
+    private BatchExecution.ExecutionStatus status;
+
+    private Double progress;
+    private String errorMessage;
+}
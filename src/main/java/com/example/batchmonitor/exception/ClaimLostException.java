@@ -0,0 +1,12 @@
+package com.example.batchmonitor.exception;
+
+/**
+ * This cluster node no longer holds its claim on a run, e.g. because it
+ * stalled past the lease; another node decides the run's outcome.
+ */
+public class ClaimLostException extends BatchExecutionException {
+
+    public ClaimLostException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.batchmonitor.exception;
+
+/**
+ * A script was killed by the kernel for exceeding the memory limit of its cgroup.
+ */
+public class MemoryLimitExceededException extends ScriptExecutionException {
+
+    public MemoryLimitExceededException(String message, Integer exitCode) {
+        super(message, exitCode);
+    }
+}
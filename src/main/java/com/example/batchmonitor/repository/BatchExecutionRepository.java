@@ -1,10 +1,20 @@
 package com.example.batchmonitor.repository;
 
 import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.repository.projection.ExecutionSummary;
+import com.example.batchmonitor.repository.projection.ScriptRunStats;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BatchExecutionRepository extends JpaRepository<BatchExecution, Long> {
@@ -12,4 +22,191 @@ public interface BatchExecutionRepository extends JpaRepository<BatchExecution,
     List<BatchExecution> findAllByOrderByStartTimeDesc();
 
     List<BatchExecution> findByStatus(BatchExecution.ExecutionStatus status);
+
+    List<BatchExecution> findByPipelineIdOrderByIdAsc(Long pipelineId);
+
+    List<BatchExecution> findByIdInAndStatusIn(Collection<Long> ids, Collection<BatchExecution.ExecutionStatus> statuses);
+
+    /**
+     * Queued runs no node has claimed, highest priority first, then oldest first.
+     */
+    @Query("select e.id from BatchExecution e "
+            + "where e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING "
+            + "and e.nodeId is null and e.queuedAt is not null "
+            + "order by case e.priority "
+            + "when com.example.batchmonitor.entity.BatchExecution$Priority.HIGH then 0 "
+            + "when com.example.batchmonitor.entity.BatchExecution$Priority.LOW then 2 else 1 end, "
+            + "e.queuedAt, e.id")
+    List<Long> findClaimableIds(Pageable page);
+
+    /**
+     * Claims a queued run for a node. The conditions make this a compare-and-set,
+     * so when nodes race for the same row exactly one of them updates it.
+     *
+     * @return 1 if this node now holds the run, 0 if another node got it first
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set e.nodeId = :nodeId, e.leaseExpiresAt = :lease "
+            + "where e.id = :id and e.nodeId is null "
+            + "and e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING")
+    int claim(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("lease") LocalDateTime lease);
+
+    /**
+     * Extends the node's leases on unfinished runs.
+     *
+     * @return The number of runs renewed; fewer than asked for means the node lost some of them
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set e.leaseExpiresAt = :lease where e.nodeId = :nodeId and e.id in :ids "
+            + "and e.status in (com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING, "
+            + "com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING)")
+    int renewLeases(@Param("nodeId") String nodeId, @Param("ids") Collection<Long> ids,
+                    @Param("lease") LocalDateTime lease);
+
+    /**
+     * Of the given runs, those the node still holds and has not finished.
+     */
+    @Query("select e.id from BatchExecution e where e.nodeId = :nodeId and e.id in :ids "
+            + "and e.status in (com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING, "
+            + "com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING)")
+    List<Long> findHeldIds(@Param("nodeId") String nodeId, @Param("ids") Collection<Long> ids);
+
+    /**
+     * Marks a claimed run RUNNING, but only while the node still holds it.
+     *
+     * @return 1 if it did, 0 if the claim is gone, e.g. its lease lapsed while the run waited in the local queue
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set "
+            + "e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING, e.startTime = :startTime "
+            + "where e.id = :id and e.nodeId = :nodeId "
+            + "and e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING")
+    int startClaimed(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("startTime") LocalDateTime startTime);
+
+    /**
+     * Records where a claimed run writes its output and which CPUs it got,
+     * without rewriting the status another node may have set meanwhile.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set e.outputFilePath = :outputFilePath, e.cpuSet = :cpuSet "
+            + "where e.id = :id and e.nodeId = :nodeId")
+    int recordClaimedLaunch(@Param("id") Long id, @Param("nodeId") String nodeId,
+                            @Param("outputFilePath") String outputFilePath, @Param("cpuSet") String cpuSet);
+
+    /**
+     * Records the outcome of a claimed run, but only while the node still
+     * holds it. A node that stalled past its lease must not overwrite the
+     * outcome another node gave the run when it requeued or failed it.
+     *
+     * @return 1 if the outcome was recorded, 0 if the run is no longer the node's
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set e.status = :status, e.endTime = :endTime, e.progress = :progress, "
+            + "e.exitCode = :exitCode, e.errorMessage = :errorMessage "
+            + "where e.id = :id and e.nodeId = :nodeId "
+            + "and e.status in (com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING, "
+            + "com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING)")
+    int finishClaimed(@Param("id") Long id, @Param("nodeId") String nodeId,
+                      @Param("status") BatchExecution.ExecutionStatus status, @Param("endTime") LocalDateTime endTime,
+                      @Param("progress") Double progress, @Param("exitCode") Integer exitCode,
+                      @Param("errorMessage") String errorMessage);
+
+    /**
+     * Hands claimed runs that have not started yet back to the queue.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set e.nodeId = null, e.leaseExpiresAt = null "
+            + "where e.nodeId = :nodeId and e.id in :ids "
+            + "and e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING")
+    int releaseClaims(@Param("nodeId") String nodeId, @Param("ids") Collection<Long> ids);
+
+    @Query("select e from BatchExecution e where e.nodeId is not null and e.leaseExpiresAt < :now "
+            + "and e.status in (com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING, "
+            + "com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING) order by e.id")
+    List<BatchExecution> findExpiredLeases(@Param("now") LocalDateTime now, Pageable page);
+
+    /**
+     * Puts a run whose node stopped renewing its lease back in the queue, unless
+     * another node has already dealt with it.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set "
+            + "e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING, "
+            + "e.nodeId = null, e.leaseExpiresAt = null, e.retries = coalesce(e.retries, 0) + 1, "
+            + "e.startTime = null, e.progress = 0.0, e.exitCode = null, e.errorMessage = null, e.cpuSet = null "
+            + "where e.id = :id and e.nodeId = :nodeId and e.leaseExpiresAt < :now "
+            + "and e.status in (com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING, "
+            + "com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING)")
+    int requeueExpired(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    /**
+     * Fails a run whose node stopped renewing its lease, unless another node has
+     * already dealt with it. The node id is kept to show where the run was lost.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set "
+            + "e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.FAILED, "
+            + "e.leaseExpiresAt = null, e.endTime = :now, e.errorMessage = :message "
+            + "where e.id = :id and e.nodeId = :nodeId and e.leaseExpiresAt < :now "
+            + "and e.status in (com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.PENDING, "
+            + "com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING)")
+    int failExpired(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now,
+                    @Param("message") String message);
+
+    /**
+     * Records the process a run was started as, without rewriting the rest of the row.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set e.pid = :pid, e.processStartedAt = :startedAt where e.id = :id")
+    int recordProcess(@Param("id") Long id, @Param("pid") Long pid, @Param("startedAt") LocalDateTime startedAt);
+
+    /**
+     * A page of runs in a status belonging to a node, in id order after the
+     * given id, so a large history is walked with bounded queries. A null node
+     * id selects runs that were never claimed in a cluster.
+     */
+    @Query("select e from BatchExecution e where e.status = :status and e.id > :afterId "
+            + "and (e.nodeId = :nodeId or (:nodeId is null and e.nodeId is null)) order by e.id")
+    List<BatchExecution> findByStatusAfter(@Param("status") BatchExecution.ExecutionStatus status,
+                                           @Param("nodeId") String nodeId, @Param("afterId") Long afterId,
+                                           Pageable page);
+
+    /**
+     * Fails runs that can no longer finish, e.g. because the instance running
+     * them stopped, unless their status has moved on meanwhile.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BatchExecution e set "
+            + "e.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.FAILED, "
+            + "e.endTime = :now, e.errorMessage = :message "
+            + "where e.id in :ids and e.status = :status")
+    int failUnfinished(@Param("ids") Collection<Long> ids, @Param("status") BatchExecution.ExecutionStatus status,
+                       @Param("now") LocalDateTime now, @Param("message") String message);
+
+    @Query("select new com.example.batchmonitor.repository.projection.ExecutionSummary("
+            + "e.id, e.scriptPath, e.parameters, e.owner, e.priority, e.startTime, e.endTime, e.status, e.exitCode, e.progress, e.errorMessage, e.cpuSet, e.nodeId) "
+            + "from BatchExecution e where e.id = :id")
+    Optional<ExecutionSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("select new com.example.batchmonitor.repository.projection.ExecutionSummary("
+            + "e.id, e.scriptPath, e.parameters, e.owner, e.priority, e.startTime, e.endTime, e.status, e.exitCode, e.progress, e.errorMessage, e.cpuSet, e.nodeId) "
+            + "from BatchExecution e order by e.startTime desc")
+    List<ExecutionSummary> findAllSummaries();
+
+    @Query("select new com.example.batchmonitor.repository.projection.ScriptRunStats("
+            + "e.scriptPath, (select count(c) from BatchExecution c where c.scriptPath = e.scriptPath), "
+            + "e.id, e.startTime, e.endTime, e.status, e.exitCode) "
+            + "from BatchExecution e where e.scriptPath in :scriptPaths and e.id = "
+            + "(select max(l.id) from BatchExecution l where l.scriptPath = e.scriptPath)")
+    List<ScriptRunStats> findRunStats(@Param("scriptPaths") Collection<String> scriptPaths);
 }
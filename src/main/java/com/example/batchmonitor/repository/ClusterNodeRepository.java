@@ -0,0 +1,13 @@
+package com.example.batchmonitor.repository;
+
+import com.example.batchmonitor.entity.ClusterNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    List<ClusterNode> findAllByOrderByNodeIdAsc();
+}
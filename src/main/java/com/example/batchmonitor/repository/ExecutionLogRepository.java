@@ -1,10 +1,15 @@
 package com.example.batchmonitor.repository;
 
 import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.repository.projection.ConsoleLine;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 @Repository
 public interface ExecutionLogRepository extends JpaRepository<ExecutionLog, Long> {
@@ -14,4 +19,24 @@ public interface ExecutionLogRepository extends JpaRepository<ExecutionLog, Long
     List<ExecutionLog> findByBatchExecutionIdAndLogTypeOrderByTimestampAsc(
             Long batchExecutionId,
             ExecutionLog.LogType logType);
+
+    @Query("select new com.example.batchmonitor.repository.projection.ConsoleLine("
+            + "l.batchExecution.id, l.message, l.timestamp, l.logType) "
+            + "from ExecutionLog l "
+            + "where l.batchExecution.id = :executionId and l.logType in :logTypes "
+            + "order by l.timestamp asc, l.id asc")
+    List<ConsoleLine> findConsoleLines(
+            @Param("executionId") Long executionId,
+            @Param("logTypes") Collection<ExecutionLog.LogType> logTypes);
+
+    /**
+     * Spool sequences already stored for the given executions within a range,
+     * so lines replayed after a crash are not stored twice.
+     */
+    @Query("select l.sequence from ExecutionLog l "
+            + "where l.batchExecution.id in :executionIds and l.sequence between :from and :to")
+    Set<Long> findSequences(
+            @Param("executionIds") Collection<Long> executionIds,
+            @Param("from") long from,
+            @Param("to") long to);
 }
@@ -0,0 +1,30 @@
+package com.example.batchmonitor.repository;
+
+import com.example.batchmonitor.entity.PipelineExecution;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PipelineExecutionRepository extends JpaRepository<PipelineExecution, Long> {
+
+    List<PipelineExecution> findAllByOrderByIdDesc();
+
+    /**
+     * Fails every running pipeline; used at startup, when no pipeline can still
+     * be coordinated by this instance.
+     */
+    @Transactional
+    @Modifying
+    @Query("update PipelineExecution p set "
+            + "p.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.FAILED, "
+            + "p.endTime = :now, p.errorMessage = :message "
+            + "where p.status = com.example.batchmonitor.entity.BatchExecution$ExecutionStatus.RUNNING")
+    int failRunning(@Param("now") LocalDateTime now, @Param("message") String message);
+}
@@ -0,0 +1,16 @@
+package com.example.batchmonitor.repository.projection;
+
+import com.example.batchmonitor.entity.ExecutionLog;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a single console line.
+ * Selects the foreign key column directly so the owning execution is never loaded.
+ */
+public record ConsoleLine(
+        Long executionId,
+        String message,
+        LocalDateTime timestamp,
+        ExecutionLog.LogType logType) {
+}
@@ -0,0 +1,25 @@
+package com.example.batchmonitor.repository.projection;
+
+import com.example.batchmonitor.entity.BatchExecution;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of the scalar columns of a batch execution.
+ * Used for status and listing reads so the logs collection is never touched.
+ */
+public record ExecutionSummary(
+        Long id,
+        String scriptPath,
+        String parameters,
+        String owner,
+        BatchExecution.Priority priority,
+        LocalDateTime startTime,
+        LocalDateTime endTime,
+        BatchExecution.ExecutionStatus status,
+        Integer exitCode,
+        Double progress,
+        String errorMessage,
+        String cpuSet,
+        String nodeId) {
+}
@@ -0,0 +1,18 @@
+package com.example.batchmonitor.repository.projection;
+
+import com.example.batchmonitor.entity.BatchExecution;
+
+import java.time.LocalDateTime;
+
+/**
+ * Run count and most recent execution of a script, for the script catalog.
+ */
+public record ScriptRunStats(
+        String scriptPath,
+        Long runCount,
+        Long lastExecutionId,
+        LocalDateTime lastStartTime,
+        LocalDateTime lastEndTime,
+        BatchExecution.ExecutionStatus lastStatus,
+        Integer lastExitCode) {
+}
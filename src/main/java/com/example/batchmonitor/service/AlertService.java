@@ -0,0 +1,279 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.AlertEvent;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.util.MultiPatternMatcher;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates the alert rules of batch.alerts.rules against every console line
+ * as it is read, and publishes an {@link AlertEvent} to the alerts WebSocket
+ * topic and the webhook when one fires. A rule looks for a substring, on
+ * stdout, stderr or both, and fires on the first matching line or once
+ * {@code count} matching lines arrive within {@code window} seconds. After
+ * firing it stays quiet for that execution for batch.alerts.cooldown seconds.
+ * <p>
+ * The patterns of all rules are compiled into one {@link MultiPatternMatcher},
+ * so a line is scanned once however many rules there are; only rules whose
+ * pattern occurs in it are looked at further.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AlertService {
+
+    /** Largest count a rule may ask for; each execution keeps that many timestamps per rule. */
+    static final int MAX_COUNT = 10_000;
+
+    private static final ThreadLocal<BitSet> FOUND = ThreadLocal.withInitial(BitSet::new);
+
+    private final WebSocketService webSocketService;
+    private final AlertWebhookSink webhookSink;
+    private final MetricsService metricsService;
+
+    @Value("${batch.alerts.rules:}")
+    private String rulesConfig;
+
+    @Value("${batch.alerts.cooldown:60}")
+    private long cooldownSeconds;
+
+    private List<Rule> rules = List.of();
+
+    /** Matches the distinct patterns of the rules; null when there are none. */
+    private MultiPatternMatcher matcher;
+
+    /** Indexes into rules of the rules using each pattern of the matcher. */
+    private int[][] rulesByPattern;
+
+    private final Map<Long, ExecutionAlerts> executions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (cooldownSeconds < 0) {
+            throw new IllegalArgumentException("batch.alerts.cooldown must not be negative");
+        }
+        rules = parseRules(rulesConfig);
+        if (rules.isEmpty()) {
+            return;
+        }
+        Map<String, List<Integer>> patterns = new LinkedHashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            patterns.computeIfAbsent(rules.get(i).pattern(), pattern -> new ArrayList<>()).add(i);
+        }
+        rulesByPattern = patterns.values().stream()
+                .map(indexes -> indexes.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+        matcher = new MultiPatternMatcher(new ArrayList<>(patterns.keySet()));
+        log.info("Evaluating {} alert rules over {} distinct patterns", rules.size(), patterns.size());
+    }
+
+    /**
+     * Runs the rules over a console line of the execution, firing those it completes.
+     */
+    public void evaluate(BatchExecution execution, String line, ExecutionLog.LogType type) {
+        MultiPatternMatcher patterns = matcher;
+        if (patterns == null || line == null) {
+            return;
+        }
+        BitSet found = FOUND.get();
+        found.clear();
+        patterns.match(line, found);
+        if (found.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        ExecutionAlerts alerts = executions.computeIfAbsent(execution.getId(), id -> new ExecutionAlerts(rules));
+        for (int pattern = found.nextSetBit(0); pattern >= 0; pattern = found.nextSetBit(pattern + 1)) {
+            for (int index : rulesByPattern[pattern]) {
+                Rule rule = rules.get(index);
+                if (rule.stream() != null && rule.stream() != type) {
+                    continue;
+                }
+                int count = alerts.hit(index, rule, now, TimeUnit.SECONDS.toNanos(cooldownSeconds));
+                if (count > 0) {
+                    fire(execution, rule, count, line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the counters of an execution whose output has ended.
+     */
+    public void finished(Long executionId) {
+        if (executionId != null) {
+            executions.remove(executionId);
+        }
+    }
+
+    private void fire(BatchExecution execution, Rule rule, int count, String line) {
+        AlertEvent event = AlertEvent.builder()
+                .executionId(execution.getId())
+                .pipelineId(execution.getPipelineId())
+                .scriptPath(execution.getScriptPath())
+                .timestamp(LocalDateTime.now())
+                .rule(rule.name())
+                .pattern(rule.pattern())
+                .stream(rule.stream() != null ? rule.stream().name() : null)
+                .count(count)
+                .windowSeconds(rule.windowSeconds())
+                .line(line)
+                .build();
+        log.warn("Alert {} fired for execution {}: {}", rule.name(), execution.getId(), line);
+        metricsService.recordAlert(rule.name());
+        try {
+            webSocketService.sendAlert(event);
+        } catch (RuntimeException e) {
+            log.warn("Could not publish alert {} for execution {}: {}", rule.name(), execution.getId(), e.getMessage());
+        }
+        webhookSink.send(event);
+    }
+
+    /**
+     * Parses rules, e.g. "oom=contains:OutOfMemoryError;stream:stderr,warnings=contains:WARN;count:100;window:10".
+     * A rule needs a name and the text it looks for; stream is stdout, stderr
+     * or any (the default), and count (default 1) matching lines must arrive
+     * within window seconds (default 60) for it to fire. The text cannot
+     * contain ',' or ';' and is trimmed.
+     */
+    static List<Rule> parseRules(String config) {
+        List<Rule> rules = new ArrayList<>();
+        if (config == null || config.isBlank()) {
+            return rules;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String entry : config.split(",")) {
+            int separator = entry.indexOf('=');
+            String name = separator < 1 ? "" : entry.substring(0, separator).trim();
+            if (name.isEmpty() || !names.add(name)) {
+                throw new IllegalArgumentException("batch.alerts.rules: expected a unique name=contains:text, got '"
+                        + entry + "'");
+            }
+            String pattern = null;
+            ExecutionLog.LogType stream = null;
+            long count = 1;
+            long window = 60;
+            Set<String> seen = new LinkedHashSet<>();
+            for (String attribute : entry.substring(separator + 1).split(";")) {
+                String[] pair = attribute.split(":", 2);
+                String key = pair[0].trim().toLowerCase(Locale.ROOT);
+                if (pair.length != 2 || !seen.add(key)) {
+                    throw new IllegalArgumentException("batch.alerts.rules: invalid attribute '" + attribute
+                            + "' of rule " + name);
+                }
+                String value = pair[1].trim();
+                switch (key) {
+                    case "contains" -> pattern = value;
+                    case "stream" -> stream = parseStream(name, value);
+                    case "count" -> count = parsePositive(name, key, value);
+                    case "window" -> window = parsePositive(name, key, value);
+                    default -> throw new IllegalArgumentException("batch.alerts.rules: unknown attribute '" + key
+                            + "' of rule " + name + ", expected contains, stream, count or window");
+                }
+            }
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("batch.alerts.rules: rule " + name + " needs contains:text");
+            }
+            if (count > MAX_COUNT) {
+                throw new IllegalArgumentException("batch.alerts.rules: count of rule " + name + " exceeds " + MAX_COUNT);
+            }
+            rules.add(new Rule(name, pattern, stream, (int) count, count > 1 ? window : 0));
+        }
+        return rules;
+    }
+
+    private static ExecutionLog.LogType parseStream(String rule, String stream) {
+        return switch (stream.toLowerCase(Locale.ROOT)) {
+            case "stdout" -> ExecutionLog.LogType.STDOUT;
+            case "stderr" -> ExecutionLog.LogType.STDERR;
+            case "any" -> null;
+            default -> throw new IllegalArgumentException("batch.alerts.rules: stream of rule " + rule
+                    + " must be stdout, stderr or any, got '" + stream + "'");
+        };
+    }
+
+    private static long parsePositive(String rule, String attribute, String value) {
+        try {
+            long parsed = Long.parseLong(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("batch.alerts.rules: " + attribute + " of rule " + rule
+                + " must be a positive number, got '" + value + "'");
+    }
+
+    /**
+     * @param stream The stream the rule watches, or null for both
+     * @param windowSeconds Seconds within which count lines must match; 0 when one line suffices
+     */
+    public record Rule(String name, String pattern, ExecutionLog.LogType stream, int count, long windowSeconds) {
+    }
+
+    /**
+     * Per-rule counters of one execution. Its stdout and stderr are read on
+     * different threads, hence the lock.
+     */
+    private static final class ExecutionAlerts {
+
+        /** Timestamps of the last count matches of each rule, as a ring; null until a rule with count > 1 matches. */
+        private final long[][] hits;
+        private final int[] filled;
+        private final int[] next;
+        private final long[] lastFired;
+
+        private ExecutionAlerts(List<Rule> rules) {
+            hits = new long[rules.size()][];
+            filled = new int[rules.size()];
+            next = new int[rules.size()];
+            lastFired = new long[rules.size()];
+        }
+
+        /**
+         * Counts a matching line.
+         *
+         * @return The number of matching lines that made the rule fire, or 0 if it does not
+         */
+        private synchronized int hit(int index, Rule rule, long now, long cooldownNanos) {
+            if (lastFired[index] != 0 && now - lastFired[index] < cooldownNanos) {
+                return 0;
+            }
+            if (rule.count() > 1) {
+                long[] ring = hits[index];
+                if (ring == null) {
+                    ring = hits[index] = new long[rule.count()];
+                }
+                ring[next[index]] = now;
+                next[index] = (next[index] + 1) % ring.length;
+                filled[index] = Math.min(filled[index] + 1, ring.length);
+                // With the ring full, the slot to be written next holds the oldest of the last count matches
+                if (filled[index] < ring.length
+                        || now - ring[next[index]] > TimeUnit.SECONDS.toNanos(rule.windowSeconds())) {
+                    return 0;
+                }
+                filled[index] = 0;
+            }
+            lastFired[index] = now;
+            return rule.count();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.AlertEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts alert events as JSON to batch.alerts.webhook.url. Events are queued
+ * and sent by a single background thread, so a slow or unreachable endpoint
+ * never holds up the output readers; when more than queueCapacity events wait,
+ * new ones are dropped with a warning. Failed posts are logged, not retried.
+ */
+@Service
+@Slf4j
+public class AlertWebhookSink {
+
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Value("${batch.alerts.webhook.url:}")
+    private String url;
+
+    @Value("${batch.alerts.webhook.timeout:5000}")
+    private long timeoutMillis;
+
+    @Value("${batch.alerts.webhook.queueCapacity:1000}")
+    private int queueCapacity;
+
+    private URI uri;
+    private HttpClient client;
+    private ThreadPoolExecutor sender;
+
+    @PostConstruct
+    public void start() {
+        if (url == null || url.isBlank()) {
+            return;
+        }
+        if (timeoutMillis <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("batch.alerts.webhook timeout and queueCapacity must be positive");
+        }
+        uri = URI.create(url.strip());
+        if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) {
+            throw new IllegalArgumentException("batch.alerts.webhook.url must be an http or https URL, got '" + url + "'");
+        }
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(timeoutMillis)).build();
+        sender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "alert-webhook");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Posting alerts to {}", uri);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sender != null) {
+            sender.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return sender != null;
+    }
+
+    /**
+     * Queues the event for the webhook; does nothing when none is configured.
+     */
+    public void send(AlertEvent event) {
+        if (sender == null) {
+            return;
+        }
+        try {
+            sender.execute(() -> post(event));
+        } catch (RejectedExecutionException e) {
+            log.warn("Alert webhook queue is full; dropped alert {} for execution {}",
+                    event.getRule(), event.getExecutionId());
+        }
+    }
+
+    private void post(AlertEvent event) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofMillis(timeoutMillis))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(event)))
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 300) {
+                log.warn("Alert webhook answered {} to alert {} for execution {}",
+                        response.statusCode(), event.getRule(), event.getExecutionId());
+            }
+        } catch (IOException e) {
+            log.warn("Could not post alert {} for execution {} to the webhook: {}",
+                    event.getRule(), event.getExecutionId(), e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,17 +5,28 @@ import com.example.batchmonitor.dto.BatchExecutionResponse;
 import com.example.batchmonitor.entity.BatchExecution;
 import com.example.batchmonitor.exception.BatchExecutionException;
 import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.util.ScriptUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,8 +34,13 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BatchExecutionService {
 
+    private static final long ATTACH_TIMEOUT_SECONDS = 30;
+
     private final BatchExecutionRepository executionRepository;
-    private final ScriptExecutionService scriptExecutionService;
+    private final ExecutionScheduler executionScheduler;
+    private final MetricsService metricsService;
+    private final ResultCacheService resultCacheService;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${batch.scripts.baseDir}")
     private String baseScriptsDir;
@@ -32,7 +48,17 @@ public class BatchExecutionService {
     @Value("${batch.scripts.defaultScript}")
     private String defaultScript;
 
-    @Transactional
+    @Value("${batch.execution.singleFlight:false}")
+    private boolean singleFlight;
+
+    /** Runs in flight by script, arguments and run options, completed with the execution once it is committed. */
+    private final Map<String, CompletableFuture<BatchExecution>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates and queues a run. Only creating it is transactional: a request
+     * that attaches to an identical run in flight waits for it without holding
+     * a database connection.
+     */
     public BatchExecutionResponse startExecution(BatchExecutionRequest request) {
         log.info("Starting batch execution for script: {}", request.getScriptName());
 
@@ -43,14 +69,71 @@ public class BatchExecutionService {
         BatchExecution execution = BatchExecution.builder()
                 .scriptPath(scriptPath)
                 .parameters(request.getParameters())
+                .owner(request.getOwner() == null || request.getOwner().isBlank()
+                        ? ExecutionScheduler.DEFAULT_OWNER : request.getOwner())
+                .priority(request.getPriority() == null ? BatchExecution.Priority.NORMAL : request.getPriority())
+                .structuredOutput(request.isStructuredOutput() ? Boolean.TRUE : null)
+                .progressChannel(request.isProgressChannel() ? Boolean.TRUE : null)
                 .status(BatchExecution.ExecutionStatus.PENDING)
                 .progress(0.0)
                 .build();
 
-        BatchExecution savedExecution = executionRepository.save(execution);
+        // Key the run before creating it so a bad input file is rejected up front
+        String cacheKey = request.isUseCache() && resultCacheService.isEnabled()
+                ? resultCacheService.cacheKey(scriptPath, request.getParameters(), request.getInputFiles())
+                : null;
+
+        // Identical requests attach to a run that is already in flight
+        String flightKey = singleFlight ? flightKey(execution, request) : null;
+        CompletableFuture<BatchExecution> flight = flightKey == null ? null : new CompletableFuture<>();
+        if (flight != null) {
+            CompletableFuture<BatchExecution> existing = inFlight.putIfAbsent(flightKey, flight);
+            if (existing != null) {
+                return attach(existing, scriptPath);
+            }
+        }
+
+        return transactionTemplate.execute(status -> create(execution, request, cacheKey, flightKey, flight));
+    }
 
-        // Start execution asynchronously
-        CompletableFuture<String> future = scriptExecutionService.executeScript(savedExecution);
+    private BatchExecutionResponse create(BatchExecution execution, BatchExecutionRequest request, String cacheKey,
+                                          String flightKey, CompletableFuture<BatchExecution> flight) {
+        String scriptPath = execution.getScriptPath();
+        BatchExecution savedExecution;
+        CompletableFuture<String> future;
+        try {
+            savedExecution = executionRepository.save(execution);
+            metricsService.statusChanged(null, BatchExecution.ExecutionStatus.PENDING);
+
+            if (cacheKey != null) {
+                Optional<ResultCacheService.CachedResult> cached = resultCacheService.lookup(cacheKey);
+                metricsService.recordCacheLookup(scriptPath, cached.isPresent());
+                if (cached.isPresent() && resultCacheService.replay(savedExecution, cached.get())) {
+                    log.info("Execution {} served from result cache", savedExecution.getId());
+                    publish(flightKey, flight, savedExecution, true);
+                    return BatchExecutionResponse.fromEntity(savedExecution);
+                }
+            }
+
+            // Queue for a slot; the scheduler starts it asynchronously
+            future = executionScheduler.submit(savedExecution);
+        } catch (RuntimeException e) {
+            if (flight != null) {
+                inFlight.remove(flightKey, flight);
+                flight.completeExceptionally(e);
+            }
+            throw e;
+        }
+
+        if (flight != null) {
+            CompletableFuture<BatchExecution> claimed = flight;
+            publish(flightKey, flight, savedExecution, false);
+            future.whenComplete((result, ex) -> inFlight.remove(flightKey, claimed));
+        }
+        if (cacheKey != null) {
+            future.thenAccept(result -> resultCacheService.store(
+                    cacheKey, savedExecution, request.getInputFiles(), result));
+        }
 
         // Handle completion (but don't block)
         future.thenAccept(result -> {
@@ -65,21 +148,105 @@ public class BatchExecutionService {
 
     @Transactional(readOnly = true)
     public BatchExecutionResponse getExecution(Long id) {
-        BatchExecution execution = executionRepository.findById(id)
+        return executionRepository.findSummaryById(id)
+                .map(BatchExecutionResponse::fromSummary)
                 .orElseThrow(() -> new BatchExecutionException("Execution not found with ID: " + id));
-
-        return BatchExecutionResponse.fromEntity(execution);
     }
 
     @Transactional(readOnly = true)
     public List<BatchExecutionResponse> getAllExecutions() {
-        return executionRepository.findAllByOrderByStartTimeDesc()
+        return executionRepository.findAllSummaries()
                 .stream()
-                .map(BatchExecutionResponse::fromEntity)
+                .map(BatchExecutionResponse::fromSummary)
                 .collect(Collectors.toList());
     }
 
-    private String resolveScriptPath(String scriptName) {
+    /**
+     * Returns the run an identical request started. The owner publishes its
+     * execution once its transaction has committed, so this waits for
+     * milliseconds at most.
+     */
+    private BatchExecutionResponse attach(CompletableFuture<BatchExecution> flight, String scriptPath) {
+        try {
+            BatchExecution running = flight.get(ATTACH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            metricsService.recordDeduplicated(scriptPath);
+            log.info("Identical request attached to in-flight execution {}", running.getId());
+            return BatchExecutionResponse.fromEntity(running);
+        } catch (ExecutionException e) {
+            throw new BatchExecutionException("Identical in-flight execution failed to start", e.getCause());
+        } catch (TimeoutException e) {
+            throw new BatchExecutionException("Timed out waiting for identical in-flight execution to start", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BatchExecutionException("Interrupted waiting for identical in-flight execution to start", e);
+        }
+    }
+
+    /**
+     * Hands the saved execution to the requests attached to its flight once the
+     * transaction that saved it has committed, so they never get an ID that is
+     * not visible yet or is rolled back. On rollback they fail and the key is
+     * released for the next identical request.
+     *
+     * @param release Whether the key is released once published, for a run that is already over
+     */
+    private void publish(String flightKey, CompletableFuture<BatchExecution> flight, BatchExecution execution,
+                         boolean release) {
+        if (flight == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            flight.complete(execution);
+            if (release) {
+                inFlight.remove(flightKey, flight);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                flight.complete(execution);
+                if (release) {
+                    inFlight.remove(flightKey, flight);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    inFlight.remove(flightKey, flight);
+                    flight.completeExceptionally(new BatchExecutionException(
+                            "Execution " + execution.getId() + " was rolled back"));
+                }
+            }
+        });
+    }
+
+    /**
+     * Requests are identical when they resolve to the same script, pass it the
+     * same arguments regardless of how the parameters were spaced, and agree on
+     * everything else that shapes the run: owner and priority, so one owner's
+     * request never rides on another's concurrency cap and fair share, the
+     * output modes, and the cache options.
+     *
+     * @param execution The run the request would create, with owner and priority defaulted
+     */
+    static String flightKey(BatchExecution execution, BatchExecutionRequest request) {
+        List<String> inputFiles = request.getInputFiles() == null ? List.of() : request.getInputFiles();
+        List<String> parts = new ArrayList<>(List.of(
+                execution.getScriptPath(),
+                execution.getOwner(),
+                execution.getPriority().name(),
+                String.valueOf(request.isStructuredOutput()),
+                String.valueOf(request.isProgressChannel()),
+                String.valueOf(request.isUseCache()),
+                String.valueOf(inputFiles.size())));
+        parts.addAll(inputFiles);
+        ScriptUtils.appendParameters(parts, request.getParameters());
+        return String.join("\u0000", parts);
+    }
+
+    String resolveScriptPath(String scriptName) {
         if (scriptName == null || scriptName.isBlank()) {
             scriptName = defaultScript;
         }
@@ -0,0 +1,467 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Confines each spawned script to its own cgroup v2 group under
+ * batch.execution.cgroup.root, with CPU, memory and process-count limits taken
+ * from per-script configuration. The script joins its group before it starts,
+ * so every process it forks is limited and accounted for too. The group's
+ * memory.events tells an OOM kill apart from an ordinary failure, and its
+ * counters give the run's CPU time and memory without walking the process
+ * tree. Groups left by a previous instance are kept until startup
+ * reconciliation has re-attached the runs that survived it; the rest are
+ * killed and removed then. In a cluster each node keeps its groups in a
+ * subgroup named after its node ID, so nodes sharing a host and root never
+ * touch each other's runs. Disabled by default; needs Linux with cgroup v2 and
+ * a root the application may write, such as a systemd slice with Delegate=yes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CgroupLimiter {
+
+    static final long CPU_PERIOD_MICROS = 100_000;
+
+    private static final String GROUP_PREFIX = "exec-";
+    private static final List<String> CONTROLLERS = List.of("cpu", "memory", "pids");
+    private static final int REMOVE_ATTEMPTS = 20;
+    private static final long REMOVE_RETRY_MILLIS = 10;
+
+    private final ClusterCoordinator clusterCoordinator;
+
+    @Value("${batch.execution.cgroup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${batch.execution.cgroup.root:/sys/fs/cgroup/batch-monitor}")
+    private String root;
+
+    @Value("${batch.execution.cgroup.cpu:}")
+    private String defaultCpu;
+
+    @Value("${batch.execution.cgroup.memory:}")
+    private String defaultMemory;
+
+    @Value("${batch.execution.cgroup.pids:0}")
+    private long defaultPids;
+
+    @Value("${batch.execution.cgroup.scripts:}")
+    private String scriptLimits;
+
+    @Value("${batch.scripts.baseDir}")
+    private String baseScriptsDir;
+
+    private Path rootPath;
+
+    /** Where this instance creates its groups: the root, or this node's subgroup of it in a cluster. */
+    private Path groupsPath;
+    private Limits defaults = Limits.NONE;
+    private Map<String, Limits> perScript = Map.of();
+    private volatile boolean active;
+
+    /** Groups of running executions, by execution ID. */
+    private final Map<Long, Group> groups = new ConcurrentHashMap<>();
+
+    /** Groups a previous instance left behind, by execution ID, until they are adopted or removed. */
+    private final Map<Long, Path> leftover = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        defaults = new Limits(parseCpu(defaultCpu), parseMemory(defaultMemory), defaultPids > 0 ? defaultPids : null);
+        perScript = parseScriptLimits(scriptLimits, defaults);
+        if (!enabled) {
+            return;
+        }
+        rootPath = Paths.get(root).toAbsolutePath().normalize();
+        Path parent = rootPath.getParent();
+        if (parent == null || !Files.isRegularFile(parent.resolve("cgroup.controllers"))) {
+            log.warn("cgroup limits disabled: {} is not inside a cgroup v2 hierarchy", rootPath);
+            return;
+        }
+        try {
+            if (!Files.isDirectory(rootPath)) {
+                Files.createDirectory(rootPath);
+            }
+            Set<String> available = Set.of(Files.readString(rootPath.resolve("cgroup.controllers")).trim().split("\\s+"));
+            List<String> enable = new ArrayList<>();
+            for (String controller : CONTROLLERS) {
+                if (available.contains(controller)) {
+                    enable.add("+" + controller);
+                } else {
+                    log.warn("cgroup controller '{}' is not delegated to {}; its limits will not apply", controller, rootPath);
+                }
+            }
+            if (!enable.isEmpty()) {
+                Files.writeString(rootPath.resolve("cgroup.subtree_control"), String.join(" ", enable));
+            }
+            groupsPath = rootPath;
+            if (clusterCoordinator.isEnabled()) {
+                groupsPath = rootPath.resolve(clusterCoordinator.nodeId().replace('/', '_'));
+                if (!Files.isDirectory(groupsPath)) {
+                    Files.createDirectory(groupsPath);
+                }
+                if (!enable.isEmpty()) {
+                    Files.writeString(groupsPath.resolve("cgroup.subtree_control"), String.join(" ", enable));
+                }
+            }
+            findLeftoverGroups();
+        } catch (IOException e) {
+            log.warn("cgroup limits disabled: cannot set up {}: {}", rootPath, e.getMessage());
+            return;
+        }
+        active = true;
+        log.info("cgroup limits enabled under {}: default {}, {} script overrides", groupsPath, defaults, perScript.size());
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Creates the group a run will be started in and writes its limits.
+     *
+     * @param execution The execution about to be spawned
+     * @return The group, or empty if cgroup limits are off
+     * @throws BatchExecutionException If limits are on but the group cannot be set up
+     */
+    public Optional<Group> create(BatchExecution execution) {
+        if (!active) {
+            return Optional.empty();
+        }
+        Limits limits = limitsFor(execution.getScriptPath());
+        Path path = groupsPath.resolve(GROUP_PREFIX + execution.getId());
+        try {
+            Files.createDirectory(path);
+            if (limits.cpuQuotaMicros() != null) {
+                Files.writeString(path.resolve("cpu.max"), limits.cpuQuotaMicros() + " " + CPU_PERIOD_MICROS);
+            }
+            if (limits.memoryBytes() != null) {
+                Files.writeString(path.resolve("memory.max"), Long.toString(limits.memoryBytes()));
+                // Without swap the limit is hard, so exceeding it ends in an OOM kill rather than thrashing
+                if (Files.exists(path.resolve("memory.swap.max"))) {
+                    Files.writeString(path.resolve("memory.swap.max"), "0");
+                }
+            }
+            if (limits.pids() != null) {
+                Files.writeString(path.resolve("pids.max"), Long.toString(limits.pids()));
+            }
+        } catch (IOException e) {
+            remove(path);
+            throw new BatchExecutionException("Could not apply resource limits for execution "
+                    + execution.getId() + ": " + e.getMessage(), e);
+        }
+        Group group = new Group(execution.getId(), path, limits);
+        groups.put(execution.getId(), group);
+        log.debug("Execution {} runs in {} with {}", execution.getId(), path, limits);
+        return Optional.of(group);
+    }
+
+    /**
+     * Takes over the group a previous instance created for a run that is still
+     * alive, so its limits keep applying, an OOM kill is recognised and the
+     * group is removed once the run ends.
+     *
+     * @param execution The re-attached execution
+     * @return The group, or empty if cgroup limits are off or the run has none
+     */
+    public Optional<Group> adopt(BatchExecution execution) {
+        Path path = active ? leftover.remove(execution.getId()) : null;
+        if (path == null || !Files.isDirectory(path)) {
+            return Optional.empty();
+        }
+        Group group = new Group(execution.getId(), path, readLimits(path));
+        groups.put(execution.getId(), group);
+        log.info("Execution {} keeps running in {} with {}", execution.getId(), path, group.limits());
+        return Optional.of(group);
+    }
+
+    /**
+     * Kills and removes the groups left over from a previous instance of this
+     * node that no re-attached run adopted. Called once startup reconciliation
+     * is done.
+     */
+    public void removeUnclaimed() {
+        for (Long executionId : List.copyOf(leftover.keySet())) {
+            Path path = leftover.remove(executionId);
+            if (path != null) {
+                log.info("Removing cgroup {} left over from a previous run", path);
+                remove(path);
+            }
+        }
+    }
+
+    /**
+     * Prefixes a command with a shell that moves itself into the group and then
+     * execs the command, so nothing the script starts can escape the limits.
+     */
+    public List<String> wrap(Group group, List<String> command) {
+        List<String> wrapped = new ArrayList<>(List.of("/bin/sh", "-c", "echo $$ > \"$0\" && exec \"$@\"",
+                group.path().resolve("cgroup.procs").toString()));
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * @return Whether the kernel killed a process of the group for exceeding its memory limit
+     */
+    public boolean oomKilled(Group group) {
+        return readKey(group.path().resolve("memory.events"), "oom_kill") > 0;
+    }
+
+    /**
+     * Kills whatever is left in the group and removes it.
+     */
+    public void release(Group group) {
+        groups.remove(group.executionId());
+        remove(group.path());
+    }
+
+    /**
+     * @return The group directory of a running execution, or null if it has none
+     */
+    public Path groupPath(Long executionId) {
+        Group group = executionId == null ? null : groups.get(executionId);
+        return group == null ? null : group.path();
+    }
+
+    Limits limitsFor(String scriptPath) {
+        return perScript.getOrDefault(scriptKey(scriptPath), defaults);
+    }
+
+    /** Script path relative to the scripts directory, which is how overrides name scripts. */
+    private String scriptKey(String scriptPath) {
+        Path script = Paths.get(scriptPath).toAbsolutePath().normalize();
+        Path base = Paths.get(baseScriptsDir).toAbsolutePath().normalize();
+        Path key = script.startsWith(base) ? base.relativize(script) : script.getFileName();
+        return key.toString().replace('\\', '/');
+    }
+
+    private void findLeftoverGroups() throws IOException {
+        leftover.clear();
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(groupsPath, GROUP_PREFIX + "*")) {
+            for (Path path : stale) {
+                try {
+                    leftover.put(Long.parseLong(path.getFileName().toString().substring(GROUP_PREFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    log.info("Removing unknown cgroup {}", path);
+                    remove(path);
+                }
+            }
+        }
+        if (!leftover.isEmpty()) {
+            log.info("{} cgroup(s) left over from a previous run, kept until reconciliation", leftover.size());
+        }
+    }
+
+    /** Limits a group was created with, read back from its interface files. */
+    static Limits readLimits(Path group) {
+        Long cpu = null;
+        try {
+            String quota = Files.readString(group.resolve("cpu.max")).trim().split("\\s+")[0];
+            cpu = quota.equals("max") ? null : Long.parseLong(quota);
+        } catch (IOException | NumberFormatException e) {
+            // Not limited
+        }
+        long memory = readValue(group.resolve("memory.max"));
+        long pids = readValue(group.resolve("pids.max"));
+        return new Limits(cpu, memory > 0 ? memory : null, pids > 0 ? pids : null);
+    }
+
+    private void remove(Path path) {
+        try {
+            Path kill = path.resolve("cgroup.kill");
+            if (Files.exists(kill)) {
+                Files.writeString(kill, "1");
+            } else if (Files.exists(path.resolve("cgroup.procs"))) {
+                for (String pid : Files.readAllLines(path.resolve("cgroup.procs"))) {
+                    if (!pid.isBlank()) {
+                        ProcessHandle.of(Long.parseLong(pid.trim())).ifPresent(ProcessHandle::destroyForcibly);
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Unable to kill processes left in {}: {}", path, e.getMessage());
+        }
+
+        // The kernel refuses to remove a group until its last process has exited
+        for (int attempt = 0; attempt < REMOVE_ATTEMPTS; attempt++) {
+            try {
+                Files.deleteIfExists(path);
+                return;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(REMOVE_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.warn("cgroup {} could not be removed and is left behind", path);
+    }
+
+    /**
+     * Reads the value of a key from a flat-keyed cgroup file such as cpu.stat.
+     *
+     * @return The value, or 0 if the file or key is missing
+     */
+    static long readKey(Path file, String key) {
+        if (!Files.isReadable(file)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(key + " ")) {
+                    return Long.parseLong(line.substring(key.length() + 1).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Unable to read {} from {}: {}", key, file, e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Reads a single-value cgroup file such as memory.current.
+     *
+     * @return The value, or 0 if the file is missing or holds "max"
+     */
+    static long readValue(Path file) {
+        if (!Files.isReadable(file)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(file).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parses per-script overrides, e.g. "etl.sh=cpu:2;memory:1G,report.py=pids:64".
+     * Limits a script does not name fall back to the defaults.
+     */
+    static Map<String, Limits> parseScriptLimits(String config, Limits defaults) {
+        Map<String, Limits> limits = new LinkedHashMap<>();
+        if (config == null || config.isBlank()) {
+            return limits;
+        }
+        for (String entry : config.split(",")) {
+            int separator = entry.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("batch.execution.cgroup.scripts: expected script=limit:value, got '"
+                        + entry + "'");
+            }
+            Long cpu = defaults.cpuQuotaMicros();
+            Long memory = defaults.memoryBytes();
+            Long pids = defaults.pids();
+            Set<String> seen = new LinkedHashSet<>();
+            for (String limit : entry.substring(separator + 1).split(";")) {
+                String[] pair = limit.split(":", 2);
+                String name = pair[0].trim().toLowerCase(Locale.ROOT);
+                if (pair.length != 2 || !seen.add(name)) {
+                    throw new IllegalArgumentException("batch.execution.cgroup.scripts: invalid limit '" + limit + "'");
+                }
+                switch (name) {
+                    case "cpu" -> cpu = parseCpu(pair[1]);
+                    case "memory" -> memory = parseMemory(pair[1]);
+                    case "pids" -> pids = parsePids(pair[1]);
+                    default -> throw new IllegalArgumentException(
+                            "batch.execution.cgroup.scripts: unknown limit '" + name + "', expected cpu, memory or pids");
+                }
+            }
+            limits.put(entry.substring(0, separator).trim(), new Limits(cpu, memory, pids));
+        }
+        return limits;
+    }
+
+    /** CPU cores as a decimal, e.g. 1.5, converted to a quota per CPU_PERIOD_MICROS. */
+    static Long parseCpu(String cores) {
+        if (cores == null || cores.isBlank()) {
+            return null;
+        }
+        try {
+            double value = Double.parseDouble(cores.trim());
+            if (value > 0 && value <= 1024) {
+                return Math.max(1000, Math.round(value * CPU_PERIOD_MICROS));
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid CPU limit '" + cores + "': expected a number of cores such as 1.5");
+    }
+
+    /** Bytes with an optional K, M or G suffix (powers of 1024). */
+    static Long parseMemory(String memory) {
+        if (memory == null || memory.isBlank()) {
+            return null;
+        }
+        String value = memory.trim().toUpperCase(Locale.ROOT);
+        long unit = switch (value.charAt(value.length() - 1)) {
+            case 'K' -> 1024L;
+            case 'M' -> 1024L * 1024;
+            case 'G' -> 1024L * 1024 * 1024;
+            default -> 1L;
+        };
+        try {
+            long amount = Long.parseLong(unit == 1 ? value : value.substring(0, value.length() - 1));
+            if (amount > 0) {
+                return Math.multiplyExact(amount, unit);
+            }
+        } catch (NumberFormatException | ArithmeticException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid memory limit '" + memory + "': expected bytes or e.g. 512M");
+    }
+
+    private static Long parsePids(String pids) {
+        try {
+            long value = Long.parseLong(pids.trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid pids limit '" + pids + "': expected a positive number");
+    }
+
+    /**
+     * Limits of one run; a null field means unlimited.
+     *
+     * @param cpuQuotaMicros CPU time allowed per CPU_PERIOD_MICROS
+     * @param memoryBytes Hard memory limit
+     * @param pids Maximum number of processes and threads
+     */
+    public record Limits(Long cpuQuotaMicros, Long memoryBytes, Long pids) {
+
+        static final Limits NONE = new Limits(null, null, null);
+    }
+
+    /** The cgroup of one execution. */
+    public record Group(Long executionId, Path path, Limits limits) {
+    }
+}
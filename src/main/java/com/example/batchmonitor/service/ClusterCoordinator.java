@@ -0,0 +1,419 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ClusterNodeResponse;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ClusterNode;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.exception.ClaimLostException;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.ClusterNodeRepository;
+import com.example.batchmonitor.util.ScriptUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Lets several monitor instances share one database as a cluster. A submitted
+ * run is only marked claimable; every node polls for claimable rows while it
+ * has free slots and takes them with a conditional update, so each run is
+ * claimed by exactly one node, which then feeds it to its own
+ * ExecutionScheduler. A claim is a lease: the holder renews it with every
+ * heartbeat, and any node that finds a lease lapsed requeues the run (up to
+ * batch.cluster.maxRetries times) or fails it. A node that finds it could not
+ * renew a lease, e.g. after a long pause, stops that run, and the outcome of
+ * a run is only recorded while its node still holds it, so a stalled node
+ * never overwrites what another node decided. The node a run was submitted on
+ * learns its outcome by polling, wherever it ran. Disabled by default, in which
+ * case the scheduler runs everything in-process as before.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterCoordinator {
+
+    static final Set<BatchExecution.ExecutionStatus> FINISHED = EnumSet.of(
+            BatchExecution.ExecutionStatus.COMPLETED, BatchExecution.ExecutionStatus.FAILED,
+            BatchExecution.ExecutionStatus.TIMED_OUT, BatchExecution.ExecutionStatus.OOM_KILLED);
+
+    /** Candidates read per claimed slot, so a node that loses races still finds work. */
+    private static final int CLAIM_CANDIDATES_PER_SLOT = 4;
+
+    /** Upper bound on ids per IN list and rows per lease sweep. */
+    private static final int BATCH_SIZE = 500;
+
+    private final BatchExecutionRepository executionRepository;
+    private final ClusterNodeRepository nodeRepository;
+
+    @Value("${batch.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${batch.cluster.nodeId:}")
+    private String nodeIdConfig;
+
+    @Value("${batch.cluster.url:}")
+    private String urlConfig;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${batch.execution.maxConcurrent}")
+    private int capacity;
+
+    @Value("${batch.cluster.pollInterval:1000}")
+    private long pollIntervalMillis;
+
+    @Value("${batch.cluster.heartbeatInterval:5000}")
+    private long heartbeatIntervalMillis;
+
+    @Value("${batch.cluster.leaseDuration:30000}")
+    private long leaseMillis;
+
+    @Value("${batch.cluster.maxRetries:0}")
+    private int maxRetries;
+
+    private String nodeId;
+    private String host;
+    private String url;
+    private LocalDateTime startedAt;
+    private ScheduledExecutorService timer;
+
+    private volatile IntSupplier freeSlots;
+    private volatile Function<BatchExecution, CompletableFuture<String>> runner;
+    private volatile Consumer<Long> stopper;
+
+    /**
+     * Runs this node has claimed and not finished, each with a token for the
+     * claim, so the end of a run whose claim was lost does not drop a later
+     * claim on the same run.
+     */
+    private final Map<Long, Object> held = new ConcurrentHashMap<>();
+
+    /** Runs submitted on this node, by id, waiting for whichever node runs them. */
+    private final Map<Long, Awaited> awaiting = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (leaseMillis <= heartbeatIntervalMillis) {
+            throw new IllegalArgumentException("batch.cluster.leaseDuration must be longer than heartbeatInterval");
+        }
+        host = hostName();
+        nodeId = nodeIdConfig == null || nodeIdConfig.isBlank() ? host + ":" + serverPort : nodeIdConfig.strip();
+        url = urlConfig == null || urlConfig.isBlank() ? "http://" + host + ":" + serverPort : urlConfig.strip();
+        startedAt = LocalDateTime.now();
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Cluster node {} started: capacity {}, lease {} ms, heartbeat every {} ms",
+                nodeId, capacity, leaseMillis, heartbeatIntervalMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer == null) {
+            return;
+        }
+        timer.shutdownNow();
+        try {
+            // Claimed runs that never started go back to the queue for the other nodes
+            for (List<Long> ids : chunks(List.copyOf(held.keySet()))) {
+                executionRepository.releaseClaims(nodeId, ids);
+            }
+            nodeRepository.deleteById(nodeId);
+        } catch (RuntimeException e) {
+            log.warn("Cluster node {} could not hand back its claims: {}", nodeId, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return Every node that has sent a heartbeat and not shut down cleanly; empty outside a cluster
+     */
+    public List<ClusterNodeResponse> getNodes() {
+        if (!enabled) {
+            return List.of();
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMillis));
+        return nodeRepository.findAllByOrderByNodeIdAsc().stream()
+                .map(node -> ClusterNodeResponse.fromEntity(node,
+                        node.getHeartbeatAt() != null && node.getHeartbeatAt().isAfter(cutoff),
+                        node.getNodeId().equals(nodeId)))
+                .toList();
+    }
+
+    /**
+     * Registers the local scheduler as the consumer of claimed runs.
+     *
+     * @param freeSlots How many more runs the node can take now
+     * @param runner Queues a claimed run locally and completes with its result
+     * @param stopper Kills the script of a run this node lost its claim on, if it is running
+     */
+    public void registerWorker(IntSupplier freeSlots, Function<BatchExecution, CompletableFuture<String>> runner,
+                               Consumer<Long> stopper) {
+        this.freeSlots = freeSlots;
+        this.runner = runner;
+        this.stopper = stopper;
+    }
+
+    /**
+     * Keeps renewing the lease on a run this node already holds in the database,
+     * e.g. one whose script survived a restart, until the given future completes.
+     */
+    public void hold(Long executionId, CompletableFuture<?> until) {
+        Object claim = new Object();
+        held.put(executionId, claim);
+        until.whenComplete((result, ex) -> held.remove(executionId, claim));
+    }
+
+    /**
+     * Makes a PENDING execution claimable by any node. Inside a transaction the
+     * row becomes visible to the other nodes when it commits; on rollback the
+     * returned future fails.
+     *
+     * @param execution The saved execution
+     * @return Completes with the script result once some node has run it
+     */
+    public CompletableFuture<String> submit(BatchExecution execution) {
+        Awaited awaited = new Awaited(execution, new CompletableFuture<>());
+        awaiting.put(execution.getId(), awaited);
+        execution.setQueuedAt(LocalDateTime.now());
+        executionRepository.save(execution);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED && awaiting.remove(execution.getId(), awaited)) {
+                        awaited.result.completeExceptionally(new BatchExecutionException(
+                                "Execution " + execution.getId() + " was rolled back before it was queued"));
+                    }
+                }
+            });
+        }
+        return awaited.result;
+    }
+
+    /** Claims work for free slots and settles runs submitted here that finished elsewhere. */
+    void poll() {
+        try {
+            IntSupplier slots = freeSlots;
+            int free = slots == null ? 0 : slots.getAsInt();
+            if (free > 0) {
+                claim(free);
+            }
+            collectRemoteOutcomes();
+        } catch (RuntimeException e) {
+            log.warn("Cluster poll on node {} failed: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /** Records this node as alive, renews the leases it holds and recovers runs from nodes that went quiet. */
+    void heartbeat() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            nodeRepository.save(ClusterNode.builder()
+                    .nodeId(nodeId)
+                    .host(host)
+                    .url(url)
+                    .capacity(capacity)
+                    .running(held.size())
+                    .startedAt(startedAt)
+                    .heartbeatAt(now)
+                    .build());
+            LocalDateTime lease = now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMillis));
+            for (List<Long> ids : chunks(List.copyOf(held.keySet()))) {
+                if (executionRepository.renewLeases(nodeId, ids, lease) < ids.size()) {
+                    Set<Long> stillHeld = new HashSet<>(executionRepository.findHeldIds(nodeId, ids));
+                    ids.stream().filter(id -> !stillHeld.contains(id)).forEach(this::abandon);
+                }
+            }
+            recoverExpired(now);
+        } catch (RuntimeException e) {
+            log.warn("Cluster heartbeat of node {} failed: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void claim(int free) {
+        List<Long> candidates = executionRepository.findClaimableIds(
+                PageRequest.of(0, free * CLAIM_CANDIDATES_PER_SLOT));
+        int claimed = 0;
+        for (Long id : candidates) {
+            if (claimed == free) {
+                break;
+            }
+            LocalDateTime lease = LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMillis));
+            if (executionRepository.claim(id, nodeId, lease) == 0) {
+                continue;
+            }
+            claimed++;
+            Object claim = new Object();
+            held.put(id, claim);
+            executionRepository.findById(id).ifPresentOrElse(execution -> run(execution, claim),
+                    () -> held.remove(id, claim));
+        }
+        if (claimed > 0) {
+            log.debug("Node {} claimed {} run(s)", nodeId, claimed);
+        }
+    }
+
+    private void run(BatchExecution execution, Object claim) {
+        Long id = execution.getId();
+        log.info("Node {} claimed execution {}", nodeId, id);
+        runner.apply(execution).whenComplete((result, ex) -> {
+            if (!held.remove(id, claim) || ex instanceof ClaimLostException
+                    || ex != null && ex.getCause() instanceof ClaimLostException) {
+                // The claim was lost: the outcome another node recorded is collected from the database
+                return;
+            }
+            Awaited awaited = awaiting.remove(id);
+            if (awaited != null) {
+                settle(awaited, execution, ex == null ? result : null, ex);
+            }
+        });
+    }
+
+    /**
+     * Gives up a run whose lease this node could not renew: another node has
+     * requeued or failed it, or is about to, so its script is stopped here.
+     */
+    private void abandon(Long id) {
+        if (held.remove(id) == null) {
+            return;
+        }
+        log.warn("Node {} lost its lease on execution {}; stopping it", nodeId, id);
+        Consumer<Long> stop = stopper;
+        if (stop != null) {
+            stop.accept(id);
+        }
+    }
+
+    private void collectRemoteOutcomes() {
+        List<Long> ids = awaiting.keySet().stream().filter(id -> !held.containsKey(id)).toList();
+        for (List<Long> chunk : chunks(ids)) {
+            for (BatchExecution finished : executionRepository.findByIdInAndStatusIn(chunk, FINISHED)) {
+                Awaited awaited = awaiting.remove(finished.getId());
+                if (awaited == null) {
+                    continue;
+                }
+                if (finished.getStatus() == BatchExecution.ExecutionStatus.COMPLETED) {
+                    settle(awaited, finished, readOutput(finished), null);
+                } else {
+                    settle(awaited, finished, null, new BatchExecutionException(finished.getErrorMessage() == null
+                            ? "Execution " + finished.getId() + " ended with status " + finished.getStatus()
+                            : finished.getErrorMessage()));
+                }
+            }
+        }
+    }
+
+    private void recoverExpired(LocalDateTime now) {
+        for (BatchExecution lost : executionRepository.findExpiredLeases(now, PageRequest.of(0, BATCH_SIZE))) {
+            if (nodeId.equals(lost.getNodeId()) && held.containsKey(lost.getId())) {
+                // Our own lease ran out between renewals, e.g. after a long pause; it is renewed next beat
+                continue;
+            }
+            int retries = lost.getRetries() == null ? 0 : lost.getRetries();
+            if (retries < maxRetries) {
+                if (executionRepository.requeueExpired(lost.getId(), lost.getNodeId(), now) == 1) {
+                    log.warn("Node {} stopped renewing its lease on execution {}; requeued (retry {} of {})",
+                            lost.getNodeId(), lost.getId(), retries + 1, maxRetries);
+                }
+            } else if (executionRepository.failExpired(lost.getId(), lost.getNodeId(), now,
+                    "Node " + lost.getNodeId() + " stopped renewing its lease") == 1) {
+                log.warn("Node {} stopped renewing its lease on execution {}; marked failed",
+                        lost.getNodeId(), lost.getId());
+            }
+        }
+    }
+
+    /** Copies the outcome onto the caller's instance, which pipelines read their step status from. */
+    private static void settle(Awaited awaited, BatchExecution finished, String result, Throwable error) {
+        BatchExecution execution = awaited.execution;
+        if (execution != finished) {
+            execution.setStatus(finished.getStatus());
+            execution.setStartTime(finished.getStartTime());
+            execution.setEndTime(finished.getEndTime());
+            execution.setExitCode(finished.getExitCode());
+            execution.setProgress(finished.getProgress());
+            execution.setOutputFilePath(finished.getOutputFilePath());
+            execution.setErrorMessage(finished.getErrorMessage());
+            execution.setCpuSet(finished.getCpuSet());
+            execution.setNodeId(finished.getNodeId());
+        }
+        if (error != null) {
+            awaited.result.completeExceptionally(error);
+        } else {
+            awaited.result.complete(result);
+        }
+    }
+
+    /** The run's output if this node can see its log file, e.g. on a shared volume. */
+    private static String readOutput(BatchExecution execution) {
+        String path = execution.getOutputFilePath();
+        if (path == null || !Files.isReadable(Paths.get(path))) {
+            return null;
+        }
+        try {
+            return ScriptUtils.readFileContent(path);
+        } catch (BatchExecutionException e) {
+            return null;
+        }
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            chunks.add(ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE)));
+        }
+        return chunks;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+
+    private record Awaited(BatchExecution execution, CompletableFuture<String> result) {
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ClusterNodeResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandler;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Relays WebSocket events between cluster nodes without an external broker:
+ * each node connects to every other live node's STOMP endpoint and subscribes
+ * there, under {@link #RELAY_PREFIX}, to exactly the destinations its own
+ * clients subscribe to. A node publishing an event sends it to the relay copy
+ * of the destination only when some peer subscribed to it, so the peer's
+ * simple broker does the routing and a console line of execution 42 only
+ * crosses the network to nodes with a client on /topic/console-output or
+ * /topic/console-output/42. Received events go to the local broker as the
+ * JSON the publisher serialized, and are never relayed again.
+ */
+@Service
+@ConditionalOnProperty(name = "batch.websocket.relay", havingValue = "cluster")
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterMessageRelay implements MessageRelay {
+
+    /** Broker prefix peers subscribe under; also enabled on the local broker by WebSocketConfig. */
+    public static final String RELAY_PREFIX = "/relay";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final WebSocketSubscriptions subscriptions;
+    private final ClusterCoordinator clusterCoordinator;
+
+    @Value("${batch.websocket.endpoint}")
+    private String endpoint;
+
+    @Value("${batch.cluster.heartbeatInterval:5000}")
+    private long refreshIntervalMillis;
+
+    /** Connections to the other nodes, by node id. */
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+    /** Nodes whose last connection attempt failed, so retries are not logged as warnings again. */
+    private final Set<String> unreachable = ConcurrentHashMap.newKeySet();
+
+    private WebSocketStompClient stompClient;
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        if (!clusterCoordinator.isEnabled()) {
+            throw new IllegalArgumentException("batch.websocket.relay=cluster requires batch.cluster.enabled");
+        }
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        // Relayed frames stay raw bytes whatever their content type
+        stompClient.setMessageConverter(new SimpleMessageConverter());
+        subscriptions.addListener(this::interestChanged);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::refreshPeers, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        peers.values().forEach(Peer::close);
+        peers.clear();
+    }
+
+    @Override
+    public void publish(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+        String relayDestination = RELAY_PREFIX + destination;
+        if (subscriptions.isWatched(relayDestination)) {
+            messagingTemplate.convertAndSend(relayDestination, payload);
+        }
+    }
+
+    @Override
+    public boolean isWatched(String destination) {
+        return subscriptions.isWatched(destination) || subscriptions.isWatched(RELAY_PREFIX + destination);
+    }
+
+    /** Connects to live nodes that joined, drops nodes that left and retries lost connections. */
+    void refreshPeers() {
+        try {
+            Map<String, String> live = clusterCoordinator.getNodes().stream()
+                    .filter(node -> node.isAlive() && !node.isLocal() && node.getUrl() != null)
+                    .collect(Collectors.toMap(ClusterNodeResponse::getNodeId, node -> stompUrl(node.getUrl())));
+            peers.entrySet().removeIf(entry -> {
+                Peer peer = entry.getValue();
+                if (live.containsKey(entry.getKey()) && live.get(entry.getKey()).equals(peer.url) && !peer.lost) {
+                    return false;
+                }
+                peer.close();
+                return true;
+            });
+            live.forEach((nodeId, url) -> peers.computeIfAbsent(nodeId, id -> {
+                Peer peer = new Peer(id, url);
+                peer.connect();
+                return peer;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh message relay peers: {}", e.getMessage());
+        }
+    }
+
+    /** Opens a STOMP session to a peer; overridden in tests. */
+    CompletableFuture<StompSession> connect(String url, StompSessionHandler handler) {
+        return stompClient.connectAsync(url, new WebSocketHttpHeaders(), new StompHeaders(), handler);
+    }
+
+    private void interestChanged(String destination, boolean watched) {
+        if (destination.startsWith(RELAY_PREFIX + "/")) {
+            // A peer's interest in our events, not something to ask the other peers for
+            return;
+        }
+        for (Peer peer : peers.values()) {
+            if (watched) {
+                peer.subscribe(destination);
+            } else {
+                peer.unsubscribe(destination);
+            }
+        }
+    }
+
+    /** Hands an event relayed by a peer to the local broker without converting it again. */
+    private void deliverLocally(String destination, byte[] payload, MimeType contentType) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(contentType != null ? contentType : MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+    }
+
+    private String stompUrl(String baseUrl) {
+        String url = baseUrl.replaceFirst("^http", "ws");
+        return (url.endsWith("/") ? url.substring(0, url.length() - 1) : url) + endpoint;
+    }
+
+    /** One node's connection and the relay subscriptions held on it. */
+    private final class Peer extends StompSessionHandlerAdapter {
+
+        private final String nodeId;
+        private final String url;
+        private final Map<String, StompSession.Subscription> relayed = new HashMap<>();
+        private StompSession session;
+        private volatile boolean lost;
+
+        private Peer(String nodeId, String url) {
+            this.nodeId = nodeId;
+            this.url = url;
+        }
+
+        private void connect() {
+            ClusterMessageRelay.this.connect(url, this).whenComplete((connected, ex) -> {
+                if (ex == null) {
+                    unreachable.remove(nodeId);
+                    return;
+                }
+                lost = true;
+                if (unreachable.add(nodeId)) {
+                    log.warn("Message relay could not connect to node {} at {}: {}", nodeId, url, ex.getMessage());
+                } else {
+                    log.debug("Message relay still cannot reach node {}: {}", nodeId, ex.getMessage());
+                }
+            });
+        }
+
+        @Override
+        public synchronized void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            this.session = session;
+            Set<String> destinations = subscriptions.destinations();
+            destinations.stream()
+                    .filter(destination -> !destination.startsWith(RELAY_PREFIX + "/"))
+                    .forEach(this::subscribe);
+            log.info("Message relay connected to node {}, relaying {} destination(s)", nodeId, relayed.size());
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            log.warn("Message relay error from node {}: {}", nodeId, exception.getMessage());
+        }
+
+        @Override
+        public synchronized void handleTransportError(StompSession session, Throwable exception) {
+            if (this.session != null && !session.isConnected()) {
+                log.warn("Message relay lost node {}: {}", nodeId, exception.getMessage());
+                lost = true;
+            }
+        }
+
+        private synchronized void subscribe(String destination) {
+            if (session == null || relayed.containsKey(destination)) {
+                return;
+            }
+            relayed.put(destination, session.subscribe(RELAY_PREFIX + destination, new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    deliverLocally(destination, (byte[]) payload, headers.getContentType());
+                }
+            }));
+        }
+
+        private synchronized void unsubscribe(String destination) {
+            StompSession.Subscription subscription = relayed.remove(destination);
+            if (subscription != null && session.isConnected()) {
+                subscription.unsubscribe();
+            }
+        }
+
+        private synchronized void close() {
+            relayed.clear();
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.dto.ConsoleSummary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decides which console lines of very chatty executions reach the live
+ * console. While an execution prints more than
+ * batch.websocket.liveView.maxLinesPerSecond, only every n-th line is sent,
+ * n chosen to keep it near sampledLinesPerSecond, and every summaryInterval
+ * ms a {@link ConsoleSummary} of everything printed goes to the registered
+ * listeners. The switch happens as soon as an interval's line count passes
+ * the limit; the execution gets every line again once a whole interval stays
+ * under resumeLinesPerSecond, with a last summary saying so. Only the live
+ * view is thinned out: the spool still stores every line.
+ */
+@Service
+@Slf4j
+public class ConsoleLiveView {
+
+    /** Intervals without a line after which an execution's counters are dropped. */
+    private static final int IDLE_INTERVALS = 10;
+
+    @Value("${batch.websocket.liveView.enabled:true}")
+    private boolean enabled;
+
+    @Value("${batch.websocket.liveView.maxLinesPerSecond:1000}")
+    private long maxLinesPerSecond;
+
+    @Value("${batch.websocket.liveView.resumeLinesPerSecond:200}")
+    private long resumeLinesPerSecond;
+
+    @Value("${batch.websocket.liveView.sampledLinesPerSecond:20}")
+    private long sampledLinesPerSecond;
+
+    @Value("${batch.websocket.liveView.summaryInterval:1000}")
+    private long summaryIntervalMillis;
+
+    @Value("${batch.websocket.liveView.errorPatterns:ERROR,Exception,FATAL,Traceback}")
+    private String[] errorPatterns;
+
+    private final Map<Long, View> views = new ConcurrentHashMap<>();
+
+    private final List<Consumer<ConsoleSummary>> listeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        if (maxLinesPerSecond <= 0 || sampledLinesPerSecond <= 0 || summaryIntervalMillis <= 0
+                || resumeLinesPerSecond < 0 || resumeLinesPerSecond > maxLinesPerSecond) {
+            throw new IllegalArgumentException("batch.websocket.liveView needs positive maxLinesPerSecond, "
+                    + "sampledLinesPerSecond and summaryInterval, and resumeLinesPerSecond between 0 and "
+                    + "maxLinesPerSecond");
+        }
+        if (!enabled) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "console-live-view");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::summarize, summaryIntervalMillis, summaryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers a callback given each summary; it runs on the summary timer.
+     */
+    public void addListener(Consumer<ConsoleSummary> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Counts a line and tells whether to leave it out of the live console.
+     */
+    public boolean skip(ConsoleOutput line) {
+        if (!enabled || line.getExecutionId() == null) {
+            return false;
+        }
+        while (true) {
+            View view = views.computeIfAbsent(line.getExecutionId(), id -> new View(id, System.nanoTime()));
+            synchronized (view) {
+                if (!view.retired) {
+                    return view.skip(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets a finished execution, first telling listeners that its sampling ended.
+     */
+    public void finished(Long executionId) {
+        View view = executionId == null ? null : views.remove(executionId);
+        if (view == null) {
+            return;
+        }
+        ConsoleSummary summary;
+        synchronized (view) {
+            view.retired = true;
+            if (!view.sampled) {
+                return;
+            }
+            view.sampled = false;
+            summary = view.summarize(System.nanoTime());
+        }
+        publish(summary);
+    }
+
+    /** Closes the interval of every execution: updates its mode and publishes the summaries due. */
+    void summarize() {
+        long now = System.nanoTime();
+        for (View view : views.values()) {
+            ConsoleSummary summary = null;
+            synchronized (view) {
+                long lines = view.lines;
+                double rate = lines * 1e9 / Math.max(1, now - view.intervalStart);
+                boolean wasSampled = view.sampled;
+                if (view.sampled && rate < resumeLinesPerSecond) {
+                    view.sampled = false;
+                    log.info("Execution {} slowed to {} lines/s; live console gets every line again",
+                            view.executionId, Math.round(rate));
+                } else if (view.sampled) {
+                    view.stride = stride(rate);
+                }
+                if (wasSampled) {
+                    summary = view.summarize(now);
+                } else {
+                    view.reset(now);
+                }
+                view.idleIntervals = lines > 0 ? 0 : view.idleIntervals + 1;
+                if (!view.sampled && view.idleIntervals >= IDLE_INTERVALS) {
+                    view.retired = true;
+                    views.remove(view.executionId, view);
+                }
+            }
+            if (summary != null) {
+                publish(summary);
+            }
+        }
+    }
+
+    private void publish(ConsoleSummary summary) {
+        for (Consumer<ConsoleSummary> listener : listeners) {
+            try {
+                listener.accept(summary);
+            } catch (RuntimeException e) {
+                log.warn("Console summary listener failed for execution {}: {}", summary.getExecutionId(), e.getMessage());
+            }
+        }
+    }
+
+    /** One line in this many is sent at the given rate. */
+    private long stride(double linesPerSecond) {
+        return Math.max(1, (long) Math.ceil(linesPerSecond / sampledLinesPerSecond));
+    }
+
+    int viewCount() {
+        return views.size();
+    }
+
+    /** Counters of one execution for the current interval. Guarded by its own lock. */
+    private final class View {
+
+        private final Long executionId;
+        private boolean retired;
+        private boolean sampled;
+        private long stride = 1;
+        private long sinceSent;
+        private int idleIntervals;
+
+        private long intervalStart;
+        private long lines;
+        private long linesSent;
+        private long stderrLines;
+        private long errorLines;
+        private final Map<String, Long> errorCounts = new LinkedHashMap<>();
+        private String lastLine;
+        private String lastErrorLine;
+
+        private View(Long executionId, long now) {
+            this.executionId = executionId;
+            this.intervalStart = now;
+        }
+
+        private boolean skip(ConsoleOutput line) {
+            lines++;
+            if (line.getType() == ConsoleOutput.OutputType.STDERR) {
+                stderrLines++;
+            }
+            String message = line.getMessage();
+            lastLine = message;
+            if (message != null) {
+                boolean error = false;
+                for (String pattern : errorPatterns) {
+                    if (message.contains(pattern)) {
+                        errorCounts.merge(pattern, 1L, Long::sum);
+                        error = true;
+                    }
+                }
+                if (error) {
+                    errorLines++;
+                    lastErrorLine = message;
+                }
+            }
+            if (!sampled) {
+                long limit = maxLinesPerSecond * summaryIntervalMillis / 1000;
+                if (lines <= Math.max(1, limit)) {
+                    linesSent++;
+                    return false;
+                }
+                long now = System.nanoTime();
+                double rate = lines * 1e9 / Math.max(1, now - intervalStart);
+                sampled = true;
+                stride = stride(rate);
+                sinceSent = 0;
+                log.info("Execution {} prints {} lines/s; live console is sampled to about {} lines/s with summaries",
+                        executionId, Math.round(rate), sampledLinesPerSecond);
+            }
+            if (++sinceSent >= stride) {
+                sinceSent = 0;
+                linesSent++;
+                return false;
+            }
+            return true;
+        }
+
+        private ConsoleSummary summarize(long now) {
+            ConsoleSummary summary = ConsoleSummary.builder()
+                    .executionId(executionId)
+                    .timestamp(LocalDateTime.now())
+                    .sampled(sampled)
+                    .linesPerSecond(lines * 1e9 / Math.max(1, now - intervalStart))
+                    .lines(lines)
+                    .linesSent(linesSent)
+                    .stderrLines(stderrLines)
+                    .errorLines(errorLines)
+                    .errorPatterns(Map.copyOf(errorCounts))
+                    .lastLine(lastLine)
+                    .lastErrorLine(lastErrorLine)
+                    .build();
+            reset(now);
+            return summary;
+        }
+
+        private void reset(long now) {
+            intervalStart = now;
+            lines = 0;
+            linesSent = 0;
+            stderrLines = 0;
+            errorLines = 0;
+            errorCounts.clear();
+            lastErrorLine = null;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.batchmonitor.service;
 
 import com.example.batchmonitor.dto.ConsoleOutput;
 import com.example.batchmonitor.dto.ProgressUpdate;
+import com.example.batchmonitor.dto.StructuredOutputEvent;
 import com.example.batchmonitor.entity.BatchExecution;
 import com.example.batchmonitor.entity.ExecutionLog;
 import com.example.batchmonitor.repository.ExecutionLogRepository;
@@ -11,7 +12,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,57 +22,65 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ConsoleOutputService {
 
+    private static final Set<ExecutionLog.LogType> CONSOLE_LOG_TYPES =
+            EnumSet.of(ExecutionLog.LogType.STDOUT, ExecutionLog.LogType.STDERR);
+
     private final ExecutionLogRepository logRepository;
     private final WebSocketService webSocketService;
     private final ProgressParserService progressParserService;
+    private final MetricsService metricsService;
+    private final OutputSpool outputSpool;
+    private final AlertService alertService;
+    private final StructuredOutputService structuredOutputService;
+    private final ProgressChannelService progressChannelService;
 
-    @Transactional
     public void processStandardOutput(BatchExecution execution, String line) {
         log.debug("Processing stdout for execution {}: {}", execution.getId(), line);
+        metricsService.recordStdoutLine(execution.getScriptPath(), line);
 
-        // Create and save log entry
-        ExecutionLog logEntry = ExecutionLog.builder()
-                .batchExecution(execution)
-                .message(line)
-                .timestamp(LocalDateTime.now())
-                .logType(ExecutionLog.LogType.STDOUT)
-                .build();
-
-        logRepository.save(logEntry);
+        deliver(execution, line, ExecutionLog.LogType.STDOUT);
+        alertService.evaluate(execution, line, ExecutionLog.LogType.STDOUT);
 
-        // Send to WebSocket
-        webSocketService.sendConsoleOutput(ConsoleOutput.fromLog(logEntry));
+        StructuredOutputEvent event = structuredOutputService.isEnabled(execution)
+                ? structuredOutputService.process(execution, line) : null;
+        if (progressChannelService.isOpen(execution)) {
+            // The script reports its progress on its progress channel
+            return;
+        }
 
-        // Check for progress updates
-        Double progress = progressParserService.parseProgress(line);
+        // Check for progress updates, given as a JSON field in structured output or else as text
+        long parseStart = System.nanoTime();
+        Double progress = event != null ? event.getProgress() : null;
+        if (progress == null) {
+            progress = progressParserService.parseProgress(line);
+        }
+        metricsService.recordProgressParse(execution.getScriptPath(), System.nanoTime() - parseStart);
         if (progress != null) {
-            execution.setProgress(progress);
-            webSocketService.sendProgressUpdate(
-                    ProgressUpdate.builder()
-                            .executionId(execution.getId())
-                            .progress(progress)
-                            .status(execution.getStatus().name())
-                            .build()
-            );
+            processProgress(execution, progress);
         }
     }
 
-    @Transactional
+    /**
+     * Records and publishes a progress value of an execution, in percent.
+     */
+    public void processProgress(BatchExecution execution, double progress) {
+        execution.setProgress(progress);
+        webSocketService.sendProgressUpdate(
+                ProgressUpdate.builder()
+                        .executionId(execution.getId())
+                        .pipelineId(execution.getPipelineId())
+                        .progress(progress)
+                        .status(execution.getStatus().name())
+                        .build()
+        );
+    }
+
     public void processErrorOutput(BatchExecution execution, String line) {
         log.debug("Processing stderr for execution {}: {}", execution.getId(), line);
+        metricsService.recordStderrLine(execution.getScriptPath(), line);
 
-        // Create and save log entry
-        ExecutionLog logEntry = ExecutionLog.builder()
-                .batchExecution(execution)
-                .message(line)
-                .timestamp(LocalDateTime.now())
-                .logType(ExecutionLog.LogType.STDERR)
-                .build();
-
-        logRepository.save(logEntry);
-
-        // Send to WebSocket
-        webSocketService.sendConsoleOutput(ConsoleOutput.fromLog(logEntry));
+        deliver(execution, line, ExecutionLog.LogType.STDERR);
+        alertService.evaluate(execution, line, ExecutionLog.LogType.STDERR);
     }
 
     @Transactional
@@ -83,15 +94,75 @@ public class ConsoleOutputService {
                 .logType(ExecutionLog.LogType.SYSTEM)
                 .build();
 
+        saveLog(execution, logEntry);
+    }
+
+    /**
+     * Waits until the console lines of the execution read so far have reached
+     * the database and the clients, so they are complete when its final status
+     * is announced. Only its own lines are waited for. As its output has ended,
+     * its alert counters are dropped.
+     *
+     * @return false if some of its lines were still being delivered when the spool's flush timeout ran out
+     */
+    public boolean awaitDelivered(BatchExecution execution) {
+        alertService.finished(execution.getId());
+        if (outputSpool.isActive() && !outputSpool.awaitDelivered(execution.getId())) {
+            log.warn("Console output of execution {} is still being delivered", execution.getId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the console lines of the execution read so far are all in the
+     * database, so reading them back gives its complete console. That is not
+     * the case when {@link #awaitDelivered} gave up on a slow database.
+     */
+    public boolean isStored(BatchExecution execution) {
+        return !outputSpool.isActive() || outputSpool.isStored(execution.getId());
+    }
+
+    /**
+     * Hands a console line to the output spool, or stores and publishes it
+     * right away when the spool is disabled or cannot take it.
+     */
+    private void deliver(BatchExecution execution, String line, ExecutionLog.LogType type) {
+        LocalDateTime timestamp = LocalDateTime.now();
+        if (outputSpool.isActive()) {
+            try {
+                outputSpool.append(execution.getId(), execution.getScriptPath(), type, line, timestamp);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Could not spool output of execution {}, storing it directly: {}",
+                        execution.getId(), e.getMessage());
+            }
+        }
+
+        ExecutionLog logEntry = ExecutionLog.builder()
+                .batchExecution(execution)
+                .message(line)
+                .timestamp(timestamp)
+                .logType(type)
+                .build();
+
+        saveLog(execution, logEntry);
+
+        // Send to WebSocket
+        webSocketService.sendConsoleOutput(ConsoleOutput.fromLog(logEntry));
+    }
+
+    private void saveLog(BatchExecution execution, ExecutionLog logEntry) {
+        long start = System.nanoTime();
         logRepository.save(logEntry);
+        metricsService.recordLogPersist(execution.getScriptPath(), 1, System.nanoTime() - start);
     }
 
     @Transactional(readOnly = true)
     public List<ConsoleOutput> getConsoleOutput(Long executionId) {
-        return logRepository.findByBatchExecutionIdOrderByTimestampAsc(executionId)
+        return logRepository.findConsoleLines(executionId, CONSOLE_LOG_TYPES)
                 .stream()
-                .filter(log -> log.getLogType() != ExecutionLog.LogType.SYSTEM)
-                .map(ConsoleOutput::fromLog)
+                .map(ConsoleOutput::fromLine)
                 .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,410 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pins each spawned script to its own set of CPUs from a pool, so heavy
+ * numeric scripts stop migrating across cores and evicting each other's
+ * caches. The monitor's own threads are moved onto reserved cores outside the
+ * pool. A run gets its CPUs from a single NUMA node when one has enough
+ * free, which keeps the memory it touches first local to those CPUs. When the
+ * pool is exhausted, runs share the least-loaded CPUs instead of waiting.
+ * Disabled by default; needs Linux and taskset (util-linux).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CpuPlacementService {
+
+    private static final String TASKSET = "taskset";
+    private static final long TASKSET_TIMEOUT_SECONDS = 5;
+
+    @Value("${batch.execution.placement.enabled:false}")
+    private boolean enabled;
+
+    @Value("${batch.execution.placement.cpus:}")
+    private String poolConfig;
+
+    @Value("${batch.execution.placement.reserved:}")
+    private String reservedConfig;
+
+    @Value("${batch.execution.placement.cpusPerRun:1}")
+    private int cpusPerRun;
+
+    @Value("${batch.execution.placement.scripts:}")
+    private String scriptCpus;
+
+    @Value("${batch.scripts.baseDir}")
+    private String baseScriptsDir;
+
+    /** Where CPU and NUMA topology is read from; tests point it at a fake tree. */
+    private String sysfsRoot = "/sys/devices/system";
+
+    /** Where the CPU affinity of a process is read from; tests point it at a fake tree. */
+    private String procRoot = "/proc";
+
+    private Map<String, Integer> perScript = Map.of();
+    private volatile boolean active;
+
+    /** The pool as a CPU list while the monitor is pinned to reserved CPUs, else null. */
+    private volatile String unplacedCpus;
+
+    /** Pool CPUs by NUMA node, lowest CPU first. Immutable once started. */
+    private Map<Integer, List<Integer>> nodes = Map.of();
+
+    /** Number of runs currently placed on each pool CPU. Guarded by this. */
+    private final Map<Integer, Integer> load = new HashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (cpusPerRun < 1) {
+            throw new IllegalArgumentException("batch.execution.placement.cpusPerRun must be at least 1");
+        }
+        perScript = parseScriptCpus(scriptCpus);
+        if (!enabled) {
+            return;
+        }
+        Path system = Paths.get(sysfsRoot);
+        TreeSet<Integer> online;
+        try {
+            online = parseCpuList(Files.readString(system.resolve("cpu/online")));
+        } catch (IOException e) {
+            log.warn("CPU placement disabled: cannot read online CPUs: {}", e.getMessage());
+            return;
+        }
+        TreeSet<Integer> reserved = parseCpuList(reservedConfig);
+        TreeSet<Integer> pool = poolConfig == null || poolConfig.isBlank() ? new TreeSet<>(online) : parseCpuList(poolConfig);
+        pool.removeAll(reserved);
+        pool.retainAll(online);
+        if (pool.isEmpty()) {
+            log.warn("CPU placement disabled: no online CPUs left in the pool after reserving {}", reservedConfig);
+            return;
+        }
+
+        nodes = groupByNode(system, pool);
+        synchronized (this) {
+            load.clear();
+            pool.forEach(cpu -> load.put(cpu, 0));
+        }
+        if (!reserved.isEmpty()) {
+            pinMonitor(formatCpuList(reserved));
+            unplacedCpus = formatCpuList(pool);
+        }
+        active = true;
+        log.info("CPU placement enabled: pool {} on {} NUMA node(s), reserved {}, {} CPU(s) per run, {} script overrides",
+                formatCpuList(pool), nodes.size(), reserved.isEmpty() ? "none" : formatCpuList(reserved),
+                cpusPerRun, perScript.size());
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Picks the CPUs a run will be pinned to. Prefers the NUMA node whose
+     * least-loaded CPUs are the least busy; a run needing more CPUs than any
+     * node has spans nodes.
+     *
+     * @param execution The execution about to be spawned
+     * @return The placement, or empty if placement is off
+     */
+    public synchronized Optional<Placement> acquire(BatchExecution execution) {
+        if (!active) {
+            return Optional.empty();
+        }
+        int wanted = Math.min(perScript.getOrDefault(scriptKey(execution.getScriptPath()), cpusPerRun), load.size());
+
+        List<Integer> best = null;
+        Integer bestNode = null;
+        int bestLoad = Integer.MAX_VALUE;
+        int bestNodeLoad = Integer.MAX_VALUE;
+        for (Map.Entry<Integer, List<Integer>> node : nodes.entrySet()) {
+            if (node.getValue().size() < wanted) {
+                continue;
+            }
+            List<Integer> candidate = leastLoaded(node.getValue(), wanted);
+            int candidateLoad = candidate.stream().mapToInt(load::get).sum();
+            int nodeLoad = node.getValue().stream().mapToInt(load::get).sum();
+            // On a tie the quieter node wins, which spreads runs over the nodes' memory controllers
+            if (candidateLoad < bestLoad || candidateLoad == bestLoad && nodeLoad < bestNodeLoad) {
+                best = candidate;
+                bestNode = node.getKey();
+                bestLoad = candidateLoad;
+                bestNodeLoad = nodeLoad;
+            }
+        }
+        if (best == null) {
+            best = leastLoaded(load.keySet(), wanted);
+        }
+        best.forEach(cpu -> load.merge(cpu, 1, Integer::sum));
+
+        Placement placement = new Placement(execution.getId(), List.copyOf(new TreeSet<>(best)), bestNode);
+        log.debug("Execution {} placed on CPUs {} (node {})", execution.getId(), placement.cpuSet(), bestNode);
+        return Optional.of(placement);
+    }
+
+    /**
+     * Counts a run that outlived the previous instance against the CPUs it is
+     * still pinned to, read from /proc, so new runs are placed around it.
+     *
+     * @param execution The re-attached execution
+     * @param process Its script process
+     * @return The placement to release when the run ends, or empty if placement
+     *         is off or the process is not pinned to a placement within the pool
+     */
+    public synchronized Optional<Placement> adopt(BatchExecution execution, ProcessHandle process) {
+        if (!active) {
+            return Optional.empty();
+        }
+        TreeSet<Integer> cpus;
+        try {
+            cpus = allowedCpus(process.pid());
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Cannot read the CPU affinity of pid {}: {}", process.pid(), e.getMessage());
+            return Optional.empty();
+        }
+        int wanted = Math.min(perScript.getOrDefault(scriptKey(execution.getScriptPath()), cpusPerRun), load.size());
+        // Wider than the run's placement, e.g. started while placement was off: not ours to account for
+        if (cpus.isEmpty() || cpus.size() > wanted || !load.keySet().containsAll(cpus)) {
+            return Optional.empty();
+        }
+        cpus.forEach(cpu -> load.merge(cpu, 1, Integer::sum));
+        Integer node = nodes.entrySet().stream()
+                .filter(entry -> entry.getValue().containsAll(cpus))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(null);
+        Placement placement = new Placement(execution.getId(), List.copyOf(cpus), node);
+        log.info("Re-attached execution {} stays on CPUs {}", execution.getId(), placement.cpuSet());
+        return Optional.of(placement);
+    }
+
+    /**
+     * Prefixes a command with taskset, so the script and everything it forks
+     * run only on the placement's CPUs.
+     */
+    public List<String> wrap(Placement placement, List<String> command) {
+        List<String> wrapped = new ArrayList<>(List.of(TASKSET, "-c", placement.cpuSet()));
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * Prefixes the command of a child that gets no placement of its own, such
+     * as a warm-pool interpreter or mkfifo, with taskset over the whole pool.
+     * Children inherit the monitor's affinity, so without it they would run
+     * on the CPUs reserved for the monitor.
+     *
+     * @return The command, unchanged unless the monitor is pinned to reserved CPUs
+     */
+    public List<String> wrapUnplaced(List<String> command) {
+        String cpus = unplacedCpus;
+        if (!active || cpus == null) {
+            return command;
+        }
+        List<String> wrapped = new ArrayList<>(List.of(TASKSET, "-c", cpus));
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * Returns a run's CPUs to the pool.
+     */
+    public synchronized void release(Placement placement) {
+        for (Integer cpu : placement.cpus()) {
+            load.computeIfPresent(cpu, (key, count) -> Math.max(0, count - 1));
+        }
+    }
+
+    /** The CPUs a process may run on, from Cpus_allowed_list in its status file. */
+    private TreeSet<Integer> allowedCpus(long pid) throws IOException {
+        for (String line : Files.readAllLines(Paths.get(procRoot, Long.toString(pid), "status"))) {
+            if (line.startsWith("Cpus_allowed_list:")) {
+                return parseCpuList(line.substring("Cpus_allowed_list:".length()));
+            }
+        }
+        return new TreeSet<>();
+    }
+
+    /** Runs currently placed on each pool CPU. */
+    synchronized Map<Integer, Integer> load() {
+        return new TreeMap<>(load);
+    }
+
+    private List<Integer> leastLoaded(Collection<Integer> cpus, int count) {
+        List<Integer> sorted = new ArrayList<>(cpus);
+        sorted.sort(Comparator.comparing((Integer cpu) -> load.get(cpu)).thenComparing(Comparator.naturalOrder()));
+        return sorted.subList(0, count);
+    }
+
+    private Map<Integer, List<Integer>> groupByNode(Path system, TreeSet<Integer> pool) {
+        Map<Integer, List<Integer>> grouped = new TreeMap<>();
+        TreeSet<Integer> unassigned = new TreeSet<>(pool);
+        Path nodeDir = system.resolve("node");
+        if (Files.isDirectory(nodeDir)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(nodeDir, "node[0-9]*")) {
+                for (Path entry : entries) {
+                    int node = Integer.parseInt(entry.getFileName().toString().substring("node".length()));
+                    TreeSet<Integer> cpus = parseCpuList(Files.readString(entry.resolve("cpulist")));
+                    cpus.retainAll(unassigned);
+                    if (!cpus.isEmpty()) {
+                        grouped.put(node, new ArrayList<>(cpus));
+                        unassigned.removeAll(cpus);
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("NUMA topology unavailable, treating the pool as one node: {}", e.getMessage());
+                grouped.clear();
+                unassigned = new TreeSet<>(pool);
+            }
+        }
+        if (grouped.isEmpty()) {
+            grouped.put(0, new ArrayList<>(unassigned));
+        } else if (!unassigned.isEmpty()) {
+            // Should not happen on a sane kernel; keep the CPUs usable rather than dropping them
+            log.warn("CPUs {} belong to no NUMA node, adding them to the first one", formatCpuList(unassigned));
+            grouped.values().iterator().next().addAll(unassigned);
+        }
+        return grouped;
+    }
+
+    /**
+     * Moves every thread of the JVM onto the reserved CPUs; threads started
+     * later inherit the mask, and so do child processes not started through
+     * {@link #wrap} or {@link #wrapUnplaced}.
+     */
+    void pinMonitor(String cpus) {
+        List<String> command = List.of(TASKSET, "-a", "-p", "-c", cpus, Long.toString(ProcessHandle.current().pid()));
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes()).trim();
+            if (!process.waitFor(TASKSET_TIMEOUT_SECONDS, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                log.warn("Could not pin the monitor to CPUs {}: {}", cpus, output);
+                return;
+            }
+            log.info("Monitor threads pinned to reserved CPUs {}", cpus);
+        } catch (IOException e) {
+            log.warn("Could not pin the monitor to CPUs {}: {}", cpus, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Script path relative to the scripts directory, which is how overrides name scripts. */
+    private String scriptKey(String scriptPath) {
+        Path script = Paths.get(scriptPath).toAbsolutePath().normalize();
+        Path base = Paths.get(baseScriptsDir).toAbsolutePath().normalize();
+        Path key = script.startsWith(base) ? base.relativize(script) : script.getFileName();
+        return key.toString().replace('\\', '/');
+    }
+
+    /**
+     * Parses a Linux CPU list such as "0-3,8,10-11".
+     */
+    static TreeSet<Integer> parseCpuList(String list) {
+        TreeSet<Integer> cpus = new TreeSet<>();
+        if (list == null || list.isBlank()) {
+            return cpus;
+        }
+        for (String part : list.trim().split(",")) {
+            String[] range = part.trim().split("-");
+            try {
+                int from = Integer.parseInt(range[0].trim());
+                int to = range.length == 2 ? Integer.parseInt(range[1].trim()) : from;
+                if (range.length > 2 || from < 0 || to < from) {
+                    throw new NumberFormatException();
+                }
+                for (int cpu = from; cpu <= to; cpu++) {
+                    cpus.add(cpu);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CPU list '" + list + "': expected e.g. 0-3,8");
+            }
+        }
+        return cpus;
+    }
+
+    /**
+     * Formats CPUs as a Linux CPU list, collapsing consecutive runs into ranges.
+     */
+    static String formatCpuList(Collection<Integer> cpus) {
+        List<String> parts = new ArrayList<>();
+        Integer start = null;
+        Integer previous = null;
+        for (Integer cpu : new TreeSet<>(cpus)) {
+            if (previous != null && cpu == previous + 1) {
+                previous = cpu;
+                continue;
+            }
+            if (start != null) {
+                parts.add(start.equals(previous) ? start.toString() : start + "-" + previous);
+            }
+            start = cpu;
+            previous = cpu;
+        }
+        if (start != null) {
+            parts.add(start.equals(previous) ? start.toString() : start + "-" + previous);
+        }
+        return String.join(",", parts);
+    }
+
+    /**
+     * Parses per-script CPU counts, e.g. "sim.py=8,reports/etl.sh=2".
+     */
+    static Map<String, Integer> parseScriptCpus(String config) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        if (config == null || config.isBlank()) {
+            return counts;
+        }
+        for (String entry : config.split(",")) {
+            String[] pair = entry.split("=");
+            try {
+                if (pair.length != 2 || pair[0].isBlank() || Integer.parseInt(pair[1].strip()) < 1) {
+                    throw new NumberFormatException();
+                }
+                counts.put(pair[0].strip(), Integer.parseInt(pair[1].strip()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("batch.execution.placement.scripts: expected script=positive number, got '"
+                        + entry + "'");
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * CPUs one run is pinned to.
+     *
+     * @param executionId The placed execution
+     * @param cpus The CPUs, ascending
+     * @param node The NUMA node they all belong to, or null if they span nodes
+     */
+    public record Placement(Long executionId, List<Integer> cpus, Integer node) {
+
+        /** The CPUs as a Linux CPU list, e.g. "8-11". */
+        public String cpuSet() {
+            return formatCpuList(cpus);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.PipelineExecutionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settles executions a previous instance left unfinished, once at startup.
+ * RUNNING runs whose script process is still alive (same pid and start time
+ * as recorded at launch) are re-attached and hold a scheduler slot until they
+ * end; the others are failed. Leftover cgroups no re-attached run adopted are
+ * removed afterwards, killing whatever is left in them. PENDING runs
+ * go back to the scheduler, except pipeline steps, whose pipeline can no
+ * longer be coordinated and is failed with them. Rows are read in id order a
+ * page at a time and failed with one update per page, so a long history does
+ * not slow startup down. In a cluster only this node's runs are touched: its
+ * claimed but unstarted runs are handed back to the queue, dead runs are left
+ * to lease expiry, which applies batch.cluster.maxRetries, and pipelines are
+ * left alone because they do not record which node coordinates them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExecutionReconciler {
+
+    static final String INTERRUPTED = "Interrupted: the monitor stopped while the run was in progress";
+
+    static final String PIPELINE_INTERRUPTED = "Interrupted: the monitor stopped while the pipeline was running";
+
+    private static final int BATCH_SIZE = 500;
+
+    /** Slack when matching start times, which /proc reports in clock ticks. */
+    private static final long START_TIME_TOLERANCE_MILLIS = 1000;
+
+    private final BatchExecutionRepository executionRepository;
+    private final PipelineExecutionRepository pipelineRepository;
+    private final ExecutionScheduler executionScheduler;
+    private final ScriptExecutionService scriptExecutionService;
+    private final ClusterCoordinator clusterCoordinator;
+    private final MetricsService metricsService;
+    private final CgroupLimiter cgroupLimiter;
+
+    @Value("${batch.execution.recovery.enabled:true}")
+    private boolean enabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        if (!enabled) {
+            cgroupLimiter.removeUnclaimed();
+            return;
+        }
+        long start = System.nanoTime();
+        String nodeId = clusterCoordinator.isEnabled() ? clusterCoordinator.nodeId() : null;
+        Outcome outcome = new Outcome();
+        reconcileRunning(nodeId, outcome);
+        cgroupLimiter.removeUnclaimed();
+        reconcilePending(nodeId, outcome);
+        if (nodeId == null) {
+            outcome.pipelinesFailed = pipelineRepository.failRunning(LocalDateTime.now(), PIPELINE_INTERRUPTED);
+        }
+        log.info("Startup reconciliation in {} ms: {} re-attached, {} failed, {} requeued, {} pipeline(s) failed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                outcome.reattached, outcome.failed, outcome.requeued, outcome.pipelinesFailed);
+    }
+
+    private void reconcileRunning(String nodeId, Outcome outcome) {
+        Long afterId = 0L;
+        List<BatchExecution> page;
+        do {
+            page = executionRepository.findByStatusAfter(
+                    BatchExecution.ExecutionStatus.RUNNING, nodeId, afterId, PageRequest.of(0, BATCH_SIZE));
+            List<Long> lost = new ArrayList<>();
+            for (BatchExecution execution : page) {
+                Optional<ProcessHandle> process = survivingProcess(execution);
+                if (process.isPresent()) {
+                    CompletableFuture<Void> done = scriptExecutionService.reattach(execution, process.get());
+                    executionScheduler.adopt(execution, done);
+                    if (nodeId != null) {
+                        clusterCoordinator.hold(execution.getId(), done);
+                    }
+                    outcome.reattached++;
+                } else {
+                    lost.add(execution.getId());
+                }
+            }
+            if (!lost.isEmpty() && nodeId == null) {
+                outcome.failed += fail(lost, BatchExecution.ExecutionStatus.RUNNING);
+            }
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (page.size() == BATCH_SIZE);
+    }
+
+    private void reconcilePending(String nodeId, Outcome outcome) {
+        Long afterId = 0L;
+        List<BatchExecution> page;
+        do {
+            page = executionRepository.findByStatusAfter(
+                    BatchExecution.ExecutionStatus.PENDING, nodeId, afterId, PageRequest.of(0, BATCH_SIZE));
+            if (nodeId != null) {
+                // Claimed before the restart but never started: let any node take them
+                if (!page.isEmpty()) {
+                    outcome.requeued += executionRepository.releaseClaims(nodeId,
+                            page.stream().map(BatchExecution::getId).toList());
+                }
+            } else {
+                List<Long> steps = new ArrayList<>();
+                for (BatchExecution execution : page) {
+                    if (execution.getPipelineId() != null) {
+                        steps.add(execution.getId());
+                        continue;
+                    }
+                    metricsService.statusChanged(null, BatchExecution.ExecutionStatus.PENDING);
+                    executionScheduler.submit(execution);
+                    outcome.requeued++;
+                }
+                if (!steps.isEmpty()) {
+                    outcome.failed += fail(steps, BatchExecution.ExecutionStatus.PENDING);
+                }
+            }
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (page.size() == BATCH_SIZE);
+    }
+
+    private int fail(List<Long> ids, BatchExecution.ExecutionStatus from) {
+        int failed = executionRepository.failUnfinished(ids, from, LocalDateTime.now(), INTERRUPTED);
+        for (int i = 0; i < failed; i++) {
+            metricsService.statusChanged(null, BatchExecution.ExecutionStatus.FAILED);
+        }
+        return failed;
+    }
+
+    /**
+     * The execution's script process if it is still alive, checked by start
+     * time so that an unrelated process that reused the pid is not adopted.
+     */
+    Optional<ProcessHandle> survivingProcess(BatchExecution execution) {
+        if (execution.getPid() == null || execution.getProcessStartedAt() == null) {
+            return Optional.empty();
+        }
+        return findProcess(execution.getPid())
+                .filter(ProcessHandle::isAlive)
+                .filter(process -> process.info().startInstant()
+                        .map(started -> Math.abs(Duration.between(
+                                execution.getProcessStartedAt().atZone(ZoneId.systemDefault()).toInstant(),
+                                started).toMillis()) <= START_TIME_TOLERANCE_MILLIS)
+                        .orElse(false));
+    }
+
+    /** Looks a pid up; overridden in tests. */
+    Optional<ProcessHandle> findProcess(long pid) {
+        return ProcessHandle.of(pid);
+    }
+
+    private static final class Outcome {
+        private int reattached;
+        private int failed;
+        private int requeued;
+        private int pipelinesFailed;
+    }
+}
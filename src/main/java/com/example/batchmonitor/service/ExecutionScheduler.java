@@ -0,0 +1,364 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.exception.ClaimLostException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decides which pending execution starts next, so that no single owner can
+ * starve the others. Runs queue per owner and per priority class. A higher
+ * class always starts first; within a class owners share the execution slots
+ * in proportion to their weight using stride scheduling: each owner carries a
+ * virtual pass that advances by 1/weight for every run it starts, and the
+ * owner with the lowest pass goes next. Owners may also be capped to a number
+ * of concurrent runs. Each decision costs O(log owners) regardless of how many
+ * runs are queued. In a cluster, submitted runs go to the ClusterCoordinator
+ * instead, and this scheduler runs the ones this node claims.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExecutionScheduler {
+
+    static final String DEFAULT_OWNER = "default";
+
+    private static final BatchExecution.Priority[] HIGHEST_FIRST = {
+            BatchExecution.Priority.HIGH, BatchExecution.Priority.NORMAL, BatchExecution.Priority.LOW
+    };
+
+    private static final Comparator<Owner> BY_PASS =
+            Comparator.comparingDouble((Owner owner) -> owner.pass).thenComparing(owner -> owner.name);
+
+    private final ScriptExecutionService scriptExecutionService;
+    private final MetricsService metricsService;
+    private final ClusterCoordinator clusterCoordinator;
+
+    @Value("${batch.execution.maxConcurrent}")
+    private int maxConcurrent;
+
+    @Value("${batch.scheduler.weights:}")
+    private String weightsConfig;
+
+    @Value("${batch.scheduler.ownerMaxConcurrent:}")
+    private String ownerLimitsConfig;
+
+    @Value("${batch.scheduler.defaultOwnerMaxConcurrent:0}")
+    private int defaultOwnerMaxConcurrent;
+
+    private Map<String, Integer> weights = Map.of();
+    private Map<String, Integer> ownerLimits = Map.of();
+
+    /** Owners with queued or running work. Guarded by this. */
+    private final Map<String, Owner> owners = new HashMap<>();
+
+    /** Per class, owners that have runs of that class queued and are below their cap, lowest pass first. */
+    private final Map<BatchExecution.Priority, TreeSet<Owner>> eligible = new EnumMap<>(BatchExecution.Priority.class);
+
+    private int running;
+    private int queued;
+
+    /** Pass of the last owner served; an owner returning from idle starts here instead of banking credit. */
+    private double virtualTime;
+
+    private ExecutorService dispatcher;
+
+    @PostConstruct
+    public void start() {
+        weights = parseOwnerValues(weightsConfig, "batch.scheduler.weights");
+        ownerLimits = parseOwnerValues(ownerLimitsConfig, "batch.scheduler.ownerMaxConcurrent");
+        dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "execution-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (BatchExecution.Priority priority : HIGHEST_FIRST) {
+            eligible.put(priority, new TreeSet<>(BY_PASS));
+        }
+        metricsService.registerSchedulerQueue(this::queuedCount);
+        if (clusterCoordinator.isEnabled()) {
+            clusterCoordinator.registerWorker(this::freeSlots, this::runClaimed, scriptExecutionService::stop);
+        }
+        log.info("Scheduler started: {} slots, weights {}, owner limits {}", maxConcurrent, weights, ownerLimits);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues a PENDING execution and starts it once a slot is free and it is
+     * the fairest choice. Inside a transaction the execution is queued only
+     * once it has committed, so the script thread never saves a row it cannot
+     * see yet; the hand-off runs on the dispatcher thread because code in
+     * afterCompletion would still join the finished transaction.
+     *
+     * @param execution The saved execution; its owner and priority select the queue
+     * @return Completes with the script result once the run has finished
+     */
+    public CompletableFuture<String> submit(BatchExecution execution) {
+        if (clusterCoordinator.isEnabled()) {
+            // Whichever node claims the run queues it there
+            return clusterCoordinator.submit(execution);
+        }
+        Ticket ticket = new Ticket(execution, ownerOf(execution), new CompletableFuture<>(), System.nanoTime());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatcher.execute(() -> enqueue(ticket));
+                    } else {
+                        ticket.result.completeExceptionally(new BatchExecutionException(
+                                "Execution " + execution.getId() + " was rolled back before it was queued"));
+                    }
+                }
+            });
+        } else {
+            enqueue(ticket);
+        }
+        return ticket.result;
+    }
+
+    private void enqueue(Ticket ticket) {
+        List<Ticket> ready;
+        synchronized (this) {
+            Owner owner = owners.computeIfAbsent(ticket.owner, this::newOwner);
+            if (owner.queued == 0) {
+                // Not in any eligible set, so its pass may change
+                owner.pass = Math.max(owner.pass, virtualTime);
+            }
+            detach(owner);
+            owner.queues.get(priorityOf(ticket.execution)).add(ticket);
+            owner.queued++;
+            queued++;
+            attach(owner);
+            ready = takeReady();
+        }
+        ready.forEach(this::launch);
+    }
+
+    /**
+     * Queues a run this node claimed in the cluster. The claim has committed,
+     * so it can be queued straight away.
+     */
+    CompletableFuture<String> runClaimed(BatchExecution execution) {
+        Ticket ticket = new Ticket(execution, ownerOf(execution), new CompletableFuture<>(), System.nanoTime());
+        enqueue(ticket);
+        return ticket.result;
+    }
+
+    /**
+     * Counts a run re-attached after a restart against the slots, and its
+     * owner's cap, until it finishes, so queued work does not overcommit the
+     * host meanwhile.
+     *
+     * @param execution The re-attached execution
+     * @param done Completes once the run has ended
+     */
+    void adopt(BatchExecution execution, CompletableFuture<?> done) {
+        String ownerName = ownerOf(execution);
+        synchronized (this) {
+            Owner owner = owners.computeIfAbsent(ownerName, this::newOwner);
+            detach(owner);
+            owner.running++;
+            running++;
+            attach(owner);
+        }
+        done.whenComplete((result, ex) -> release(ownerName));
+    }
+
+    /** Runs this node can still take on without queueing any. */
+    synchronized int freeSlots() {
+        return Math.max(0, maxConcurrent - running - queued);
+    }
+
+    synchronized int queuedCount() {
+        return queued;
+    }
+
+    synchronized int runningCount() {
+        return running;
+    }
+
+    private void launch(Ticket ticket) {
+        metricsService.recordSchedulerWait(ticket.owner, System.nanoTime() - ticket.queuedAt);
+        CompletableFuture<String> run;
+        try {
+            run = scriptExecutionService.executeScript(ticket.execution);
+        } catch (ClaimLostException e) {
+            // Another node took the run over while it waited here; there is nothing of ours to record
+            log.warn(e.getMessage());
+            release(ticket.owner);
+            ticket.result.completeExceptionally(e);
+            return;
+        } catch (RuntimeException e) {
+            log.error("Execution {} could not be started", ticket.execution.getId(), e);
+            scriptExecutionService.updateExecutionFailure(ticket.execution, "Failed to start: " + e.getMessage(), null);
+            release(ticket.owner);
+            ticket.result.completeExceptionally(e);
+            return;
+        }
+        run.whenComplete((result, ex) -> {
+            release(ticket.owner);
+            if (ex != null) {
+                ticket.result.completeExceptionally(ex);
+            } else {
+                ticket.result.complete(result);
+            }
+        });
+    }
+
+    private void release(String ownerName) {
+        List<Ticket> ready;
+        synchronized (this) {
+            running--;
+            Owner owner = owners.get(ownerName);
+            detach(owner);
+            owner.running--;
+            if (owner.running == 0 && owner.queued == 0) {
+                owners.remove(ownerName);
+            } else {
+                attach(owner);
+            }
+            ready = takeReady();
+        }
+        ready.forEach(this::launch);
+    }
+
+    /** Claims slots for the next runs to start. Caller holds the lock. */
+    private List<Ticket> takeReady() {
+        List<Ticket> ready = new ArrayList<>();
+        while (running < maxConcurrent) {
+            Ticket next = next();
+            if (next == null) {
+                break;
+            }
+            ready.add(next);
+        }
+        return ready;
+    }
+
+    private Ticket next() {
+        for (BatchExecution.Priority priority : HIGHEST_FIRST) {
+            TreeSet<Owner> candidates = eligible.get(priority);
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            Owner owner = candidates.first();
+            detach(owner);
+            Ticket ticket = owner.queues.get(priority).poll();
+            owner.queued--;
+            owner.running++;
+            queued--;
+            running++;
+            virtualTime = owner.pass;
+            owner.pass += 1.0 / owner.weight;
+            attach(owner);
+            return ticket;
+        }
+        return null;
+    }
+
+    private void detach(Owner owner) {
+        for (BatchExecution.Priority priority : HIGHEST_FIRST) {
+            if (!owner.queues.get(priority).isEmpty()) {
+                eligible.get(priority).remove(owner);
+            }
+        }
+    }
+
+    private void attach(Owner owner) {
+        if (owner.running >= owner.maxConcurrent) {
+            return;
+        }
+        for (BatchExecution.Priority priority : HIGHEST_FIRST) {
+            if (!owner.queues.get(priority).isEmpty()) {
+                eligible.get(priority).add(owner);
+            }
+        }
+    }
+
+    private Owner newOwner(String name) {
+        int limit = ownerLimits.getOrDefault(name, defaultOwnerMaxConcurrent);
+        return new Owner(name, weights.getOrDefault(name, 1), limit > 0 ? limit : Integer.MAX_VALUE);
+    }
+
+    static String ownerOf(BatchExecution execution) {
+        String owner = execution.getOwner();
+        return owner == null || owner.isBlank() ? DEFAULT_OWNER : owner;
+    }
+
+    private static BatchExecution.Priority priorityOf(BatchExecution execution) {
+        return execution.getPriority() == null ? BatchExecution.Priority.NORMAL : execution.getPriority();
+    }
+
+    /**
+     * Parses "owner=value" pairs separated by commas, e.g. "etl=3,reporting=1".
+     */
+    static Map<String, Integer> parseOwnerValues(String config, String property) {
+        Map<String, Integer> values = new LinkedHashMap<>();
+        if (config == null || config.isBlank()) {
+            return values;
+        }
+        for (String entry : config.split(",")) {
+            String[] pair = entry.split("=");
+            try {
+                if (pair.length != 2 || pair[0].isBlank() || Integer.parseInt(pair[1].strip()) < 1) {
+                    throw new NumberFormatException();
+                }
+                values.put(pair[0].strip(), Integer.parseInt(pair[1].strip()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(property + ": expected owner=positive number, got '" + entry + "'");
+            }
+        }
+        return values;
+    }
+
+    private record Ticket(BatchExecution execution, String owner, CompletableFuture<String> result, long queuedAt) {
+    }
+
+    private static final class Owner {
+
+        private final String name;
+        private final int weight;
+        private final int maxConcurrent;
+        private final Map<BatchExecution.Priority, ArrayDeque<Ticket>> queues =
+                new EnumMap<>(BatchExecution.Priority.class);
+        private double pass;
+        private int queued;
+        private int running;
+
+        private Owner(String name, int weight, int maxConcurrent) {
+            this.name = name;
+            this.weight = weight;
+            this.maxConcurrent = maxConcurrent;
+            for (BatchExecution.Priority priority : HIGHEST_FIRST) {
+                queues.put(priority, new ArrayDeque<>());
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.batchmonitor.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * The default relay: hands events to this node's simple broker, which only
+ * knows the sessions connected here.
+ */
+@Service
+@ConditionalOnProperty(name = "batch.websocket.relay", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+public class InJvmMessageRelay implements MessageRelay {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final WebSocketSubscriptions subscriptions;
+
+    @Override
+    public void publish(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+
+    @Override
+    public boolean isWatched(String destination) {
+        return subscriptions.isWatched(destination);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.batchmonitor.service;
+
+/**
+ * Delivers WebSocket events to their subscribers. The in-JVM relay only
+ * reaches sessions connected to this node; the cluster relay also reaches
+ * sessions connected to other nodes. Select one with batch.websocket.relay.
+ */
+public interface MessageRelay {
+
+    /**
+     * Sends an event raised on this node to every subscriber of the destination it can reach.
+     */
+    void publish(String destination, Object payload);
+
+    /**
+     * @return Whether any reachable session subscribes to the destination, so
+     * per-execution events nobody watches can be skipped
+     */
+    boolean isWatched(String destination);
+}
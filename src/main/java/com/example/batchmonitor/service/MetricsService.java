@@ -0,0 +1,317 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Central place for Micrometer instrumentation of the execution hot path.
+ * Meters tagged by script are cached per script so recording a line does not
+ * go through the registry, and the number of distinct script tags is capped.
+ */
+@Service
+public class MetricsService {
+
+    static final String OTHER_SCRIPT = "other";
+
+    private static final Set<BatchExecution.ExecutionStatus> ACTIVE_STATUSES =
+            EnumSet.of(BatchExecution.ExecutionStatus.PENDING, BatchExecution.ExecutionStatus.RUNNING);
+
+    private final MeterRegistry registry;
+    private final int maxScriptTags;
+
+    private final Map<String, ScriptMeters> scriptMeters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> webSocketTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> schedulerWaitTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> spoolDeliveryTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> spoolBatchSizes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> alertCounters = new ConcurrentHashMap<>();
+    private final Map<BatchExecution.ExecutionStatus, AtomicInteger> activeExecutions =
+            new EnumMap<>(BatchExecution.ExecutionStatus.class);
+    private final Counter sampledOut;
+
+    public MetricsService(MeterRegistry registry,
+                          @Value("${batch.metrics.maxScriptTags:50}") int maxScriptTags) {
+        this.registry = registry;
+        this.maxScriptTags = maxScriptTags;
+
+        for (BatchExecution.ExecutionStatus status : ACTIVE_STATUSES) {
+            AtomicInteger count = new AtomicInteger();
+            activeExecutions.put(status, count);
+            Gauge.builder("batch.executions.active", count, AtomicInteger::get)
+                    .description("Executions currently in a non-terminal status")
+                    .tag("status", status.name())
+                    .register(registry);
+        }
+        sampledOut = Counter.builder("batch.websocket.sampled")
+                .description("Console messages withheld from slow WebSocket clients")
+                .register(registry);
+    }
+
+    public void recordSpawn(String scriptPath, long nanos) {
+        meters(scriptPath).spawn.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStdoutLine(String scriptPath, String line) {
+        ScriptMeters meters = meters(scriptPath);
+        meters.stdoutLines.increment();
+        meters.stdoutBytes.increment(utf8Length(line));
+    }
+
+    public void recordStderrLine(String scriptPath, String line) {
+        ScriptMeters meters = meters(scriptPath);
+        meters.stderrLines.increment();
+        meters.stderrBytes.increment(utf8Length(line));
+    }
+
+    public void recordProgressParse(String scriptPath, long nanos) {
+        meters(scriptPath).progressParse.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLogPersist(String scriptPath, int batchSize, long nanos) {
+        ScriptMeters meters = meters(scriptPath);
+        meters.logPersist.record(nanos, TimeUnit.NANOSECONDS);
+        meters.logBatchSize.record(batchSize);
+    }
+
+    public void recordCacheLookup(String scriptPath, boolean hit) {
+        ScriptMeters meters = meters(scriptPath);
+        (hit ? meters.cacheHits : meters.cacheMisses).increment();
+    }
+
+    public void recordDeduplicated(String scriptPath) {
+        meters(scriptPath).deduplicated.increment();
+    }
+
+    public void recordWebSocketSend(String messageType, long nanos) {
+        webSocketTimers.computeIfAbsent(messageType, type -> Timer.builder("batch.websocket.send")
+                        .description("Time to hand a frame to the message broker")
+                        .tag("type", type)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a console message a slow WebSocket client did not get.
+     */
+    public void recordSampledOut() {
+        sampledOut.increment();
+    }
+
+    /**
+     * @param slow Supplies the number of WebSocket sessions currently getting sampled console output
+     */
+    public void registerSlowSessions(Supplier<Number> slow) {
+        Gauge.builder("batch.websocket.slow.sessions", slow)
+                .description("WebSocket sessions getting sampled console output because they are not keeping up")
+                .register(registry);
+    }
+
+    /**
+     * Counts an alert rule firing. Rules come from configuration, so their
+     * names need no cap.
+     */
+    public void recordAlert(String rule) {
+        alertCounters.computeIfAbsent(rule, key -> Counter.builder("batch.alerts.fired")
+                        .description("Alert rules fired by console output")
+                        .tag("rule", key)
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * Records how long a run waited in the scheduler before it was started.
+     * Owners are capped like script tags.
+     */
+    public void recordSchedulerWait(String owner, long nanos) {
+        String tag = schedulerWaitTimers.containsKey(owner) || schedulerWaitTimers.size() < maxScriptTags
+                ? owner
+                : OTHER_SCRIPT;
+        schedulerWaitTimers.computeIfAbsent(tag, key -> Timer.builder("batch.scheduler.wait")
+                        .description("Time a run spent queued in the scheduler before starting")
+                        .tag("owner", key)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param queued Supplies the number of runs waiting in the scheduler
+     */
+    public void registerSchedulerQueue(Supplier<Number> queued) {
+        Gauge.builder("batch.scheduler.queued", queued)
+                .description("Runs waiting in the scheduler for an execution slot")
+                .register(registry);
+    }
+
+    /**
+     * Records one batch of spooled lines handed to a target.
+     *
+     * @param target "database" or "websocket"
+     */
+    public void recordSpoolDelivery(String target, int lines, long nanos) {
+        spoolDeliveryTimers.computeIfAbsent(target, key -> Timer.builder("batch.output.spool.delivery")
+                        .description("Time to deliver a batch of spooled output lines")
+                        .tag("target", key)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        spoolBatchSizes.computeIfAbsent(target, key -> DistributionSummary.builder("batch.output.spool.delivery.lines")
+                        .description("Number of spooled output lines delivered per batch")
+                        .tag("target", key)
+                        .register(registry))
+                .record(lines);
+    }
+
+    /**
+     * @param backlog Supplies the number of spooled lines not yet delivered to the target
+     */
+    public void registerSpoolBacklog(String target, Supplier<Number> backlog) {
+        Gauge.builder("batch.output.spool.backlog", backlog)
+                .description("Spooled output lines not yet delivered")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    /**
+     * Moves an execution between statuses for the active-executions gauge.
+     *
+     * @param from The previous status, or null for a new execution
+     * @param to The new status
+     */
+    public void statusChanged(BatchExecution.ExecutionStatus from, BatchExecution.ExecutionStatus to) {
+        if (from != null && ACTIVE_STATUSES.contains(from)) {
+            activeExecutions.get(from).updateAndGet(count -> Math.max(0, count - 1));
+        }
+        if (to == null) {
+            return;
+        }
+        if (ACTIVE_STATUSES.contains(to)) {
+            activeExecutions.get(to).incrementAndGet();
+        } else {
+            registry.counter("batch.executions.finished", "status", to.name()).increment();
+        }
+    }
+
+    int activeCount(BatchExecution.ExecutionStatus status) {
+        AtomicInteger count = activeExecutions.get(status);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Maps a script path to its tag value: the file name, or "other" once the
+     * configured number of distinct scripts has been reached.
+     */
+    String scriptTag(String scriptPath) {
+        if (scriptPath == null || scriptPath.isBlank()) {
+            return OTHER_SCRIPT;
+        }
+        String name = Paths.get(scriptPath).getFileName().toString();
+        if (scriptMeters.containsKey(name) || scriptMeters.size() < maxScriptTags) {
+            return name;
+        }
+        return OTHER_SCRIPT;
+    }
+
+    private ScriptMeters meters(String scriptPath) {
+        return scriptMeters.computeIfAbsent(scriptTag(scriptPath), ScriptMeters::new);
+    }
+
+    /**
+     * Counts the UTF-8 encoded size of a line plus its terminator without
+     * allocating an encoded copy.
+     */
+    static int utf8Length(String line) {
+        if (line == null) {
+            return 0;
+        }
+        int bytes = 1;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < line.length()
+                    && Character.isLowSurrogate(line.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private final class ScriptMeters {
+        private final Timer spawn;
+        private final Counter stdoutLines;
+        private final Counter stdoutBytes;
+        private final Counter stderrLines;
+        private final Counter stderrBytes;
+        private final Timer progressParse;
+        private final Timer logPersist;
+        private final DistributionSummary logBatchSize;
+        private final Counter cacheHits;
+        private final Counter cacheMisses;
+        private final Counter deduplicated;
+
+        private ScriptMeters(String script) {
+            spawn = Timer.builder("batch.process.spawn")
+                    .description("Time spent in ProcessBuilder.start")
+                    .tag("script", script).register(registry);
+            stdoutLines = lineCounter(script, "stdout");
+            stdoutBytes = byteCounter(script, "stdout");
+            stderrLines = lineCounter(script, "stderr");
+            stderrBytes = byteCounter(script, "stderr");
+            progressParse = Timer.builder("batch.progress.parse")
+                    .description("Time spent parsing progress from a stdout line")
+                    .tag("script", script).register(registry);
+            logPersist = Timer.builder("batch.log.persist")
+                    .description("Time spent persisting execution log entries")
+                    .tag("script", script).register(registry);
+            logBatchSize = DistributionSummary.builder("batch.log.persist.batch.size")
+                    .description("Number of execution log entries written per persist call")
+                    .tag("script", script).register(registry);
+            cacheHits = cacheCounter(script, "hit");
+            cacheMisses = cacheCounter(script, "miss");
+            deduplicated = Counter.builder("batch.executions.deduplicated")
+                    .description("Requests attached to an identical execution already in flight")
+                    .tag("script", script).register(registry);
+        }
+
+        private Counter cacheCounter(String script, String result) {
+            return Counter.builder("batch.cache.lookups")
+                    .description("Result cache lookups for executions that opted in")
+                    .tag("script", script)
+                    .tag("result", result)
+                    .register(registry);
+        }
+
+        private Counter lineCounter(String script, String stream) {
+            return Counter.builder("batch.output.lines")
+                    .description("Lines read from script output streams")
+                    .tags("script", script, "stream", stream).register(registry);
+        }
+
+        private Counter byteCounter(String script, String stream) {
+            return Counter.builder("batch.output.bytes")
+                    .description("Bytes read from script output streams")
+                    .baseUnit("bytes")
+                    .tags("script", script, "stream", stream).register(registry);
+        }
+    }
+}
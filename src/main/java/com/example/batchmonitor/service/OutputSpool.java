@@ -0,0 +1,589 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.ExecutionLogRepository;
+import com.example.batchmonitor.util.SpoolSegment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Durable buffer between the script output readers and the places console
+ * lines go. A reader only appends the line to a memory-mapped segment file
+ * in batch.execution.spool.directory, so its throughput does not depend on
+ * the database or the message broker. Two drainer threads, one storing lines
+ * in the database in batches and one publishing them to WebSocket clients,
+ * follow the spool independently and retry from where they stopped when a
+ * delivery fails, so a stall delays lines instead of losing them.
+ * <p>
+ * Delivery is at least once. Every line carries a sequence number. The
+ * database drainer checkpoints the last stored sequence in a mapped cursor
+ * file, and after a crash it skips replayed lines whose sequence is already
+ * stored. WebSocket clients can drop repeats by the sequence in each message.
+ * Segments are deleted once both drainers are past them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutputSpool {
+
+    static final String DATABASE = "database";
+    static final String WEBSOCKET = "websocket";
+
+    private static final String CURSOR_FILE = "database.cursor";
+    private static final String LOCK_FILE = "spool.lock";
+    private static final byte STDOUT = 0;
+    private static final byte STDERR = 1;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ExecutionLogRepository logRepository;
+    private final BatchExecutionRepository executionRepository;
+    private final WebSocketService webSocketService;
+    private final MetricsService metricsService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${batch.execution.spool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${batch.execution.spool.directory:${user.home}/batch-monitor/spool}")
+    private String directory;
+
+    @Value("${batch.execution.spool.segmentSizeKb:8192}")
+    private int segmentSizeKb;
+
+    @Value("${batch.execution.spool.batchSize:500}")
+    private int batchSize;
+
+    @Value("${batch.execution.spool.retryInterval:1000}")
+    private long retryIntervalMillis;
+
+    @Value("${batch.execution.spool.flushTimeout:10000}")
+    private long flushTimeoutMillis;
+
+    /** Segments not yet fully delivered, by first sequence. */
+    private final NavigableMap<Long, SpoolSegment> segments = new ConcurrentSkipListMap<>();
+
+    /** Last sequence appended per execution with lines not yet delivered to both targets. */
+    private final Map<Long, Long> undelivered = new ConcurrentHashMap<>();
+
+    /** Script of each execution in {@link #undelivered}, to tag the persist metrics with. */
+    private final Map<Long, String> scriptPaths = new ConcurrentHashMap<>();
+
+    /** Notified whenever a drainer makes progress. */
+    private final Object progress = new Object();
+
+    private Path root;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private MappedByteBuffer cursor;
+    private SpoolSegment current;
+    private long lastSequence;
+    private volatile long appended;
+    private long replayUntil;
+    private Drainer database;
+    private Drainer webSocket;
+    private volatile boolean active;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (segmentSizeKb < 64 || segmentSizeKb > 1024 * 1024) {
+            throw new IllegalArgumentException("batch.execution.spool.segmentSizeKb must be between 64 and 1048576");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch.execution.spool.batchSize must be at least 1");
+        }
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        lockDirectory();
+        try (FileChannel channel = FileChannel.open(root.resolve(CURSOR_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            cursor = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        long stored = cursor.getLong(0);
+        lastSequence = stored;
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : files.filter(SpoolSegment::isSegment).sorted().toList()) {
+                SpoolSegment segment = SpoolSegment.open(file);
+                if (segment.limit() == 0 || segment.lastSequence() <= stored) {
+                    segment.delete();
+                } else {
+                    segments.put(segment.firstSequence(), segment);
+                    lastSequence = Math.max(lastSequence, segment.lastSequence());
+                }
+            }
+        }
+        replayUntil = lastSequence;
+        appended = lastSequence;
+        if (lastSequence > stored) {
+            log.info("Output spool has {} line(s) from before the restart still to store", lastSequence - stored);
+        }
+
+        database = new Drainer(DATABASE, stored, this::store);
+        webSocket = new Drainer(WEBSOCKET, stored, this::publish);
+        metricsService.registerSpoolBacklog(DATABASE, () -> appended - database.delivered);
+        metricsService.registerSpoolBacklog(WEBSOCKET, () -> appended - webSocket.delivered);
+        active = true;
+        database.thread.start();
+        webSocket.thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!active) {
+            return;
+        }
+        if (!awaitDelivered()) {
+            log.warn("Output spool stopping with {} line(s) not yet stored; they are stored after the next start",
+                    appended - database.delivered);
+        }
+        synchronized (this) {
+            active = false;
+        }
+        database.stop();
+        webSocket.stop();
+        synchronized (this) {
+            for (SpoolSegment segment : segments.values()) {
+                segment.force();
+                segment.close();
+            }
+            segments.clear();
+            current = null;
+        }
+        cursor.force();
+        lock.release();
+        lockChannel.close();
+    }
+
+    /**
+     * @return Whether lines are spooled; false if the spool is disabled or stopped
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Appends a console line and wakes the drainers. Never waits for the
+     * database or the broker. Lines longer than the message column are cut.
+     *
+     * @param scriptPath The execution's script, used to tag the persist metrics
+     * @return The line's sequence
+     * @throws IllegalStateException if the spool is not active
+     * @throws UncheckedIOException if a new segment cannot be created
+     */
+    public long append(Long executionId, String scriptPath, ExecutionLog.LogType type, String line,
+                       LocalDateTime timestamp) {
+        String message = line.length() > ExecutionLog.MESSAGE_LENGTH
+                ? line.substring(0, ExecutionLog.MESSAGE_LENGTH)
+                : line;
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        long micros = timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1000;
+        byte code = type == ExecutionLog.LogType.STDERR ? STDERR : STDOUT;
+        long sequence;
+        synchronized (this) {
+            if (!active) {
+                throw new IllegalStateException("Output spool is not running");
+            }
+            sequence = lastSequence + 1;
+            if (current == null || !current.append(sequence, executionId, micros, code, text)) {
+                roll(sequence);
+                current.append(sequence, executionId, micros, code, text);
+            }
+            lastSequence = sequence;
+            appended = sequence;
+            if (undelivered.put(executionId, sequence) == null && scriptPath != null) {
+                scriptPaths.put(executionId, scriptPath);
+            }
+        }
+        LockSupport.unpark(database.thread);
+        LockSupport.unpark(webSocket.thread);
+        return sequence;
+    }
+
+    /**
+     * Waits until every line appended so far has been stored and published.
+     *
+     * @return false if that did not happen within batch.execution.spool.flushTimeout
+     */
+    public boolean awaitDelivered() {
+        return !active || awaitSequence(appended);
+    }
+
+    /**
+     * Waits until the lines of one execution appended so far have been stored
+     * and published. Lines of other executions appended later do not hold it up.
+     *
+     * @return false if that did not happen within batch.execution.spool.flushTimeout
+     */
+    public boolean awaitDelivered(Long executionId) {
+        Long target = undelivered.get(executionId);
+        return !active || target == null || awaitSequence(target);
+    }
+
+    /**
+     * Whether every line of the execution appended so far is in the database,
+     * whether or not the WebSocket clients have it yet. Does not wait.
+     */
+    public boolean isStored(Long executionId) {
+        Long target = undelivered.get(executionId);
+        return !active || target == null || database.delivered >= target;
+    }
+
+    private boolean awaitSequence(long target) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushTimeoutMillis);
+        synchronized (progress) {
+            while (database.delivered < target || webSocket.delivered < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    progress.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The last sequence delivered to the target, for tests and diagnostics
+     */
+    long delivered(String target) {
+        return (DATABASE.equals(target) ? database : webSocket).delivered;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    private void lockDirectory() throws IOException {
+        lockChannel = FileChannel.open(root.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Output spool directory " + root + " is used by another instance; "
+                    + "give each instance its own batch.execution.spool.directory");
+        }
+    }
+
+    private void roll(long firstSequence) {
+        try {
+            if (current != null) {
+                current.force();
+            }
+            current = SpoolSegment.create(root, firstSequence, segmentSizeKb * 1024);
+            segments.put(firstSequence, current);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create an output spool segment in " + root, e);
+        }
+    }
+
+    /** Deletes segments both drainers are done with and forgets executions whose lines are all delivered. */
+    private synchronized void reclaim() {
+        long done = Math.min(database.delivered, webSocket.delivered);
+        undelivered.entrySet().removeIf(entry -> {
+            if (entry.getValue() > done) {
+                return false;
+            }
+            scriptPaths.remove(entry.getKey());
+            return true;
+        });
+        Iterator<SpoolSegment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            SpoolSegment segment = iterator.next();
+            if (segment == current || segment.lastSequence() > done) {
+                break;
+            }
+            iterator.remove();
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                log.warn("Could not delete output spool segment {}: {}", segment.firstSequence(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stores a batch in one transaction. If that fails the lines are stored one
+     * by one, so a line the database rejects while it is up is dropped instead
+     * of holding the rest back.
+     */
+    private void store(List<SpoolSegment.Record> records) {
+        try {
+            insert(records);
+        } catch (RuntimeException batchError) {
+            for (int i = 0; i < records.size(); i++) {
+                SpoolSegment.Record record = records.get(i);
+                try {
+                    insert(List.of(record));
+                } catch (RuntimeException e) {
+                    if (!databaseReachable(record)) {
+                        throw new DeliveryFailure(i, e);
+                    }
+                    log.error("Dropping output line {} of execution {}, rejected by the database: {}",
+                            record.sequence(), record.executionId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void insert(List<SpoolSegment.Record> records) {
+        long start = System.nanoTime();
+        Map<Long, Integer> linesPerExecution = transactionTemplate.execute(status -> {
+            long first = records.get(0).sequence();
+            Set<Long> stored = first <= replayUntil
+                    ? logRepository.findSequences(
+                            records.stream().map(SpoolSegment.Record::executionId).collect(Collectors.toSet()),
+                            first, records.get(records.size() - 1).sequence())
+                    : Set.of();
+            List<ExecutionLog> entries = new ArrayList<>(records.size());
+            Map<Long, Integer> counts = new HashMap<>();
+            for (SpoolSegment.Record record : records) {
+                if (!stored.contains(record.sequence())) {
+                    entries.add(ExecutionLog.builder()
+                            .batchExecution(executionRepository.getReferenceById(record.executionId()))
+                            .message(record.text())
+                            .timestamp(timestamp(record))
+                            .logType(logType(record))
+                            .sequence(record.sequence())
+                            .build());
+                    counts.merge(record.executionId(), 1, Integer::sum);
+                }
+            }
+            logRepository.saveAll(entries);
+            return counts;
+        });
+        if (linesPerExecution == null || linesPerExecution.isEmpty()) {
+            return;
+        }
+        // Recorded once per script in the batch; lines replayed after a restart have no known script
+        long nanos = System.nanoTime() - start;
+        Map<String, Integer> linesPerScript = new HashMap<>();
+        linesPerExecution.forEach((executionId, lines) ->
+                linesPerScript.merge(scriptPaths.get(executionId), lines, Integer::sum));
+        linesPerScript.forEach((scriptPath, lines) -> metricsService.recordLogPersist(scriptPath, lines, nanos));
+    }
+
+    private boolean databaseReachable(SpoolSegment.Record record) {
+        try {
+            executionRepository.existsById(record.executionId());
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /** Publishes the records one run of consecutive lines of an execution at a time. */
+    private void publish(List<SpoolSegment.Record> records) {
+        int runStart = 0;
+        while (runStart < records.size()) {
+            long executionId = records.get(runStart).executionId();
+            List<ConsoleOutput> run = new ArrayList<>();
+            for (int i = runStart; i < records.size() && records.get(i).executionId() == executionId; i++) {
+                SpoolSegment.Record record = records.get(i);
+                run.add(ConsoleOutput.builder()
+                        .executionId(record.executionId())
+                        .message(record.text())
+                        .timestamp(timestamp(record))
+                        .type(record.type() == STDERR ? ConsoleOutput.OutputType.STDERR : ConsoleOutput.OutputType.STDOUT)
+                        .sequence(record.sequence())
+                        .build());
+            }
+            try {
+                webSocketService.sendConsoleBatch(run);
+            } catch (RuntimeException e) {
+                throw new DeliveryFailure(runStart, e);
+            }
+            runStart += run.size();
+        }
+    }
+
+    private static LocalDateTime timestamp(SpoolSegment.Record record) {
+        long micros = record.timestampMicros();
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    private static ExecutionLog.LogType logType(SpoolSegment.Record record) {
+        return record.type() == STDERR ? ExecutionLog.LogType.STDERR : ExecutionLog.LogType.STDOUT;
+    }
+
+    /** Thrown by a delivery that stopped part way, saying how many leading lines got through. */
+    private static final class DeliveryFailure extends RuntimeException {
+
+        private final int delivered;
+
+        private DeliveryFailure(int delivered, Throwable cause) {
+            super(cause.getMessage(), cause);
+            this.delivered = delivered;
+        }
+    }
+
+    /** Follows the spool and hands batches of lines to one target, retrying a failed batch until it succeeds. */
+    private final class Drainer implements Runnable {
+
+        private final String target;
+        private final Consumer<List<SpoolSegment.Record>> sink;
+        private final Thread thread;
+        private volatile long delivered;
+        private volatile boolean running = true;
+        private SpoolSegment segment;
+        private int offset;
+        private boolean stalled;
+
+        private Drainer(String target, long delivered, Consumer<List<SpoolSegment.Record>> sink) {
+            this.target = target;
+            this.delivered = delivered;
+            this.sink = sink;
+            this.thread = new Thread(this, "output-spool-" + target);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                List<SpoolSegment.Record> batch = next();
+                if (batch.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                    continue;
+                }
+                long start = System.nanoTime();
+                int done = batch.size();
+                RuntimeException failure = null;
+                try {
+                    sink.accept(batch);
+                } catch (RuntimeException e) {
+                    done = e instanceof DeliveryFailure partial ? partial.delivered : 0;
+                    failure = e;
+                }
+                if (done > 0) {
+                    advance(batch.get(done - 1));
+                    metricsService.recordSpoolDelivery(target, done, System.nanoTime() - start);
+                }
+                if (failure == null) {
+                    if (stalled) {
+                        log.info("Output spool delivers to the {} again", target);
+                        stalled = false;
+                    }
+                } else {
+                    if (!stalled) {
+                        log.warn("Output spool cannot deliver to the {}, retrying every {} ms: {}",
+                                target, retryIntervalMillis, failure.getMessage());
+                        stalled = true;
+                    }
+                    // Not interrupted, so a JDBC call in progress is never cut short; stop() unparks instead
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(retryIntervalMillis));
+                }
+            }
+        }
+
+        /** Collects the next lines after the cursor, never spanning two segments. */
+        private List<SpoolSegment.Record> next() {
+            List<SpoolSegment.Record> batch = new ArrayList<>();
+            if (segment == null) {
+                Map.Entry<Long, SpoolSegment> first = segments.firstEntry();
+                if (first == null) {
+                    return batch;
+                }
+                segment = first.getValue();
+                offset = 0;
+            }
+            int position = offset;
+            while (batch.size() < batchSize) {
+                SpoolSegment.Record record = segment.read(position);
+                if (record == null) {
+                    if (!batch.isEmpty()) {
+                        break;
+                    }
+                    Map.Entry<Long, SpoolSegment> following = segments.higherEntry(segment.firstSequence());
+                    if (following == null) {
+                        break;
+                    }
+                    if (segment.read(position) != null) {
+                        // Appended just before the segment was sealed
+                        continue;
+                    }
+                    segment = following.getValue();
+                    position = 0;
+                    offset = 0;
+                    continue;
+                }
+                position = record.next();
+                if (record.sequence() <= delivered) {
+                    // Delivered before a restart
+                    if (batch.isEmpty()) {
+                        offset = position;
+                    }
+                    continue;
+                }
+                batch.add(record);
+            }
+            return batch;
+        }
+
+        private void advance(SpoolSegment.Record last) {
+            offset = last.next();
+            delivered = last.sequence();
+            if (this == database) {
+                cursor.putLong(0, last.sequence());
+            }
+            reclaim();
+            synchronized (progress) {
+                progress.notifyAll();
+            }
+        }
+
+        private void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(retryIntervalMillis + flushTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
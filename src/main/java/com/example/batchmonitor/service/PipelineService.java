@@ -0,0 +1,560 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.PipelineRequest;
+import com.example.batchmonitor.dto.PipelineResponse;
+import com.example.batchmonitor.dto.PipelineStep;
+import com.example.batchmonitor.dto.ProgressUpdate;
+import com.example.batchmonitor.dto.SweepRequest;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.PipelineExecution;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.PipelineExecutionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Runs pipelines: DAGs of script steps submitted as one definition. Every step is
+ * a BatchExecution submitted to the ExecutionScheduler once all steps it
+ * depends on have completed. Independent steps run in parallel up to the
+ * pipeline's limit; a step whose upstream failed is failed without running.
+ * Progress of all steps is averaged into one ProgressUpdate stream per pipeline.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PipelineService {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final Pattern STEP_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    /** Replaced by each run's item in SweepRequest parameters. */
+    static final String SWEEP_ITEM = "${item}";
+
+    /** ${steps.<id>.output} or ${steps.<id>.executionId} in step parameters. */
+    private static final Pattern STEP_REFERENCE =
+            Pattern.compile("\\$\\{steps\\.([A-Za-z0-9_-]+)\\.(output|executionId)}");
+
+    private final PipelineExecutionRepository pipelineRepository;
+    private final BatchExecutionRepository executionRepository;
+    private final BatchExecutionService batchExecutionService;
+    private final ScriptExecutionService scriptExecutionService;
+    private final ExecutionScheduler executionScheduler;
+    private final WebSocketService webSocketService;
+    private final MetricsService metricsService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${batch.execution.maxConcurrent}")
+    private int maxConcurrent;
+
+    @Value("${batch.pipeline.progressInterval:1000}")
+    private long progressIntervalMillis;
+
+    @Value("${batch.pipeline.maxSteps:10000}")
+    private int maxSteps;
+
+    /** Pipelines with unfinished steps, in submission order. Guarded by this. */
+    private final Map<Long, PipelineRun> active = new LinkedHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::publishProgress,
+                progressIntervalMillis, progressIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Validates the definition, records the pipeline and all of its steps as
+     * PENDING executions in one transaction and starts every step that has no
+     * dependencies.
+     */
+    public PipelineResponse startPipeline(PipelineRequest request) {
+        log.info("Starting pipeline {} with {} steps", request.getName(),
+                request.getSteps() == null ? 0 : request.getSteps().size());
+
+        Map<String, Set<String>> dependencies = dependencies(request);
+        if (dependencies.size() > maxSteps) {
+            throw new BatchExecutionException("A pipeline may have at most " + maxSteps + " steps");
+        }
+        List<String> order = topologicalOrder(dependencies);
+        Map<String, PipelineStep> stepsById = request.getSteps().stream()
+                .collect(Collectors.toMap(PipelineStep::getId, step -> step));
+
+        String owner = request.getOwner() == null || request.getOwner().isBlank()
+                ? ExecutionScheduler.DEFAULT_OWNER : request.getOwner();
+        BatchExecution.Priority priority = request.getPriority() == null
+                ? BatchExecution.Priority.NORMAL : request.getPriority();
+        PipelineExecution pipeline = PipelineExecution.builder()
+                .name(request.getName())
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .progress(0.0)
+                .startTime(LocalDateTime.now())
+                .build();
+
+        // A pipeline row without its steps would stay RUNNING forever, as nothing would ever finish it
+        List<BatchExecution> savedSteps = transactionTemplate.execute(status -> {
+            pipelineRepository.save(pipeline);
+            List<BatchExecution> steps = new ArrayList<>();
+            for (String id : order) {
+                PipelineStep step = stepsById.get(id);
+                steps.add(BatchExecution.builder()
+                        .scriptPath(batchExecutionService.resolveScriptPath(step.getScriptName()))
+                        .parameters(step.getParameters())
+                        .owner(owner)
+                        .priority(priority)
+                        .status(BatchExecution.ExecutionStatus.PENDING)
+                        .progress(0.0)
+                        .pipelineId(pipeline.getId())
+                        .pipelineStep(id)
+                        .pipelineDependsOn(String.join(",", dependencies.get(id)))
+                        .build());
+            }
+            return executionRepository.saveAll(steps);
+        });
+        savedSteps.forEach(step -> metricsService.statusChanged(null, BatchExecution.ExecutionStatus.PENDING));
+
+        int limit = request.getMaxParallel() == null
+                ? maxConcurrent
+                : Math.min(request.getMaxParallel(), maxConcurrent);
+        PipelineRun run = new PipelineRun(pipeline, savedSteps, dependencies, limit);
+        synchronized (this) {
+            active.put(pipeline.getId(), run);
+            dispatch(run);
+        }
+        return PipelineResponse.fromEntity(pipeline, savedSteps);
+    }
+
+    /**
+     * Starts the script once per item as a pipeline of independent steps, so all
+     * runs are inserted together, started no faster than the cap allows and
+     * reported as one group.
+     */
+    public PipelineResponse startSweep(SweepRequest request) {
+        if (request.getParameters() == null || !request.getParameters().contains(SWEEP_ITEM)) {
+            throw new BatchExecutionException("Sweep parameters must contain " + SWEEP_ITEM);
+        }
+        List<String> items = sweepItems(request);
+
+        List<PipelineStep> steps = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            steps.add(PipelineStep.builder()
+                    .id(String.valueOf(i + 1))
+                    .scriptName(request.getScriptName())
+                    .parameters(request.getParameters().replace(SWEEP_ITEM, items.get(i)))
+                    .build());
+        }
+        return startPipeline(PipelineRequest.builder()
+                .name(request.getName())
+                .owner(request.getOwner())
+                .priority(request.getPriority())
+                .steps(steps)
+                .maxParallel(request.getMaxParallel())
+                .build());
+    }
+
+    @Transactional(readOnly = true)
+    public PipelineResponse getPipeline(Long id) {
+        synchronized (this) {
+            PipelineRun run = active.get(id);
+            if (run != null) {
+                run.pipeline.setProgress(progress(run));
+                return PipelineResponse.fromEntity(run.pipeline, List.copyOf(run.steps.values()));
+            }
+        }
+        PipelineExecution pipeline = pipelineRepository.findById(id)
+                .orElseThrow(() -> new BatchExecutionException("Pipeline not found with ID: " + id));
+        return PipelineResponse.fromEntity(pipeline, executionRepository.findByPipelineIdOrderByIdAsc(id));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PipelineResponse> getAllPipelines() {
+        return pipelineRepository.findAllByOrderByIdDesc()
+                .stream()
+                .map(PipelineResponse::fromEntity)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reads a YAML pipeline definition. JSON is a subset of YAML, so this
+     * accepts either.
+     */
+    public PipelineRequest parseDefinition(String definition) {
+        Object document;
+        try {
+            document = new Yaml(new SafeConstructor(new LoaderOptions())).load(definition);
+        } catch (YAMLException e) {
+            throw new BatchExecutionException("Invalid pipeline definition: " + e.getMessage(), e);
+        }
+        if (!(document instanceof Map)) {
+            throw new BatchExecutionException("Invalid pipeline definition: expected a mapping with 'steps'");
+        }
+        try {
+            return JSON.convertValue(document, PipelineRequest.class);
+        } catch (IllegalArgumentException e) {
+            throw new BatchExecutionException("Invalid pipeline definition: " + e.getMessage(), e);
+        }
+    }
+
+    private List<String> sweepItems(SweepRequest request) {
+        boolean hasRange = request.getRangeStart() != null || request.getRangeEnd() != null;
+        if (request.getItems() != null && !request.getItems().isEmpty()) {
+            if (hasRange) {
+                throw new BatchExecutionException("A sweep takes either items or a range, not both");
+            }
+            checkSweepSize(request.getItems().size());
+            return request.getItems();
+        }
+        if (request.getRangeStart() == null || request.getRangeEnd() == null) {
+            throw new BatchExecutionException("A sweep needs items or both rangeStart and rangeEnd");
+        }
+        if (request.getRangeEnd() < request.getRangeStart()) {
+            throw new BatchExecutionException("rangeEnd must not be less than rangeStart");
+        }
+        checkSweepSize((long) request.getRangeEnd() - request.getRangeStart() + 1);
+        List<String> items = new ArrayList<>();
+        for (long item = request.getRangeStart(); item <= request.getRangeEnd(); item++) {
+            items.add(String.valueOf(item));
+        }
+        return items;
+    }
+
+    private void checkSweepSize(long size) {
+        if (size > maxSteps) {
+            throw new BatchExecutionException("A sweep may have at most " + maxSteps + " items, got " + size);
+        }
+    }
+
+    /**
+     * Submits the pipeline's ready steps while its own limit allows, and
+     * completes it once every step has finished. Only the run whose step
+     * finished is looked at, and only its ready queue, so a completion costs
+     * the same however large the pipeline is. Caller holds the lock.
+     */
+    private void dispatch(PipelineRun run) {
+        while (run.running.size() < run.maxParallel && !run.ready.isEmpty()) {
+            launch(run, run.steps.get(run.ready.poll()));
+        }
+        if (run.finished.size() == run.steps.size()) {
+            complete(run);
+        }
+    }
+
+    /**
+     * Counts a finished step against its dependents. If it completed, those
+     * left with no unfinished dependencies become ready; otherwise they and
+     * everything downstream of them are finished without running. Caller holds
+     * the lock.
+     *
+     * @return The steps skipped because of the failure, for the caller to fail once it released the lock
+     */
+    private List<BatchExecution> markFinished(PipelineRun run, BatchExecution step) {
+        String id = step.getPipelineStep();
+        run.running.remove(id);
+        run.finished.add(id);
+        if (step.getStatus() == BatchExecution.ExecutionStatus.COMPLETED) {
+            run.completed++;
+            for (String dependent : run.dependents.getOrDefault(id, List.of())) {
+                if (run.waitingOn.merge(dependent, -1, Integer::sum) == 0 && !run.launched.contains(dependent)) {
+                    run.ready.add(dependent);
+                }
+            }
+            return List.of();
+        }
+
+        List<BatchExecution> skipped = new ArrayList<>();
+        Deque<String> failed = new ArrayDeque<>(List.of(id));
+        while (!failed.isEmpty()) {
+            for (String dependent : run.dependents.getOrDefault(failed.poll(), List.of())) {
+                if (run.launched.add(dependent)) {
+                    run.finished.add(dependent);
+                    skipped.add(run.steps.get(dependent));
+                    failed.add(dependent);
+                }
+            }
+        }
+        return skipped;
+    }
+
+    private void launch(PipelineRun run, BatchExecution step) {
+        String id = step.getPipelineStep();
+        run.launched.add(id);
+        step.setParameters(resolveReferences(step.getParameters(), run));
+
+        // The scheduler may hold the step back until its owner's share allows it to start
+        CompletableFuture<String> future = executionScheduler.submit(step);
+        run.running.put(id, step);
+        log.info("Pipeline {} submitted step {} as execution {}", run.pipeline.getId(), id, step.getId());
+
+        // Completions are handled on the scheduler thread so they never run inside dispatch()
+        future.whenCompleteAsync((result, ex) -> stepFinished(run, step), scheduler);
+    }
+
+    private void stepFinished(PipelineRun run, BatchExecution step) {
+        List<BatchExecution> skipped;
+        synchronized (this) {
+            log.info("Pipeline {} step {} finished with status {}",
+                    run.pipeline.getId(), step.getPipelineStep(), step.getStatus());
+
+            skipped = markFinished(run, step);
+            dispatch(run);
+            if (active.containsKey(run.pipeline.getId())) {
+                publish(run);
+            }
+        }
+
+        // The steps are already finished as far as the pipeline is concerned; record that in one update, unlocked
+        if (!skipped.isEmpty()) {
+            scriptExecutionService.failPending(skipped,
+                    "Skipped: upstream step '" + step.getPipelineStep() + "' did not complete");
+        }
+    }
+
+    private void complete(PipelineRun run) {
+        PipelineExecution pipeline = run.pipeline;
+        List<String> failed = run.steps.values().stream()
+                .filter(step -> step.getStatus() != BatchExecution.ExecutionStatus.COMPLETED)
+                .map(BatchExecution::getPipelineStep)
+                .collect(Collectors.toList());
+
+        pipeline.setStatus(failed.isEmpty()
+                ? BatchExecution.ExecutionStatus.COMPLETED
+                : BatchExecution.ExecutionStatus.FAILED);
+        pipeline.setErrorMessage(failed.isEmpty() ? null : "Steps did not complete: " + String.join(", ", failed));
+        pipeline.setEndTime(LocalDateTime.now());
+        pipeline.setProgress(progress(run));
+        pipelineRepository.save(pipeline);
+        active.remove(pipeline.getId());
+
+        log.info("Pipeline {} finished with status {}", pipeline.getId(), pipeline.getStatus());
+        publish(run);
+    }
+
+    /** Pushes the aggregate progress of every running pipeline whose value moved. */
+    synchronized void publishProgress() {
+        try {
+            active.values().forEach(this::publish);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish pipeline progress", e);
+        }
+    }
+
+    private void publish(PipelineRun run) {
+        double progress = progress(run);
+        BatchExecution.ExecutionStatus status = run.pipeline.getStatus();
+        if (progress == run.publishedProgress && status == run.publishedStatus) {
+            return;
+        }
+        run.publishedProgress = progress;
+        run.publishedStatus = status;
+        run.pipeline.setProgress(progress);
+
+        webSocketService.sendPipelineProgress(ProgressUpdate.builder()
+                .pipelineId(run.pipeline.getId())
+                .progress(progress)
+                .status(status.name())
+                .totalSteps(run.steps.size())
+                .completedSteps(run.completed)
+                .failedSteps(run.finished.size() - run.completed)
+                .build());
+    }
+
+    /**
+     * Mean progress over all steps, counting finished steps as done. Steps not
+     * yet launched have made none, so only running ones are read.
+     */
+    private static double progress(PipelineRun run) {
+        double total = 100.0 * run.finished.size();
+        for (BatchExecution step : run.running.values()) {
+            if (step.getProgress() != null) {
+                total += step.getProgress();
+            }
+        }
+        return total / run.steps.size();
+    }
+
+    private static String resolveReferences(String parameters, PipelineRun run) {
+        if (parameters == null) {
+            return null;
+        }
+        Matcher matcher = STEP_REFERENCE.matcher(parameters);
+        StringBuilder resolved = new StringBuilder();
+        while (matcher.find()) {
+            BatchExecution upstream = run.steps.get(matcher.group(1));
+            Object value = "output".equals(matcher.group(2)) ? upstream.getOutputFilePath() : upstream.getId();
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(value == null ? "" : value.toString()));
+        }
+        matcher.appendTail(resolved);
+        return resolved.toString();
+    }
+
+    /**
+     * Checks the definition and returns each step's dependencies: its declared
+     * dependsOn plus every step its parameters reference.
+     */
+    static Map<String, Set<String>> dependencies(PipelineRequest request) {
+        if (request.getSteps() == null || request.getSteps().isEmpty()) {
+            throw new BatchExecutionException("A pipeline needs at least one step");
+        }
+        if (request.getMaxParallel() != null && request.getMaxParallel() < 1) {
+            throw new BatchExecutionException("maxParallel must be positive");
+        }
+
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        for (PipelineStep step : request.getSteps()) {
+            if (step.getId() == null || !STEP_ID.matcher(step.getId()).matches()) {
+                throw new BatchExecutionException("Invalid step id: " + step.getId());
+            }
+            if (step.getScriptName() == null || step.getScriptName().isBlank()) {
+                throw new BatchExecutionException("Step " + step.getId() + " has no script name");
+            }
+            Set<String> stepDependencies = new LinkedHashSet<>();
+            if (step.getDependsOn() != null) {
+                stepDependencies.addAll(step.getDependsOn());
+            }
+            if (step.getParameters() != null) {
+                Matcher matcher = STEP_REFERENCE.matcher(step.getParameters());
+                while (matcher.find()) {
+                    stepDependencies.add(matcher.group(1));
+                }
+            }
+            if (dependencies.put(step.getId(), stepDependencies) != null) {
+                throw new BatchExecutionException("Duplicate step id: " + step.getId());
+            }
+        }
+
+        dependencies.forEach((id, stepDependencies) -> {
+            for (String dependency : stepDependencies) {
+                if (dependency.equals(id)) {
+                    throw new BatchExecutionException("Step " + id + " depends on itself");
+                }
+                if (!dependencies.containsKey(dependency)) {
+                    throw new BatchExecutionException("Step " + id + " depends on unknown step " + dependency);
+                }
+            }
+        });
+        return dependencies;
+    }
+
+    /**
+     * Kahn's algorithm; ties keep declaration order so independent steps start
+     * in the order they were written.
+     */
+    static List<String> topologicalOrder(Map<String, Set<String>> dependencies) {
+        Map<String, Integer> waitingOn = new LinkedHashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        dependencies.forEach((id, stepDependencies) -> {
+            waitingOn.put(id, stepDependencies.size());
+            stepDependencies.forEach(dependency ->
+                    dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(id));
+        });
+
+        Deque<String> ready = new ArrayDeque<>();
+        waitingOn.forEach((id, count) -> {
+            if (count == 0) {
+                ready.add(id);
+            }
+        });
+
+        List<String> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String id = ready.poll();
+            order.add(id);
+            for (String dependent : dependents.getOrDefault(id, List.of())) {
+                if (waitingOn.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (order.size() < dependencies.size()) {
+            List<String> cyclic = waitingOn.entrySet().stream()
+                    .filter(entry -> entry.getValue() > 0)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            throw new BatchExecutionException("Pipeline steps form a cycle: " + String.join(", ", cyclic));
+        }
+        return order;
+    }
+
+    /** Scheduling state of a pipeline that still has steps to finish. */
+    private static final class PipelineRun {
+
+        private final PipelineExecution pipeline;
+        /** Steps by id, in topological order. */
+        private final Map<String, BatchExecution> steps = new LinkedHashMap<>();
+        /** Steps waiting on each step. */
+        private final Map<String, List<String>> dependents = new HashMap<>();
+        /** Number of dependencies each step still waits for. */
+        private final Map<String, Integer> waitingOn = new HashMap<>();
+        /** Steps whose dependencies have all completed, not yet launched; initially the roots in topological order. */
+        private final Deque<String> ready = new ArrayDeque<>();
+        private final int maxParallel;
+        private final Set<String> launched = new HashSet<>();
+        private final Set<String> finished = new HashSet<>();
+        /** Launched steps that have not finished, by id. */
+        private final Map<String, BatchExecution> running = new HashMap<>();
+        private int completed;
+        private double publishedProgress = -1;
+        private BatchExecution.ExecutionStatus publishedStatus;
+
+        private PipelineRun(PipelineExecution pipeline, List<BatchExecution> steps,
+                            Map<String, Set<String>> dependencies, int maxParallel) {
+            this.pipeline = pipeline;
+            this.maxParallel = maxParallel;
+            for (BatchExecution step : steps) {
+                String id = step.getPipelineStep();
+                this.steps.put(id, step);
+                waitingOn.put(id, dependencies.get(id).size());
+                dependencies.get(id).forEach(dependency ->
+                        dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(id));
+                if (dependencies.get(id).isEmpty()) {
+                    ready.add(id);
+                }
+            }
+        }
+    }
+}
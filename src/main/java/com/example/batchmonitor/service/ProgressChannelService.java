@@ -0,0 +1,270 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.util.ProcessStreamReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Progress side channel for scripts started with "progressChannel". Before
+ * such a script is spawned a named pipe is created for it under
+ * batch.execution.progressChannel.directory, and its path is passed in the
+ * BATCH_PROGRESS_PATH environment variable. The script writes one record per
+ * line to it, a percentage ("42.5" or "42.5%") or a ratio ("3/8"), e.g.
+ * {@code echo 3/8 > "$BATCH_PROGRESS_PATH"}. While the channel is open the
+ * script's stdout is not parsed for progress.
+ * <p>
+ * The monitor holds a write end of the pipe itself, so opening it never blocks
+ * the script and a script opening it for every record does not end the stream
+ * between records. That end is closed once the script exits, and the reader
+ * drains what is left. Named pipes are created with mkfifo; where that fails,
+ * and for scripts run in the warm pool, whose interpreters share one
+ * environment, the script runs without BATCH_PROGRESS_PATH and its progress is
+ * parsed from stdout as before.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProgressChannelService {
+
+    /** Environment variable holding the path of the script's progress channel. */
+    public static final String PATH_VARIABLE = "BATCH_PROGRESS_PATH";
+
+    private static final long MKFIFO_TIMEOUT_SECONDS = 5;
+
+    private final CpuPlacementService cpuPlacementService;
+
+    @Value("${batch.execution.progressChannel.enabled:true}")
+    private boolean enabled;
+
+    @Value("${batch.execution.progressChannel.directory:${java.io.tmpdir}/batch-progress}")
+    private String directory;
+
+    /** Open channels, by execution ID. */
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the execution asked for a progress channel and may have one.
+     */
+    public boolean isRequested(BatchExecution execution) {
+        return enabled && Boolean.TRUE.equals(execution.getProgressChannel());
+    }
+
+    /**
+     * Whether the execution's progress currently comes from its progress
+     * channel, so its stdout need not be parsed for it.
+     */
+    public boolean isOpen(BatchExecution execution) {
+        return Boolean.TRUE.equals(execution.getProgressChannel()) && channels.containsKey(execution.getId());
+    }
+
+    /**
+     * Creates the progress channel of an execution about to be spawned and
+     * starts reading it.
+     *
+     * @param execution The execution
+     * @param onProgress Receives each progress value read, in percent, when it differs from the previous one
+     * @return The open channel, or empty if the execution did not ask for one or it cannot be created
+     */
+    public Optional<Channel> open(BatchExecution execution, DoubleConsumer onProgress) {
+        if (!isRequested(execution)) {
+            return Optional.empty();
+        }
+        Path path = pathOf(execution.getId());
+        try {
+            Files.createDirectories(path.getParent());
+            Files.deleteIfExists(path);
+            mkfifo(path);
+            return Optional.of(connect(execution.getId(), path, onProgress));
+        } catch (IOException e) {
+            log.warn("No progress channel for execution {}, parsing its output for progress instead: {}",
+                    execution.getId(), e.getMessage());
+            deleteQuietly(path);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reopens the progress channel of a script that outlived the monitor
+     * instance that created it. Until then, a script opening the pipe waits
+     * for a reader.
+     *
+     * @return The open channel, or empty if the execution has none
+     */
+    public Optional<Channel> reopen(BatchExecution execution, DoubleConsumer onProgress) {
+        if (!isRequested(execution)) {
+            return Optional.empty();
+        }
+        Path path = pathOf(execution.getId());
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(connect(execution.getId(), path, onProgress));
+        } catch (IOException e) {
+            log.warn("Cannot reopen the progress channel of execution {}: {}", execution.getId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Parses a progress record.
+     *
+     * @return The progress in percent, or null if the record is not a percentage between 0 and 100 or a ratio
+     */
+    public static Double parseRecord(String record) {
+        String text = record.trim();
+        if (text.endsWith("%")) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        try {
+            double progress;
+            int slash = text.indexOf('/');
+            if (slash >= 0) {
+                double done = Double.parseDouble(text.substring(0, slash).trim());
+                double total = Double.parseDouble(text.substring(slash + 1).trim());
+                if (!(total > 0)) {
+                    return null;
+                }
+                progress = done / total * 100.0;
+            } else {
+                progress = Double.parseDouble(text);
+            }
+            return progress >= 0 && progress <= 100 ? progress : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    Path pathOf(Long executionId) {
+        return Paths.get(directory).toAbsolutePath().normalize().resolve("execution_" + executionId + ".progress");
+    }
+
+    private void mkfifo(Path path) throws IOException {
+        Process process = new ProcessBuilder(cpuPlacementService.wrapUnplaced(List.of("mkfifo", "-m", "600", path.toString())))
+                .redirectErrorStream(true)
+                .start();
+        try {
+            String output = new String(process.getInputStream().readAllBytes()).trim();
+            if (!process.waitFor(MKFIFO_TIMEOUT_SECONDS, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                process.destroyForcibly();
+                throw new IOException("mkfifo failed: " + output);
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating " + path, e);
+        }
+    }
+
+    private Channel connect(Long executionId, Path path, DoubleConsumer onProgress) throws IOException {
+        // Opening read-write does not wait for a writer, and the write end keeps the stream open between records
+        FileChannel writeEnd = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        InputStream input;
+        try {
+            input = Files.newInputStream(path);
+        } catch (IOException e) {
+            writeEnd.close();
+            throw e;
+        }
+        Channel channel = new Channel(executionId, path, writeEnd, input, onProgress);
+        channels.put(executionId, channel);
+        channel.reader.start();
+        return channel;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * The progress channel of one execution.
+     */
+    public class Channel implements AutoCloseable {
+
+        private final Long executionId;
+        private final Path path;
+        private final FileChannel writeEnd;
+        private final InputStream input;
+        private final ProcessStreamReader reader;
+        private Double last;
+
+        Channel(Long executionId, Path path, FileChannel writeEnd, InputStream input, DoubleConsumer onProgress) {
+            this.executionId = executionId;
+            this.path = path;
+            this.writeEnd = writeEnd;
+            this.input = input;
+            this.reader = new ProcessStreamReader(input, record -> {
+                Double progress = parseRecord(record);
+                if (progress == null) {
+                    log.debug("Ignoring progress record of execution {}: {}", executionId, record);
+                } else if (!progress.equals(last)) {
+                    last = progress;
+                    onProgress.accept(progress);
+                }
+            });
+        }
+
+        /**
+         * @return The path to pass to the script
+         */
+        public Path path() {
+            return path;
+        }
+
+        /**
+         * Closes the monitor's write end once the script has exited, and waits
+         * for the records still in the pipe to be read.
+         *
+         * @param timeoutMillis The maximum time to wait
+         * @return true if every record was read, false if the pipe is still open
+         *         (e.g. a background child of the script holds it)
+         */
+        public boolean finish(long timeoutMillis) throws InterruptedException {
+            closeQuietly(writeEnd);
+            return reader.waitFor(timeoutMillis);
+        }
+
+        /**
+         * Stops reading and removes the pipe. Closing the input also wakes a
+         * reader still waiting for a record.
+         */
+        @Override
+        public void close() {
+            channels.remove(executionId, this);
+            reader.stop();
+            closeQuietly(writeEnd);
+            closeQuietly(input);
+            deleteQuietly(path);
+        }
+
+        private void closeQuietly(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.debug("Could not close the progress channel of execution {}: {}", executionId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ResourceUsageSample;
+import com.example.batchmonitor.util.ResourceSampleBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Samples CPU time and resident memory of running script process trees.
+ * A single scheduled loop walks all registered processes; samples are kept in a
+ * per-execution ring buffer and pushed to WebSocket subscribers as they are taken.
+ * Runs confined to a cgroup are read from the group's counters instead, which
+ * also cover processes that left the tree.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResourceUsageSampler {
+
+    private static final Path PROC = Paths.get("/proc");
+
+    private final WebSocketService webSocketService;
+    private final CgroupLimiter cgroupLimiter;
+
+    @Value("${batch.execution.sampling.interval:1000}")
+    private long samplingIntervalMillis;
+
+    @Value("${batch.execution.sampling.capacity:3600}")
+    private int bufferCapacity;
+
+    @Value("${batch.execution.sampling.retainedExecutions:100}")
+    private int retainedExecutions;
+
+    private final Map<Long, ProcessHandle> liveProcesses = new ConcurrentHashMap<>();
+
+    private final Map<Long, ResourceSampleBuffer> buffers = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, ResourceSampleBuffer> eldest) {
+                    return size() > retainedExecutions && !liveProcesses.containsKey(eldest.getKey());
+                }
+            });
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resource-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sampleAll,
+                samplingIntervalMillis, samplingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts sampling the process tree rooted at the given handle.
+     *
+     * @param executionId The execution the process belongs to
+     * @param process The root process handle
+     */
+    public void register(Long executionId, ProcessHandle process) {
+        if (executionId == null || process == null) {
+            return;
+        }
+        buffers.put(executionId, new ResourceSampleBuffer(bufferCapacity));
+        liveProcesses.put(executionId, process);
+        sample(executionId, process);
+    }
+
+    /**
+     * Stops sampling an execution. Its buffered samples remain queryable.
+     *
+     * @param executionId The execution to stop sampling
+     */
+    public void unregister(Long executionId) {
+        if (executionId == null) {
+            return;
+        }
+        ProcessHandle process = liveProcesses.remove(executionId);
+        // A cgroup outlives its processes, so the run's final totals can still be read
+        if (process != null && cgroupLimiter.groupPath(executionId) != null) {
+            try {
+                sample(executionId, process);
+            } catch (Exception e) {
+                log.debug("Failed to take final sample for execution {}: {}", executionId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns all buffered samples for an execution, oldest first.
+     *
+     * @param executionId The execution ID
+     * @return The samples, or an empty list if none were recorded
+     */
+    public List<ResourceUsageSample> getSamples(Long executionId) {
+        ResourceSampleBuffer buffer = buffers.get(executionId);
+        return buffer != null ? buffer.toSamples(executionId) : List.of();
+    }
+
+    /**
+     * Takes one sample of every registered live process tree.
+     * Package-private so tests can drive the loop deterministically.
+     */
+    void sampleAll() {
+        liveProcesses.forEach((executionId, process) -> {
+            try {
+                if (process.isAlive()) {
+                    ResourceUsageSample sample = sample(executionId, process);
+                    if (sample != null) {
+                        webSocketService.sendResourceUsage(sample);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to sample resources for execution {}: {}", executionId, e.getMessage());
+            }
+        });
+    }
+
+    private ResourceUsageSample sample(Long executionId, ProcessHandle root) {
+        ResourceSampleBuffer buffer = buffers.get(executionId);
+        if (buffer == null) {
+            return null;
+        }
+
+        long cpuNanos = 0;
+        long rss = 0;
+        int count = 0;
+        Path cgroup = cgroupLimiter.groupPath(executionId);
+        if (cgroup != null) {
+            cpuNanos = CgroupLimiter.readKey(cgroup.resolve("cpu.stat"), "usage_usec") * 1000;
+            rss = CgroupLimiter.readValue(cgroup.resolve("memory.current"));
+            count = (int) CgroupLimiter.readValue(cgroup.resolve("pids.current"));
+        } else {
+            List<ProcessHandle> tree = Stream.concat(Stream.of(root), root.descendants()).toList();
+            for (ProcessHandle handle : tree) {
+                cpuNanos += handle.info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+                rss += readRssBytes(handle.pid());
+                count++;
+            }
+        }
+
+        buffer.add(System.currentTimeMillis(), cpuNanos, rss, count);
+        return buffer.latest(executionId);
+    }
+
+    /**
+     * Reads the resident set size of a process from /proc on Linux.
+     *
+     * @param pid The process ID
+     * @return The RSS in bytes, or 0 if unavailable on this platform
+     */
+    static long readRssBytes(long pid) {
+        Path status = PROC.resolve(Long.toString(pid)).resolve("status");
+        if (!Files.isReadable(status)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(status)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmRSS:")) {
+                    String[] parts = line.substring(6).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Unable to read RSS for pid {}: {}", pid, e.getMessage());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.repository.ExecutionLogRepository;
+import com.example.batchmonitor.repository.projection.ConsoleLine;
+import com.example.batchmonitor.util.ScriptUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Disk-backed cache of successful runs for scripts that declare themselves pure
+ * functions of their content, parameters and input files. An entry holds the
+ * output file and the console lines of the run; a hit replays them into a new
+ * execution that completes without spawning anything. Entries expire after
+ * batch.cache.ttlSeconds and the least recently used ones are evicted once the
+ * cache exceeds batch.cache.maxSizeMb.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResultCacheService {
+
+    static final String META_FILE = "meta.json";
+    static final String CONSOLE_FILE = "console.jsonl";
+    static final String OUTPUT_FILE = "output";
+
+    private static final int REPLAY_BATCH_SIZE = 500;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ExecutionLogRepository logRepository;
+    private final ConsoleOutputService consoleOutputService;
+    private final ScriptExecutionService scriptExecutionService;
+    private final MetricsService metricsService;
+
+    @Value("${batch.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${batch.cache.directory}")
+    private String cacheDirectory;
+
+    @Value("${batch.cache.ttlSeconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${batch.cache.maxSizeMb:512}")
+    private long maxSizeMb;
+
+    @Value("${batch.scripts.baseDir}")
+    private String baseScriptsDir;
+
+    /** Access-ordered, so iteration starts at the least recently used entry. */
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private Path root;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(cacheDirectory);
+        try {
+            Files.createDirectories(root);
+            List<Path> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+                for (Path dir : stream) {
+                    if (Files.isRegularFile(dir.resolve(META_FILE))) {
+                        entries.add(dir);
+                    } else {
+                        // Left over from an interrupted store
+                        FileSystemUtils.deleteRecursively(dir);
+                    }
+                }
+            }
+            // Hits touch the meta file, so its mtime restores the LRU order
+            entries.sort(Comparator.comparingLong(ResultCacheService::lastAccess));
+            synchronized (this) {
+                for (Path dir : entries) {
+                    try {
+                        Meta meta = JSON.readValue(dir.resolve(META_FILE).toFile(), Meta.class);
+                        put(dir.getFileName().toString(), new Entry(directorySize(dir), meta.createdAt()));
+                    } catch (IOException e) {
+                        log.warn("Dropping unreadable cache entry {}: {}", dir, e.getMessage());
+                        FileSystemUtils.deleteRecursively(dir);
+                    }
+                }
+                evict();
+            }
+            log.info("Result cache at {} holds {} entries ({} bytes)", root, index.size(), totalBytes);
+        } catch (IOException e) {
+            log.warn("Result cache disabled, unable to use {}: {}", root, e.getMessage());
+            root = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    /**
+     * Computes the cache key of a run: a SHA-256 over the script content, the
+     * parameters as the script will receive them and the content of every
+     * declared input file.
+     *
+     * @param scriptPath The resolved script path
+     * @param parameters The run parameters, may be null
+     * @param inputFiles Declared input files, relative to the scripts directory or absolute
+     * @return The key, or null if the script does not exist (the run will fail anyway)
+     * @throws BatchExecutionException If a declared input file cannot be read
+     */
+    public String cacheKey(String scriptPath, String parameters, List<String> inputFiles) {
+        Path script = Paths.get(scriptPath);
+        if (!Files.isRegularFile(script)) {
+            return null;
+        }
+        MessageDigest digest = ScriptUtils.newSha256();
+        try {
+            update(digest, "script", ScriptUtils.sha256(script));
+        } catch (IOException e) {
+            return null;
+        }
+        List<String> args = new ArrayList<>();
+        ScriptUtils.appendParameters(args, parameters);
+        update(digest, "parameters", String.join("\u0000", args));
+
+        TreeSet<String> inputs = new TreeSet<>();
+        if (inputFiles != null) {
+            inputFiles.forEach(name -> inputs.add(resolveInput(name).toString()));
+        }
+        for (String input : inputs) {
+            try {
+                update(digest, "input", input);
+                update(digest, "content", ScriptUtils.sha256(Paths.get(input)));
+            } catch (IOException e) {
+                throw new BatchExecutionException("Unable to read input file: " + input, e);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param key A key from {@link #cacheKey}
+     * @return The cached result, if present and not expired
+     */
+    public Optional<CachedResult> lookup(String key) {
+        if (!isEnabled() || key == null) {
+            return Optional.empty();
+        }
+        synchronized (this) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (isExpired(entry)) {
+                remove(key);
+                return Optional.empty();
+            }
+        }
+        Path dir = root.resolve(key);
+        try {
+            Files.setLastModifiedTime(dir.resolve(META_FILE), FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(new CachedResult(dir, JSON.readValue(dir.resolve(META_FILE).toFile(), Meta.class)));
+        } catch (IOException e) {
+            // Evicted concurrently or damaged
+            log.debug("Cache entry {} unavailable: {}", key, e.getMessage());
+            synchronized (this) {
+                remove(key);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Completes a new execution from a cached result: copies the output file,
+     * replays the console lines and marks the execution COMPLETED.
+     *
+     * @param execution The new, persisted execution
+     * @param cached The result returned by {@link #lookup}
+     * @return false if the entry could not be opened; the execution is untouched then
+     */
+    @Transactional
+    public boolean replay(BatchExecution execution, CachedResult cached) {
+        // Open both files first: once open they stay readable even if the entry is evicted
+        try (InputStream output = Files.newInputStream(cached.directory().resolve(OUTPUT_FILE));
+             BufferedReader console = Files.newBufferedReader(cached.directory().resolve(CONSOLE_FILE),
+                     StandardCharsets.UTF_8)) {
+            execution.setStartTime(LocalDateTime.now());
+            Path outputFile = scriptExecutionService.createLogFile(execution);
+            Files.copy(output, outputFile, StandardCopyOption.REPLACE_EXISTING);
+            execution.setOutputFilePath(outputFile.toString());
+            execution.setExitCode(cached.meta().exitCode());
+
+            List<ExecutionLog> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+            String line;
+            while ((line = console.readLine()) != null) {
+                Line cachedLine = JSON.readValue(line, Line.class);
+                batch.add(ExecutionLog.builder()
+                        .batchExecution(execution)
+                        .message(cachedLine.message())
+                        .timestamp(LocalDateTime.now())
+                        .logType(cachedLine.type())
+                        .build());
+                if (batch.size() == REPLAY_BATCH_SIZE) {
+                    saveLogs(execution, batch);
+                    batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+                }
+            }
+            saveLogs(execution, batch);
+        } catch (IOException e) {
+            log.warn("Unable to replay cached result for execution {}: {}", execution.getId(), e.getMessage());
+            return false;
+        }
+
+        consoleOutputService.logSystemMessage(execution,
+                "Result served from cache of execution " + cached.meta().sourceExecutionId());
+        scriptExecutionService.updateExecutionSuccess(execution);
+        return true;
+    }
+
+    /**
+     * Stores the result of a successful run. The key is recomputed first so a
+     * script or input that changed while the run was in progress is not cached.
+     *
+     * @param key The key computed when the run was submitted
+     * @param execution The completed execution
+     * @param inputFiles The declared input files
+     * @param output The content of the execution's output file
+     */
+    public void store(String key, BatchExecution execution, List<String> inputFiles, String output) {
+        if (!isEnabled() || key == null || execution.getExitCode() == null || execution.getExitCode() != 0) {
+            return;
+        }
+        if (!key.equals(cacheKey(execution.getScriptPath(), execution.getParameters(), inputFiles))) {
+            log.info("Not caching execution {}: script or inputs changed during the run", execution.getId());
+            return;
+        }
+        if (!consoleOutputService.isStored(execution)) {
+            // Caching now would replay a truncated console for the whole TTL
+            log.info("Not caching execution {}: its console output is still being stored", execution.getId());
+            return;
+        }
+
+        Path staging = root.resolve(key + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(staging);
+            Files.writeString(staging.resolve(OUTPUT_FILE), output == null ? "" : output, StandardCharsets.UTF_8);
+            List<ConsoleLine> lines = logRepository.findConsoleLines(execution.getId(),
+                    EnumSet.of(ExecutionLog.LogType.STDOUT, ExecutionLog.LogType.STDERR));
+            try (BufferedWriter writer = Files.newBufferedWriter(staging.resolve(CONSOLE_FILE), StandardCharsets.UTF_8)) {
+                for (ConsoleLine line : lines) {
+                    writer.write(JSON.writeValueAsString(new Line(line.logType(), line.message())));
+                    writer.newLine();
+                }
+            }
+            Meta meta = new Meta(execution.getScriptPath(), execution.getParameters(), execution.getId(),
+                    execution.getExitCode(), lines.size(), System.currentTimeMillis());
+            JSON.writeValue(staging.resolve(META_FILE).toFile(), meta);
+
+            long size = directorySize(staging);
+            if (size > maxBytes()) {
+                log.info("Not caching execution {}: {} bytes exceeds the cache size", execution.getId(), size);
+                FileSystemUtils.deleteRecursively(staging);
+                return;
+            }
+
+            synchronized (this) {
+                Path target = root.resolve(key);
+                remove(key);
+                move(staging, target);
+                put(key, new Entry(size, meta.createdAt()));
+                evict();
+            }
+            log.debug("Cached result of execution {} as {}", execution.getId(), key);
+        } catch (IOException e) {
+            log.warn("Unable to cache result of execution {}: {}", execution.getId(), e.getMessage());
+            try {
+                FileSystemUtils.deleteRecursively(staging);
+            } catch (IOException ignored) {
+                // Removed on the next start
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    private void saveLogs(BatchExecution execution, List<ExecutionLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        logRepository.saveAll(batch);
+        metricsService.recordLogPersist(execution.getScriptPath(), batch.size(), System.nanoTime() - start);
+    }
+
+    private Path resolveInput(String name) {
+        File file = new File(name);
+        if (!file.isAbsolute()) {
+            file = new File(baseScriptsDir, name);
+        }
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (!Files.isRegularFile(path)) {
+            throw new BatchExecutionException("Input file does not exist: " + name);
+        }
+        return path;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return ttlSeconds > 0 && System.currentTimeMillis() - entry.createdAt() > ttlSeconds * 1000;
+    }
+
+    private long maxBytes() {
+        return maxSizeMb * 1024 * 1024;
+    }
+
+    /** Caller holds the monitor. */
+    private void put(String key, Entry entry) {
+        index.put(key, entry);
+        totalBytes += entry.sizeBytes();
+    }
+
+    /** Caller holds the monitor. */
+    private void remove(String key) {
+        Entry entry = index.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.sizeBytes();
+        }
+        try {
+            FileSystemUtils.deleteRecursively(root.resolve(key));
+        } catch (IOException e) {
+            log.warn("Unable to delete cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    /** Drops expired entries, then least recently used ones until the cache fits. Caller holds the monitor. */
+    private void evict() {
+        List<String> victims = new ArrayList<>();
+        long remaining = totalBytes;
+        for (Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Entry> candidate = it.next();
+            if (isExpired(candidate.getValue()) || remaining > maxBytes()) {
+                victims.add(candidate.getKey());
+                remaining -= candidate.getValue().sizeBytes();
+            }
+        }
+        victims.forEach(this::remove);
+        if (!victims.isEmpty()) {
+            log.debug("Evicted {} cache entries, {} bytes remain", victims.size(), totalBytes);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+
+    private static void update(MessageDigest digest, String field, String value) {
+        digest.update(field.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private static long lastAccess(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir.resolve(META_FILE)).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A cache entry found by {@link #lookup}.
+     */
+    public record CachedResult(Path directory, Meta meta) {
+    }
+
+    /**
+     * Describes the run an entry was taken from; stored as meta.json.
+     */
+    public record Meta(String scriptPath, String parameters, Long sourceExecutionId,
+                       Integer exitCode, int lines, long createdAt) {
+    }
+
+    private record Line(ExecutionLog.LogType type, String message) {
+    }
+
+    private record Entry(long sizeBytes, long createdAt) {
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ScriptInfo;
+import com.example.batchmonitor.dto.ScriptPage;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.projection.ScriptRunStats;
+import com.example.batchmonitor.util.DirectoryWatcher;
+import com.example.batchmonitor.util.ScriptUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the scripts under batch.scripts.baseDir.
+ * The tree is walked once at startup and then maintained incrementally from
+ * {@link ScriptDirectoryMonitor} events. Checksums are computed on first access
+ * and dropped whenever the file changes; run statistics are read from the
+ * database for the scripts being returned only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScriptCatalogService {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private final ScriptDirectoryMonitor directoryMonitor;
+    private final BatchExecutionRepository executionRepository;
+
+    @Value("${batch.execution.logs.directory}")
+    private String logsDirectory;
+
+    private final NavigableMap<String, ScriptEntry> scripts = new ConcurrentSkipListMap<>();
+    private volatile Path root;
+    private volatile Path excludedLogs;
+
+    @PostConstruct
+    public void start() {
+        Path baseDir = directoryMonitor.getBaseDirectory();
+        if (baseDir == null) {
+            log.info("No scripts directory configured; script catalog is empty");
+            return;
+        }
+        root = baseDir.toAbsolutePath().normalize();
+        excludedLogs = Paths.get(logsDirectory).toAbsolutePath().normalize();
+        directoryMonitor.addListener(new DirectoryWatcher.Listener() {
+            @Override
+            public void onChange(Path path, WatchEvent.Kind<Path> kind) {
+                ScriptCatalogService.this.onChange(path, kind);
+            }
+
+            @Override
+            public void onOverflow() {
+                rescan();
+            }
+        });
+        rescan();
+        if (!directoryMonitor.isWatching()) {
+            log.warn("Scripts directory is not watched; the catalog only changes on refresh");
+        }
+    }
+
+    /**
+     * Rebuilds the index with a full walk of the scripts directory.
+     * Only needed at startup, after lost watch events, or when watching is disabled.
+     */
+    public void rescan() {
+        Path current = root;
+        if (current == null || !Files.isDirectory(current)) {
+            scripts.clear();
+            return;
+        }
+
+        long started = System.nanoTime();
+        Map<String, ScriptEntry> found = new HashMap<>();
+        try {
+            Files.walkFileTree(current, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(current) && isExcluded(dir)
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    ScriptEntry entry = toEntry(file, attrs);
+                    if (entry != null) {
+                        found.put(entry.name(), entry);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    log.debug("Skipping unreadable path {}: {}", file, exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to scan scripts directory {}: {}", current, e.getMessage());
+            return;
+        }
+
+        scripts.keySet().retainAll(found.keySet());
+        found.forEach((name, entry) -> scripts.merge(name, entry, ScriptCatalogService::keepChecksumIfUnchanged));
+        log.info("Indexed {} scripts under {} in {} ms",
+                scripts.size(), current, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Lists scripts in name order.
+     *
+     * @param query Case-insensitive substring of the script name, or null for all
+     * @param type Script type to filter on, or null for all
+     * @param page Zero-based page number
+     * @param size Page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return The requested page with the total number of matches
+     */
+    @Transactional(readOnly = true)
+    public ScriptPage listScripts(String query, ScriptInfo.ScriptType type, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        String needle = query == null || query.isBlank() ? null : query.toLowerCase(Locale.ROOT);
+
+        long skip = (long) pageNumber * pageSize;
+        long total = 0;
+        List<ScriptEntry> selected = new ArrayList<>(pageSize);
+        for (ScriptEntry entry : scripts.values()) {
+            if ((type != null && entry.type() != type)
+                    || (needle != null && !entry.name().toLowerCase(Locale.ROOT).contains(needle))) {
+                continue;
+            }
+            if (total >= skip && selected.size() < pageSize) {
+                selected.add(entry);
+            }
+            total++;
+        }
+
+        return ScriptPage.builder()
+                .page(pageNumber)
+                .size(pageSize)
+                .total(total)
+                .scripts(toScriptInfos(selected))
+                .build();
+    }
+
+    /**
+     * Returns a single script with its checksum and run statistics.
+     *
+     * @param name The script name relative to the scripts directory
+     * @return The script
+     * @throws BatchExecutionException If the catalog has no such script
+     */
+    @Transactional(readOnly = true)
+    public ScriptInfo getScript(String name) {
+        ScriptEntry entry = name != null ? scripts.get(normalizeName(name)) : null;
+        if (entry == null) {
+            throw new BatchExecutionException("Script not found: " + name);
+        }
+        return toScriptInfos(List.of(entry)).get(0);
+    }
+
+    /**
+     * @return The number of indexed scripts
+     */
+    public int size() {
+        return scripts.size();
+    }
+
+    void onChange(Path path, WatchEvent.Kind<Path> kind) {
+        Path current = root;
+        if (current == null || !path.startsWith(current) || path.equals(current)) {
+            return;
+        }
+        String name = toName(current.relativize(path));
+
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            scripts.remove(name);
+            // The path may have been a directory; drop everything that lived under it
+            scripts.subMap(name + "/", true, name + "/\uffff", true).clear();
+            return;
+        }
+        if (isExcluded(path)) {
+            return;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return;
+            }
+            ScriptEntry entry = toEntry(path, attrs);
+            if (entry != null) {
+                scripts.merge(entry.name(), entry, ScriptCatalogService::keepChecksumIfUnchanged);
+            }
+        } catch (NoSuchFileException e) {
+            scripts.remove(name);
+        } catch (IOException e) {
+            log.debug("Unable to read attributes of {}: {}", path, e.getMessage());
+        }
+    }
+
+    private List<ScriptInfo> toScriptInfos(List<ScriptEntry> entries) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        Map<String, ScriptEntry> byScriptPath = entries.stream()
+                .collect(Collectors.toMap(this::scriptPath, Function.identity(), (a, b) -> a));
+        Map<String, ScriptRunStats> stats = executionRepository.findRunStats(byScriptPath.keySet()).stream()
+                .collect(Collectors.toMap(ScriptRunStats::scriptPath, Function.identity(), (a, b) -> a));
+
+        List<ScriptInfo> infos = new ArrayList<>(entries.size());
+        for (ScriptEntry entry : entries) {
+            String scriptPath = scriptPath(entry);
+            ScriptInfo.ScriptInfoBuilder builder = ScriptInfo.builder()
+                    .name(entry.name())
+                    .scriptPath(scriptPath)
+                    .type(entry.type())
+                    .sizeBytes(entry.size())
+                    .lastModified(LocalDateTime.ofInstant(
+                            Instant.ofEpochMilli(entry.lastModifiedMillis()), ZoneId.systemDefault()))
+                    .checksum(entry.checksum());
+            ScriptRunStats run = stats.get(scriptPath);
+            if (run != null) {
+                builder.runCount(run.runCount())
+                        .lastExecutionId(run.lastExecutionId())
+                        .lastRunStartTime(run.lastStartTime())
+                        .lastRunEndTime(run.lastEndTime())
+                        .lastRunStatus(run.lastStatus())
+                        .lastExitCode(run.lastExitCode());
+            }
+            infos.add(builder.build());
+        }
+        return infos;
+    }
+
+    /**
+     * The script path as BatchExecutionService stores it for a script name,
+     * so catalog entries match execution records.
+     */
+    private String scriptPath(ScriptEntry entry) {
+        return new File(directoryMonitor.getBaseDirectory().toString(), entry.name()).getPath();
+    }
+
+    private ScriptEntry toEntry(Path file, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile() || isExcluded(file)) {
+            return null;
+        }
+        ScriptInfo.ScriptType type = ScriptInfo.ScriptType.fromFileName(file.getFileName().toString());
+        if (type == null) {
+            return null;
+        }
+        return new ScriptEntry(file, toName(root.relativize(file)), type,
+                attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    private boolean isExcluded(Path path) {
+        if (excludedLogs != null && path.startsWith(excludedLogs)) {
+            return true;
+        }
+        Path relative = root.relativize(path);
+        for (Path part : relative) {
+            if (part.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toName(Path relative) {
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    private static String normalizeName(String name) {
+        String normalized = Paths.get(name.replace('\\', '/')).normalize().toString();
+        return normalized.replace(File.separatorChar, '/');
+    }
+
+    private static ScriptEntry keepChecksumIfUnchanged(ScriptEntry existing, ScriptEntry updated) {
+        if (existing.size() == updated.size() && existing.lastModifiedMillis() == updated.lastModifiedMillis()) {
+            return existing;
+        }
+        return updated;
+    }
+
+    /**
+     * One indexed script. The checksum is computed lazily because most scripts
+     * are never looked at individually; entries are replaced when a file changes.
+     */
+    private static final class ScriptEntry {
+        private final Path path;
+        private final String name;
+        private final ScriptInfo.ScriptType type;
+        private final long size;
+        private final long lastModifiedMillis;
+        private volatile String checksum;
+
+        private ScriptEntry(Path path, String name, ScriptInfo.ScriptType type, long size, long lastModifiedMillis) {
+            this.path = path;
+            this.name = name;
+            this.type = type;
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+        }
+
+        String name() {
+            return name;
+        }
+
+        ScriptInfo.ScriptType type() {
+            return type;
+        }
+
+        long size() {
+            return size;
+        }
+
+        long lastModifiedMillis() {
+            return lastModifiedMillis;
+        }
+
+        String checksum() {
+            String value = checksum;
+            if (value == null) {
+                try {
+                    value = ScriptUtils.sha256(path);
+                    checksum = value;
+                } catch (IOException e) {
+                    log.debug("Unable to checksum {}: {}", path, e.getMessage());
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.util.DirectoryWatcher;
+import com.example.batchmonitor.util.ScriptUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the command used to launch a script.
+ * Interpreters are looked up on the PATH once at startup, and the resolved command
+ * for each script is cached keyed by its absolute path and modification time, so a
+ * launch costs at most one stat call. Scripts under the watched scripts directory are
+ * invalidated by {@link ScriptDirectoryMonitor} and need no stat call at all.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScriptCommandResolver {
+
+    private static final List<String> UNIX_INTERPRETERS = List.of("bash", "python3", "perl", "ruby");
+    private static final List<String> WINDOWS_INTERPRETERS = List.of("cmd.exe", "powershell.exe", "python", "wsl");
+
+    private final ScriptDirectoryMonitor directoryMonitor;
+
+    private final Map<Path, ResolvedCommand> commands = new ConcurrentHashMap<>();
+    private volatile Map<String, String> interpreters = Map.of();
+
+    @PostConstruct
+    public void start() {
+        discoverInterpreters(System.getenv("PATH"));
+        directoryMonitor.addListener(new DirectoryWatcher.Listener() {
+            @Override
+            public void onChange(Path path, WatchEvent.Kind<Path> kind) {
+                invalidate(path);
+            }
+
+            @Override
+            public void onOverflow() {
+                commands.clear();
+            }
+        });
+    }
+
+    /**
+     * Builds the command list to execute a script with the given parameters.
+     *
+     * @param scriptPath The path to the script file
+     * @param parameters The command-line parameters to pass to the script
+     * @return A new, mutable list of command parts suitable for ProcessBuilder
+     * @throws BatchExecutionException If the script does not exist
+     */
+    public List<String> resolve(String scriptPath, String parameters) {
+        Path path = Paths.get(scriptPath).toAbsolutePath().normalize();
+
+        ResolvedCommand resolved = commands.get(path);
+        if (resolved == null || !isCurrent(path, resolved)) {
+            // compute() serializes with invalidate() on the same key, so an event for a
+            // change made while resolving always removes the entry afterwards
+            resolved = commands.compute(path, (key, existing) ->
+                    existing != null && isCurrent(key, existing) ? existing : load(key));
+        }
+
+        List<String> command = new ArrayList<>(resolved.template().size() + 4);
+        command.addAll(resolved.template());
+        ScriptUtils.appendParameters(command, parameters);
+        return command;
+    }
+
+    /**
+     * Drops the cached command for a path and anything below it. An entry whose
+     * file still has the cached modification time is kept: the event was only a
+     * permission change, such as the one load() makes itself.
+     *
+     * @param path The changed file or directory
+     */
+    public void invalidate(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        if (commands.containsKey(normalized)) {
+            commands.computeIfPresent(normalized, (key, existing) -> unchanged(key, existing) ? existing : null);
+        } else if (Files.notExists(normalized)) {
+            // A deleted directory: drop every script that lived under it
+            commands.keySet().removeIf(key -> key.startsWith(normalized));
+        }
+    }
+
+    /**
+     * @return The discovered interpreters, by command name, with their absolute path
+     */
+    public Map<String, String> getInterpreters() {
+        return interpreters;
+    }
+
+    int cachedCommandCount() {
+        return commands.size();
+    }
+
+    /**
+     * Looks up the platform's interpreters on the given PATH.
+     * Package-private so tests can supply their own PATH.
+     */
+    void discoverInterpreters(String pathEnv) {
+        List<String> names = ScriptUtils.isWindowsSystem() ? WINDOWS_INTERPRETERS : UNIX_INTERPRETERS;
+        Map<String, String> found = new LinkedHashMap<>();
+        for (String name : names) {
+            Optional<Path> executable = findExecutable(name, pathEnv);
+            if (executable.isPresent()) {
+                found.put(name, executable.get().toString());
+            } else {
+                log.debug("Interpreter {} not found on PATH", name);
+            }
+        }
+        interpreters = Collections.unmodifiableMap(found);
+        commands.clear();
+        log.info("Discovered interpreters: {}", interpreters);
+    }
+
+    private boolean isCurrent(Path path, ResolvedCommand resolved) {
+        return directoryMonitor.covers(path) || unchanged(path, resolved);
+    }
+
+    private static boolean unchanged(Path path, ResolvedCommand resolved) {
+        try {
+            return Files.getLastModifiedTime(path).equals(resolved.lastModified());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private ResolvedCommand load(Path path) {
+        FileTime lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(path);
+        } catch (NoSuchFileException e) {
+            throw new BatchExecutionException("Script file does not exist: " + path);
+        } catch (IOException e) {
+            throw new BatchExecutionException("Unable to read script file: " + path, e);
+        }
+        ScriptUtils.ensureExecutable(path.toFile());
+
+        List<String> template = ScriptUtils.interpreterCommand(path.toString());
+        String interpreter = interpreters.get(template.get(0));
+        if (interpreter != null) {
+            template.set(0, interpreter);
+        }
+        log.debug("Resolved command for {}: {}", path, template);
+        return new ResolvedCommand(List.copyOf(template), lastModified);
+    }
+
+    static Optional<Path> findExecutable(String name, String pathEnv) {
+        if (pathEnv == null || pathEnv.isBlank()) {
+            return Optional.empty();
+        }
+        boolean addExe = ScriptUtils.isWindowsSystem() && !name.contains(".");
+        for (String dir : pathEnv.split(File.pathSeparator)) {
+            if (dir.isBlank()) {
+                continue;
+            }
+            Path candidate = Paths.get(dir, addExe ? name + ".exe" : name);
+            if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+                return Optional.of(candidate.toAbsolutePath());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private record ResolvedCommand(List<String> template, FileTime lastModified) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.util.DirectoryWatcher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Owns the single WatchService registration on batch.scripts.baseDir and fans
+ * its events out to interested services, so the tree is registered once no
+ * matter how many caches derive state from it.
+ */
+@Service
+@Slf4j
+public class ScriptDirectoryMonitor {
+
+    @Value("${batch.scripts.baseDir}")
+    private String baseScriptsDir;
+
+    @Value("${batch.scripts.watch:true}")
+    private boolean watchEnabled;
+
+    private final List<DirectoryWatcher.Listener> listeners = new CopyOnWriteArrayList<>();
+    private DirectoryWatcher watcher;
+
+    @PostConstruct
+    public void start() {
+        Path baseDir = getBaseDirectory();
+        if (!watchEnabled || baseDir == null) {
+            log.info("Script directory watching disabled");
+            return;
+        }
+        if (!Files.isDirectory(baseDir)) {
+            log.warn("Scripts directory {} does not exist; it will not be watched", baseDir);
+            return;
+        }
+        watcher = new DirectoryWatcher(baseDir, "script-directory-watcher", new DirectoryWatcher.Listener() {
+            @Override
+            public void onChange(Path path, WatchEvent.Kind<Path> kind) {
+                listeners.forEach(listener -> listener.onChange(path, kind));
+            }
+
+            @Override
+            public void onOverflow() {
+                listeners.forEach(DirectoryWatcher.Listener::onOverflow);
+            }
+        });
+        try {
+            watcher.start();
+        } catch (IOException e) {
+            log.warn("Unable to watch scripts directory {}: {}", baseDir, e.getMessage());
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Registers a listener for changes below the scripts directory.
+     * Listeners are called on the watcher thread and must not block.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(DirectoryWatcher.Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param path An absolute, normalized path
+     * @return true if changes to the path are currently being reported
+     */
+    public boolean covers(Path path) {
+        return watcher != null && watcher.covers(path);
+    }
+
+    /**
+     * @return true while the scripts directory is being watched
+     */
+    public boolean isWatching() {
+        return watcher != null && watcher.isRunning();
+    }
+
+    /**
+     * @return The configured scripts directory, or null if none is configured
+     */
+    public Path getBaseDirectory() {
+        if (baseScriptsDir == null || baseScriptsDir.isBlank()) {
+            return null;
+        }
+        return Paths.get(baseScriptsDir);
+    }
+}
@@ -3,10 +3,13 @@ package com.example.batchmonitor.service;
 import com.example.batchmonitor.dto.ProgressUpdate;
 import com.example.batchmonitor.entity.BatchExecution;
 import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.exception.ClaimLostException;
+import com.example.batchmonitor.exception.MemoryLimitExceededException;
 import com.example.batchmonitor.exception.ScriptExecutionException;
 import com.example.batchmonitor.repository.BatchExecutionRepository;
 import com.example.batchmonitor.util.ProcessStreamReader;
 import com.example.batchmonitor.util.ScriptUtils;
+import com.example.batchmonitor.util.WarmInterpreter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,17 +17,25 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Service responsible for executing batch scripts and monitoring their execution.
@@ -35,9 +46,18 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class ScriptExecutionService {
 
+    private static final long READER_DRAIN_TIMEOUT_MILLIS = 5000;
+
     private final BatchExecutionRepository executionRepository;
     private final ConsoleOutputService consoleOutputService;
     private final WebSocketService webSocketService;
+    private final ResourceUsageSampler resourceUsageSampler;
+    private final MetricsService metricsService;
+    private final ScriptCommandResolver scriptCommandResolver;
+    private final WarmPoolService warmPoolService;
+    private final CgroupLimiter cgroupLimiter;
+    private final CpuPlacementService cpuPlacementService;
+    private final ProgressChannelService progressChannelService;
 
     @Value("${batch.scripts.baseDir}")
     private String baseScriptsDir;
@@ -53,6 +73,9 @@ public class ScriptExecutionService {
 
     private final ExecutorService executor = Executors.newCachedThreadPool();
 
+    /** Script processes of running executions, by execution ID, so a run can be stopped from outside its thread. */
+    private final Map<Long, ProcessHandle> processes = new ConcurrentHashMap<>();
+
     /**
      * Executes a batch script asynchronously.
      * Updates the execution status, captures output, and monitors progress.
@@ -66,9 +89,19 @@ public class ScriptExecutionService {
                 execution.getScriptPath(), execution.getParameters());
 
         // Update execution status to RUNNING
+        LocalDateTime startTime = LocalDateTime.now();
+        if (execution.getNodeId() != null
+                && executionRepository.startClaimed(execution.getId(), execution.getNodeId(), startTime) == 0) {
+            // The lease lapsed while the run waited here, and another node has requeued or failed it
+            throw new ClaimLostException("Execution " + execution.getId() + " is no longer held by node "
+                    + execution.getNodeId());
+        }
+        metricsService.statusChanged(execution.getStatus(), BatchExecution.ExecutionStatus.RUNNING);
         execution.setStatus(BatchExecution.ExecutionStatus.RUNNING);
-        execution.setStartTime(LocalDateTime.now());
-        executionRepository.save(execution);
+        execution.setStartTime(startTime);
+        if (execution.getNodeId() == null) {
+            executionRepository.save(execution);
+        }
 
         // Notify clients about status change
         webSocketService.sendStatusUpdate(execution.getId(), execution.getStatus().name());
@@ -77,70 +110,134 @@ public class ScriptExecutionService {
             Process process = null;
             ProcessStreamReader stdoutReader = null;
             ProcessStreamReader stderrReader = null;
+            CgroupLimiter.Group cgroup = null;
+            CpuPlacementService.Placement placement = null;
+            ProgressChannelService.Channel progressChannel = null;
 
             try {
                 // Create temp file for output if needed
                 Path outputFile = createLogFile(execution);
                 execution.setOutputFilePath(outputFile.toString());
-                executionRepository.save(execution);
+                boolean warm = warmPoolService.supports(execution.getScriptPath());
+                if (!warm) {
+                    placement = cpuPlacementService.acquire(execution).orElse(null);
+                    if (placement != null) {
+                        execution.setCpuSet(placement.cpuSet());
+                    }
+                }
+                if (execution.getNodeId() == null) {
+                    executionRepository.save(execution);
+                } else {
+                    executionRepository.recordClaimedLaunch(execution.getId(), execution.getNodeId(),
+                            execution.getOutputFilePath(), execution.getCpuSet());
+                }
 
-                // Prepare command
-                List<String> command = ScriptUtils.buildCommand(
-                        execution.getScriptPath(), execution.getParameters());
+                int exitCode;
+                if (warm) {
+                    exitCode = runInWarmPool(execution);
+                } else {
+                    // Prepare command
+                    List<String> command = scriptCommandResolver.resolve(
+                            execution.getScriptPath(), execution.getParameters());
+                    if (placement != null) {
+                        command = cpuPlacementService.wrap(placement, command);
+                    }
+                    cgroup = cgroupLimiter.create(execution).orElse(null);
+                    if (cgroup != null) {
+                        command = cgroupLimiter.wrap(cgroup, command);
+                    }
 
-                log.debug("Executing command: {}", String.join(" ", command));
+                    log.debug("Executing command: {}", String.join(" ", command));
 
-                // Start process
-                ProcessBuilder processBuilder = createProcessBuilder(command);
-                processBuilder.directory(new File(baseScriptsDir));
+                    // Start process
+                    ProcessBuilder processBuilder = createProcessBuilder(command);
+                    processBuilder.directory(new File(baseScriptsDir));
+                    progressChannel = progressChannelService.open(execution,
+                            progress -> consoleOutputService.processProgress(execution, progress)).orElse(null);
+                    if (progressChannel != null) {
+                        processBuilder.environment().put(ProgressChannelService.PATH_VARIABLE,
+                                progressChannel.path().toString());
+                    }
 
-                process = processBuilder.start();
+                    long spawnStart = System.nanoTime();
+                    process = processBuilder.start();
+                    metricsService.recordSpawn(execution.getScriptPath(), System.nanoTime() - spawnStart);
+                    ProcessHandle handle = process.toHandle();
+                    recordProcess(execution, handle);
+                    if (handle != null) {
+                        processes.put(execution.getId(), handle);
+                    }
+                    resourceUsageSampler.register(execution.getId(), handle);
 
-                // Set up process output readers
-                stdoutReader = new ProcessStreamReader(
-                        process.getInputStream(),
-                        line -> consoleOutputService.processStandardOutput(execution, line));
+                    // Set up process output readers
+                    stdoutReader = new ProcessStreamReader(
+                            process.getInputStream(),
+                            line -> consoleOutputService.processStandardOutput(execution, line));
 
-                stderrReader = new ProcessStreamReader(
-                        process.getErrorStream(),
-                        line -> consoleOutputService.processErrorOutput(execution, line));
+                    stderrReader = new ProcessStreamReader(
+                            process.getErrorStream(),
+                            line -> consoleOutputService.processErrorOutput(execution, line));
 
-                // Start readers
-                stdoutReader.start();
-                stderrReader.start();
+                    // Start readers
+                    stdoutReader.start();
+                    stderrReader.start();
 
-                // Wait for process to complete with timeout
-                boolean completed = process.waitFor(executionTimeoutSeconds, TimeUnit.SECONDS);
+                    // Wait for process to complete with timeout
+                    boolean completed = process.waitFor(executionTimeoutSeconds, TimeUnit.SECONDS);
 
-                if (!completed) {
-                    process.destroyForcibly();
-                    throw new BatchExecutionException("Script execution timed out after "
-                            + executionTimeoutSeconds + " seconds");
-                }
+                    if (!completed) {
+                        process.destroyForcibly();
+                        throw new BatchExecutionException("Script execution timed out after "
+                                + executionTimeoutSeconds + " seconds");
+                    }
 
-                // Wait for readers to finish to ensure all output is processed
-                if (stdoutReader != null) {
-                    stdoutReader.stop();
-                    try {
-                        stdoutReader.waitFor();
-                    } catch (InterruptedException e) {
-                        log.warn("Interrupted while waiting for stdout reader to finish", e);
-                        Thread.currentThread().interrupt();
+                    // Let the readers drain to end of stream so trailing lines are not lost
+                    if (stdoutReader != null) {
+                        try {
+                            if (!stdoutReader.waitFor(READER_DRAIN_TIMEOUT_MILLIS)) {
+                                log.warn("stdout of execution {} still open after exit, output may be incomplete",
+                                        execution.getId());
+                            }
+                            stdoutReader.stop();
+                        } catch (InterruptedException e) {
+                            log.warn("Interrupted while waiting for stdout reader to finish", e);
+                            Thread.currentThread().interrupt();
+                        }
                     }
-                }
 
-                if (stderrReader != null) {
-                    stderrReader.stop();
-                    try {
-                        stderrReader.waitFor();
-                    } catch (InterruptedException e) {
-                        log.warn("Interrupted while waiting for stderr reader to finish", e);
-                        Thread.currentThread().interrupt();
+                    if (stderrReader != null) {
+                        try {
+                            if (!stderrReader.waitFor(READER_DRAIN_TIMEOUT_MILLIS)) {
+                                log.warn("stderr of execution {} still open after exit, output may be incomplete",
+                                        execution.getId());
+                            }
+                            stderrReader.stop();
+                        } catch (InterruptedException e) {
+                            log.warn("Interrupted while waiting for stderr reader to finish", e);
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    if (progressChannel != null) {
+                        try {
+                            if (!progressChannel.finish(READER_DRAIN_TIMEOUT_MILLIS)) {
+                                log.warn("Progress channel of execution {} still open after exit, progress may be incomplete",
+                                        execution.getId());
+                            }
+                        } catch (InterruptedException e) {
+                            log.warn("Interrupted while waiting for progress channel to drain", e);
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    exitCode = process.exitValue();
+                    if (exitCode != 0 && cgroup != null && cgroupLimiter.oomKilled(cgroup)) {
+                        throw new MemoryLimitExceededException("Script was killed for exceeding its memory limit of "
+                                + cgroup.limits().memoryBytes() + " bytes", exitCode);
                     }
                 }
 
                 // Check exit code
-                int exitCode = process.exitValue();
                 execution.setExitCode(exitCode);
 
                 if (exitCode != 0) {
@@ -157,6 +254,12 @@ public class ScriptExecutionService {
 
                 return result;
 
+            } catch (ClaimLostException ex) {
+                throw ex;
+            } catch (MemoryLimitExceededException ex) {
+                updateExecutionFailure(execution, BatchExecution.ExecutionStatus.OOM_KILLED,
+                        ex.getMessage(), ex.getExitCode());
+                throw ex;
             } catch (ScriptExecutionException ex) {
                 updateExecutionFailure(execution, ex.getMessage(), ex.getExitCode());
                 throw ex;
@@ -171,19 +274,204 @@ public class ScriptExecutionService {
                 throw new BatchExecutionException(errorMsg, ex);
             } finally {
                 // Ensure process and readers are closed
+                processes.remove(execution.getId());
+                resourceUsageSampler.unregister(execution.getId());
                 if (process != null) {
                     process.destroyForcibly();
                 }
+                if (cgroup != null) {
+                    cgroupLimiter.release(cgroup);
+                }
+                if (placement != null) {
+                    cpuPlacementService.release(placement);
+                }
                 if (stdoutReader != null) {
                     stdoutReader.stop();
                 }
                 if (stderrReader != null) {
                     stderrReader.stop();
                 }
+                if (progressChannel != null) {
+                    progressChannel.close();
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Takes over a script process that outlived the monitor instance that
+     * started it. Its stdout and stderr pipes lost their reader with the old
+     * JVM, so they are reopened through /proc (Linux only); lines the script
+     * wrote in between are lost, and if the pipes cannot be reopened the run is
+     * only watched. Its progress channel, if it has one, is reopened too, and
+     * its cgroup and CPU placement are taken back, so its limits, OOM detection
+     * and cleanup work as for a run started here. The remaining part of the
+     * timeout still applies. The exit code of a process that is not our child
+     * cannot be read, so the run ends as FAILED with a message saying so rather
+     * than claiming a success.
+     *
+     * @param execution The RUNNING execution the process belongs to
+     * @param process The surviving script process
+     * @return Completes once the process has exited and the execution is updated
+     */
+    public CompletableFuture<Void> reattach(BatchExecution execution, ProcessHandle process) {
+        log.info("Re-attaching to execution {} (pid {})", execution.getId(), process.pid());
+        metricsService.statusChanged(null, BatchExecution.ExecutionStatus.RUNNING);
+        // Adopted right away, before startup reconciliation removes the groups nobody claimed
+        CgroupLimiter.Group cgroup = cgroupLimiter.adopt(execution).orElse(null);
+        CpuPlacementService.Placement placement = cpuPlacementService.adopt(execution, process).orElse(null);
+        return CompletableFuture.runAsync(() -> {
+            ProcessStreamReader stdoutReader = openOutput(process, 1,
+                    line -> consoleOutputService.processStandardOutput(execution, line));
+            ProcessStreamReader stderrReader = openOutput(process, 2,
+                    line -> consoleOutputService.processErrorOutput(execution, line));
+            ProgressChannelService.Channel progressChannel = progressChannelService.reopen(execution,
+                    progress -> consoleOutputService.processProgress(execution, progress)).orElse(null);
+            processes.put(execution.getId(), process);
+            resourceUsageSampler.register(execution.getId(), process);
+            consoleOutputService.logSystemMessage(execution, "Re-attached to process " + process.pid()
+                    + " after a restart; output " + (stdoutReader != null ? "is followed again" : "cannot be followed"));
+            try {
+                LocalDateTime startTime = execution.getStartTime() != null ? execution.getStartTime() : LocalDateTime.now();
+                long remainingMillis = Duration.between(LocalDateTime.now(),
+                        startTime.plusSeconds(executionTimeoutSeconds)).toMillis();
+                try {
+                    process.onExit().get(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    process.destroyForcibly();
+                    updateExecutionFailure(execution, "Script execution timed out after "
+                            + executionTimeoutSeconds + " seconds", null);
+                    return;
+                }
+                for (ProcessStreamReader reader : new ProcessStreamReader[]{stdoutReader, stderrReader}) {
+                    if (reader != null && !reader.waitFor(READER_DRAIN_TIMEOUT_MILLIS)) {
+                        log.warn("Output of re-attached execution {} still open after exit", execution.getId());
+                    }
+                }
+                if (progressChannel != null && !progressChannel.finish(READER_DRAIN_TIMEOUT_MILLIS)) {
+                    log.warn("Progress channel of re-attached execution {} still open after exit", execution.getId());
+                }
+                if (cgroup != null && cgroupLimiter.oomKilled(cgroup)) {
+                    updateExecutionFailure(execution, BatchExecution.ExecutionStatus.OOM_KILLED,
+                            "Script was killed for exceeding its memory limit of "
+                                    + cgroup.limits().memoryBytes() + " bytes", null);
+                    return;
+                }
+                updateExecutionFailure(execution, "Exit code unknown: the script finished after the monitor "
+                        + "restarted and re-attached to it", null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                updateExecutionFailure(execution, "Lost track of re-attached process: " + e.getMessage(), null);
+            } finally {
+                processes.remove(execution.getId());
+                resourceUsageSampler.unregister(execution.getId());
+                if (cgroup != null) {
+                    cgroupLimiter.release(cgroup);
+                }
+                if (placement != null) {
+                    cpuPlacementService.release(placement);
+                }
+                if (stdoutReader != null) {
+                    stdoutReader.stop();
+                }
+                if (stderrReader != null) {
+                    stderrReader.stop();
+                }
+                if (progressChannel != null) {
+                    progressChannel.close();
+                }
             }
         }, executor);
     }
 
+    /**
+     * Kills the script of a running execution and everything it started,
+     * e.g. because this node lost its claim on the run. The run's own thread
+     * then ends it as usual.
+     *
+     * @param executionId The execution to stop
+     * @return false if no script of that execution runs here
+     */
+    public boolean stop(Long executionId) {
+        ProcessHandle process = processes.get(executionId);
+        if (process == null) {
+            return false;
+        }
+        log.warn("Stopping execution {} (pid {})", executionId, process.pid());
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        return true;
+    }
+
+    /**
+     * Opens the read side of a pipe a running process writes to, as seen in
+     * /proc/&lt;pid&gt;/fd, and starts reading it.
+     *
+     * @return The started reader, or null if the descriptor is not a pipe or cannot be opened
+     */
+    ProcessStreamReader openOutput(ProcessHandle process, int fd, Consumer<String> consumer) {
+        Path path = Paths.get("/proc", Long.toString(process.pid()), "fd", Integer.toString(fd));
+        try {
+            if (!Files.readSymbolicLink(path).toString().startsWith("pipe:")) {
+                return null;
+            }
+            ProcessStreamReader reader = new ProcessStreamReader(new FileInputStream(path.toFile()), consumer);
+            reader.start();
+            return reader;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            log.debug("Cannot reopen fd {} of pid {}: {}", fd, process.pid(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Persists the pid and start time of a freshly started script process.
+     */
+    private void recordProcess(BatchExecution execution, ProcessHandle process) {
+        if (process == null) {
+            return;
+        }
+        LocalDateTime startedAt = process.info().startInstant()
+                .map(instant -> LocalDateTime.ofInstant(instant, ZoneId.systemDefault()))
+                .orElse(null);
+        execution.setPid(process.pid());
+        execution.setProcessStartedAt(startedAt);
+        executionRepository.recordProcess(execution.getId(), process.pid(), startedAt);
+    }
+
+    /**
+     * Runs a .py script on a pre-started interpreter from the warm pool. Output is
+     * routed through ConsoleOutputService exactly like a spawned process's.
+     *
+     * @param execution The batch execution entity
+     * @return The script's exit code
+     */
+    private int runInWarmPool(BatchExecution execution) throws IOException, InterruptedException {
+        long spawnStart = System.nanoTime();
+        WarmInterpreter.Job job = warmPoolService.submit(
+                execution.getScriptPath(),
+                execution.getParameters(),
+                new File(baseScriptsDir),
+                line -> consoleOutputService.processStandardOutput(execution, line),
+                line -> consoleOutputService.processErrorOutput(execution, line));
+        try {
+            job.toHandle(executionTimeoutSeconds, TimeUnit.SECONDS).ifPresent(handle -> {
+                metricsService.recordSpawn(execution.getScriptPath(), System.nanoTime() - spawnStart);
+                processes.put(execution.getId(), handle);
+                resourceUsageSampler.register(execution.getId(), handle);
+            });
+
+            if (!job.waitFor(executionTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new BatchExecutionException("Script execution timed out after "
+                        + executionTimeoutSeconds + " seconds");
+            }
+            return job.exitValue();
+        } finally {
+            job.destroyForcibly();
+        }
+    }
+
     /**
      * Creates a ProcessBuilder for the given command.
      * Extracted as a method to allow mocking in tests.
@@ -223,13 +511,21 @@ public class ScriptExecutionService {
      * Updates the execution status to successful completion.
      *
      * @param execution The batch execution entity to update
+     * @throws ClaimLostException If the run was claimed in a cluster and this node no longer holds it
      */
     @Transactional
     public void updateExecutionSuccess(BatchExecution execution) {
+        consoleOutputService.awaitDelivered(execution);
+        BatchExecution.ExecutionStatus previous = execution.getStatus();
         execution.setStatus(BatchExecution.ExecutionStatus.COMPLETED);
         execution.setEndTime(LocalDateTime.now());
         execution.setProgress(100.0);
-        executionRepository.save(execution);
+        if (!saveOutcome(execution)) {
+            metricsService.statusChanged(previous, null);
+            throw new ClaimLostException("Execution " + execution.getId() + " is no longer held by node "
+                    + execution.getNodeId() + "; its outcome was discarded");
+        }
+        metricsService.statusChanged(previous, BatchExecution.ExecutionStatus.COMPLETED);
 
         // Log system message
         consoleOutputService.logSystemMessage(execution, "Script execution completed successfully");
@@ -239,6 +535,7 @@ public class ScriptExecutionService {
         webSocketService.sendProgressUpdate(
                 ProgressUpdate.builder()
                         .executionId(execution.getId())
+                        .pipelineId(execution.getPipelineId())
                         .progress(100.0)
                         .status(execution.getStatus().name())
                         .build()
@@ -251,16 +548,42 @@ public class ScriptExecutionService {
      * @param execution The batch execution entity to update
      * @param errorMessage The error message to set
      * @param exitCode The exit code to set (may be null)
+     * @throws ClaimLostException If the run was claimed in a cluster and this node no longer holds it
      */
     @Transactional
     public void updateExecutionFailure(BatchExecution execution, String errorMessage, Integer exitCode) {
-        execution.setStatus(BatchExecution.ExecutionStatus.FAILED);
+        updateExecutionFailure(execution, BatchExecution.ExecutionStatus.FAILED, errorMessage, exitCode);
+    }
+
+    /**
+     * Updates the execution to a terminal failure status.
+     *
+     * @param execution The batch execution entity to update
+     * @param status The failure status, e.g. FAILED or OOM_KILLED
+     * @param errorMessage The error message to set
+     * @param exitCode The exit code to set (may be null)
+     * @throws ClaimLostException If the run was claimed in a cluster and this node no longer holds it
+     */
+    @Transactional
+    public void updateExecutionFailure(BatchExecution execution, BatchExecution.ExecutionStatus status,
+                                       String errorMessage, Integer exitCode) {
+        if (execution.getStartTime() != null) {
+            // A run that never started, such as a skipped pipeline step, has no output to wait for
+            consoleOutputService.awaitDelivered(execution);
+        }
+        BatchExecution.ExecutionStatus previous = execution.getStatus();
+        execution.setStatus(status);
         execution.setEndTime(LocalDateTime.now());
         execution.setErrorMessage(errorMessage);
         if (exitCode != null) {
             execution.setExitCode(exitCode);
         }
-        executionRepository.save(execution);
+        if (!saveOutcome(execution)) {
+            metricsService.statusChanged(previous, null);
+            throw new ClaimLostException("Execution " + execution.getId() + " is no longer held by node "
+                    + execution.getNodeId() + "; its outcome was discarded");
+        }
+        metricsService.statusChanged(previous, status);
 
         // Log system message
         consoleOutputService.logSystemMessage(execution, "Script execution failed: " + errorMessage);
@@ -268,4 +591,49 @@ public class ScriptExecutionService {
         // Notify clients
         webSocketService.sendStatusUpdate(execution.getId(), execution.getStatus().name());
     }
+
+    /**
+     * Fails runs that never started, such as the pipeline steps downstream of
+     * a failed step, with one update for all of them. A run whose status moved
+     * on from PENDING meanwhile keeps it in the database.
+     *
+     * @param executions The PENDING executions to fail
+     * @param errorMessage The error message to set on each
+     */
+    @Transactional
+    public void failPending(List<BatchExecution> executions, String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        executionRepository.failUnfinished(executions.stream().map(BatchExecution::getId).toList(),
+                BatchExecution.ExecutionStatus.PENDING, now, errorMessage);
+        for (BatchExecution execution : executions) {
+            metricsService.statusChanged(execution.getStatus(), BatchExecution.ExecutionStatus.FAILED);
+            execution.setStatus(BatchExecution.ExecutionStatus.FAILED);
+            execution.setEndTime(now);
+            execution.setErrorMessage(errorMessage);
+            consoleOutputService.logSystemMessage(execution, "Script execution failed: " + errorMessage);
+            webSocketService.sendStatusUpdate(execution.getId(), execution.getStatus().name());
+        }
+    }
+
+    /**
+     * Persists the outcome of a run. A run claimed in a cluster is only
+     * finished while this node still holds it: once its lease lapsed another
+     * node has requeued or failed it, and that outcome stands.
+     *
+     * @return false if the run was no longer this node's to finish; the callers then throw ClaimLostException
+     */
+    private boolean saveOutcome(BatchExecution execution) {
+        if (execution.getNodeId() == null) {
+            executionRepository.save(execution);
+            return true;
+        }
+        if (executionRepository.finishClaimed(execution.getId(), execution.getNodeId(), execution.getStatus(),
+                execution.getEndTime(), execution.getProgress(), execution.getExitCode(),
+                execution.getErrorMessage()) == 1) {
+            return true;
+        }
+        log.warn("Node {} no longer holds execution {}; discarding its outcome {}",
+                execution.getNodeId(), execution.getId(), execution.getStatus());
+        return false;
+    }
 }
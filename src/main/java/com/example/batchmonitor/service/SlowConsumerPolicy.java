@@ -0,0 +1,284 @@
+package com.example.batchmonitor.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps slow WebSocket clients connected by sending them less console output.
+ * Spring closes a session whose pending output passes
+ * batch.websocket.transport.sendBufferSizeLimit or whose send takes longer
+ * than sendTimeLimit. Before it gets there, a session counts as slow when
+ * more than batch.websocket.slowConsumer.backlog bytes wait for it or a
+ * socket write to it has been blocked for threshold ms. Until neither has
+ * happened for recovery ms it gets at most one console message per
+ * subscription every sampleInterval ms, while status, progress and other
+ * events still reach it in full. The first console message after a gap
+ * carries a "skipped" header with the number of messages withheld, and the
+ * complete output stays available from the console API.
+ * <p>
+ * Sessions are watched through {@link #decorate(WebSocketHandler)}, which
+ * WebSocketConfig installs around the STOMP handler, and thinned out by this
+ * interceptor on the client outbound channel. A message counts as waiting
+ * from the moment it passes the interceptor until its socket write returns.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlowConsumerPolicy implements ChannelInterceptor {
+
+    /** STOMP header telling a client how many console messages it missed. */
+    public static final String SKIPPED_HEADER = "skipped";
+
+    private final MetricsService metricsService;
+
+    @Value("${batch.websocket.slowConsumer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${batch.websocket.slowConsumer.backlog:262144}")
+    private long backlogBytes;
+
+    @Value("${batch.websocket.slowConsumer.threshold:1000}")
+    private long thresholdMillis;
+
+    @Value("${batch.websocket.slowConsumer.sampleInterval:1000}")
+    private long sampleIntervalMillis;
+
+    @Value("${batch.websocket.slowConsumer.recovery:10000}")
+    private long recoveryMillis;
+
+    @Value("${batch.websocket.topic.console}")
+    private String consoleTopic;
+
+    @Value("${batch.websocket.topic.consoleBinary}")
+    private String consoleBinaryTopic;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (backlogBytes <= 0 || thresholdMillis <= 0 || sampleIntervalMillis <= 0 || recoveryMillis <= 0) {
+            throw new IllegalArgumentException(
+                    "batch.websocket.slowConsumer backlog, threshold, sampleInterval and recovery must be positive");
+        }
+        metricsService.registerSlowSessions(this::slowSessions);
+    }
+
+    /**
+     * Wraps the STOMP handler so that the time each session spends in a socket write is known.
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionState state = new SessionState();
+                sessions.put(session.getId(), state);
+                super.afterConnectionEstablished(new TimedSession(session, state));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SessionState state = sessions.remove(session.getId());
+                if (state != null && state.slowSince != 0) {
+                    log.info("Slow WebSocket session {} closed: {}", session.getId(), closeStatus);
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionState state = sessionId == null ? null : sessions.get(sessionId);
+        if (state == null) {
+            return message;
+        }
+        Message<?> outgoing = SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+                && isConsole(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                ? sample(message, sessionId, state)
+                : message;
+        if (outgoing != null) {
+            state.queued(outgoing.getPayload() instanceof byte[] payload ? payload.length : 0);
+        }
+        return outgoing;
+    }
+
+    /**
+     * @return The console message to send, with the count of messages skipped before it if any, or null to skip it
+     */
+    private Message<?> sample(Message<?> message, String sessionId, SessionState state) {
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        long now = System.nanoTime();
+        long skipped;
+        if (isSlow(sessionId, state, now)) {
+            Sample sample = state.samples.computeIfAbsent(String.valueOf(subscriptionId), id -> new Sample());
+            synchronized (sample) {
+                if (sample.lastSent != 0 && now - sample.lastSent < TimeUnit.MILLISECONDS.toNanos(sampleIntervalMillis)) {
+                    sample.skipped++;
+                    metricsService.recordSampledOut();
+                    return null;
+                }
+                sample.lastSent = now;
+                skipped = sample.skipped;
+                sample.skipped = 0;
+            }
+        } else {
+            Sample sample = state.samples.remove(String.valueOf(subscriptionId));
+            if (sample == null) {
+                return message;
+            }
+            synchronized (sample) {
+                skipped = sample.skipped;
+            }
+        }
+        if (skipped == 0) {
+            return message;
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(message);
+        headers.setNativeHeader(SKIPPED_HEADER, String.valueOf(skipped));
+        return MessageBuilder.createMessage(message.getPayload(), headers.getMessageHeaders());
+    }
+
+    /**
+     * Whether the session's backlog or a write to it, including the write in
+     * progress, went past its limit within the recovery period.
+     */
+    private boolean isSlow(String sessionId, SessionState state, long now) {
+        long sendingSince = state.sendingSince;
+        if (state.pendingBytes.get() > backlogBytes
+                || sendingSince != 0 && now - sendingSince > TimeUnit.MILLISECONDS.toNanos(thresholdMillis)) {
+            state.lastSlow = now;
+        }
+        boolean slow = state.isSlow(now, recoveryMillis);
+        if (slow && state.slowSince == 0) {
+            log.info("WebSocket session {} is not keeping up; sending it sampled console output", sessionId);
+            state.slowSince = now;
+        } else if (!slow && state.slowSince != 0) {
+            log.info("WebSocket session {} caught up; sending it full console output again", sessionId);
+            state.slowSince = 0;
+        }
+        return slow;
+    }
+
+    private boolean isConsole(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        int start = destination.startsWith(ClusterMessageRelay.RELAY_PREFIX + "/")
+                ? ClusterMessageRelay.RELAY_PREFIX.length()
+                : 0;
+        return matches(destination, start, consoleTopic) || matches(destination, start, consoleBinaryTopic);
+    }
+
+    /** Whether the destination, from start, is the topic or one of its per-execution topics. */
+    private static boolean matches(String destination, int start, String topic) {
+        if (!destination.startsWith(topic, start)) {
+            return false;
+        }
+        int end = start + topic.length();
+        return destination.length() == end || destination.charAt(end) == '/';
+    }
+
+    int slowSessions() {
+        long now = System.nanoTime();
+        return (int) sessions.values().stream().filter(state -> state.isSlow(now, recoveryMillis)).count();
+    }
+
+    /** Backlog, send timing and sampling state of one session. */
+    private static final class SessionState {
+
+        /** Sizes of the messages waiting for the session, oldest first, and their sum. */
+        private final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+
+        /** When the write in progress started, or 0 when idle. */
+        private volatile long sendingSince;
+
+        /** When the backlog or a write last went past its limit, or 0 if neither has. */
+        private volatile long lastSlow;
+
+        /** When the current slow period began, or 0 outside one; only used to log the changes. */
+        private volatile long slowSince;
+
+        private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+
+        private boolean isSlow(long now, long recoveryMillis) {
+            long last = lastSlow;
+            return last != 0 && now - last < TimeUnit.MILLISECONDS.toNanos(recoveryMillis);
+        }
+
+        private void queued(int bytes) {
+            pending.add(bytes);
+            pendingBytes.addAndGet(bytes);
+        }
+
+        private void sent() {
+            Integer bytes = pending.poll();
+            if (bytes != null) {
+                pendingBytes.addAndGet(-bytes);
+            }
+        }
+    }
+
+    /** Sampling state of one subscription of a slow session. */
+    private static final class Sample {
+        private long lastSent;
+        private long skipped;
+    }
+
+    /** Times the socket writes Spring's per-session sender makes and counts them off the backlog. */
+    private final class TimedSession extends WebSocketSessionDecorator {
+
+        private final SessionState state;
+
+        private TimedSession(WebSocketSession session, SessionState state) {
+            super(session);
+            this.state = state;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            long start = System.nanoTime();
+            state.sendingSince = start;
+            try {
+                super.sendMessage(message);
+            } finally {
+                state.sent();
+                state.sendingSince = 0;
+                long end = System.nanoTime();
+                if (end - start > TimeUnit.MILLISECONDS.toNanos(thresholdMillis)) {
+                    state.lastSlow = end;
+                }
+            }
+        }
+    }
+}
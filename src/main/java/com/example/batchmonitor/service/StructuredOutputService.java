@@ -0,0 +1,142 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.MetricPoint;
+import com.example.batchmonitor.dto.StructuredOutputEvent;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.util.JsonLineParser;
+import com.example.batchmonitor.util.MetricSeries;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Structured output mode: JSON lines printed by executions that opted in
+ * with "structuredOutput" are parsed by {@link JsonLineParser}. Their
+ * metrics are kept as per-execution series that the API can query, and
+ * each parsed line goes to WebSocket subscribers as a
+ * {@link StructuredOutputEvent}. The lines are stored as console output
+ * like any other.
+ * <p>
+ * Each execution keeps at most batch.execution.structured.maxMetrics
+ * metrics of up to capacity points each; the series of the
+ * retainedExecutions executions used most recently stay queryable.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StructuredOutputService {
+
+    private final WebSocketService webSocketService;
+
+    @Value("${batch.execution.structured.enabled:true}")
+    private boolean enabled;
+
+    @Value("${batch.execution.structured.capacity:1000}")
+    private int capacity;
+
+    @Value("${batch.execution.structured.maxMetrics:20}")
+    private int maxMetrics;
+
+    @Value("${batch.execution.structured.retainedExecutions:100}")
+    private int retainedExecutions;
+
+    private final Map<Long, Map<String, MetricSeries>> series = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Map<String, MetricSeries>> eldest) {
+                    return size() > retainedExecutions;
+                }
+            });
+
+    @PostConstruct
+    public void start() {
+        if (capacity <= 0 || maxMetrics <= 0 || retainedExecutions <= 0) {
+            throw new IllegalArgumentException(
+                    "batch.execution.structured capacity, maxMetrics and retainedExecutions must be positive");
+        }
+    }
+
+    /**
+     * Whether the execution's output is parsed for structured lines.
+     */
+    public boolean isEnabled(BatchExecution execution) {
+        return enabled && Boolean.TRUE.equals(execution.getStructuredOutput());
+    }
+
+    /**
+     * Parses a stdout line of an execution with structured output, recording
+     * and publishing what it carries.
+     *
+     * @return The line's content, or null if it is plain text or carries nothing
+     */
+    public StructuredOutputEvent process(BatchExecution execution, String line) {
+        JsonLineParser.Result result = JsonLineParser.parse(line);
+        if (result == null || result.metrics().isEmpty() && result.fields().isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (!result.metrics().isEmpty()) {
+            Map<String, MetricSeries> metrics = series.computeIfAbsent(execution.getId(),
+                    id -> new ConcurrentHashMap<>());
+            result.metrics().forEach((name, value) -> {
+                MetricSeries metric = metrics.get(name);
+                if (metric == null) {
+                    if (metrics.size() >= maxMetrics) {
+                        log.debug("Execution {} reports more than {} metrics; ignoring {}",
+                                execution.getId(), maxMetrics, name);
+                        return;
+                    }
+                    metric = metrics.computeIfAbsent(name, key -> new MetricSeries(capacity));
+                }
+                metric.add(now, value);
+            });
+        }
+
+        StructuredOutputEvent event = StructuredOutputEvent.builder()
+                .executionId(execution.getId())
+                .timestamp(LocalDateTime.now())
+                .progress(result.progress())
+                .metrics(result.metrics())
+                .fields(result.fields())
+                .build();
+        webSocketService.sendStructuredOutput(event);
+        return event;
+    }
+
+    /**
+     * @return The latest value of each metric the execution reported, by name
+     */
+    public Map<String, Double> getLatestMetrics(Long executionId) {
+        Map<String, MetricSeries> metrics = series.get(executionId);
+        if (metrics == null) {
+            return Map.of();
+        }
+        Map<String, Double> latest = new TreeMap<>();
+        metrics.forEach((name, metric) -> {
+            MetricPoint point = metric.latest();
+            if (point != null) {
+                latest.put(name, point.getValue());
+            }
+        });
+        return latest;
+    }
+
+    /**
+     * @return The values the metric took, oldest first, or an empty list if the execution did not report it
+     */
+    public List<MetricPoint> getMetric(Long executionId, String name) {
+        Map<String, MetricSeries> metrics = series.get(executionId);
+        MetricSeries metric = metrics != null ? metrics.get(name) : null;
+        return metric != null ? metric.toPoints() : List.of();
+    }
+}
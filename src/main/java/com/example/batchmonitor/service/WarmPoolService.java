@@ -0,0 +1,230 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.util.ScriptUtils;
+import com.example.batchmonitor.util.WarmInterpreter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a pool of pre-started Python interpreters so that short .py jobs skip
+ * interpreter start-up and common imports. Each job runs in a forked child of an
+ * idle worker, in its own session with stdin closed, the worker's start-up
+ * environment and umask, and the rlimits configured under
+ * batch.execution.warmPool; workers are recycled after
+ * batch.execution.warmPool.maxJobsPerWorker jobs. Jobs are not placed in
+ * cgroups or pinned to CPUs, as the worker, not the job, is the process the
+ * monitor starts. Disabled by default and only available on Unix-like
+ * systems, where fork is.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WarmPoolService {
+
+    private static final String WORKER_RESOURCE = "warmpool/worker.py";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ScriptCommandResolver scriptCommandResolver;
+    private final CpuPlacementService cpuPlacementService;
+
+    @Value("${batch.execution.warmPool.enabled:false}")
+    private boolean enabled;
+
+    @Value("${batch.execution.warmPool.size:2}")
+    private int poolSize;
+
+    @Value("${batch.execution.warmPool.maxJobsPerWorker:100}")
+    private int maxJobsPerWorker;
+
+    @Value("${batch.execution.warmPool.preload:}")
+    private String preload;
+
+    @Value("${batch.execution.warmPool.memory:}")
+    private String memory;
+
+    @Value("${batch.execution.warmPool.cpuSeconds:0}")
+    private long cpuSeconds;
+
+    @Value("${batch.execution.warmPool.openFiles:0}")
+    private long openFiles;
+
+    private final BlockingDeque<WarmInterpreter> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger workerSequence = new AtomicInteger();
+    private final ExecutorService refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "warm-pool-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<String> workerCommand;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        String limits = limits();
+        if (!enabled) {
+            return;
+        }
+        if (!ScriptUtils.isUnixSystem()) {
+            log.warn("Warm pool requires fork and is not available on this platform");
+            return;
+        }
+        try {
+            String source = new ClassPathResource(WORKER_RESOURCE).getContentAsString(StandardCharsets.UTF_8);
+            String python = scriptCommandResolver.getInterpreters().getOrDefault("python3", "python3");
+            // Jobs run unplaced, on the whole pool rather than the monitor's reserved CPUs
+            workerCommand = cpuPlacementService.wrapUnplaced(
+                    List.of(python, "-u", "-c", source, preload == null ? "" : preload, limits));
+            running = true;
+            for (int i = 0; i < poolSize; i++) {
+                idle.offer(startWorker());
+            }
+            log.info("Warm pool started with {} {} workers", poolSize, python);
+        } catch (IOException e) {
+            log.warn("Unable to start warm pool, .py scripts will be spawned normally: {}", e.getMessage());
+            stop();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        refillExecutor.shutdownNow();
+        WarmInterpreter worker;
+        while ((worker = idle.poll()) != null) {
+            worker.close();
+        }
+    }
+
+    /**
+     * @param scriptPath The script about to be executed
+     * @return true if the script should run in the warm pool
+     */
+    public boolean supports(String scriptPath) {
+        return running && scriptPath != null && scriptPath.toLowerCase(Locale.ROOT).endsWith(".py");
+    }
+
+    /**
+     * Runs a script on an idle worker. If every worker is busy an extra one is
+     * started for the job; it is kept only if the pool is below its size afterwards.
+     *
+     * @param scriptPath The script to run
+     * @param parameters Whitespace separated script parameters, may be null
+     * @param workingDir The working directory of the script
+     * @param stdout Receives each stdout line
+     * @param stderr Receives each stderr line
+     * @return The running job
+     * @throws IOException If no worker could be started or reached
+     */
+    public WarmInterpreter.Job submit(String scriptPath, String parameters, File workingDir,
+                                      Consumer<String> stdout, Consumer<String> stderr) throws IOException {
+        WarmInterpreter worker = takeWorker();
+        List<String> args = new ArrayList<>();
+        ScriptUtils.appendParameters(args, parameters);
+
+        WarmInterpreter.Job job;
+        try {
+            job = worker.run(new File(scriptPath).getAbsolutePath(), args,
+                    workingDir == null ? null : workingDir.getAbsolutePath(), stdout, stderr);
+        } catch (IOException | RuntimeException e) {
+            retire(worker);
+            throw e;
+        }
+        job.onExit().whenComplete((exitCode, error) -> release(worker));
+        return job;
+    }
+
+    /**
+     * @return The number of workers waiting for a job
+     */
+    public int idleCount() {
+        return idle.size();
+    }
+
+    private WarmInterpreter takeWorker() throws IOException {
+        WarmInterpreter worker;
+        while ((worker = idle.pollFirst()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            retire(worker);
+        }
+        log.debug("No idle warm interpreter, starting one for this job");
+        return startWorker();
+    }
+
+    private void release(WarmInterpreter worker) {
+        if (running && worker.isAlive() && worker.getJobsRun() < maxJobsPerWorker && idle.size() < poolSize) {
+            // Most recently used first: its pages are the likeliest to still be hot
+            idle.offerFirst(worker);
+        } else {
+            retire(worker);
+        }
+    }
+
+    private void retire(WarmInterpreter worker) {
+        worker.close();
+        if (running && idle.size() < poolSize) {
+            refillExecutor.execute(() -> {
+                if (!running || idle.size() >= poolSize) {
+                    return;
+                }
+                try {
+                    idle.offerLast(startWorker());
+                } catch (IOException e) {
+                    log.warn("Unable to start warm interpreter: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * The rlimits each job child sets on itself, as the JSON object worker.py
+     * expects, e.g. {"as":536870912,"nofile":256}. Unset limits are left out.
+     */
+    private String limits() {
+        Map<String, Long> limits = new LinkedHashMap<>();
+        Long bytes = CgroupLimiter.parseMemory(memory);
+        if (bytes != null) {
+            limits.put("as", bytes);
+        }
+        if (cpuSeconds > 0) {
+            limits.put("cpu", cpuSeconds);
+        }
+        if (openFiles > 0) {
+            limits.put("nofile", openFiles);
+        }
+        try {
+            return JSON.writeValueAsString(limits);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private WarmInterpreter startWorker() throws IOException {
+        return new WarmInterpreter(workerCommand, "warm-pool-" + workerSequence.incrementAndGet());
+    }
+}
@@ -1,23 +1,46 @@
 package com.example.batchmonitor.service;
 
+import com.example.batchmonitor.dto.AlertEvent;
 import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.dto.ConsoleSummary;
 import com.example.batchmonitor.dto.ProgressUpdate;
+import com.example.batchmonitor.dto.ResourceUsageSample;
+import com.example.batchmonitor.dto.StructuredOutputEvent;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.util.ConsoleFrameCodec;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Publishes execution events to their WebSocket topics through the configured
+ * {@link MessageRelay}. Events about one execution (or pipeline) also go to
+ * the topic suffixed with its id, e.g. /topic/console-output/42, when someone
+ * subscribes to it, which lets the cluster relay route them only to the nodes
+ * whose clients watch that execution. Console lines are published both as
+ * JSON and, for clients that subscribe to the binary console topic instead,
+ * as compact {@link ConsoleFrameCodec} frames carrying a run of lines each;
+ * frames are only encoded while someone subscribes to them. Lines of
+ * executions printing faster than anyone can read are sampled for these
+ * topics by {@link ConsoleLiveView}, whose summaries go to the console
+ * summary topic instead.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketService {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageRelay relay;
+    private final MetricsService metricsService;
+    private final ConsoleLiveView liveView;
 
     @Value("${batch.websocket.topic.progress}")
     private String progressTopic;
@@ -25,40 +48,145 @@ public class WebSocketService {
     @Value("${batch.websocket.topic.console}")
     private String consoleTopic;
 
+    @Value("${batch.websocket.topic.consoleBinary}")
+    private String consoleBinaryTopic;
+
+    @Value("${batch.websocket.topic.consoleSummary}")
+    private String consoleSummaryTopic;
+
+    @Value("${batch.websocket.topic.alerts}")
+    private String alertsTopic;
+
+    @Value("${batch.websocket.topic.structured}")
+    private String structuredTopic;
+
     @Value("${batch.websocket.topic.status}")
     private String statusTopic;
 
+    @Value("${batch.websocket.topic.resources}")
+    private String resourcesTopic;
+
+    @Value("${batch.websocket.topic.pipelines}")
+    private String pipelinesTopic;
+
     // Create a many-unicast sink that allows multiple subscribers but only emits to subscribers who were active at the time of emission
     private final Sinks.Many<ConsoleOutput> consoleOutputSink = Sinks.many().multicast().onBackpressureBuffer();
 
+    @PostConstruct
+    public void start() {
+        liveView.addListener(this::sendConsoleSummary);
+    }
+
     public void sendProgressUpdate(ProgressUpdate update) {
         log.debug("Sending progress update: {}", update);
-        messagingTemplate.convertAndSend(progressTopic, update);
+        send("progress", progressTopic, update.getExecutionId(), update);
+    }
+
+    public void sendPipelineProgress(ProgressUpdate update) {
+        log.debug("Sending pipeline progress: {}", update);
+        send("pipeline", pipelinesTopic, update.getPipelineId(), update);
     }
 
     public void sendStatusUpdate(Long executionId, String status) {
         log.debug("Sending status update for execution {}: {}", executionId, status);
-        messagingTemplate.convertAndSend(statusTopic,
-                Map.of("executionId", executionId, "status", status));
+        send("status", statusTopic, executionId, Map.of("executionId", executionId, "status", status));
+        if (!BatchExecution.ExecutionStatus.PENDING.name().equals(status)
+                && !BatchExecution.ExecutionStatus.RUNNING.name().equals(status)) {
+            liveView.finished(executionId);
+        }
+    }
+
+    public void sendAlert(AlertEvent alert) {
+        log.debug("Sending alert {} for execution {}", alert.getRule(), alert.getExecutionId());
+        send("alert", alertsTopic, alert.getExecutionId(), alert);
+    }
+
+    public void sendStructuredOutput(StructuredOutputEvent event) {
+        log.debug("Sending structured output for execution {}: {}", event.getExecutionId(), event);
+        send("structured", structuredTopic, event.getExecutionId(), event);
+    }
+
+    public void sendConsoleSummary(ConsoleSummary summary) {
+        log.debug("Sending console summary for execution {}: {}", summary.getExecutionId(), summary);
+        send("summary", consoleSummaryTopic, summary.getExecutionId(), summary);
+    }
+
+    public void sendResourceUsage(ResourceUsageSample sample) {
+        log.debug("Sending resource usage for execution {}: {}", sample.getExecutionId(), sample);
+        send("resources", resourcesTopic, sample.getExecutionId(), sample);
     }
 
     public void sendConsoleOutput(ConsoleOutput output) {
-        log.debug("Sending console output for execution {}: {} ({})",
-                output.getExecutionId(),
-                output.getMessage(),
-                output.getType());
-
-        // Send to WebSocket topic
-        messagingTemplate.convertAndSend(consoleTopic, output);
-
-        // Push to reactive stream with appropriate error handling
-        Sinks.EmitResult result = consoleOutputSink.tryEmitNext(output);
-        if (result.isFailure()) {
-            log.warn("Failed to emit console output to sink: {}", result);
+        sendConsoleOutput(List.of(output));
+    }
+
+    /**
+     * Publishes lines of one execution, in order: each line as JSON, and the
+     * whole run as one binary frame if anyone subscribes to those. Lines the
+     * live view samples out are left out of both.
+     */
+    public void sendConsoleBatch(List<ConsoleOutput> lines) {
+        if (!lines.isEmpty()) {
+            sendConsoleOutput(lines);
+        }
+    }
+
+    private void sendConsoleOutput(List<ConsoleOutput> lines) {
+        List<ConsoleOutput> live = new ArrayList<>(lines.size());
+        for (ConsoleOutput output : lines) {
+            if (!liveView.skip(output)) {
+                log.debug("Sending console output for execution {}: {} ({})",
+                        output.getExecutionId(),
+                        output.getMessage(),
+                        output.getType());
+
+                // Send to WebSocket topic
+                send("console", consoleTopic, output.getExecutionId(), output);
+                live.add(output);
+            }
+
+            // Push to reactive stream with appropriate error handling
+            Sinks.EmitResult result = consoleOutputSink.tryEmitNext(output);
+            if (result.isFailure()) {
+                log.warn("Failed to emit console output to sink: {}", result);
+            }
+        }
+        if (!live.isEmpty()) {
+            sendConsoleFrame(live);
         }
     }
 
+    private void sendConsoleFrame(List<ConsoleOutput> lines) {
+        String idDestination = consoleBinaryTopic + "/" + lines.get(0).getExecutionId();
+        boolean all = relay.isWatched(consoleBinaryTopic);
+        boolean one = relay.isWatched(idDestination);
+        if (!all && !one) {
+            return;
+        }
+        long start = System.nanoTime();
+        byte[] frame = ConsoleFrameCodec.encode(lines);
+        if (all) {
+            relay.publish(consoleBinaryTopic, frame);
+        }
+        if (one) {
+            relay.publish(idDestination, frame);
+        }
+        metricsService.recordWebSocketSend("console-binary", System.nanoTime() - start);
+    }
+
     public Flux<ConsoleOutput> getConsoleOutputStream() {
         return consoleOutputSink.asFlux();
     }
+
+    private void send(String messageType, String destination, Long id, Object payload) {
+        long start = System.nanoTime();
+        relay.publish(destination, payload);
+        if (id != null) {
+            String idDestination = destination + "/" + id;
+            if (relay.isWatched(idDestination)) {
+                relay.publish(idDestination, payload);
+            }
+        }
+        metricsService.recordWebSocketSend(messageType, System.nanoTime() - start);
+    }
 }
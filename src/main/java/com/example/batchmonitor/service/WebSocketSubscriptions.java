@@ -0,0 +1,119 @@
+package com.example.batchmonitor.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Counts the STOMP subscriptions held on this node per destination, so events
+ * for a destination nobody watches are not serialized at all, and so the
+ * message relay knows which destinations to ask other nodes for.
+ */
+@Service
+@Slf4j
+public class WebSocketSubscriptions {
+
+    /** Subscription id to destination, per session. */
+    private final Map<String, Map<String, String>> sessions = new HashMap<>();
+
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+    private final List<BiConsumer<String, Boolean>> listeners = new CopyOnWriteArrayList<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (headers.getSessionId() != null && headers.getSubscriptionId() != null && headers.getDestination() != null) {
+            subscribed(headers.getSessionId(), headers.getSubscriptionId(), headers.getDestination());
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (headers.getSessionId() != null && headers.getSubscriptionId() != null) {
+            unsubscribed(headers.getSessionId(), headers.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnected(event.getSessionId());
+    }
+
+    /**
+     * @return Whether any session on this node subscribes to exactly this destination
+     */
+    public boolean isWatched(String destination) {
+        return counts.containsKey(destination);
+    }
+
+    /**
+     * @return Destinations with at least one subscriber on this node
+     */
+    public Set<String> destinations() {
+        return Set.copyOf(counts.keySet());
+    }
+
+    /**
+     * Registers a callback told when a destination gets its first subscriber
+     * (true) or loses its last one (false). It runs while the change is being
+     * recorded, so calls for one destination arrive in order.
+     */
+    public void addListener(BiConsumer<String, Boolean> listener) {
+        listeners.add(listener);
+    }
+
+    synchronized void subscribed(String sessionId, String subscriptionId, String destination) {
+        String previous = sessions.computeIfAbsent(sessionId, id -> new HashMap<>()).put(subscriptionId, destination);
+        if (previous != null) {
+            decrement(previous);
+        }
+        if (counts.merge(destination, 1, Integer::sum) == 1) {
+            notifyListeners(destination, true);
+        }
+    }
+
+    synchronized void unsubscribed(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        String destination = subscriptions == null ? null : subscriptions.remove(subscriptionId);
+        if (destination != null) {
+            decrement(destination);
+        }
+    }
+
+    synchronized void disconnected(String sessionId) {
+        Map<String, String> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::decrement);
+        }
+    }
+
+    private void decrement(String destination) {
+        if (counts.computeIfPresent(destination, (key, count) -> count == 1 ? null : count - 1) == null) {
+            notifyListeners(destination, false);
+        }
+    }
+
+    private void notifyListeners(String destination, boolean watched) {
+        for (BiConsumer<String, Boolean> listener : listeners) {
+            try {
+                listener.accept(destination, watched);
+            } catch (RuntimeException e) {
+                log.warn("Subscription listener failed for {}: {}", destination, e.getMessage());
+            }
+        }
+    }
+}
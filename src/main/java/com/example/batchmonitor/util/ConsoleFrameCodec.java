@@ -0,0 +1,212 @@
+package com.example.batchmonitor.util;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compact binary encoding of console lines, published to binary WebSocket
+ * subscribers instead of one JSON document per line. A frame carries a run of
+ * lines of one execution:
+ * <pre>
+ * frame: [byte version = 1][varint executionId][varint line count][line]...
+ * line:  [byte flags][zigzag varint timestamp delta][zigzag varint sequence delta][varint length][UTF-8 text]
+ * </pre>
+ * Flag bit 0 is the output type (0 STDOUT, 1 STDERR); bit 1 says the line has
+ * a timestamp and bit 2 a sequence, the deltas being present only then.
+ * Timestamps are epoch microseconds of the local date-time read as UTC, the
+ * same convention as the output spool, each relative to the previous
+ * timestamp in the frame (the first to zero); sequences are relative to the
+ * previous sequence likewise. Varints are unsigned LEB128, zigzag varints
+ * signed ones, as in Protocol Buffers.
+ */
+public final class ConsoleFrameCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int STDERR = 1;
+    private static final int HAS_TIMESTAMP = 1 << 1;
+    private static final int HAS_SEQUENCE = 1 << 2;
+
+    private ConsoleFrameCodec() {
+    }
+
+    /**
+     * Encodes lines of one execution, in order, as a single frame.
+     */
+    public static byte[] encode(List<ConsoleOutput> lines) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("A console frame needs at least one line");
+        }
+        Long executionId = lines.get(0).getExecutionId();
+        Writer writer = new Writer(16 + lines.size() * 24);
+        writer.put(VERSION);
+        writer.putVarint(executionId);
+        writer.putVarint(lines.size());
+        long previousMicros = 0;
+        long previousSequence = 0;
+        for (ConsoleOutput line : lines) {
+            if (!Objects.equals(line.getExecutionId(), executionId)) {
+                throw new IllegalArgumentException("A console frame carries lines of a single execution, got "
+                        + executionId + " and " + line.getExecutionId());
+            }
+            int flags = line.getType() == ConsoleOutput.OutputType.STDERR ? STDERR : 0;
+            if (line.getTimestamp() != null) {
+                flags |= HAS_TIMESTAMP;
+            }
+            if (line.getSequence() != null) {
+                flags |= HAS_SEQUENCE;
+            }
+            writer.put((byte) flags);
+            if (line.getTimestamp() != null) {
+                long micros = micros(line.getTimestamp());
+                writer.putVarint(zigzag(micros - previousMicros));
+                previousMicros = micros;
+            }
+            if (line.getSequence() != null) {
+                writer.putVarint(zigzag(line.getSequence() - previousSequence));
+                previousSequence = line.getSequence();
+            }
+            byte[] text = line.getMessage() == null ? new byte[0] : line.getMessage().getBytes(StandardCharsets.UTF_8);
+            writer.putVarint(text.length);
+            writer.put(text);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a frame written by {@link #encode(List)}.
+     *
+     * @throws IllegalArgumentException if the frame is truncated or of another version
+     */
+    public static List<ConsoleOutput> decode(byte[] frame) {
+        Reader reader = new Reader(frame);
+        int version = reader.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported console frame version " + version);
+        }
+        long executionId = reader.getVarint();
+        long count = reader.getVarint();
+        // Every line takes at least two bytes, so a corrupt count cannot make us allocate much
+        if (count > frame.length / 2) {
+            throw new IllegalArgumentException("Console frame claims " + count + " lines in " + frame.length + " bytes");
+        }
+        List<ConsoleOutput> lines = new ArrayList<>((int) count);
+        long micros = 0;
+        long sequence = 0;
+        for (long i = 0; i < count; i++) {
+            int flags = reader.get();
+            ConsoleOutput.ConsoleOutputBuilder line = ConsoleOutput.builder()
+                    .executionId(executionId)
+                    .type((flags & STDERR) != 0 ? ConsoleOutput.OutputType.STDERR : ConsoleOutput.OutputType.STDOUT);
+            if ((flags & HAS_TIMESTAMP) != 0) {
+                micros += unzigzag(reader.getVarint());
+                line.timestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                        Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC));
+            }
+            if ((flags & HAS_SEQUENCE) != 0) {
+                sequence += unzigzag(reader.getVarint());
+                line.sequence(sequence);
+            }
+            line.message(reader.getString((int) Math.min(reader.getVarint(), Integer.MAX_VALUE)));
+            lines.add(line.build());
+        }
+        return lines;
+    }
+
+    private static long micros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1000;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer;
+        private int position;
+
+        private Writer(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        private void put(byte value) {
+            ensure(1);
+            buffer[position++] = value;
+        }
+
+        private void put(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void putVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] frame;
+        private int position;
+
+        private Reader(byte[] frame) {
+            this.frame = frame;
+        }
+
+        private int get() {
+            if (position >= frame.length) {
+                throw new IllegalArgumentException("Console frame ends early at byte " + position);
+            }
+            return frame[position++] & 0xFF;
+        }
+
+        private long getVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in console frame at byte " + position);
+        }
+
+        private String getString(int length) {
+            if (length > frame.length - position) {
+                throw new IllegalArgumentException("Console frame ends early at byte " + position);
+            }
+            String text = new String(frame, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return text;
+        }
+    }
+}
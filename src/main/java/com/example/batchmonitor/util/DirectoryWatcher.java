@@ -0,0 +1,182 @@
+package com.example.batchmonitor.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory tree with a {@link WatchService} and reports changes to a listener.
+ * Subdirectories are registered recursively, including ones created after start.
+ * Files found inside a newly created directory are reported as created, since they
+ * may have been written before the directory was registered.
+ */
+@Slf4j
+public class DirectoryWatcher implements Closeable {
+
+    /**
+     * Receives change notifications on the watcher thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called for every create, modify or delete event.
+         *
+         * @param path The absolute path that changed
+         * @param kind One of ENTRY_CREATE, ENTRY_MODIFY or ENTRY_DELETE
+         */
+        void onChange(Path path, WatchEvent.Kind<Path> kind);
+
+        /**
+         * Called when events were lost and any derived state should be rebuilt.
+         */
+        void onOverflow();
+    }
+
+    private final Path root;
+    private final String threadName;
+    private final Listener listener;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    private volatile WatchService watchService;
+    private volatile Thread thread;
+
+    public DirectoryWatcher(Path root, String threadName, Listener listener) {
+        this.root = root.toAbsolutePath().normalize();
+        this.threadName = threadName;
+        this.listener = listener;
+    }
+
+    /**
+     * Registers the directory tree and starts the watcher thread.
+     *
+     * @throws IOException If the root cannot be registered
+     */
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(root);
+
+        thread = new Thread(this::processEvents, threadName);
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching {} ({} directories)", root, directories.size());
+    }
+
+    /**
+     * @return true while the watcher thread is delivering events
+     */
+    public boolean isRunning() {
+        Thread current = thread;
+        return current != null && current.isAlive();
+    }
+
+    /**
+     * @param path An absolute, normalized path
+     * @return true if the path lies inside the watched tree and the watcher is running
+     */
+    public boolean covers(Path path) {
+        return isRunning() && path.startsWith(root);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public void close() {
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.debug("Error closing watch service for {}: {}", root, e.getMessage());
+            }
+        }
+        Thread current = thread;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    private void processEvents() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Path directory = directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        log.warn("Watch events overflowed for {}", root);
+                        listener.onOverflow();
+                        continue;
+                    }
+                    if (directory != null) {
+                        dispatch(directory.resolve((Path) event.context()), cast(event).kind());
+                    }
+                }
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Watch service for {} closed", root);
+        }
+    }
+
+    private void dispatch(Path path, WatchEvent.Kind<Path> kind) {
+        try {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                registerTree(path);
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile)
+                            .forEach(file -> listener.onChange(file, StandardWatchEventKinds.ENTRY_CREATE));
+                }
+            }
+            listener.onChange(path, kind);
+        } catch (IOException e) {
+            log.warn("Failed to handle {} for {}: {}", kind.name(), path, e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Watch listener failed for {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                log.debug("Skipping unreadable path {}: {}", file, exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WatchEvent<Path> cast(WatchEvent<?> event) {
+        return (WatchEvent<Path>) event;
+    }
+}
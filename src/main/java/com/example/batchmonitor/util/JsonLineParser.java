@@ -0,0 +1,139 @@
+package com.example.batchmonitor.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracts progress, metrics and fields from console lines that are JSON
+ * objects, e.g. {@code {"progress":0.4,"rowsDone":1200,"stage":"load"}}.
+ * Whether a line is one is decided from its first and last non-blank
+ * characters, so plain text costs two character checks. Candidates are read
+ * token by token with Jackson's streaming parser, without building a tree:
+ * <ul>
+ *   <li>numbers become metrics, booleans 1 or 0, named by their path with
+ *       nested object keys joined by dots, e.g. {@code stats.rows}</li>
+ *   <li>strings become fields, named the same way</li>
+ *   <li>a top-level {@code progress} between 0 and 1, or {@code percent}
+ *       between 0 and 100, is the progress in percent</li>
+ * </ul>
+ * Arrays, nulls and objects nested deeper than {@link #MAX_DEPTH} are skipped.
+ * A line that is not valid JSON is treated as plain text.
+ */
+public final class JsonLineParser {
+
+    /** Object nesting below which values are ignored. */
+    public static final int MAX_DEPTH = 4;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonLineParser() {
+    }
+
+    /**
+     * @param progress Progress in percent, or null if the line does not give one
+     * @param metrics Numeric values by path, in line order
+     * @param fields String values by path, in line order
+     */
+    public record Result(Double progress, Map<String, Double> metrics, Map<String, String> fields) {
+    }
+
+    /**
+     * Whether the line starts with '{' and ends with '}', ignoring surrounding whitespace.
+     */
+    public static boolean isCandidate(String line) {
+        if (line == null) {
+            return false;
+        }
+        int start = 0;
+        int end = line.length() - 1;
+        while (start <= end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end))) {
+            end--;
+        }
+        return start < end && line.charAt(start) == '{' && line.charAt(end) == '}';
+    }
+
+    /**
+     * @return What the line carries, or null if it is not a JSON object
+     */
+    public static Result parse(String line) {
+        if (!isCandidate(line)) {
+            return null;
+        }
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        Map<String, String> fields = new LinkedHashMap<>();
+        Double progress = null;
+        String[] path = new String[MAX_DEPTH];
+        int depth = 0;
+        try (JsonParser parser = FACTORY.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            depth = 1;
+            JsonToken token;
+            while (depth > 0 && (token = parser.nextToken()) != null) {
+                if (token == JsonToken.END_OBJECT) {
+                    depth--;
+                    continue;
+                }
+                // Inside an object every value follows its field name
+                path[depth - 1] = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT) {
+                    if (depth < MAX_DEPTH) {
+                        depth++;
+                    } else {
+                        parser.skipChildren();
+                    }
+                } else if (value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                } else if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+                    double number = parser.getDoubleValue();
+                    if (depth == 1) {
+                        progress = progressOf(path[0], number, progress);
+                    }
+                    metrics.put(name(path, depth), number);
+                } else if (value == JsonToken.VALUE_TRUE || value == JsonToken.VALUE_FALSE) {
+                    metrics.put(name(path, depth), value == JsonToken.VALUE_TRUE ? 1.0 : 0.0);
+                } else if (value == JsonToken.VALUE_STRING) {
+                    fields.put(name(path, depth), parser.getText());
+                }
+            }
+            // Anything after the object makes the line something else
+            if (depth != 0 || parser.nextToken() != null) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new Result(progress, metrics, fields);
+    }
+
+    private static Double progressOf(String name, double value, Double current) {
+        if ("progress".equals(name) && value >= 0 && value <= 1) {
+            return value * 100.0;
+        }
+        if ("percent".equals(name) && value >= 0 && value <= 100) {
+            return value;
+        }
+        return current;
+    }
+
+    private static String name(String[] path, int depth) {
+        if (depth == 1) {
+            return path[0];
+        }
+        StringBuilder name = new StringBuilder(path[0]);
+        for (int i = 1; i < depth; i++) {
+            name.append('.').append(path[i]);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.batchmonitor.util;
+
+import com.example.batchmonitor.dto.MetricPoint;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ring buffer of the values one metric of an execution took over time. Like
+ * {@link ResourceSampleBuffer} it stores points column-wise in primitive
+ * arrays, but starts small and doubles up to its capacity, since most of the
+ * metrics a script reports only take a few values.
+ */
+public class MetricSeries {
+
+    private static final int INITIAL_SIZE = 16;
+
+    private final int capacity;
+    private long[] timestamps;
+    private double[] values;
+    private int head;
+    private int size;
+
+    public MetricSeries(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[Math.min(INITIAL_SIZE, capacity)];
+        this.values = new double[timestamps.length];
+    }
+
+    /**
+     * Appends a point, overwriting the oldest one once the series is at capacity.
+     *
+     * @param timestampMillis Time in epoch milliseconds
+     * @param value The metric's value
+     */
+    public synchronized void add(long timestampMillis, double value) {
+        if (size == timestamps.length && size < capacity) {
+            // Full but allowed to grow: the ring starts at 0 until it first wraps, which only happens at capacity
+            int grown = Math.min(capacity, timestamps.length * 2);
+            timestamps = Arrays.copyOf(timestamps, grown);
+            values = Arrays.copyOf(values, grown);
+            head = size;
+        }
+        timestamps[head] = timestampMillis;
+        values[head] = value;
+        head = (head + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The points, oldest first
+     */
+    public synchronized List<MetricPoint> toPoints() {
+        List<MetricPoint> points = new ArrayList<>(size);
+        int start = (head - size + timestamps.length) % timestamps.length;
+        for (int i = 0; i < size; i++) {
+            points.add(toPoint((start + i) % timestamps.length));
+        }
+        return points;
+    }
+
+    /**
+     * @return The most recent point, or null if the series is empty
+     */
+    public synchronized MetricPoint latest() {
+        return size == 0 ? null : toPoint((head - 1 + timestamps.length) % timestamps.length);
+    }
+
+    private MetricPoint toPoint(int index) {
+        return MetricPoint.builder()
+                .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[index]), ZoneId.systemDefault()))
+                .value(values[index])
+                .build();
+    }
+}
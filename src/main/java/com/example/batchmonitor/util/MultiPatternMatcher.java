@@ -0,0 +1,173 @@
+package com.example.batchmonitor.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeSet;
+
+/**
+ * Finds which of a fixed set of substrings occur in a text in a single pass,
+ * however many there are (Aho-Corasick). The patterns are compiled into a
+ * deterministic automaton whose failure links are folded into a full
+ * transition table, so each character of the text costs one table lookup.
+ * <p>
+ * Characters are first mapped to classes: one per distinct character used by
+ * the patterns and a shared class for every other character, which always
+ * leads back to the start state. The table therefore has one row per trie
+ * node and one column per class, i.e. about (total pattern length) x
+ * (distinct pattern characters) ints. Matching is case-sensitive. Instances
+ * are immutable and safe to share between threads.
+ */
+public final class MultiPatternMatcher {
+
+    private static final int[] NONE = new int[0];
+
+    private final int patternCount;
+
+    /** Class of each ASCII character; 0 for characters no pattern uses. */
+    private final int[] asciiClasses = new int[128];
+
+    /** Non-ASCII characters the patterns use, sorted, and their classes. */
+    private final char[] otherChars;
+    private final int[] otherClasses;
+
+    private final int width;
+
+    /** Next state for state * width + character class. */
+    private final int[] transitions;
+
+    /** Indexes of the patterns ending at each state, including through failure links. */
+    private final int[][] outputs;
+
+    public MultiPatternMatcher(List<String> patterns) {
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("At least one pattern is required");
+        }
+        patternCount = patterns.size();
+
+        int classes = 1;
+        TreeSet<Character> other = new TreeSet<>();
+        for (String pattern : patterns) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Patterns must not be empty");
+            }
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c >= asciiClasses.length) {
+                    other.add(c);
+                } else if (asciiClasses[c] == 0) {
+                    asciiClasses[c] = classes++;
+                }
+            }
+        }
+        otherChars = new char[other.size()];
+        otherClasses = new int[other.size()];
+        int index = 0;
+        for (char c : other) {
+            otherChars[index] = c;
+            otherClasses[index++] = classes++;
+        }
+        width = classes;
+
+        // Trie, with 0 standing for a missing edge since no edge leads back to the root
+        List<int[]> edges = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        edges.add(new int[width]);
+        ends.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int characterClass = classOf(pattern.charAt(i));
+                if (edges.get(state)[characterClass] == 0) {
+                    edges.get(state)[characterClass] = edges.size();
+                    edges.add(new int[width]);
+                    ends.add(new ArrayList<>());
+                }
+                state = edges.get(state)[characterClass];
+            }
+            ends.get(state).add(p);
+        }
+
+        // Breadth-first, so a state's failure target is complete before the state itself
+        int states = edges.size();
+        transitions = new int[states * width];
+        outputs = new int[states][];
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        outputs[0] = NONE;
+        for (int c = 0; c < width; c++) {
+            int child = edges.get(0)[c];
+            transitions[c] = child;
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = merge(ends.get(state), outputs[failure[state]]);
+            int[] stateEdges = edges.get(state);
+            for (int c = 0; c < width; c++) {
+                int fallback = transitions[failure[state] * width + c];
+                int child = stateEdges[c];
+                if (child == 0) {
+                    transitions[state * width + c] = fallback;
+                } else {
+                    transitions[state * width + c] = child;
+                    failure[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return patternCount;
+    }
+
+    /**
+     * Sets the bit of every pattern occurring in the text. Bits already set
+     * are left alone, so callers reusing a set clear it first.
+     */
+    public void match(CharSequence text, BitSet found) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * width + classOf(text.charAt(i))];
+            int[] ending = outputs[state];
+            for (int pattern : ending) {
+                found.set(pattern);
+            }
+        }
+    }
+
+    /**
+     * @return The indexes of the patterns occurring in the text
+     */
+    public BitSet match(CharSequence text) {
+        BitSet found = new BitSet(patternCount);
+        match(text, found);
+        return found;
+    }
+
+    private int classOf(char c) {
+        if (c < asciiClasses.length) {
+            return asciiClasses[c];
+        }
+        int index = Arrays.binarySearch(otherChars, c);
+        return index >= 0 ? otherClasses[index] : 0;
+    }
+
+    private static int[] merge(List<Integer> own, int[] inherited) {
+        if (own.isEmpty()) {
+            return inherited;
+        }
+        int[] merged = Arrays.copyOf(inherited, inherited.length + own.size());
+        for (int i = 0; i < own.size(); i++) {
+            merged[inherited.length + i] = own.get(i);
+        }
+        return merged;
+    }
+}
@@ -40,7 +40,12 @@ public class ProcessStreamReader implements Runnable {
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
             String line;
             while (running.get() && (line = reader.readLine()) != null) {
-                outputConsumer.accept(line);
+                try {
+                    outputConsumer.accept(line);
+                } catch (RuntimeException e) {
+                    // Keep reading: a reader that stops leaves the process blocked on a full pipe
+                    log.error("Dropping a line the output consumer failed on: {}", e.getMessage());
+                }
             }
         } catch (IOException e) {
             if (running.get()) {  // Only log if we weren't deliberately stopped
@@ -54,4 +59,18 @@ public class ProcessStreamReader implements Runnable {
             thread.join();
         }
     }
+
+    /**
+     * Waits for the reader to reach the end of the stream.
+     *
+     * @param timeoutMillis The maximum time to wait
+     * @return true if every line was consumed, false if the stream is still open
+     *         (e.g. a background child of the script holds it)
+     */
+    public boolean waitFor(long timeoutMillis) throws InterruptedException {
+        if (thread != null && thread.isAlive()) {
+            thread.join(timeoutMillis);
+        }
+        return thread == null || !thread.isAlive();
+    }
 }
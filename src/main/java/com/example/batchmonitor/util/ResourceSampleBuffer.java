@@ -0,0 +1,121 @@
+package com.example.batchmonitor.util;
+
+import com.example.batchmonitor.dto.ResourceUsageSample;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring buffer of resource samples for a single execution.
+ * Samples are stored column-wise in primitive arrays so a long-running execution
+ * costs a constant, small amount of memory and no per-sample objects.
+ */
+public class ResourceSampleBuffer {
+
+    private final long[] timestamps;
+    private final long[] cpuNanos;
+    private final long[] rssBytes;
+    private final int[] processCounts;
+    private int head;
+    private int size;
+
+    public ResourceSampleBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.timestamps = new long[capacity];
+        this.cpuNanos = new long[capacity];
+        this.rssBytes = new long[capacity];
+        this.processCounts = new int[capacity];
+    }
+
+    /**
+     * Appends a sample, overwriting the oldest one once the buffer is full.
+     *
+     * @param timestampMillis Sample time in epoch milliseconds
+     * @param cpuTimeNanos Total CPU time of the process tree in nanoseconds
+     * @param rss Resident set size of the process tree in bytes
+     * @param processCount Number of processes in the tree
+     */
+    public synchronized void add(long timestampMillis, long cpuTimeNanos, long rss, int processCount) {
+        timestamps[head] = timestampMillis;
+        cpuNanos[head] = cpuTimeNanos;
+        rssBytes[head] = rss;
+        processCounts[head] = processCount;
+        head = (head + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    /**
+     * Materializes the buffered samples in chronological order.
+     * CPU percentage is derived from the delta to the previous sample.
+     *
+     * @param executionId The execution the samples belong to
+     * @return The samples, oldest first
+     */
+    public synchronized List<ResourceUsageSample> toSamples(Long executionId) {
+        List<ResourceUsageSample> samples = new ArrayList<>(size);
+        int start = (head - size + timestamps.length) % timestamps.length;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % timestamps.length;
+            double cpuPercent = 0.0;
+            if (i > 0) {
+                int previous = (index - 1 + timestamps.length) % timestamps.length;
+                cpuPercent = cpuPercent(previous, index);
+            }
+            samples.add(toSample(executionId, index, cpuPercent));
+        }
+        return samples;
+    }
+
+    /**
+     * Returns the most recent sample, or null if the buffer is empty.
+     *
+     * @param executionId The execution the sample belongs to
+     * @return The latest sample
+     */
+    public synchronized ResourceUsageSample latest(Long executionId) {
+        if (size == 0) {
+            return null;
+        }
+        int index = (head - 1 + timestamps.length) % timestamps.length;
+        double cpuPercent = 0.0;
+        if (size > 1) {
+            cpuPercent = cpuPercent((index - 1 + timestamps.length) % timestamps.length, index);
+        }
+        return toSample(executionId, index, cpuPercent);
+    }
+
+    private double cpuPercent(int previous, int current) {
+        long wallMillis = timestamps[current] - timestamps[previous];
+        if (wallMillis <= 0) {
+            return 0.0;
+        }
+        long cpuDelta = Math.max(0, cpuNanos[current] - cpuNanos[previous]);
+        return (cpuDelta / 1_000_000.0) / wallMillis * 100.0;
+    }
+
+    private ResourceUsageSample toSample(Long executionId, int index, double cpuPercent) {
+        return ResourceUsageSample.builder()
+                .executionId(executionId)
+                .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[index]), ZoneId.systemDefault()))
+                .cpuTimeMillis(cpuNanos[index] / 1_000_000)
+                .cpuPercent(cpuPercent)
+                .rssBytes(rssBytes[index])
+                .processCount(processCounts[index])
+                .build();
+    }
+}
@@ -5,12 +5,18 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 /**
  * Utility class for script execution and file operations.
@@ -19,6 +25,11 @@ import java.util.List;
 @Slf4j
 public class ScriptUtils {
 
+    private static final String OS_NAME = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+    private static final boolean UNIX = OS_NAME.contains("nix") || OS_NAME.contains("nux") || OS_NAME.contains("mac");
+    private static final boolean WINDOWS = OS_NAME.contains("win");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     /**
      * Builds a command list to execute a script with the given parameters.
      * Handles platform-specific script execution (Windows vs Unix-like systems).
@@ -28,22 +39,44 @@ public class ScriptUtils {
      * @return A list of command parts suitable for ProcessBuilder
      */
     public static List<String> buildCommand(String scriptPath, String parameters) {
-        List<String> command = new ArrayList<>();
-
         File scriptFile = new File(scriptPath);
         if (!scriptFile.exists()) {
             throw new BatchExecutionException("Script file does not exist: " + scriptPath);
         }
+        ensureExecutable(scriptFile);
 
-        // Try to make the script executable if it's not already
+        List<String> command = interpreterCommand(scriptPath);
+        appendParameters(command, parameters);
+
+        log.debug("Built command: {}", String.join(" ", command));
+        return command;
+    }
+
+    /**
+     * Tries to set the executable bit on a script that does not have it.
+     *
+     * @param scriptFile The script file
+     */
+    public static void ensureExecutable(File scriptFile) {
         if (!scriptFile.canExecute()) {
-            log.info("Script file is not executable, setting executable permission: {}", scriptPath);
+            log.info("Script file is not executable, setting executable permission: {}", scriptFile);
             boolean success = scriptFile.setExecutable(true);
             if (!success) {
-                log.warn("Failed to set executable permission for: {}", scriptPath);
+                log.warn("Failed to set executable permission for: {}", scriptFile);
                 // Continue execution anyway, as some platforms don't require executable bit
             }
         }
+    }
+
+    /**
+     * Builds the command that runs a script without its parameters: the
+     * interpreter (if the script type needs one) followed by the script path.
+     *
+     * @param scriptPath The path to the script file
+     * @return A mutable list of command parts
+     */
+    public static List<String> interpreterCommand(String scriptPath) {
+        List<String> command = new ArrayList<>();
 
         // Determine the appropriate command based on script type and platform
         if (isUnixSystem()) {
@@ -55,14 +88,19 @@ public class ScriptUtils {
             log.warn("Unknown operating system, attempting direct execution of: {}", scriptPath);
             command.add(scriptPath);
         }
+        return command;
+    }
 
-        // Add parameters if present
+    /**
+     * Splits whitespace-separated parameters and appends them to a command.
+     *
+     * @param command The command list to append to
+     * @param parameters The command-line parameters, may be null or blank
+     */
+    public static void appendParameters(List<String> command, String parameters) {
         if (parameters != null && !parameters.isBlank()) {
-            command.addAll(Arrays.asList(parameters.split("\\s+")));
+            command.addAll(Arrays.asList(WHITESPACE.split(parameters.strip())));
         }
-
-        log.debug("Built command: {}", String.join(" ", command));
-        return command;
     }
 
     /**
@@ -183,14 +221,43 @@ public class ScriptUtils {
         }
     }
 
+    /**
+     * Computes the SHA-256 of a file's content.
+     *
+     * @param file The file to hash
+     * @return The lower-case hex digest
+     * @throws IOException If the file cannot be read
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return A new SHA-256 MessageDigest
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /**
      * Determines if the current operating system is a Unix-like system.
      *
      * @return true if on a Unix-like system (Linux, macOS, etc.), false otherwise
      */
     public static boolean isUnixSystem() {
-        String os = System.getProperty("os.name").toLowerCase();
-        return os.contains("nix") || os.contains("nux") || os.contains("mac");
+        return UNIX;
     }
 
     /**
@@ -199,17 +266,24 @@ public class ScriptUtils {
      * @return true if on Windows, false otherwise
      */
     public static boolean isWindowsSystem() {
-        String os = System.getProperty("os.name").toLowerCase();
-        return os.contains("win");
+        return WINDOWS;
     }
 
     /**
      * Checks if Windows Subsystem for Linux (WSL) is available.
-     * This is a simple check that attempts to run the WSL command.
+     * The check runs the WSL command once per JVM; the result is cached.
      *
      * @return true if WSL is available, false otherwise
      */
     public static boolean isWslAvailable() {
+        return WslCheck.AVAILABLE;
+    }
+
+    private static final class WslCheck {
+        private static final boolean AVAILABLE = probeWsl();
+    }
+
+    private static boolean probeWsl() {
         try {
             Process process = new ProcessBuilder("wsl", "--version").start();
             int exitCode = process.waitFor();
@@ -0,0 +1,173 @@
+package com.example.batchmonitor.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped, append-only file of the output spool. Each record is
+ * laid out as [int length][long sequence][long executionId][long timestamp
+ * in epoch microseconds][byte type][UTF-8 text], the length counting the
+ * bytes after itself. The length is written last, so a record cut short by a
+ * crash reads as the end of the segment. There is a single appender; any
+ * number of threads may read records below {@link #limit()} concurrently.
+ */
+public final class SpoolSegment implements Closeable {
+
+    /** Bytes taken by a record besides its text. */
+    public static final int RECORD_OVERHEAD = 4 + 8 + 8 + 8 + 1;
+
+    private final Path path;
+    private final long firstSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /** End of the last complete record; published after the record is written. */
+    private volatile int limit;
+
+    private long lastSequence;
+
+    private SpoolSegment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastSequence = firstSequence - 1;
+    }
+
+    /**
+     * Creates an empty segment whose first record will carry the given sequence.
+     */
+    public static SpoolSegment create(Path directory, long firstSequence, int size) throws IOException {
+        Path path = directory.resolve(fileName(firstSequence));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new SpoolSegment(path, firstSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a segment left by a previous run and finds the end of its complete records.
+     */
+    public static SpoolSegment open(Path path) throws IOException {
+        long firstSequence = Long.parseLong(path.getFileName().toString().replace(".seg", ""));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            SpoolSegment segment = new SpoolSegment(path, firstSequence, channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            int offset = 0;
+            Record record;
+            while ((record = segment.scan(offset)) != null && record.sequence() > segment.lastSequence) {
+                segment.lastSequence = record.sequence();
+                offset = record.next();
+            }
+            segment.limit = offset;
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static boolean isSegment(Path path) {
+        return path.getFileName().toString().matches("\\d{20}\\.seg");
+    }
+
+    private static String fileName(long firstSequence) {
+        return String.format("%020d.seg", firstSequence);
+    }
+
+    /**
+     * Appends a record unless the segment is too full to hold it.
+     *
+     * @return false if the record does not fit
+     */
+    public boolean append(long sequence, long executionId, long timestampMicros, byte type, byte[] text) {
+        int offset = limit;
+        int length = RECORD_OVERHEAD - 4 + text.length;
+        if (offset + 4 + length > buffer.capacity()) {
+            return false;
+        }
+        buffer.putLong(offset + 4, sequence);
+        buffer.putLong(offset + 12, executionId);
+        buffer.putLong(offset + 20, timestampMicros);
+        buffer.put(offset + 28, type);
+        buffer.put(offset + RECORD_OVERHEAD, text);
+        buffer.putInt(offset, length);
+        lastSequence = sequence;
+        limit = offset + 4 + length;
+        return true;
+    }
+
+    /**
+     * @return The record starting at the offset, or null at the end of the published records
+     */
+    public Record read(int offset) {
+        return offset < limit ? scan(offset) : null;
+    }
+
+    private Record scan(int offset) {
+        if (offset + RECORD_OVERHEAD > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length < RECORD_OVERHEAD - 4 || offset + 4 + length > buffer.capacity()) {
+            return null;
+        }
+        byte[] text = new byte[length - (RECORD_OVERHEAD - 4)];
+        buffer.get(offset + RECORD_OVERHEAD, text);
+        return new Record(buffer.getLong(offset + 4), buffer.getLong(offset + 12), buffer.getLong(offset + 20),
+                buffer.get(offset + 28), new String(text, StandardCharsets.UTF_8), offset + 4 + length);
+    }
+
+    public static int maxTextBytes(int segmentSize) {
+        return segmentSize - RECORD_OVERHEAD;
+    }
+
+    public long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * @return The sequence of the last record, or firstSequence - 1 if the segment is empty
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /** Writes appended records through to the file. */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * A spooled line.
+     *
+     * @param next Offset of the record after this one
+     */
+    public record Record(long sequence, long executionId, long timestampMicros, byte type, String text, int next) {
+    }
+}
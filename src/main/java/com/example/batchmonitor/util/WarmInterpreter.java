@@ -0,0 +1,285 @@
+package com.example.batchmonitor.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A long-lived Python interpreter running the warm pool worker (warmpool/worker.py).
+ * Each job is a JSON request line on the worker's stdin; the worker forks a child
+ * that runs the script, so the interpreter start-up and preloaded imports are paid
+ * once per worker instead of once per job. Output of the current job is routed to
+ * the job's consumers line by line, exactly as ProcessStreamReader would.
+ */
+@Slf4j
+public class WarmInterpreter implements Closeable {
+
+    static final String MARKER = "\u001eWARMPOOL-";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Process process;
+    private final BufferedWriter stdin;
+    private final AtomicReference<Job> current = new AtomicReference<>();
+    private final AtomicInteger jobsRun = new AtomicInteger();
+    private volatile boolean broken;
+
+    /**
+     * Starts a worker interpreter.
+     *
+     * @param command The interpreter command, e.g. python3 -u -c &lt;worker source&gt; &lt;preload&gt;
+     * @param name Used to name the reader threads
+     * @throws IOException If the interpreter cannot be started
+     */
+    public WarmInterpreter(List<String> command, String name) throws IOException {
+        this.process = new ProcessBuilder(command).start();
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        startReader(process.getInputStream(), this::onStdout, name + "-stdout");
+        startReader(process.getErrorStream(), this::onStderr, name + "-stderr");
+    }
+
+    /**
+     * Runs a script in a fresh child of this interpreter. Only one job runs at a time.
+     *
+     * @param scriptPath The script to run as __main__
+     * @param args The script arguments
+     * @param workingDir The working directory of the child, may be null
+     * @param stdout Receives each stdout line of the script
+     * @param stderr Receives each stderr line of the script
+     * @return The running job
+     * @throws IOException If the request cannot be sent to the worker
+     */
+    public Job run(String scriptPath, List<String> args, String workingDir,
+                   Consumer<String> stdout, Consumer<String> stderr) throws IOException {
+        Job job = new Job(UUID.randomUUID().toString(), stdout, stderr);
+        if (!current.compareAndSet(null, job)) {
+            throw new IllegalStateException("Warm interpreter is already running a job");
+        }
+        jobsRun.incrementAndGet();
+
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("token", job.token);
+        request.put("script", scriptPath);
+        request.put("args", args);
+        request.put("cwd", workingDir);
+        try {
+            synchronized (stdin) {
+                stdin.write(JSON.writeValueAsString(request));
+                stdin.newLine();
+                stdin.flush();
+            }
+        } catch (IOException e) {
+            broken = true;
+            current.set(null);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * @return true if the worker can accept another job once the current one finishes
+     */
+    public boolean isAlive() {
+        return !broken && process.isAlive();
+    }
+
+    public boolean isIdle() {
+        return current.get() == null;
+    }
+
+    public int getJobsRun() {
+        return jobsRun.get();
+    }
+
+    public long pid() {
+        return process.pid();
+    }
+
+    @Override
+    public void close() {
+        broken = true;
+        // Job children run in their own sessions and would outlive the worker
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            log.debug("Error closing warm interpreter stdin", e);
+        }
+        process.destroyForcibly();
+    }
+
+    private void onStdout(String line) {
+        Job job = current.get();
+        if (job == null) {
+            log.debug("Warm interpreter {} stdout without a job: {}", pid(), line);
+            return;
+        }
+        int marker = line.indexOf(MARKER);
+        if (marker >= 0) {
+            String[] parts = line.substring(marker + MARKER.length()).split(" ");
+            if (parts.length == 3 && parts[1].equals(job.token)) {
+                if (marker > 0) {
+                    job.stdout.accept(line.substring(0, marker));
+                }
+                if ("START".equals(parts[0])) {
+                    job.handle.complete(ProcessHandle.of(Long.parseLong(parts[2])).orElse(null));
+                } else {
+                    streamFinished(job, Integer.parseInt(parts[2]));
+                }
+                return;
+            }
+        }
+        job.stdout.accept(line);
+    }
+
+    private void onStderr(String line) {
+        Job job = current.get();
+        if (job == null) {
+            log.warn("Warm interpreter {}: {}", pid(), line);
+            return;
+        }
+        int marker = line.indexOf(MARKER + "EXIT " + job.token + " ");
+        if (marker >= 0) {
+            if (marker > 0) {
+                job.stderr.accept(line.substring(0, marker));
+            }
+            streamFinished(job, Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1)));
+            return;
+        }
+        job.stderr.accept(line);
+    }
+
+    private void streamFinished(Job job, int exitCode) {
+        if (job.openStreams.decrementAndGet() == 0) {
+            current.compareAndSet(job, null);
+            job.handle.complete(null);
+            job.exit.complete(exitCode);
+        }
+    }
+
+    private void startReader(InputStream stream, Consumer<String> consumer, String threadName) {
+        Thread thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    consumer.accept(line);
+                }
+            } catch (IOException e) {
+                if (!broken) {
+                    log.error("Error reading from warm interpreter {}", pid(), e);
+                }
+            } catch (RuntimeException e) {
+                log.error("Error handling warm interpreter {} output", pid(), e);
+            }
+            workerExited();
+        }, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void workerExited() {
+        broken = true;
+        Job job = current.getAndSet(null);
+        if (job != null) {
+            job.handle.complete(null);
+            job.exit.completeExceptionally(new IOException("Warm interpreter " + pid() + " exited while running a job"));
+        }
+    }
+
+    /**
+     * A script running in a child of the worker interpreter. Mirrors the parts of
+     * {@link Process} that ScriptExecutionService relies on.
+     */
+    public static final class Job {
+
+        private final String token;
+        private final Consumer<String> stdout;
+        private final Consumer<String> stderr;
+        private final CompletableFuture<ProcessHandle> handle = new CompletableFuture<>();
+        private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+        private final AtomicInteger openStreams = new AtomicInteger(2);
+
+        private Job(String token, Consumer<String> stdout, Consumer<String> stderr) {
+            this.token = token;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        /**
+         * Waits until the child announced its pid.
+         *
+         * @return The child process, or empty if it finished or never started
+         */
+        public Optional<ProcessHandle> toHandle(long timeout, TimeUnit unit) throws InterruptedException {
+            try {
+                return Optional.ofNullable(handle.get(timeout, unit));
+            } catch (ExecutionException | TimeoutException e) {
+                return Optional.empty();
+            }
+        }
+
+        /**
+         * Waits for the script to exit and its output to be fully delivered.
+         *
+         * @return true if the job finished within the timeout
+         * @throws IOException If the worker died while running the job
+         */
+        public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+            try {
+                exit.get(timeout, unit);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * @return The exit code; only valid after waitFor returned true
+         */
+        public int exitValue() {
+            return exit.getNow(-1);
+        }
+
+        /**
+         * @return A future completed when the job finishes, successfully or not
+         */
+        public CompletableFuture<Integer> onExit() {
+            return exit;
+        }
+
+        /**
+         * Kills the child and everything it started. The worker survives and
+         * reports the job as finished. Does nothing once the job has finished, so a
+         * recycled pid is never signalled.
+         */
+        public void destroyForcibly() {
+            ProcessHandle child = handle.getNow(null);
+            if (child != null && !exit.isDone()) {
+                child.descendants().forEach(ProcessHandle::destroyForcibly);
+                child.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+# Warm pool worker: a pre-started Python interpreter that runs one script at a time.
+#
+# Arguments: comma separated modules to preload, and a JSON object of rlimits each
+# job child sets on itself ("as" bytes, "cpu" seconds, "nofile" descriptors).
+#
+# Protocol (one JSON object per line on stdin):
+#   {"token": "...", "script": "/path/job.py", "args": ["a", "b"], "cwd": "/dir"}
+# For every request the worker forks a child that writes
+#   \x1eWARMPOOL-START <token> <pid>
+# to stdout and then runs the script as __main__. Script output goes straight to the
+# worker's stdout and stderr. When the child exits the worker writes
+#   \x1eWARMPOOL-EXIT <token> <exit code>
+# to both streams so the reader knows the job's output is complete.
+#
+# Every child gets the environment and umask the worker started with back, so
+# nothing a preloaded module changed leaks into jobs. Children are not placed in
+# cgroups: limits beyond the rlimits above need a spawned script.
+import json
+import os
+import resource
+import runpy
+import sys
+import traceback
+
+MARKER = "\x1eWARMPOOL-"
+
+RLIMITS = {"as": resource.RLIMIT_AS, "cpu": resource.RLIMIT_CPU, "nofile": resource.RLIMIT_NOFILE}
+
+# Captured before anything is preloaded
+BASE_ENV = dict(os.environ)
+BASE_UMASK = os.umask(0)
+os.umask(BASE_UMASK)
+
+
+def preload(modules):
+    for name in modules:
+        if not name:
+            continue
+        try:
+            __import__(name)
+        except Exception as e:  # a missing optional module must not kill the worker
+            sys.stderr.write("warm pool: unable to preload %s: %s\n" % (name, e))
+
+
+def isolate(limits):
+    os.environ.clear()
+    os.environ.update(BASE_ENV)
+    os.umask(BASE_UMASK)
+    for name, value in limits.items():
+        _, hard = resource.getrlimit(RLIMITS[name])
+        if hard != resource.RLIM_INFINITY:
+            value = min(value, hard)
+        # Soft and hard alike, so the script cannot raise it again
+        resource.setrlimit(RLIMITS[name], (value, value))
+
+
+def run_child(request, limits):
+    code = 0
+    try:
+        os.setsid()
+        isolate(limits)
+        devnull = os.open(os.devnull, os.O_RDONLY)
+        os.dup2(devnull, 0)
+        os.close(devnull)
+        sys.stdin = open(os.devnull)
+
+        cwd = request.get("cwd")
+        if cwd:
+            os.chdir(cwd)
+        script = request["script"]
+        sys.argv = [script] + list(request.get("args", []))
+        sys.path[0] = os.path.dirname(os.path.abspath(script))
+
+        os.write(1, ("%sSTART %s %d\n" % (MARKER, request["token"], os.getpid())).encode())
+        runpy.run_path(script, run_name="__main__")
+    except SystemExit as e:
+        if e.code is None:
+            code = 0
+        elif isinstance(e.code, int):
+            code = e.code
+        else:
+            sys.stderr.write("%s\n" % e.code)
+            code = 1
+    except BaseException:
+        traceback.print_exc()
+        code = 1
+    finally:
+        try:
+            sys.stdout.flush()
+            sys.stderr.flush()
+        finally:
+            os._exit(code & 0xFF)
+
+
+def main():
+    preload(sys.argv[1].split(",") if len(sys.argv) > 1 else [])
+    limits = json.loads(sys.argv[2]) if len(sys.argv) > 2 and sys.argv[2] else {}
+    while True:
+        line = sys.stdin.readline()
+        if not line:
+            return
+        request = json.loads(line)
+        sys.stdout.flush()
+        sys.stderr.flush()
+        pid = os.fork()
+        if pid == 0:
+            run_child(request, limits)
+        _, status = os.waitpid(pid, 0)
+        if os.WIFEXITED(status):
+            code = os.WEXITSTATUS(status)
+        else:
+            code = 128 + os.WTERMSIG(status)
+        done = ("%sEXIT %s %d\n" % (MARKER, request["token"], code)).encode()
+        os.write(1, done)
+        os.write(2, done)
+
+
+if __name__ == "__main__":
+    main()
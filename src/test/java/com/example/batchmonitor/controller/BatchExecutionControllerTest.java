@@ -3,9 +3,13 @@ package com.example.batchmonitor.controller;
 import com.example.batchmonitor.dto.BatchExecutionRequest;
 import com.example.batchmonitor.dto.BatchExecutionResponse;
 import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.dto.MetricPoint;
+import com.example.batchmonitor.dto.ResourceUsageSample;
 import com.example.batchmonitor.entity.BatchExecution;
 import com.example.batchmonitor.service.BatchExecutionService;
 import com.example.batchmonitor.service.ConsoleOutputService;
+import com.example.batchmonitor.service.ResourceUsageSampler;
+import com.example.batchmonitor.service.StructuredOutputService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,6 +23,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -40,6 +45,12 @@ class BatchExecutionControllerTest {
     @Mock
     private ConsoleOutputService consoleOutputService;
 
+    @Mock
+    private ResourceUsageSampler resourceUsageSampler;
+
+    @Mock
+    private StructuredOutputService structuredOutputService;
+
     @InjectMocks
     private BatchExecutionController controller;
 
@@ -159,4 +170,56 @@ class BatchExecutionControllerTest {
 
         verify(consoleOutputService).getConsoleOutput(1L);
     }
+
+    @Test
+    void getResourceUsage_ShouldReturnSamplesForExecution() throws Exception {
+        // Arrange
+        List<ResourceUsageSample> samples = List.of(
+                ResourceUsageSample.builder()
+                        .executionId(1L)
+                        .timestamp(LocalDateTime.now())
+                        .cpuTimeMillis(120)
+                        .cpuPercent(35.5)
+                        .rssBytes(4096)
+                        .processCount(2)
+                        .build()
+        );
+
+        when(resourceUsageSampler.getSamples(1L)).thenReturn(samples);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/executions/1/resources"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].cpuTimeMillis", is(120)))
+                .andExpect(jsonPath("$[0].rssBytes", is(4096)))
+                .andExpect(jsonPath("$[0].processCount", is(2)));
+
+        verify(resourceUsageSampler).getSamples(1L);
+    }
+
+    @Test
+    void getMetrics_ShouldReturnLatestValues() throws Exception {
+        // Arrange
+        when(structuredOutputService.getLatestMetrics(1L)).thenReturn(Map.of("rowsDone", 1200.0));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/executions/1/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsDone", is(1200.0)));
+    }
+
+    @Test
+    void getMetric_ShouldReturnTheSeries() throws Exception {
+        // Arrange
+        when(structuredOutputService.getMetric(1L, "rowsDone")).thenReturn(List.of(
+                MetricPoint.builder().timestamp(LocalDateTime.now()).value(100).build(),
+                MetricPoint.builder().timestamp(LocalDateTime.now()).value(200).build()));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/executions/1/metrics/rowsDone"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].value", is(200.0)));
+    }
 }
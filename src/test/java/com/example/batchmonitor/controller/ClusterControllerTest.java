@@ -0,0 +1,56 @@
+package com.example.batchmonitor.controller;
+
+import com.example.batchmonitor.dto.ClusterNodeResponse;
+import com.example.batchmonitor.service.ClusterCoordinator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterControllerTest {
+
+    @Mock
+    private ClusterCoordinator clusterCoordinator;
+
+    @InjectMocks
+    private ClusterController controller;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .build();
+    }
+
+    @Test
+    void getNodes_ShouldReturnNodesWithLiveness() throws Exception {
+        // Arrange
+        when(clusterCoordinator.getNodes()).thenReturn(List.of(
+                ClusterNodeResponse.builder().nodeId("node-a").capacity(5).running(2).alive(true).local(true).build(),
+                ClusterNodeResponse.builder().nodeId("node-b").capacity(5).running(1).alive(false).build()));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/cluster/nodes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].nodeId", is("node-a")))
+                .andExpect(jsonPath("$[0].running", is(2)))
+                .andExpect(jsonPath("$[0].local", is(true)))
+                .andExpect(jsonPath("$[1].alive", is(false)));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.batchmonitor.controller;
+
+import com.example.batchmonitor.dto.BatchExecutionResponse;
+import com.example.batchmonitor.dto.PipelineRequest;
+import com.example.batchmonitor.dto.PipelineResponse;
+import com.example.batchmonitor.dto.SweepRequest;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.service.PipelineService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class PipelineControllerTest {
+
+    @Mock
+    private PipelineService pipelineService;
+
+    @InjectMocks
+    private PipelineController controller;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .build();
+    }
+
+    @Test
+    void startPipeline_ShouldAcceptJsonDefinition() throws Exception {
+        // Arrange
+        when(pipelineService.startPipeline(any(PipelineRequest.class))).thenReturn(pipeline());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/pipelines")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"nightly\",\"steps\":["
+                                + "{\"id\":\"extract\",\"scriptName\":\"extract.sh\"},"
+                                + "{\"id\":\"load\",\"scriptName\":\"load.sh\",\"dependsOn\":[\"extract\"]}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.status", is("RUNNING")))
+                .andExpect(jsonPath("$.steps", hasSize(1)))
+                .andExpect(jsonPath("$.steps[0].id", is("extract")))
+                .andExpect(jsonPath("$.steps[0].execution.id", is(5)));
+
+        ArgumentCaptor<PipelineRequest> request = ArgumentCaptor.forClass(PipelineRequest.class);
+        verify(pipelineService).startPipeline(request.capture());
+        assertEquals(List.of("extract"), request.getValue().getSteps().get(1).getDependsOn());
+    }
+
+    @Test
+    void startPipeline_ShouldAcceptYamlDefinition() throws Exception {
+        // Arrange
+        String yaml = "steps:\n  - id: extract\n    scriptName: extract.sh\n";
+        PipelineRequest parsed = new PipelineRequest();
+        when(pipelineService.parseDefinition(yaml)).thenReturn(parsed);
+        when(pipelineService.startPipeline(parsed)).thenReturn(pipeline());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/pipelines")
+                        .contentType("application/yaml")
+                        .content(yaml))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)));
+
+        verify(pipelineService).startPipeline(parsed);
+    }
+
+    @Test
+    void startPipeline_ShouldRejectStepWithoutScript() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/pipelines")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"steps\":[{\"id\":\"extract\"}]}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(pipelineService);
+    }
+
+    @Test
+    void startSweep_ShouldPassRangeToService() throws Exception {
+        // Arrange
+        when(pipelineService.startSweep(any(SweepRequest.class))).thenReturn(pipeline());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/pipelines/sweep")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"scriptName\":\"partition.sh\",\"parameters\":\"--partition ${item}\","
+                                + "\"rangeStart\":0,\"rangeEnd\":1999,\"maxParallel\":8}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)));
+
+        ArgumentCaptor<SweepRequest> request = ArgumentCaptor.forClass(SweepRequest.class);
+        verify(pipelineService).startSweep(request.capture());
+        assertEquals(1999, request.getValue().getRangeEnd());
+        assertEquals(8, request.getValue().getMaxParallel());
+    }
+
+    @Test
+    void getPipeline_ShouldReturnPipelineById() throws Exception {
+        // Arrange
+        when(pipelineService.getPipeline(1L)).thenReturn(pipeline());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/pipelines/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("nightly")))
+                .andExpect(jsonPath("$.progress", is(50.0)));
+    }
+
+    @Test
+    void getAllPipelines_ShouldReturnAllPipelines() throws Exception {
+        // Arrange
+        when(pipelineService.getAllPipelines()).thenReturn(List.of(pipeline()));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/pipelines"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(1)));
+    }
+
+    private static PipelineResponse pipeline() {
+        return PipelineResponse.builder()
+                .id(1L)
+                .name("nightly")
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .progress(50.0)
+                .steps(List.of(PipelineResponse.Step.builder()
+                        .id("extract")
+                        .dependsOn(List.of())
+                        .execution(BatchExecutionResponse.builder().id(5L).build())
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.batchmonitor.controller;
+
+import com.example.batchmonitor.dto.ScriptInfo;
+import com.example.batchmonitor.dto.ScriptPage;
+import com.example.batchmonitor.service.ScriptCatalogService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class ScriptCatalogControllerTest {
+
+    @Mock
+    private ScriptCatalogService scriptCatalogService;
+
+    @InjectMocks
+    private ScriptCatalogController controller;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .build();
+    }
+
+    @Test
+    void listScripts_ShouldPassFiltersAndReturnPage() throws Exception {
+        // Arrange
+        ScriptPage page = ScriptPage.builder()
+                .page(1)
+                .size(10)
+                .total(11)
+                .scripts(List.of(ScriptInfo.builder()
+                        .name("etl/load.py")
+                        .type(ScriptInfo.ScriptType.PYTHON)
+                        .runCount(3)
+                        .build()))
+                .build();
+        when(scriptCatalogService.listScripts("load", ScriptInfo.ScriptType.PYTHON, 1, 10)).thenReturn(page);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/scripts")
+                        .param("q", "load")
+                        .param("type", "PYTHON")
+                        .param("page", "1")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(11)))
+                .andExpect(jsonPath("$.scripts", hasSize(1)))
+                .andExpect(jsonPath("$.scripts[0].name", is("etl/load.py")))
+                .andExpect(jsonPath("$.scripts[0].runCount", is(3)));
+    }
+
+    @Test
+    void getScript_ShouldReturnScript() throws Exception {
+        // Arrange
+        when(scriptCatalogService.getScript("backup.sh")).thenReturn(ScriptInfo.builder()
+                .name("backup.sh")
+                .type(ScriptInfo.ScriptType.SHELL)
+                .checksum("abc123")
+                .build());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/scripts/info").param("name", "backup.sh"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.type", is("SHELL")))
+                .andExpect(jsonPath("$.checksum", is("abc123")));
+    }
+
+    @Test
+    void refresh_ShouldRescan() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/scripts/refresh"))
+                .andExpect(status().isNoContent());
+        verify(scriptCatalogService).rescan();
+    }
+}
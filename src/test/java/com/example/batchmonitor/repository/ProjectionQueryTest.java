@@ -0,0 +1,160 @@
+package com.example.batchmonitor.repository;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.repository.projection.ConsoleLine;
+import com.example.batchmonitor.repository.projection.ExecutionSummary;
+import com.example.batchmonitor.repository.projection.ScriptRunStats;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that console and status reads are served by single projection queries
+ * and never hydrate BatchExecution entities or their logs collection.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProjectionQueryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BatchExecutionRepository batchExecutionRepository;
+
+    @Autowired
+    private ExecutionLogRepository executionLogRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void findAllSummaries_ShouldIssueSingleStatementRegardlessOfLogCount() {
+        // Create several executions, each with a number of logs
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            BatchExecution execution = persistExecution("/path/to/script" + i + ".sh", now.minusMinutes(i));
+            for (int j = 0; j < 10; j++) {
+                persistLog(execution, "line " + j, now.plusSeconds(j), ExecutionLog.LogType.STDOUT);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<ExecutionSummary> summaries = batchExecutionRepository.findAllSummaries();
+
+        assertEquals(5, summaries.size());
+        assertEquals("/path/to/script0.sh", summaries.get(0).scriptPath());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Listing must be a single query");
+        assertEquals(0, statistics.getEntityLoadCount(), "Listing must not hydrate entities");
+        assertEquals(0, statistics.getCollectionLoadCount(), "Listing must not load the logs collection");
+    }
+
+    @Test
+    void findSummaryById_ShouldNotHydrateEntity() {
+        BatchExecution execution = persistExecution("/path/to/script.sh", LocalDateTime.now());
+        persistLog(execution, "line", LocalDateTime.now(), ExecutionLog.LogType.STDOUT);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        Optional<ExecutionSummary> summary = batchExecutionRepository.findSummaryById(execution.getId());
+
+        assertTrue(summary.isPresent());
+        assertEquals(BatchExecution.ExecutionStatus.RUNNING, summary.get().status());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void findConsoleLines_ShouldSkipSystemLinesWithoutLoadingExecution() {
+        BatchExecution execution = persistExecution("/path/to/script.sh", LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        persistLog(execution, "stdout", now, ExecutionLog.LogType.STDOUT);
+        persistLog(execution, "system", now.plusSeconds(1), ExecutionLog.LogType.SYSTEM);
+        persistLog(execution, "stderr", now.plusSeconds(2), ExecutionLog.LogType.STDERR);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<ConsoleLine> lines = executionLogRepository.findConsoleLines(execution.getId(),
+                EnumSet.of(ExecutionLog.LogType.STDOUT, ExecutionLog.LogType.STDERR));
+
+        assertEquals(2, lines.size());
+        assertEquals("stdout", lines.get(0).message());
+        assertEquals("stderr", lines.get(1).message());
+        assertEquals(execution.getId(), lines.get(0).executionId());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Console read must be a single query");
+        assertEquals(0, statistics.getEntityLoadCount(), "Console read must not hydrate entities");
+    }
+
+    @Test
+    void findRunStats_ShouldReturnCountAndLatestRunPerScript() {
+        LocalDateTime now = LocalDateTime.now();
+        persistExecution("/scripts/a.sh", now.minusMinutes(2)).setStatus(BatchExecution.ExecutionStatus.FAILED);
+        BatchExecution latest = persistExecution("/scripts/a.sh", now.minusMinutes(1));
+        latest.setStatus(BatchExecution.ExecutionStatus.COMPLETED);
+        latest.setExitCode(0);
+        persistExecution("/scripts/b.sh", now);
+        persistExecution("/scripts/other.sh", now);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<ScriptRunStats> stats = batchExecutionRepository.findRunStats(
+                List.of("/scripts/a.sh", "/scripts/b.sh", "/scripts/never-run.sh"));
+
+        assertEquals(2, stats.size());
+        ScriptRunStats a = stats.stream().filter(s -> s.scriptPath().equals("/scripts/a.sh")).findFirst().orElseThrow();
+        assertEquals(2L, a.runCount());
+        assertEquals(latest.getId(), a.lastExecutionId());
+        assertEquals(BatchExecution.ExecutionStatus.COMPLETED, a.lastStatus());
+        assertEquals(0, a.lastExitCode());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Run stats must be a single query");
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    private BatchExecution persistExecution(String scriptPath, LocalDateTime startTime) {
+        BatchExecution execution = BatchExecution.builder()
+                .scriptPath(scriptPath)
+                .startTime(startTime)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+        return entityManager.persist(execution);
+    }
+
+    private void persistLog(BatchExecution execution, String message, LocalDateTime timestamp,
+                            ExecutionLog.LogType logType) {
+        entityManager.persist(ExecutionLog.builder()
+                .batchExecution(execution)
+                .message(message)
+                .timestamp(timestamp)
+                .logType(logType)
+                .build());
+    }
+}
@@ -6,9 +6,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -68,6 +70,151 @@ class RepositoryTest {
         assertEquals(execution1.getId(), result.get(2).getId()); // now - 2 hours
     }
 
+    @Test
+    void testBatchExecutionRepository_SaveAllAndFindByPipelineId() {
+        // More rows than one sequence allocation, as a bulk sweep inserts them
+        List<BatchExecution> steps = new ArrayList<>();
+        for (int i = 1; i <= 120; i++) {
+            steps.add(BatchExecution.builder()
+                    .scriptPath("/path/to/partition.sh")
+                    .parameters("--partition " + i)
+                    .status(BatchExecution.ExecutionStatus.PENDING)
+                    .pipelineId(7L)
+                    .pipelineStep(String.valueOf(i))
+                    .build());
+        }
+        steps.add(BatchExecution.builder()
+                .scriptPath("/path/to/other.sh")
+                .status(BatchExecution.ExecutionStatus.PENDING)
+                .build());
+
+        batchExecutionRepository.saveAll(steps);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<BatchExecution> result = batchExecutionRepository.findByPipelineIdOrderByIdAsc(7L);
+        assertEquals(120, result.size());
+        assertEquals(120, result.stream().map(BatchExecution::getId).distinct().count());
+        assertEquals("1", result.get(0).getPipelineStep());
+        assertEquals("--partition 120", result.get(119).getParameters());
+    }
+
+    @Test
+    void testBatchExecutionRepository_ClaimAndLeaseQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        BatchExecution normal = claimable(BatchExecution.Priority.NORMAL, now.minusMinutes(2));
+        BatchExecution high = claimable(BatchExecution.Priority.HIGH, now.minusMinutes(1));
+        BatchExecution low = claimable(BatchExecution.Priority.LOW, now.minusMinutes(3));
+        BatchExecution notSubmitted = claimable(BatchExecution.Priority.HIGH, null);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Highest priority first, then oldest; pipeline steps not yet submitted are left alone
+        assertEquals(List.of(high.getId(), normal.getId(), low.getId()),
+                batchExecutionRepository.findClaimableIds(PageRequest.of(0, 10)));
+
+        // Exactly one node wins the claim
+        LocalDateTime lease = now.plusSeconds(30);
+        assertEquals(1, batchExecutionRepository.claim(high.getId(), "node-a", lease));
+        assertEquals(0, batchExecutionRepository.claim(high.getId(), "node-b", lease));
+        entityManager.clear();
+        assertEquals(List.of(normal.getId(), low.getId()),
+                batchExecutionRepository.findClaimableIds(PageRequest.of(0, 10)));
+
+        // Saving the entity, as the script thread does, never touches the claim
+        BatchExecution running = batchExecutionRepository.findById(high.getId()).orElseThrow();
+        running.setStatus(BatchExecution.ExecutionStatus.RUNNING);
+        running.setNodeId(null);
+        running.setLeaseExpiresAt(null);
+        batchExecutionRepository.saveAndFlush(running);
+        entityManager.clear();
+        running = batchExecutionRepository.findById(high.getId()).orElseThrow();
+        assertEquals("node-a", running.getNodeId());
+        assertNotNull(running.getLeaseExpiresAt());
+
+        // A lapsed lease is recovered once, and only from the node that held it
+        assertEquals(1, batchExecutionRepository.renewLeases("node-a", List.of(high.getId()), now.minusSeconds(1)));
+        assertEquals(List.of(high.getId()), batchExecutionRepository.findExpiredLeases(now, PageRequest.of(0, 10))
+                .stream().map(BatchExecution::getId).toList());
+        assertEquals(0, batchExecutionRepository.requeueExpired(high.getId(), "node-b", now));
+        assertEquals(1, batchExecutionRepository.requeueExpired(high.getId(), "node-a", now));
+        assertEquals(0, batchExecutionRepository.requeueExpired(high.getId(), "node-a", now));
+        entityManager.clear();
+        BatchExecution requeued = batchExecutionRepository.findById(high.getId()).orElseThrow();
+        assertEquals(BatchExecution.ExecutionStatus.PENDING, requeued.getStatus());
+        assertNull(requeued.getNodeId());
+        assertEquals(1, requeued.getRetries());
+
+        assertEquals(1, batchExecutionRepository.claim(normal.getId(), "node-c", now.minusSeconds(1)));
+        assertEquals(1, batchExecutionRepository.failExpired(normal.getId(), "node-c", now, "Node node-c stopped"));
+        assertEquals(1, batchExecutionRepository.claim(low.getId(), "node-a", lease));
+        assertEquals(1, batchExecutionRepository.releaseClaims("node-a", List.of(low.getId())));
+        entityManager.clear();
+        BatchExecution failed = batchExecutionRepository.findById(normal.getId()).orElseThrow();
+        assertEquals(BatchExecution.ExecutionStatus.FAILED, failed.getStatus());
+        assertEquals("node-c", failed.getNodeId());
+        assertEquals(List.of(high.getId(), low.getId()),
+                batchExecutionRepository.findClaimableIds(PageRequest.of(0, 10)));
+        assertNotNull(notSubmitted.getId());
+    }
+
+    @Test
+    void testBatchExecutionRepository_RecoveryQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        BatchExecution local = entityManager.persist(BatchExecution.builder()
+                .scriptPath("/path/to/script.sh")
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build());
+        BatchExecution other = entityManager.persist(BatchExecution.builder()
+                .scriptPath("/path/to/script.sh")
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .nodeId("node-b")
+                .build());
+        BatchExecution later = entityManager.persist(BatchExecution.builder()
+                .scriptPath("/path/to/script.sh")
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+
+        // Pages continue after the last id seen and keep to one node, or to runs without one
+        assertEquals(List.of(local.getId(), later.getId()), batchExecutionRepository.findByStatusAfter(
+                BatchExecution.ExecutionStatus.RUNNING, null, 0L, PageRequest.of(0, 10))
+                .stream().map(BatchExecution::getId).toList());
+        assertEquals(List.of(later.getId()), batchExecutionRepository.findByStatusAfter(
+                BatchExecution.ExecutionStatus.RUNNING, null, local.getId(), PageRequest.of(0, 10))
+                .stream().map(BatchExecution::getId).toList());
+        assertEquals(List.of(other.getId()), batchExecutionRepository.findByStatusAfter(
+                BatchExecution.ExecutionStatus.RUNNING, "node-b", 0L, PageRequest.of(0, 10))
+                .stream().map(BatchExecution::getId).toList());
+
+        batchExecutionRepository.recordProcess(later.getId(), 4242L, now);
+        // Only rows still in the expected status are failed
+        assertEquals(0, batchExecutionRepository.failUnfinished(List.of(local.getId(), later.getId()),
+                BatchExecution.ExecutionStatus.PENDING, now, "Interrupted"));
+        assertEquals(1, batchExecutionRepository.failUnfinished(List.of(local.getId()),
+                BatchExecution.ExecutionStatus.RUNNING, now, "Interrupted"));
+        entityManager.clear();
+
+        BatchExecution failed = batchExecutionRepository.findById(local.getId()).orElseThrow();
+        assertEquals(BatchExecution.ExecutionStatus.FAILED, failed.getStatus());
+        assertEquals("Interrupted", failed.getErrorMessage());
+        assertNotNull(failed.getEndTime());
+        BatchExecution recorded = batchExecutionRepository.findById(later.getId()).orElseThrow();
+        assertEquals(BatchExecution.ExecutionStatus.RUNNING, recorded.getStatus());
+        assertEquals(4242L, recorded.getPid());
+        assertNotNull(recorded.getProcessStartedAt());
+    }
+
+    private BatchExecution claimable(BatchExecution.Priority priority, LocalDateTime queuedAt) {
+        return entityManager.persist(BatchExecution.builder()
+                .scriptPath("/path/to/script.sh")
+                .status(BatchExecution.ExecutionStatus.PENDING)
+                .priority(priority)
+                .queuedAt(queuedAt)
+                .build());
+    }
+
     @Test
     void testBatchExecutionRepository_FindByStatus() {
         // Create test data with different statuses
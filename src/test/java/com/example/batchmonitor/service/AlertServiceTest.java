@@ -0,0 +1,196 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.AlertEvent;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ExecutionLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class AlertServiceTest {
+
+    private static final String RULES =
+            "oom=contains:OutOfMemoryError;stream:stderr,warnings=contains:WARN;count:3;window:10,fatal=contains:FATAL";
+
+    @Mock
+    private WebSocketService webSocketService;
+
+    @Mock
+    private AlertWebhookSink webhookSink;
+
+    @Mock
+    private MetricsService metricsService;
+
+    private AlertService alertService;
+
+    private final BatchExecution execution = BatchExecution.builder()
+            .id(1L)
+            .scriptPath("/scripts/etl.sh")
+            .status(BatchExecution.ExecutionStatus.RUNNING)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        alertService = new AlertService(webSocketService, webhookSink, metricsService);
+        ReflectionTestUtils.setField(alertService, "rulesConfig", RULES);
+        ReflectionTestUtils.setField(alertService, "cooldownSeconds", 60L);
+    }
+
+    @Test
+    void evaluate_ShouldFireAStreamRuleOnlyForThatStream() {
+        // Arrange
+        alertService.start();
+
+        // Act
+        alertService.evaluate(execution, "java.lang.OutOfMemoryError mentioned on stdout", ExecutionLog.LogType.STDOUT);
+        alertService.evaluate(execution, "java.lang.OutOfMemoryError: Java heap space", ExecutionLog.LogType.STDERR);
+
+        // Assert
+        ArgumentCaptor<AlertEvent> alert = ArgumentCaptor.forClass(AlertEvent.class);
+        verify(webSocketService).sendAlert(alert.capture());
+        assertEquals("oom", alert.getValue().getRule());
+        assertEquals(1L, alert.getValue().getExecutionId());
+        assertEquals("/scripts/etl.sh", alert.getValue().getScriptPath());
+        assertEquals("STDERR", alert.getValue().getStream());
+        assertEquals(1, alert.getValue().getCount());
+        assertEquals("java.lang.OutOfMemoryError: Java heap space", alert.getValue().getLine());
+        verify(webhookSink).send(alert.getValue());
+        verify(metricsService).recordAlert("oom");
+    }
+
+    @Test
+    void evaluate_ShouldFireACountRuleOnceEnoughLinesMatchInTheWindow() {
+        // Arrange
+        alertService.start();
+
+        // Act
+        alertService.evaluate(execution, "[WARN] slow disk", ExecutionLog.LogType.STDOUT);
+        alertService.evaluate(execution, "[INFO] fine", ExecutionLog.LogType.STDOUT);
+        alertService.evaluate(execution, "[WARN] slow disk", ExecutionLog.LogType.STDERR);
+        verify(webSocketService, never()).sendAlert(any());
+        alertService.evaluate(execution, "[WARN] retrying", ExecutionLog.LogType.STDOUT);
+
+        // Assert
+        ArgumentCaptor<AlertEvent> alert = ArgumentCaptor.forClass(AlertEvent.class);
+        verify(webSocketService).sendAlert(alert.capture());
+        assertEquals("warnings", alert.getValue().getRule());
+        assertEquals(3, alert.getValue().getCount());
+        assertEquals(10, alert.getValue().getWindowSeconds());
+        assertNull(alert.getValue().getStream());
+    }
+
+    @Test
+    void evaluate_ShouldNotCountMatchesOlderThanTheWindow() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(alertService, "rulesConfig", "warnings=contains:WARN;count:2;window:1");
+        alertService.start();
+
+        // Act
+        alertService.evaluate(execution, "WARN first", ExecutionLog.LogType.STDOUT);
+        Thread.sleep(1100);
+        alertService.evaluate(execution, "WARN second", ExecutionLog.LogType.STDOUT);
+
+        // Assert
+        verify(webSocketService, never()).sendAlert(any());
+        alertService.evaluate(execution, "WARN third", ExecutionLog.LogType.STDOUT);
+        verify(webSocketService).sendAlert(any());
+    }
+
+    @Test
+    void evaluate_ShouldStayQuietDuringTheCooldownPerExecution() {
+        // Arrange
+        alertService.start();
+        BatchExecution other = BatchExecution.builder().id(2L).build();
+
+        // Act
+        alertService.evaluate(execution, "FATAL one", ExecutionLog.LogType.STDOUT);
+        alertService.evaluate(execution, "FATAL two", ExecutionLog.LogType.STDOUT);
+        alertService.evaluate(other, "FATAL elsewhere", ExecutionLog.LogType.STDOUT);
+        alertService.finished(1L);
+        alertService.evaluate(execution, "FATAL after a restart of the counters", ExecutionLog.LogType.STDOUT);
+
+        // Assert
+        verify(webSocketService, times(3)).sendAlert(any());
+    }
+
+    @Test
+    void evaluate_ShouldFireEveryRuleALineCompletes() {
+        // Arrange
+        ReflectionTestUtils.setField(alertService, "rulesConfig", "fatal=contains:FATAL,oom=contains:OutOfMemory,"
+                + "any-oom=contains:OutOfMemory");
+        alertService.start();
+
+        // Act
+        alertService.evaluate(execution, "FATAL OutOfMemory", ExecutionLog.LogType.STDOUT);
+
+        // Assert
+        verify(metricsService).recordAlert("fatal");
+        verify(metricsService).recordAlert("oom");
+        verify(metricsService).recordAlert("any-oom");
+    }
+
+    @Test
+    void evaluate_WithHundredsOfRules_ShouldFireOnlyTheMatchingOne() {
+        // Arrange
+        StringJoiner rules = new StringJoiner(",");
+        for (int i = 0; i < 500; i++) {
+            rules.add("rule" + i + "=contains:E" + i + "X");
+        }
+        ReflectionTestUtils.setField(alertService, "rulesConfig", rules.toString());
+        alertService.start();
+
+        // Act
+        alertService.evaluate(execution, "code E42X, then E4X", ExecutionLog.LogType.STDOUT);
+
+        // Assert
+        verify(metricsService).recordAlert("rule42");
+        verify(metricsService).recordAlert("rule4");
+        verify(webSocketService, times(2)).sendAlert(any());
+    }
+
+    @Test
+    void evaluate_WithoutRules_ShouldDoNothing() {
+        ReflectionTestUtils.setField(alertService, "rulesConfig", "");
+        alertService.start();
+
+        alertService.evaluate(execution, "FATAL OutOfMemoryError", ExecutionLog.LogType.STDERR);
+
+        verifyNoInteractions(webSocketService, webhookSink, metricsService);
+    }
+
+    @Test
+    void parseRules_ShouldApplyDefaults() {
+        List<AlertService.Rule> rules = AlertService.parseRules(" oom = contains: OutOfMemoryError ; stream: STDERR ,"
+                + "burst=contains:WARN;count:100");
+
+        assertEquals(List.of(
+                new AlertService.Rule("oom", "OutOfMemoryError", ExecutionLog.LogType.STDERR, 1, 0),
+                new AlertService.Rule("burst", "WARN", null, 100, 60)), rules);
+    }
+
+    @Test
+    void parseRules_ShouldRejectInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> AlertService.parseRules("nopattern=stream:stderr"));
+        assertThrows(IllegalArgumentException.class, () -> AlertService.parseRules("a=contains:x,a=contains:y"));
+        assertThrows(IllegalArgumentException.class, () -> AlertService.parseRules("a=contains:x;stream:both"));
+        assertThrows(IllegalArgumentException.class, () -> AlertService.parseRules("a=contains:x;count:0"));
+        assertThrows(IllegalArgumentException.class, () -> AlertService.parseRules("a=contains:x;count:100000"));
+        assertThrows(IllegalArgumentException.class, () -> AlertService.parseRules("a=contains:x;level:warn"));
+        assertThrows(IllegalArgumentException.class, () -> AlertService.parseRules("contains:x"));
+    }
+}
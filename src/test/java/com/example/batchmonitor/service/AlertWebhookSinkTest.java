@@ -0,0 +1,119 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.AlertEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertWebhookSinkTest {
+
+    /** Local stand-in for the webhook endpoint, recording what it is sent. */
+    private HttpServer stub;
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+    private volatile int status = 204;
+
+    private AlertWebhookSink sink;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        stub.createContext("/alerts", exchange -> {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            received.add(exchange.getRequestMethod() + " " + contentType + " "
+                    + new String(exchange.getRequestBody().readAllBytes()));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        stub.start();
+        sink = new AlertWebhookSink();
+        ReflectionTestUtils.setField(sink, "url", "http://127.0.0.1:" + stub.getAddress().getPort() + "/alerts");
+        ReflectionTestUtils.setField(sink, "timeoutMillis", 2000L);
+        ReflectionTestUtils.setField(sink, "queueCapacity", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.stop();
+        stub.stop(0);
+    }
+
+    @Test
+    void send_ShouldPostTheAlertAsJson() throws Exception {
+        // Arrange
+        sink.start();
+        AlertEvent event = AlertEvent.builder()
+                .executionId(7L)
+                .rule("oom")
+                .pattern("OutOfMemoryError")
+                .stream("STDERR")
+                .count(1)
+                .timestamp(LocalDateTime.of(2026, 5, 6, 7, 8, 9))
+                .line("java.lang.OutOfMemoryError: Java heap space")
+                .build();
+
+        // Act
+        sink.send(event);
+
+        // Assert
+        String request = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertTrue(request.startsWith("POST application/json "), request);
+        JsonNode body = new ObjectMapper().readTree(request.substring("POST application/json ".length()));
+        assertEquals(7, body.get("executionId").asLong());
+        assertEquals("oom", body.get("rule").asText());
+        assertEquals("2026-05-06T07:08:09", body.get("timestamp").asText());
+        assertEquals("java.lang.OutOfMemoryError: Java heap space", body.get("line").asText());
+    }
+
+    @Test
+    void send_ShouldKeepGoingAfterAFailedPost() throws Exception {
+        // Arrange
+        sink.start();
+        status = 500;
+
+        // Act
+        sink.send(AlertEvent.builder().executionId(1L).rule("first").build());
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        status = 204;
+        sink.send(AlertEvent.builder().executionId(1L).rule("second").build());
+
+        // Assert
+        String request = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertTrue(request.contains("\"second\""), request);
+    }
+
+    @Test
+    void send_WithoutAUrl_ShouldDoNothing() throws Exception {
+        ReflectionTestUtils.setField(sink, "url", "");
+        sink.start();
+
+        sink.send(AlertEvent.builder().executionId(1L).rule("oom").build());
+
+        assertFalse(sink.isEnabled());
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void start_ShouldRejectANonHttpUrl() {
+        ReflectionTestUtils.setField(sink, "url", "ftp://example.com/alerts");
+
+        assertThrows(IllegalArgumentException.class, () -> sink.start());
+    }
+}
@@ -5,19 +5,26 @@ import com.example.batchmonitor.dto.BatchExecutionResponse;
 import com.example.batchmonitor.entity.BatchExecution;
 import com.example.batchmonitor.exception.BatchExecutionException;
 import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.projection.ExecutionSummary;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.File;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -32,13 +39,26 @@ class BatchExecutionServiceTest {
     private BatchExecutionRepository executionRepository;
 
     @Mock
-    private ScriptExecutionService scriptExecutionService;
+    private ExecutionScheduler executionScheduler;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private ResultCacheService resultCacheService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate();
 
     @InjectMocks
     private BatchExecutionService batchExecutionService;
 
     @BeforeEach
     void setUp() {
+        transactionTemplate.setTransactionManager(transactionManager);
         ReflectionTestUtils.setField(batchExecutionService, "baseScriptsDir", "/test/scripts");
         ReflectionTestUtils.setField(batchExecutionService, "defaultScript", "default.sh");
     }
@@ -59,7 +79,7 @@ class BatchExecutionServiceTest {
                 .build();
 
         when(executionRepository.save(any(BatchExecution.class))).thenReturn(savedExecution);
-        when(scriptExecutionService.executeScript(any(BatchExecution.class)))
+        when(executionScheduler.submit(any(BatchExecution.class)))
                 .thenReturn(CompletableFuture.completedFuture("Success"));
 
         // Act
@@ -81,9 +101,335 @@ class BatchExecutionServiceTest {
         assertEquals("--param value", capturedExecution.getParameters());
         assertEquals(BatchExecution.ExecutionStatus.PENDING, capturedExecution.getStatus());
         assertEquals(0.0, capturedExecution.getProgress());
+        assertEquals("default", capturedExecution.getOwner());
+        assertEquals(BatchExecution.Priority.NORMAL, capturedExecution.getPriority());
+        assertNull(capturedExecution.getStructuredOutput());
+        assertNull(capturedExecution.getProgressChannel());
+
+        // Verify script execution was queued
+        verify(executionScheduler).submit(any(BatchExecution.class));
+    }
+
+    @Test
+    void startExecution_WithStructuredOutput_ShouldRecordTheOptIn() {
+        // Arrange
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("etl.py");
+        request.setStructuredOutput(true);
+        when(executionRepository.save(any(BatchExecution.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionScheduler.submit(any(BatchExecution.class)))
+                .thenReturn(CompletableFuture.completedFuture("Success"));
+
+        // Act
+        batchExecutionService.startExecution(request);
+
+        // Assert
+        ArgumentCaptor<BatchExecution> executionCaptor = ArgumentCaptor.forClass(BatchExecution.class);
+        verify(executionRepository).save(executionCaptor.capture());
+        assertEquals(Boolean.TRUE, executionCaptor.getValue().getStructuredOutput());
+    }
+
+    @Test
+    void startExecution_WithProgressChannel_ShouldRecordTheOptIn() {
+        // Arrange
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("etl.sh");
+        request.setProgressChannel(true);
+        when(executionRepository.save(any(BatchExecution.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionScheduler.submit(any(BatchExecution.class)))
+                .thenReturn(CompletableFuture.completedFuture("Success"));
+
+        // Act
+        batchExecutionService.startExecution(request);
+
+        // Assert
+        ArgumentCaptor<BatchExecution> executionCaptor = ArgumentCaptor.forClass(BatchExecution.class);
+        verify(executionRepository).save(executionCaptor.capture());
+        assertEquals(Boolean.TRUE, executionCaptor.getValue().getProgressChannel());
+        assertNull(executionCaptor.getValue().getStructuredOutput());
+    }
+
+    @Test
+    void startExecution_WithCacheHit_ShouldReplayInsteadOfRunning() {
+        // Arrange
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("report.py");
+        request.setParameters("--day 1");
+        request.setUseCache(true);
+        request.setInputFiles(List.of("data.csv"));
+        String scriptPath = new File("/test/scripts/report.py").getPath();
+
+        BatchExecution savedExecution = BatchExecution.builder()
+                .id(2L)
+                .scriptPath(scriptPath)
+                .status(BatchExecution.ExecutionStatus.PENDING)
+                .build();
+        ResultCacheService.CachedResult cached = new ResultCacheService.CachedResult(null,
+                new ResultCacheService.Meta(scriptPath, "--day 1", 1L, 0, 3, 0L));
+
+        when(resultCacheService.isEnabled()).thenReturn(true);
+        when(resultCacheService.cacheKey(scriptPath, "--day 1", List.of("data.csv"))).thenReturn("key");
+        when(resultCacheService.lookup("key")).thenReturn(Optional.of(cached));
+        when(executionRepository.save(any(BatchExecution.class))).thenReturn(savedExecution);
+        when(resultCacheService.replay(savedExecution, cached)).thenAnswer(invocation -> {
+            savedExecution.setStatus(BatchExecution.ExecutionStatus.COMPLETED);
+            return true;
+        });
+
+        // Act
+        BatchExecutionResponse response = batchExecutionService.startExecution(request);
+
+        // Assert
+        assertEquals(BatchExecution.ExecutionStatus.COMPLETED, response.getStatus());
+        verify(metricsService).recordCacheLookup(scriptPath, true);
+        verify(executionScheduler, never()).submit(any());
+    }
+
+    @Test
+    void startExecution_WithCacheMiss_ShouldRunAndStoreResult() {
+        // Arrange
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("report.py");
+        request.setUseCache(true);
+        String scriptPath = new File("/test/scripts/report.py").getPath();
+
+        BatchExecution savedExecution = BatchExecution.builder()
+                .id(3L)
+                .scriptPath(scriptPath)
+                .status(BatchExecution.ExecutionStatus.PENDING)
+                .build();
+
+        when(resultCacheService.isEnabled()).thenReturn(true);
+        when(resultCacheService.cacheKey(scriptPath, null, null)).thenReturn("key");
+        when(resultCacheService.lookup("key")).thenReturn(Optional.empty());
+        when(executionRepository.save(any(BatchExecution.class))).thenReturn(savedExecution);
+        when(executionScheduler.submit(savedExecution))
+                .thenReturn(CompletableFuture.completedFuture("report"));
+
+        // Act
+        batchExecutionService.startExecution(request);
+
+        // Assert
+        verify(metricsService).recordCacheLookup(scriptPath, false);
+        verify(resultCacheService).store("key", savedExecution, null, "report");
+    }
+
+    @Test
+    void startExecution_WithoutOptIn_ShouldNotTouchCache() {
+        // Arrange
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("report.py");
+        BatchExecution savedExecution = BatchExecution.builder().id(4L).build();
+        when(executionRepository.save(any(BatchExecution.class))).thenReturn(savedExecution);
+        when(executionScheduler.submit(savedExecution))
+                .thenReturn(CompletableFuture.completedFuture("report"));
+
+        // Act
+        batchExecutionService.startExecution(request);
+
+        // Assert
+        verifyNoInteractions(resultCacheService);
+    }
+
+    @Test
+    void startExecution_WithSingleFlight_ShouldAttachIdenticalRequestsToRunInFlight() {
+        // Arrange
+        ReflectionTestUtils.setField(batchExecutionService, "singleFlight", true);
+        BatchExecution running = BatchExecution.builder()
+                .id(5L)
+                .scriptPath(new File("/test/scripts/heavy.sh").getPath())
+                .parameters("--full")
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+        CompletableFuture<String> run = new CompletableFuture<>();
+        when(executionRepository.save(any(BatchExecution.class))).thenReturn(running);
+        when(executionScheduler.submit(running)).thenReturn(run);
+
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("heavy.sh");
+        request.setParameters("--full");
+        BatchExecutionRequest duplicate = new BatchExecutionRequest();
+        duplicate.setScriptName("heavy.sh");
+        duplicate.setParameters("  --full ");
+
+        // Act
+        BatchExecutionResponse first = batchExecutionService.startExecution(request);
+        BatchExecutionResponse second = batchExecutionService.startExecution(duplicate);
+
+        // Assert
+        assertEquals(5L, first.getId());
+        assertEquals(5L, second.getId());
+        assertEquals(BatchExecution.ExecutionStatus.RUNNING, second.getStatus());
+        verify(executionRepository, times(1)).save(any(BatchExecution.class));
+        verify(executionScheduler, times(1)).submit(any(BatchExecution.class));
+        verify(metricsService).recordDeduplicated(running.getScriptPath());
+        // The attached request waited outside any transaction
+        verify(transactionManager, times(1)).getTransaction(any());
+
+        // Act - once the run finishes an identical request starts a new one
+        run.complete("done");
+        batchExecutionService.startExecution(duplicate);
+
+        // Assert
+        verify(executionScheduler, times(2)).submit(any(BatchExecution.class));
+    }
 
-        // Verify script execution was started
-        verify(scriptExecutionService).executeScript(any(BatchExecution.class));
+    @Test
+    void startExecution_WithSingleFlight_ShouldRunDifferentParametersSeparately() {
+        // Arrange
+        ReflectionTestUtils.setField(batchExecutionService, "singleFlight", true);
+        when(executionRepository.save(any(BatchExecution.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionScheduler.submit(any(BatchExecution.class))).thenReturn(new CompletableFuture<>());
+
+        BatchExecutionRequest first = new BatchExecutionRequest();
+        first.setScriptName("heavy.sh");
+        first.setParameters("--day 1");
+        BatchExecutionRequest second = new BatchExecutionRequest();
+        second.setScriptName("heavy.sh");
+        second.setParameters("--day 2");
+
+        // Act
+        batchExecutionService.startExecution(first);
+        batchExecutionService.startExecution(second);
+
+        // Assert
+        verify(executionScheduler, times(2)).submit(any(BatchExecution.class));
+        verify(metricsService, never()).recordDeduplicated(any());
+    }
+
+    @Test
+    void startExecution_WithSingleFlight_ShouldReleaseKeyWhenStartFails() {
+        // Arrange
+        ReflectionTestUtils.setField(batchExecutionService, "singleFlight", true);
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("heavy.sh");
+        when(executionRepository.save(any(BatchExecution.class)))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionScheduler.submit(any(BatchExecution.class))).thenReturn(new CompletableFuture<>());
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> batchExecutionService.startExecution(request));
+        batchExecutionService.startExecution(request);
+
+        // Assert
+        verify(executionScheduler, times(1)).submit(any(BatchExecution.class));
+        verify(metricsService, never()).recordDeduplicated(any());
+    }
+
+    @Test
+    void startExecution_WithSingleFlight_ShouldPublishRunOnlyOnceCommitted() {
+        // Arrange
+        ReflectionTestUtils.setField(batchExecutionService, "singleFlight", true);
+        when(executionRepository.save(any(BatchExecution.class))).thenAnswer(invocation -> {
+            BatchExecution execution = invocation.getArgument(0);
+            execution.setId(execution.getId() == null ? 5L : execution.getId());
+            return execution;
+        });
+        when(executionScheduler.submit(any(BatchExecution.class))).thenReturn(new CompletableFuture<>());
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("heavy.sh");
+        Map<String, CompletableFuture<BatchExecution>> inFlight = inFlight();
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            batchExecutionService.startExecution(request);
+            CompletableFuture<BatchExecution> flight = inFlight.values().iterator().next();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+            // Assert - not visible to attached requests before the commit
+            assertFalse(flight.isDone());
+
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            assertEquals(5L, flight.join().getId());
+            assertSame(flight, inFlight.values().iterator().next());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void startExecution_WithSingleFlight_ShouldFailAttachedRequestsOnRollback() {
+        // Arrange
+        ReflectionTestUtils.setField(batchExecutionService, "singleFlight", true);
+        when(executionRepository.save(any(BatchExecution.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionScheduler.submit(any(BatchExecution.class))).thenReturn(new CompletableFuture<>());
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("heavy.sh");
+        Map<String, CompletableFuture<BatchExecution>> inFlight = inFlight();
+
+        // Act
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            batchExecutionService.startExecution(request);
+            CompletableFuture<BatchExecution> flight = inFlight.values().iterator().next();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+            // Assert
+            assertTrue(flight.isCompletedExceptionally());
+            assertTrue(inFlight.isEmpty());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void startExecution_WithSingleFlight_ShouldNotAttachOtherOwnersOrRunOptions() {
+        // Arrange
+        ReflectionTestUtils.setField(batchExecutionService, "singleFlight", true);
+        when(executionRepository.save(any(BatchExecution.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionScheduler.submit(any(BatchExecution.class))).thenReturn(new CompletableFuture<>());
+        BatchExecutionRequest teamA = singleFlightRequest();
+        teamA.setOwner("team-a");
+        BatchExecutionRequest teamB = singleFlightRequest();
+        teamB.setOwner("team-b");
+        BatchExecutionRequest urgent = singleFlightRequest();
+        urgent.setOwner("team-a");
+        urgent.setPriority(BatchExecution.Priority.HIGH);
+        BatchExecutionRequest structured = singleFlightRequest();
+        structured.setOwner("team-a");
+        structured.setStructuredOutput(true);
+
+        // Act
+        batchExecutionService.startExecution(teamA);
+        batchExecutionService.startExecution(teamB);
+        batchExecutionService.startExecution(urgent);
+        batchExecutionService.startExecution(structured);
+
+        // Assert
+        verify(executionScheduler, times(4)).submit(any(BatchExecution.class));
+        verify(metricsService, never()).recordDeduplicated(any());
+    }
+
+    @Test
+    void flightKey_ShouldIgnoreParameterSpacingButNotRunOptions() {
+        BatchExecution execution = BatchExecution.builder()
+                .scriptPath("/s/a.sh")
+                .owner(ExecutionScheduler.DEFAULT_OWNER)
+                .priority(BatchExecution.Priority.NORMAL)
+                .build();
+        BatchExecutionRequest spaced = singleFlightRequest();
+        spaced.setParameters(" -x  1 ");
+        BatchExecutionRequest plain = singleFlightRequest();
+        plain.setParameters("-x 1");
+        BatchExecutionRequest cached = singleFlightRequest();
+        cached.setParameters("-x 1");
+        cached.setUseCache(true);
+        BatchExecutionRequest withInput = singleFlightRequest();
+        withInput.setParameters("-x 1");
+        withInput.setInputFiles(List.of("-x"));
+        BatchExecutionRequest withArgument = singleFlightRequest();
+        withArgument.setParameters("-x -x 1");
+
+        assertEquals(BatchExecutionService.flightKey(execution, plain), BatchExecutionService.flightKey(execution, spaced));
+        assertNotEquals(BatchExecutionService.flightKey(execution, plain), BatchExecutionService.flightKey(execution, cached));
+        assertNotEquals(BatchExecutionService.flightKey(execution, withInput),
+                BatchExecutionService.flightKey(execution, withArgument));
     }
 
     @Test
@@ -102,7 +448,7 @@ class BatchExecutionServiceTest {
                 .build();
 
         when(executionRepository.save(any(BatchExecution.class))).thenReturn(savedExecution);
-        when(scriptExecutionService.executeScript(any(BatchExecution.class)))
+        when(executionScheduler.submit(any(BatchExecution.class)))
                 .thenReturn(CompletableFuture.completedFuture("Success"));
 
         // Act
@@ -136,7 +482,7 @@ class BatchExecutionServiceTest {
                 .build();
 
         when(executionRepository.save(any(BatchExecution.class))).thenReturn(savedExecution);
-        when(scriptExecutionService.executeScript(any(BatchExecution.class)))
+        when(executionScheduler.submit(any(BatchExecution.class)))
                 .thenReturn(CompletableFuture.completedFuture("Success"));
 
         // Act
@@ -156,16 +502,11 @@ class BatchExecutionServiceTest {
     @Test
     void getExecution_ShouldReturnExecution() {
         // Arrange
-        BatchExecution execution = BatchExecution.builder()
-                .id(1L)
-                .scriptPath("/test/script.sh")
-                .parameters("--param value")
-                .startTime(LocalDateTime.now())
-                .status(BatchExecution.ExecutionStatus.RUNNING)
-                .progress(50.0)
-                .build();
+        ExecutionSummary summary = new ExecutionSummary(
+                1L, "/test/script.sh", "--param value", "etl", BatchExecution.Priority.HIGH, LocalDateTime.now(), null,
+                BatchExecution.ExecutionStatus.RUNNING, null, 50.0, null, "8-11", "node-a");
 
-        when(executionRepository.findById(1L)).thenReturn(Optional.of(execution));
+        when(executionRepository.findSummaryById(1L)).thenReturn(Optional.of(summary));
 
         // Act
         BatchExecutionResponse response = batchExecutionService.getExecution(1L);
@@ -175,46 +516,44 @@ class BatchExecutionServiceTest {
         assertEquals(1L, response.getId());
         assertEquals("/test/script.sh", response.getScriptPath());
         assertEquals("--param value", response.getParameters());
-        assertEquals(execution.getStartTime(), response.getStartTime());
+        assertEquals(summary.startTime(), response.getStartTime());
         assertEquals(BatchExecution.ExecutionStatus.RUNNING, response.getStatus());
         assertEquals(50.0, response.getProgress());
+        assertEquals("etl", response.getOwner());
+        assertEquals(BatchExecution.Priority.HIGH, response.getPriority());
+        assertEquals("8-11", response.getCpuSet());
+        assertEquals("node-a", response.getNodeId());
 
-        verify(executionRepository).findById(1L);
+        verify(executionRepository).findSummaryById(1L);
+        verify(executionRepository, never()).findById(any());
     }
 
     @Test
     void getExecution_WhenNotFound_ShouldThrowException() {
         // Arrange
-        when(executionRepository.findById(99L)).thenReturn(Optional.empty());
+        when(executionRepository.findSummaryById(99L)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(BatchExecutionException.class, () -> {
             batchExecutionService.getExecution(99L);
         });
 
-        verify(executionRepository).findById(99L);
+        verify(executionRepository).findSummaryById(99L);
     }
 
     @Test
     void getAllExecutions_ShouldReturnAllExecutions() {
         // Arrange
-        List<BatchExecution> executions = Arrays.asList(
-                BatchExecution.builder()
-                        .id(1L)
-                        .scriptPath("/test/script1.sh")
-                        .status(BatchExecution.ExecutionStatus.COMPLETED)
-                        .startTime(LocalDateTime.now().minusHours(1))
-                        .endTime(LocalDateTime.now())
-                        .build(),
-                BatchExecution.builder()
-                        .id(2L)
-                        .scriptPath("/test/script2.sh")
-                        .status(BatchExecution.ExecutionStatus.RUNNING)
-                        .startTime(LocalDateTime.now())
-                        .build()
+        List<ExecutionSummary> executions = Arrays.asList(
+                new ExecutionSummary(1L, "/test/script1.sh", null, "default", BatchExecution.Priority.NORMAL,
+                        LocalDateTime.now().minusHours(1), LocalDateTime.now(),
+                        BatchExecution.ExecutionStatus.COMPLETED, null, null, null, null, null),
+                new ExecutionSummary(2L, "/test/script2.sh", null, "default", BatchExecution.Priority.NORMAL,
+                        LocalDateTime.now(), null,
+                        BatchExecution.ExecutionStatus.RUNNING, null, null, null, null, null)
         );
 
-        when(executionRepository.findAllByOrderByStartTimeDesc()).thenReturn(executions);
+        when(executionRepository.findAllSummaries()).thenReturn(executions);
 
         // Act
         List<BatchExecutionResponse> responses = batchExecutionService.getAllExecutions();
@@ -231,6 +570,18 @@ class BatchExecutionServiceTest {
         assertEquals("/test/script2.sh", responses.get(1).getScriptPath());
         assertEquals(BatchExecution.ExecutionStatus.RUNNING, responses.get(1).getStatus());
 
-        verify(executionRepository).findAllByOrderByStartTimeDesc();
+        verify(executionRepository).findAllSummaries();
+    }
+
+    @SuppressWarnings("unchecked")
+    private BatchExecutionRequest singleFlightRequest() {
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setScriptName("heavy.sh");
+        request.setParameters("--full");
+        return request;
+    }
+
+    private Map<String, CompletableFuture<BatchExecution>> inFlight() {
+        return (Map<String, CompletableFuture<BatchExecution>>) ReflectionTestUtils.getField(batchExecutionService, "inFlight");
     }
 }
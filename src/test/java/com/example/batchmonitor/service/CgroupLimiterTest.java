@@ -0,0 +1,211 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.util.ScriptUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Uses a temporary directory laid out like a delegated cgroup v2 subtree; the
+ * kernel side (enforcing limits, counting usage) is simulated by writing the
+ * interface files directly.
+ */
+class CgroupLimiterTest {
+
+    @TempDir
+    Path hierarchy;
+
+    private Path root;
+    private ClusterCoordinator clusterCoordinator;
+    private CgroupLimiter limiter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(hierarchy.resolve("cgroup.controllers"), "cpuset cpu io memory pids\n");
+        root = hierarchy.resolve("batch-monitor");
+        Files.createDirectory(root);
+        Files.writeString(root.resolve("cgroup.controllers"), "cpu memory pids\n");
+
+        clusterCoordinator = mock(ClusterCoordinator.class);
+        limiter = new CgroupLimiter(clusterCoordinator);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "root", root.toString());
+        ReflectionTestUtils.setField(limiter, "defaultCpu", "0.5");
+        ReflectionTestUtils.setField(limiter, "defaultMemory", "256M");
+        ReflectionTestUtils.setField(limiter, "defaultPids", 0L);
+        ReflectionTestUtils.setField(limiter, "scriptLimits", "reports/etl.sh=cpu:2;pids:64");
+        ReflectionTestUtils.setField(limiter, "baseScriptsDir", "/opt/scripts");
+    }
+
+    @Test
+    void start_ShouldEnableControllersAndKeepLeftoverGroups() throws IOException {
+        Files.createDirectory(root.resolve("exec-42"));
+
+        limiter.start();
+
+        assertTrue(limiter.isActive());
+        assertEquals("+cpu +memory +pids", Files.readString(root.resolve("cgroup.subtree_control")));
+        assertTrue(Files.exists(root.resolve("exec-42")), "A surviving run may still be re-attached to it");
+    }
+
+    @Test
+    void adoptAndRemoveUnclaimed_ShouldKeepOnlyGroupsOfReattachedRuns() throws IOException {
+        Path survivor = Files.createDirectory(root.resolve("exec-42"));
+        Files.writeString(survivor.resolve("cpu.max"), "50000 100000\n");
+        Files.writeString(survivor.resolve("memory.max"), "1048576\n");
+        Files.writeString(survivor.resolve("pids.max"), "max\n");
+        Path lost = Files.createDirectory(root.resolve("exec-43"));
+        limiter.start();
+
+        CgroupLimiter.Group adopted = limiter.adopt(execution(42L, "/opt/scripts/a.sh")).orElseThrow();
+        limiter.removeUnclaimed();
+
+        assertEquals(survivor, adopted.path());
+        assertEquals(new CgroupLimiter.Limits(50_000L, 1_048_576L, null), adopted.limits());
+        assertEquals(survivor, limiter.groupPath(42L));
+        assertTrue(Files.exists(survivor));
+        assertFalse(Files.exists(lost));
+        assertTrue(limiter.adopt(execution(43L, "/opt/scripts/a.sh")).isEmpty());
+    }
+
+    @Test
+    void removeUnclaimed_InCluster_ShouldLeaveOtherNodesGroupsAlone() throws IOException {
+        // Arrange - node-b and an older unscoped instance share the host and root
+        when(clusterCoordinator.isEnabled()).thenReturn(true);
+        when(clusterCoordinator.nodeId()).thenReturn("node-a");
+        Path mine = Files.createDirectories(root.resolve("node-a").resolve("exec-43"));
+        Path otherNode = Files.createDirectories(root.resolve("node-b").resolve("exec-44"));
+        Path unscoped = Files.createDirectory(root.resolve("exec-45"));
+
+        // Act
+        limiter.start();
+        CgroupLimiter.Group created = limiter.create(execution(1L, "/opt/scripts/a.sh")).orElseThrow();
+        limiter.removeUnclaimed();
+
+        // Assert
+        assertEquals(root.resolve("node-a").resolve("exec-1"), created.path());
+        assertEquals("+cpu +memory +pids", Files.readString(root.resolve("node-a").resolve("cgroup.subtree_control")));
+        assertFalse(Files.exists(mine));
+        assertTrue(Files.exists(otherNode));
+        assertTrue(Files.exists(unscoped));
+    }
+
+    @Test
+    void start_ShouldStayInactiveOutsideCgroupV2() throws IOException {
+        Files.delete(hierarchy.resolve("cgroup.controllers"));
+
+        limiter.start();
+
+        assertFalse(limiter.isActive());
+        assertTrue(limiter.create(execution(1L, "/opt/scripts/a.sh")).isEmpty());
+    }
+
+    @Test
+    void create_ShouldWriteDefaultAndPerScriptLimits() throws IOException {
+        limiter.start();
+
+        CgroupLimiter.Group plain = limiter.create(execution(1L, "/opt/scripts/a.sh")).orElseThrow();
+        CgroupLimiter.Group etl = limiter.create(execution(2L, "/opt/scripts/reports/etl.sh")).orElseThrow();
+
+        assertEquals(root.resolve("exec-1"), plain.path());
+        assertEquals("50000 100000", Files.readString(plain.path().resolve("cpu.max")));
+        assertEquals(Long.toString(256L * 1024 * 1024), Files.readString(plain.path().resolve("memory.max")));
+        assertFalse(Files.exists(plain.path().resolve("pids.max")));
+
+        assertEquals("200000 100000", Files.readString(etl.path().resolve("cpu.max")));
+        assertEquals(Long.toString(256L * 1024 * 1024), Files.readString(etl.path().resolve("memory.max")));
+        assertEquals("64", Files.readString(etl.path().resolve("pids.max")));
+        assertEquals(etl.path(), limiter.groupPath(2L));
+    }
+
+    @Test
+    void wrap_ShouldJoinGroupBeforeRunningCommand() throws Exception {
+        assumeTrue(ScriptUtils.isUnixSystem());
+        limiter.start();
+        CgroupLimiter.Group group = limiter.create(execution(1L, "/opt/scripts/a.sh")).orElseThrow();
+
+        Process process = new ProcessBuilder(limiter.wrap(group, List.of("echo", "hello", "world"))).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertEquals(0, process.waitFor());
+        assertEquals("hello world\n", output);
+        assertEquals(process.pid(), Long.parseLong(Files.readString(group.path().resolve("cgroup.procs")).trim()),
+                "The shell writes its own pid, which exec hands to the command");
+    }
+
+    @Test
+    void oomKilledAndRelease_ShouldReadEventsAndRemoveGroup() throws IOException {
+        limiter.start();
+        CgroupLimiter.Group group = limiter.create(execution(1L, "/opt/scripts/a.sh")).orElseThrow();
+        Files.writeString(group.path().resolve("memory.events"), "low 0\nhigh 0\nmax 12\noom 1\noom_kill 0\n");
+        assertFalse(limiter.oomKilled(group));
+        Files.writeString(group.path().resolve("memory.events"), "low 0\nhigh 0\nmax 12\noom 1\noom_kill 1\n");
+        assertTrue(limiter.oomKilled(group));
+
+        // The kernel removes interface files along with the group; a plain directory needs them gone first
+        try (var files = Files.list(group.path())) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        limiter.release(group);
+
+        assertFalse(Files.exists(group.path()));
+        assertNull(limiter.groupPath(1L));
+    }
+
+    @Test
+    void readKeyAndValue_ShouldParseCgroupFiles() throws IOException {
+        Files.writeString(hierarchy.resolve("cpu.stat"), "usage_usec 1234\nuser_usec 1000\n");
+        Files.writeString(hierarchy.resolve("memory.current"), "4096\n");
+        Files.writeString(hierarchy.resolve("memory.max"), "max\n");
+
+        assertEquals(1234, CgroupLimiter.readKey(hierarchy.resolve("cpu.stat"), "usage_usec"));
+        assertEquals(0, CgroupLimiter.readKey(hierarchy.resolve("cpu.stat"), "system_usec"));
+        assertEquals(4096, CgroupLimiter.readValue(hierarchy.resolve("memory.current")));
+        assertEquals(0, CgroupLimiter.readValue(hierarchy.resolve("memory.max")));
+        assertEquals(0, CgroupLimiter.readValue(hierarchy.resolve("missing")));
+    }
+
+    @Test
+    void parse_ShouldRejectInvalidLimits() {
+        assertEquals(150_000L, CgroupLimiter.parseCpu("1.5"));
+        assertEquals(512L * 1024 * 1024, CgroupLimiter.parseMemory("512m"));
+        assertEquals(1000L, CgroupLimiter.parseMemory("1000"));
+        assertEquals(Map.of("a.sh", new CgroupLimiter.Limits(null, 1024L, 8L)),
+                CgroupLimiter.parseScriptLimits(" a.sh = memory:1K;pids:8", CgroupLimiter.Limits.NONE));
+
+        assertThrows(IllegalArgumentException.class, () -> CgroupLimiter.parseCpu("0"));
+        assertThrows(IllegalArgumentException.class, () -> CgroupLimiter.parseCpu("lots"));
+        assertThrows(IllegalArgumentException.class, () -> CgroupLimiter.parseMemory("12X"));
+        assertThrows(IllegalArgumentException.class, () -> CgroupLimiter.parseMemory("M"));
+        assertThrows(IllegalArgumentException.class,
+                () -> CgroupLimiter.parseScriptLimits("a.sh=disk:1G", CgroupLimiter.Limits.NONE));
+        assertThrows(IllegalArgumentException.class,
+                () -> CgroupLimiter.parseScriptLimits("a.sh=pids:0", CgroupLimiter.Limits.NONE));
+        assertThrows(IllegalArgumentException.class,
+                () -> CgroupLimiter.parseScriptLimits("cpu:1", CgroupLimiter.Limits.NONE));
+    }
+
+    private static BatchExecution execution(Long id, String scriptPath) {
+        return BatchExecution.builder()
+                .id(id)
+                .scriptPath(scriptPath)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+    }
+}
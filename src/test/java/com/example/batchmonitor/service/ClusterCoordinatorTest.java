@@ -0,0 +1,251 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ClusterNode;
+import com.example.batchmonitor.exception.ClaimLostException;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.ClusterNodeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterCoordinatorTest {
+
+    @Mock
+    private BatchExecutionRepository executionRepository;
+
+    @Mock
+    private ClusterNodeRepository nodeRepository;
+
+    @InjectMocks
+    private ClusterCoordinator coordinator;
+
+    /** Runs handed to the local scheduler, with the futures it returned for them. */
+    private final Map<Long, CompletableFuture<String>> started = new LinkedHashMap<>();
+
+    /** Runs the coordinator asked the local scheduler to stop. */
+    private final List<Long> stopped = new ArrayList<>();
+
+    private int freeSlots;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coordinator, "enabled", true);
+        ReflectionTestUtils.setField(coordinator, "nodeId", "node-a");
+        ReflectionTestUtils.setField(coordinator, "capacity", 4);
+        ReflectionTestUtils.setField(coordinator, "leaseMillis", 30_000L);
+        ReflectionTestUtils.setField(coordinator, "maxRetries", 1);
+        coordinator.registerWorker(() -> freeSlots, execution -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            started.put(execution.getId(), future);
+            return future;
+        }, stopped::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void poll_ShouldClaimUpToFreeSlotsAndSkipLostRaces() {
+        // Arrange
+        freeSlots = 2;
+        when(executionRepository.findClaimableIds(any(Pageable.class))).thenReturn(List.of(1L, 2L, 3L, 4L));
+        when(executionRepository.claim(eq(1L), eq("node-a"), any())).thenReturn(0);
+        when(executionRepository.claim(eq(2L), eq("node-a"), any())).thenReturn(1);
+        when(executionRepository.claim(eq(3L), eq("node-a"), any())).thenReturn(1);
+        when(executionRepository.findById(2L)).thenReturn(Optional.of(execution(2L)));
+        when(executionRepository.findById(3L)).thenReturn(Optional.of(execution(3L)));
+        when(executionRepository.renewLeases(eq("node-a"), anyCollection(), any())).thenReturn(2);
+
+        // Act
+        coordinator.poll();
+        coordinator.heartbeat();
+
+        // Assert
+        assertEquals(List.of(2L, 3L), List.copyOf(started.keySet()));
+        verify(executionRepository, never()).claim(eq(4L), anyString(), any());
+        ArgumentCaptor<Collection<Long>> renewed = ArgumentCaptor.captor();
+        verify(executionRepository).renewLeases(eq("node-a"), renewed.capture(), any());
+        assertEquals(Set.of(2L, 3L), Set.copyOf(renewed.getValue()));
+        ArgumentCaptor<ClusterNode> node = ArgumentCaptor.forClass(ClusterNode.class);
+        verify(nodeRepository).save(node.capture());
+        assertEquals(2, node.getValue().getRunning());
+    }
+
+    @Test
+    void submit_ShouldMarkClaimableAndSettleWhenThisNodeRunsIt() {
+        // Arrange
+        BatchExecution submitted = execution(7L);
+        BatchExecution claimed = execution(7L);
+        freeSlots = 1;
+        when(executionRepository.findClaimableIds(any(Pageable.class))).thenReturn(List.of(7L));
+        when(executionRepository.claim(eq(7L), eq("node-a"), any())).thenReturn(1);
+        when(executionRepository.findById(7L)).thenReturn(Optional.of(claimed));
+
+        // Act
+        CompletableFuture<String> result = coordinator.submit(submitted);
+        coordinator.poll();
+        claimed.setStatus(BatchExecution.ExecutionStatus.COMPLETED);
+        claimed.setNodeId("node-a");
+        started.get(7L).complete("output");
+
+        // Assert
+        assertNotNull(submitted.getQueuedAt());
+        verify(executionRepository).save(submitted);
+        assertEquals("output", result.join());
+        assertEquals(BatchExecution.ExecutionStatus.COMPLETED, submitted.getStatus());
+        assertEquals("node-a", submitted.getNodeId());
+    }
+
+    @Test
+    void submit_ShouldSettleWhenAnotherNodeFinishesIt() {
+        // Arrange
+        BatchExecution submitted = execution(7L);
+        BatchExecution finished = execution(7L);
+        finished.setStatus(BatchExecution.ExecutionStatus.FAILED);
+        finished.setErrorMessage("Script execution failed with exit code: 3");
+        finished.setExitCode(3);
+        finished.setNodeId("node-b");
+        when(executionRepository.findByIdInAndStatusIn(List.of(7L), ClusterCoordinator.FINISHED))
+                .thenReturn(List.of(finished));
+
+        // Act
+        CompletableFuture<String> result = coordinator.submit(submitted);
+        coordinator.poll();
+
+        // Assert
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertEquals("Script execution failed with exit code: 3", error.getCause().getMessage());
+        assertEquals(BatchExecution.ExecutionStatus.FAILED, submitted.getStatus());
+        assertEquals(3, submitted.getExitCode());
+        assertEquals("node-b", submitted.getNodeId());
+        verify(executionRepository, never()).findClaimableIds(any());
+    }
+
+    @Test
+    void submit_InTransaction_ShouldFailOnRollback() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        CompletableFuture<String> result = coordinator.submit(execution(7L));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+        // Act
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertTrue(result.isCompletedExceptionally());
+        coordinator.poll();
+        verify(executionRepository, never()).findByIdInAndStatusIn(any(), any());
+    }
+
+    @Test
+    void heartbeat_ShouldRequeueOrFailRunsOfSilentNodes() {
+        // Arrange
+        BatchExecution firstLoss = execution(1L);
+        firstLoss.setNodeId("node-b");
+        BatchExecution secondLoss = execution(2L);
+        secondLoss.setNodeId("node-b");
+        secondLoss.setRetries(1);
+        when(executionRepository.findExpiredLeases(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(firstLoss, secondLoss));
+        when(executionRepository.requeueExpired(eq(1L), eq("node-b"), any())).thenReturn(1);
+        when(executionRepository.failExpired(eq(2L), eq("node-b"), any(), anyString())).thenReturn(1);
+
+        // Act
+        coordinator.heartbeat();
+
+        // Assert
+        verify(executionRepository).requeueExpired(eq(1L), eq("node-b"), any());
+        verify(executionRepository).failExpired(eq(2L), eq("node-b"), any(),
+                eq("Node node-b stopped renewing its lease"));
+        verify(executionRepository, never()).renewLeases(anyString(), anyCollection(), any());
+    }
+
+    @Test
+    void heartbeat_WhenALeaseExpiredMidRun_ShouldStopTheRunAndKeepTheOtherNodesOutcome() {
+        // Arrange - this node runs 7 and 8, then stalls past the lease of 7, which node-b fails
+        BatchExecution submitted = execution(7L);
+        freeSlots = 2;
+        when(executionRepository.findClaimableIds(any(Pageable.class))).thenReturn(List.of(7L, 8L));
+        when(executionRepository.claim(any(), eq("node-a"), any())).thenReturn(1);
+        when(executionRepository.findById(7L)).thenReturn(Optional.of(execution(7L)));
+        when(executionRepository.findById(8L)).thenReturn(Optional.of(execution(8L)));
+        when(executionRepository.renewLeases(eq("node-a"), anyCollection(), any())).thenReturn(1);
+        when(executionRepository.findHeldIds(eq("node-a"), anyCollection())).thenReturn(List.of(8L));
+        BatchExecution failedElsewhere = execution(7L);
+        failedElsewhere.setStatus(BatchExecution.ExecutionStatus.FAILED);
+        failedElsewhere.setNodeId("node-a");
+        failedElsewhere.setErrorMessage("Node node-a stopped renewing its lease");
+        when(executionRepository.findByIdInAndStatusIn(List.of(7L), ClusterCoordinator.FINISHED))
+                .thenReturn(List.of(failedElsewhere));
+        CompletableFuture<String> result = coordinator.submit(submitted);
+        coordinator.poll();
+
+        // Act
+        coordinator.heartbeat();
+        // The killed script's own outcome is discarded by the fenced write
+        started.get(7L).completeExceptionally(new ClaimLostException("Execution 7 is no longer held by node node-a"));
+        freeSlots = 0;
+        coordinator.poll();
+
+        // Assert
+        assertEquals(List.of(7L), stopped);
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertEquals("Node node-a stopped renewing its lease", error.getCause().getMessage());
+        assertEquals(BatchExecution.ExecutionStatus.FAILED, submitted.getStatus());
+        ArgumentCaptor<ClusterNode> node = ArgumentCaptor.forClass(ClusterNode.class);
+        coordinator.heartbeat();
+        verify(nodeRepository, times(2)).save(node.capture());
+        assertEquals(1, node.getValue().getRunning());
+    }
+
+    @Test
+    void start_ShouldRejectLeaseShorterThanHeartbeat() {
+        ReflectionTestUtils.setField(coordinator, "heartbeatIntervalMillis", 30_000L);
+
+        assertThrows(IllegalArgumentException.class, coordinator::start);
+    }
+
+    private static BatchExecution execution(Long id) {
+        return BatchExecution.builder()
+                .id(id)
+                .scriptPath("/scripts/a.sh")
+                .status(BatchExecution.ExecutionStatus.PENDING)
+                .build();
+    }
+}
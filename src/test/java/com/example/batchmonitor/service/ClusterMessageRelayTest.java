@@ -0,0 +1,168 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ClusterNodeResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Peers are mocked STOMP sessions; the subscriptions a peer's broker would
+ * route on are what the relay asks it for.
+ */
+@ExtendWith(MockitoExtension.class)
+class ClusterMessageRelayTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private ClusterCoordinator clusterCoordinator;
+
+    @Mock
+    private StompSession peerSession;
+
+    private final WebSocketSubscriptions subscriptions = new WebSocketSubscriptions();
+
+    /** Relay URLs connected to, with the handler the relay registered. */
+    private final Map<String, StompSessionHandler> connected = new LinkedHashMap<>();
+
+    private ClusterMessageRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new ClusterMessageRelay(messagingTemplate, subscriptions, clusterCoordinator) {
+            @Override
+            CompletableFuture<StompSession> connect(String url, StompSessionHandler handler) {
+                connected.put(url, handler);
+                handler.afterConnected(peerSession, new StompHeaders());
+                return CompletableFuture.completedFuture(peerSession);
+            }
+        };
+        ReflectionTestUtils.setField(relay, "endpoint", "/ws");
+        ReflectionTestUtils.setField(relay, "refreshIntervalMillis", 60_000L);
+    }
+
+    @Test
+    void refreshPeers_ShouldSubscribeLiveNodesToLocalInterestOnly() {
+        // Arrange
+        when(clusterCoordinator.getNodes()).thenReturn(List.of(
+                node("node-a", true, true),
+                node("node-b", true, false),
+                node("node-c", false, false)));
+        subscriptions.subscribed("browser", "sub-0", "/topic/console-output/42");
+        subscriptions.subscribed("node-b-relay", "sub-0", "/relay/topic/status");
+
+        // Act
+        relay.refreshPeers();
+
+        // Assert
+        assertEquals(List.of("ws://node-b:8080/ws"), List.copyOf(connected.keySet()));
+        verify(peerSession).subscribe(eq("/relay/topic/console-output/42"), any(StompFrameHandler.class));
+        verify(peerSession, never()).subscribe(eq("/relay/relay/topic/status"), any(StompFrameHandler.class));
+    }
+
+    @Test
+    void interestChanged_ShouldFollowLocalSubscriptions() {
+        // Arrange
+        when(clusterCoordinator.isEnabled()).thenReturn(true);
+        when(clusterCoordinator.getNodes()).thenReturn(List.of(node("node-b", true, false)));
+        StompSession.Subscription remote = mock(StompSession.Subscription.class);
+        when(peerSession.subscribe(anyString(), any(StompFrameHandler.class))).thenReturn(remote);
+        when(peerSession.isConnected()).thenReturn(true);
+        relay.start();
+        relay.refreshPeers();
+
+        // Act
+        subscriptions.subscribed("browser", "sub-0", "/topic/progress/7");
+        subscriptions.subscribed("browser", "sub-1", "/topic/progress/7");
+        subscriptions.disconnected("browser");
+
+        // Assert
+        verify(peerSession).subscribe(eq("/relay/topic/progress/7"), any(StompFrameHandler.class));
+        verify(remote).unsubscribe();
+        relay.stop();
+    }
+
+    @Test
+    void relayedFrame_ShouldReachLocalBrokerAsIs() {
+        // Arrange
+        when(clusterCoordinator.getNodes()).thenReturn(List.of(node("node-b", true, false)));
+        subscriptions.subscribed("browser", "sub-0", "/topic/console-output");
+        relay.refreshPeers();
+        ArgumentCaptor<StompFrameHandler> handler = ArgumentCaptor.forClass(StompFrameHandler.class);
+        verify(peerSession).subscribe(eq("/relay/topic/console-output"), handler.capture());
+        byte[] json = "{\"executionId\":42,\"message\":\"hi\"}".getBytes(StandardCharsets.UTF_8);
+        StompHeaders headers = new StompHeaders();
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+
+        // Act
+        handler.getValue().handleFrame(headers, json);
+
+        // Assert
+        assertEquals(byte[].class, handler.getValue().getPayloadType(headers));
+        ArgumentCaptor<Message<?>> delivered = ArgumentCaptor.captor();
+        verify(messagingTemplate).send(eq("/topic/console-output"), delivered.capture());
+        assertSame(json, delivered.getValue().getPayload());
+        assertEquals(MimeTypeUtils.APPLICATION_JSON,
+                SimpMessageHeaderAccessor.wrap(delivered.getValue()).getContentType());
+    }
+
+    @Test
+    void publish_ShouldSendRelayCopyOnlyWhenAPeerSubscribed() {
+        // Arrange
+        subscriptions.subscribed("node-b-relay", "sub-0", "/relay/topic/status/1");
+
+        // Act
+        relay.publish("/topic/status/1", "running");
+        relay.publish("/topic/status/2", "running");
+
+        // Assert
+        verify(messagingTemplate).convertAndSend("/topic/status/1", (Object) "running");
+        verify(messagingTemplate).convertAndSend("/relay/topic/status/1", (Object) "running");
+        verify(messagingTemplate).convertAndSend("/topic/status/2", (Object) "running");
+        verify(messagingTemplate, never()).convertAndSend(eq("/relay/topic/status/2"), any(Object.class));
+        assertTrue(relay.isWatched("/topic/status/1"));
+        assertFalse(relay.isWatched("/topic/status/2"));
+    }
+
+    @Test
+    void start_ShouldRequireClusterMode() {
+        assertThrows(IllegalArgumentException.class, relay::start);
+    }
+
+    private static ClusterNodeResponse node(String nodeId, boolean alive, boolean local) {
+        return ClusterNodeResponse.builder()
+                .nodeId(nodeId)
+                .url("http://" + nodeId + ":8080/")
+                .alive(alive)
+                .local(local)
+                .build();
+    }
+}
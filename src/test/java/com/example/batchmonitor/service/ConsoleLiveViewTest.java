@@ -0,0 +1,161 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.dto.ConsoleSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsoleLiveViewTest {
+
+    private ConsoleLiveView liveView;
+
+    private final List<ConsoleSummary> summaries = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        liveView = new ConsoleLiveView();
+        ReflectionTestUtils.setField(liveView, "enabled", true);
+        ReflectionTestUtils.setField(liveView, "maxLinesPerSecond", 100L);
+        ReflectionTestUtils.setField(liveView, "resumeLinesPerSecond", 10L);
+        ReflectionTestUtils.setField(liveView, "sampledLinesPerSecond", 5L);
+        // Long enough that the timer never fires; the tests close intervals themselves
+        ReflectionTestUtils.setField(liveView, "summaryIntervalMillis", 60_000L);
+        ReflectionTestUtils.setField(liveView, "errorPatterns", new String[]{"ERROR", "Exception"});
+        liveView.start();
+        liveView.addListener(summaries::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        liveView.stop();
+    }
+
+    @Test
+    void skip_BelowTheRate_ShouldSendEveryLine() {
+        for (int i = 0; i < 100; i++) {
+            assertFalse(liveView.skip(line(1L, "line " + i, ConsoleOutput.OutputType.STDOUT)));
+        }
+
+        liveView.summarize();
+
+        assertTrue(summaries.isEmpty());
+    }
+
+    @Test
+    void skip_AboveTheRate_ShouldSampleThatExecutionOnly() {
+        // Arrange: the limit is 100 lines/s over a 60 s interval
+        for (int i = 0; i < 6000; i++) {
+            liveView.skip(line(1L, "line " + i, ConsoleOutput.OutputType.STDOUT));
+        }
+
+        // Act
+        int sent = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sent += liveView.skip(line(1L, "more " + i, ConsoleOutput.OutputType.STDOUT)) ? 0 : 1;
+        }
+
+        // Assert
+        assertTrue(sent < 100, "sent " + sent);
+        assertFalse(liveView.skip(line(2L, "quiet", ConsoleOutput.OutputType.STDOUT)));
+    }
+
+    @Test
+    void summarize_WhileSampled_ShouldReportEverythingPrinted() {
+        // Arrange
+        ReflectionTestUtils.setField(liveView, "summaryIntervalMillis", 10L);
+        for (int i = 0; i < 10; i++) {
+            liveView.skip(line(1L, "line " + i, ConsoleOutput.OutputType.STDOUT));
+        }
+        liveView.skip(line(1L, "ERROR: java.io.IOException", ConsoleOutput.OutputType.STDERR));
+        liveView.skip(line(1L, "ERROR again", ConsoleOutput.OutputType.STDERR));
+        liveView.skip(line(1L, "last", ConsoleOutput.OutputType.STDOUT));
+
+        // Act
+        liveView.summarize();
+
+        // Assert
+        assertEquals(1, summaries.size());
+        ConsoleSummary summary = summaries.get(0);
+        assertEquals(1L, summary.getExecutionId());
+        assertTrue(summary.isSampled());
+        assertEquals(13, summary.getLines());
+        assertTrue(summary.getLinesSent() < summary.getLines());
+        assertEquals(2, summary.getStderrLines());
+        assertEquals(2, summary.getErrorLines());
+        assertEquals(Map.of("ERROR", 2L, "Exception", 1L), summary.getErrorPatterns());
+        assertEquals("last", summary.getLastLine());
+        assertEquals("ERROR again", summary.getLastErrorLine());
+        assertTrue(summary.getLinesPerSecond() > 0);
+    }
+
+    @Test
+    void summarize_WhenTheRateDrops_ShouldSendEveryLineAgain() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(liveView, "summaryIntervalMillis", 10L);
+        for (int i = 0; i < 10; i++) {
+            liveView.skip(line(1L, "line " + i, ConsoleOutput.OutputType.STDOUT));
+        }
+        liveView.summarize();
+
+        // Act: nothing printed for an interval, far below resumeLinesPerSecond
+        Thread.sleep(20);
+        liveView.summarize();
+
+        // Assert
+        assertEquals(2, summaries.size());
+        assertTrue(summaries.get(0).isSampled());
+        assertFalse(summaries.get(1).isSampled());
+        assertFalse(liveView.skip(line(1L, "back", ConsoleOutput.OutputType.STDOUT)));
+        liveView.summarize();
+        assertEquals(2, summaries.size());
+    }
+
+    @Test
+    void finished_WhileSampled_ShouldPublishALastSummaryAndForgetTheExecution() {
+        // Arrange
+        ReflectionTestUtils.setField(liveView, "summaryIntervalMillis", 10L);
+        for (int i = 0; i < 10; i++) {
+            liveView.skip(line(1L, "line " + i, ConsoleOutput.OutputType.STDOUT));
+        }
+        liveView.skip(line(2L, "other", ConsoleOutput.OutputType.STDOUT));
+
+        // Act
+        liveView.finished(1L);
+        liveView.finished(2L);
+
+        // Assert
+        assertEquals(1, summaries.size());
+        assertFalse(summaries.get(0).isSampled());
+        assertEquals(10, summaries.get(0).getLines());
+        assertEquals(0, liveView.viewCount());
+    }
+
+    @Test
+    void skip_WhenDisabled_ShouldSendEverything() {
+        ReflectionTestUtils.setField(liveView, "enabled", false);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(liveView.skip(line(1L, "line " + i, ConsoleOutput.OutputType.STDOUT)));
+        }
+        assertEquals(0, liveView.viewCount());
+    }
+
+    @Test
+    void start_ShouldRejectAResumeRateAboveTheLimit() {
+        ReflectionTestUtils.setField(liveView, "resumeLinesPerSecond", 1000L);
+
+        assertThrows(IllegalArgumentException.class, () -> liveView.start());
+    }
+
+    private static ConsoleOutput line(Long executionId, String message, ConsoleOutput.OutputType type) {
+        return ConsoleOutput.builder().executionId(executionId).message(message).type(type).build();
+    }
+}
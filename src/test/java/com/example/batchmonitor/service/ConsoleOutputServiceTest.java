@@ -2,9 +2,11 @@ package com.example.batchmonitor.service;
 
 import com.example.batchmonitor.dto.ConsoleOutput;
 import com.example.batchmonitor.dto.ProgressUpdate;
+import com.example.batchmonitor.dto.StructuredOutputEvent;
 import com.example.batchmonitor.entity.BatchExecution;
 import com.example.batchmonitor.entity.ExecutionLog;
 import com.example.batchmonitor.repository.ExecutionLogRepository;
+import com.example.batchmonitor.repository.projection.ConsoleLine;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -12,13 +14,21 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +43,21 @@ class ConsoleOutputServiceTest {
     @Mock
     private ProgressParserService progressParserService;
 
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private OutputSpool outputSpool;
+
+    @Mock
+    private AlertService alertService;
+
+    @Mock
+    private StructuredOutputService structuredOutputService;
+
+    @Mock
+    private ProgressChannelService progressChannelService;
+
     @InjectMocks
     private ConsoleOutputService consoleOutputService;
 
@@ -75,6 +100,11 @@ class ConsoleOutputServiceTest {
         // Verify progress parser was called
         verify(progressParserService).parseProgress(line);
 
+        // Verify line, persistence and parse metrics were recorded
+        verify(metricsService).recordStdoutLine(null, line);
+        verify(metricsService).recordLogPersist(isNull(), eq(1), anyLong());
+        verify(metricsService).recordProgressParse(isNull(), anyLong());
+
         // Verify no progress update sent (since parseProgress returned null)
         verify(webSocketService, never()).sendProgressUpdate(any(ProgressUpdate.class));
     }
@@ -152,6 +182,152 @@ class ConsoleOutputServiceTest {
         assertEquals(ConsoleOutput.OutputType.STDERR, capturedOutput.getType());
     }
 
+    @Test
+    void processStandardOutput_WithSpool_ShouldOnlyAppendLine() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+        when(outputSpool.isActive()).thenReturn(true);
+        when(progressParserService.parseProgress("Progress: 50%")).thenReturn(50.0);
+
+        // Act
+        consoleOutputService.processStandardOutput(execution, "Progress: 50%");
+
+        // Assert
+        verify(outputSpool).append(eq(1L), any(), eq(ExecutionLog.LogType.STDOUT), eq("Progress: 50%"), any(LocalDateTime.class));
+        verify(logRepository, never()).save(any());
+        verify(webSocketService, never()).sendConsoleOutput(any());
+        verify(webSocketService).sendProgressUpdate(any(ProgressUpdate.class));
+        assertEquals(50.0, execution.getProgress());
+    }
+
+    @Test
+    void processStandardOutput_WithStructuredOutput_ShouldTakeProgressFromJson() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .structuredOutput(true)
+                .progress(0.0)
+                .build();
+        String line = "{\"progress\":0.4,\"rowsDone\":1200}";
+        when(structuredOutputService.isEnabled(execution)).thenReturn(true);
+        when(structuredOutputService.process(execution, line))
+                .thenReturn(StructuredOutputEvent.builder().executionId(1L).progress(40.0).build());
+
+        // Act
+        consoleOutputService.processStandardOutput(execution, line);
+
+        // Assert
+        verify(progressParserService, never()).parseProgress(any());
+        assertEquals(40.0, execution.getProgress());
+        verify(webSocketService).sendProgressUpdate(any(ProgressUpdate.class));
+        verify(logRepository).save(any(ExecutionLog.class));
+    }
+
+    @Test
+    void processStandardOutput_WithStructuredOutput_ShouldParsePlainTextProgress() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .structuredOutput(true)
+                .build();
+        when(structuredOutputService.isEnabled(execution)).thenReturn(true);
+        when(progressParserService.parseProgress("Progress: 50%")).thenReturn(50.0);
+
+        // Act
+        consoleOutputService.processStandardOutput(execution, "Progress: 50%");
+
+        // Assert
+        verify(structuredOutputService).process(execution, "Progress: 50%");
+        assertEquals(50.0, execution.getProgress());
+    }
+
+    @Test
+    void processStandardOutput_WithProgressChannel_ShouldNotParseProgress() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .progressChannel(true)
+                .progress(10.0)
+                .build();
+        when(progressChannelService.isOpen(execution)).thenReturn(true);
+
+        // Act
+        consoleOutputService.processStandardOutput(execution, "Progress: 50%");
+
+        // Assert
+        verify(progressParserService, never()).parseProgress(any());
+        verify(metricsService, never()).recordProgressParse(any(), anyLong());
+        verify(webSocketService, never()).sendProgressUpdate(any());
+        assertEquals(10.0, execution.getProgress());
+        verify(logRepository).save(any(ExecutionLog.class));
+    }
+
+    @Test
+    void processProgress_ShouldRecordAndPublishProgress() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .pipelineId(7L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+
+        // Act
+        consoleOutputService.processProgress(execution, 37.5);
+
+        // Assert
+        assertEquals(37.5, execution.getProgress());
+        ArgumentCaptor<ProgressUpdate> update = ArgumentCaptor.forClass(ProgressUpdate.class);
+        verify(webSocketService).sendProgressUpdate(update.capture());
+        assertEquals(1L, update.getValue().getExecutionId());
+        assertEquals(7L, update.getValue().getPipelineId());
+        assertEquals(37.5, update.getValue().getProgress());
+        assertEquals("RUNNING", update.getValue().getStatus());
+    }
+
+    @Test
+    void processOutput_ShouldEvaluateAlertRulesPerStream() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+
+        // Act
+        consoleOutputService.processStandardOutput(execution, "[WARN] retrying");
+        consoleOutputService.processErrorOutput(execution, "java.lang.OutOfMemoryError");
+        consoleOutputService.awaitDelivered(execution);
+
+        // Assert
+        verify(alertService).evaluate(execution, "[WARN] retrying", ExecutionLog.LogType.STDOUT);
+        verify(alertService).evaluate(execution, "java.lang.OutOfMemoryError", ExecutionLog.LogType.STDERR);
+        verify(alertService).finished(1L);
+    }
+
+    @Test
+    void processErrorOutput_WhenSpoolFails_ShouldStoreLineDirectly() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+        when(outputSpool.isActive()).thenReturn(true);
+        when(outputSpool.append(any(), any(), any(), any(), any()))
+                .thenThrow(new UncheckedIOException(new IOException("No space left on device")));
+
+        // Act
+        consoleOutputService.processErrorOutput(execution, "Error occurred");
+
+        // Assert
+        verify(logRepository).save(any(ExecutionLog.class));
+        verify(webSocketService).sendConsoleOutput(any(ConsoleOutput.class));
+    }
+
     @Test
     void logSystemMessage_ShouldSaveLog() {
         // Arrange
@@ -181,53 +357,35 @@ class ConsoleOutputServiceTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void getConsoleOutput_ShouldReturnNonSystemLogs() {
         // Arrange
-        BatchExecution execution = BatchExecution.builder()
-                .id(1L)
-                .status(BatchExecution.ExecutionStatus.COMPLETED)
-                .build();
-
         LocalDateTime now = LocalDateTime.now();
 
-        List<ExecutionLog> logs = Arrays.asList(
-                ExecutionLog.builder()
-                        .id(1L)
-                        .batchExecution(execution)
-                        .message("Starting execution")
-                        .timestamp(now.minusMinutes(5))
-                        .logType(ExecutionLog.LogType.STDOUT)
-                        .build(),
-                ExecutionLog.builder()
-                        .id(2L)
-                        .batchExecution(execution)
-                        .message("System: Initializing")
-                        .timestamp(now.minusMinutes(4))
-                        .logType(ExecutionLog.LogType.SYSTEM)  // System log should be filtered out
-                        .build(),
-                ExecutionLog.builder()
-                        .id(3L)
-                        .batchExecution(execution)
-                        .message("Error occurred")
-                        .timestamp(now.minusMinutes(3))
-                        .logType(ExecutionLog.LogType.STDERR)
-                        .build()
+        List<ConsoleLine> lines = Arrays.asList(
+                new ConsoleLine(1L, "Starting execution", now.minusMinutes(5), ExecutionLog.LogType.STDOUT),
+                new ConsoleLine(1L, "Error occurred", now.minusMinutes(3), ExecutionLog.LogType.STDERR)
         );
 
-        when(logRepository.findByBatchExecutionIdOrderByTimestampAsc(1L)).thenReturn(logs);
+        when(logRepository.findConsoleLines(eq(1L), anyCollection())).thenReturn(lines);
 
         // Act
         List<ConsoleOutput> result = consoleOutputService.getConsoleOutput(1L);
 
         // Assert
-        assertEquals(2, result.size()); // Only non-system logs should be returned
+        assertEquals(2, result.size());
 
+        assertEquals(1L, result.get(0).getExecutionId());
         assertEquals("Starting execution", result.get(0).getMessage());
         assertEquals(ConsoleOutput.OutputType.STDOUT, result.get(0).getType());
 
         assertEquals("Error occurred", result.get(1).getMessage());
         assertEquals(ConsoleOutput.OutputType.STDERR, result.get(1).getType());
 
-        verify(logRepository).findByBatchExecutionIdOrderByTimestampAsc(1L);
+        // System lines are excluded in the query itself
+        ArgumentCaptor<Collection<ExecutionLog.LogType>> typesCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(logRepository).findConsoleLines(eq(1L), typesCaptor.capture());
+        assertFalse(typesCaptor.getValue().contains(ExecutionLog.LogType.SYSTEM));
+        verify(logRepository, never()).findByBatchExecutionIdOrderByTimestampAsc(any());
     }
 }
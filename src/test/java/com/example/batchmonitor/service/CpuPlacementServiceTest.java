@@ -0,0 +1,202 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uses a temporary directory laid out like /sys/devices/system on a two-node
+ * machine with eight CPUs: node0 has CPUs 0-3 and node1 has CPUs 4-7.
+ */
+class CpuPlacementServiceTest {
+
+    @TempDir
+    Path sysfs;
+
+    private CpuPlacementService placement;
+
+    /** CPUs the service tried to pin the monitor to; the test JVM itself is left alone. */
+    private final List<String> pinnedMonitor = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(sysfs.resolve("cpu"));
+        Files.writeString(sysfs.resolve("cpu/online"), "0-7\n");
+        Files.createDirectories(sysfs.resolve("node/node0"));
+        Files.writeString(sysfs.resolve("node/node0/cpulist"), "0-3\n");
+        Files.createDirectories(sysfs.resolve("node/node1"));
+        Files.writeString(sysfs.resolve("node/node1/cpulist"), "4-7\n");
+
+        placement = new CpuPlacementService() {
+            @Override
+            void pinMonitor(String cpus) {
+                pinnedMonitor.add(cpus);
+            }
+        };
+        ReflectionTestUtils.setField(placement, "enabled", true);
+        ReflectionTestUtils.setField(placement, "sysfsRoot", sysfs.toString());
+        ReflectionTestUtils.setField(placement, "poolConfig", "");
+        ReflectionTestUtils.setField(placement, "reservedConfig", "");
+        ReflectionTestUtils.setField(placement, "cpusPerRun", 2);
+        ReflectionTestUtils.setField(placement, "scriptCpus", "sim/heavy.py=4");
+        ReflectionTestUtils.setField(placement, "baseScriptsDir", "/opt/scripts");
+    }
+
+    @Test
+    void acquire_ShouldKeepEachRunOnOneNodeAndSpreadAcrossNodes() {
+        placement.start();
+
+        CpuPlacementService.Placement first = placement.acquire(execution(1L, "/opt/scripts/a.sh")).orElseThrow();
+        CpuPlacementService.Placement second = placement.acquire(execution(2L, "/opt/scripts/a.sh")).orElseThrow();
+        CpuPlacementService.Placement heavy = placement.acquire(execution(3L, "/opt/scripts/sim/heavy.py")).orElseThrow();
+
+        assertEquals("0-1", first.cpuSet());
+        assertEquals(0, first.node());
+        assertEquals("4-5", second.cpuSet());
+        assertEquals(1, second.node());
+        // Both nodes have two busy CPUs; node0 wins the tie and the run shares its least-loaded CPUs
+        assertEquals(4, heavy.cpus().size());
+        assertEquals(0, heavy.node());
+        assertEquals(Map.of(0, 2, 1, 2, 2, 1, 3, 1, 4, 1, 5, 1, 6, 0, 7, 0), placement.load());
+    }
+
+    @Test
+    void acquire_ShouldShareLeastLoadedCpusOnceThePoolIsFull() {
+        ReflectionTestUtils.setField(placement, "cpusPerRun", 1);
+        ReflectionTestUtils.setField(placement, "poolConfig", "2-5");
+        placement.start();
+
+        for (long id = 1; id <= 5; id++) {
+            placement.acquire(execution(id, "/opt/scripts/a.sh"));
+        }
+
+        assertEquals(Map.of(2, 2, 3, 1, 4, 1, 5, 1), placement.load());
+    }
+
+    @Test
+    void acquire_ShouldSpanNodesWhenNoNodeIsLargeEnough() {
+        ReflectionTestUtils.setField(placement, "cpusPerRun", 6);
+        placement.start();
+
+        CpuPlacementService.Placement wide = placement.acquire(execution(1L, "/opt/scripts/a.sh")).orElseThrow();
+
+        assertEquals("0-5", wide.cpuSet());
+        assertNull(wide.node());
+    }
+
+    @Test
+    void release_ShouldReturnCpusToThePool() {
+        placement.start();
+        CpuPlacementService.Placement first = placement.acquire(execution(1L, "/opt/scripts/a.sh")).orElseThrow();
+        placement.acquire(execution(2L, "/opt/scripts/a.sh"));
+
+        placement.release(first);
+        CpuPlacementService.Placement third = placement.acquire(execution(3L, "/opt/scripts/a.sh")).orElseThrow();
+
+        assertEquals("0-1", third.cpuSet());
+    }
+
+    @Test
+    void adopt_ShouldCountReattachedRunOnTheCpusItIsPinnedTo() throws IOException {
+        Path proc = sysfs.resolve("proc");
+        ReflectionTestUtils.setField(placement, "procRoot", proc.toString());
+        placement.start();
+        ProcessHandle self = ProcessHandle.current();
+        Files.createDirectories(proc.resolve(Long.toString(self.pid())));
+        Path status = proc.resolve(self.pid() + "/status");
+
+        Files.writeString(status, "Name:\tpython3\nCpus_allowed:\t30\nCpus_allowed_list:\t4-5\n");
+        CpuPlacementService.Placement adopted = placement.adopt(execution(1L, "/opt/scripts/a.sh"), self).orElseThrow();
+        CpuPlacementService.Placement next = placement.acquire(execution(2L, "/opt/scripts/a.sh")).orElseThrow();
+
+        assertEquals("4-5", adopted.cpuSet());
+        assertEquals(1, adopted.node());
+        assertEquals("0-1", next.cpuSet());
+
+        // Started while placement was off, so it may run anywhere and is not counted
+        Files.writeString(status, "Cpus_allowed_list:\t0-7\n");
+        assertTrue(placement.adopt(execution(3L, "/opt/scripts/a.sh"), self).isEmpty());
+    }
+
+    @Test
+    void start_ShouldExcludeReservedCpusAndFallBackWithoutNumaInfo() throws IOException {
+        ReflectionTestUtils.setField(placement, "cpusPerRun", 1);
+        ReflectionTestUtils.setField(placement, "reservedConfig", "0-5");
+        Files.delete(sysfs.resolve("node/node0/cpulist"));
+        Files.delete(sysfs.resolve("node/node1/cpulist"));
+        Files.delete(sysfs.resolve("node/node0"));
+        Files.delete(sysfs.resolve("node/node1"));
+
+        placement.start();
+
+        assertTrue(placement.isActive());
+        assertEquals(List.of("0-5"), pinnedMonitor);
+        assertEquals(Set.of(6, 7), placement.load().keySet());
+        assertEquals(0, placement.acquire(execution(1L, "/opt/scripts/a.sh")).orElseThrow().node());
+    }
+
+    @Test
+    void start_ShouldStayInactiveWhenDisabledOrPoolIsEmpty() {
+        ReflectionTestUtils.setField(placement, "enabled", false);
+        placement.start();
+        assertTrue(placement.acquire(execution(1L, "/opt/scripts/a.sh")).isEmpty());
+
+        ReflectionTestUtils.setField(placement, "enabled", true);
+        ReflectionTestUtils.setField(placement, "poolConfig", "8-15");
+        placement.start();
+        assertFalse(placement.isActive());
+    }
+
+    @Test
+    void wrap_ShouldPrefixTaskset() {
+        CpuPlacementService.Placement cpus = new CpuPlacementService.Placement(1L, List.of(4, 5, 7), 1);
+
+        assertEquals(List.of("taskset", "-c", "4-5,7", "bash", "a.sh"), placement.wrap(cpus, List.of("bash", "a.sh")));
+    }
+
+    @Test
+    void wrapUnplaced_ShouldKeepChildrenOffTheReservedCpus() {
+        List<String> command = List.of("mkfifo", "/tmp/pipe");
+
+        placement.start();
+        assertEquals(command, placement.wrapUnplaced(command));
+
+        ReflectionTestUtils.setField(placement, "reservedConfig", "0-1");
+        ReflectionTestUtils.setField(placement, "poolConfig", "0-5");
+        placement.start();
+        assertEquals(List.of("taskset", "-c", "2-5", "mkfifo", "/tmp/pipe"), placement.wrapUnplaced(command));
+    }
+
+    @Test
+    void parse_ShouldHandleCpuListsAndRejectInvalidConfig() {
+        assertEquals(Set.of(0, 1, 2, 3, 8, 10, 11), CpuPlacementService.parseCpuList(" 0-3,8,10-11\n"));
+        assertEquals("0-3,8,10-11", CpuPlacementService.formatCpuList(List.of(11, 0, 1, 2, 3, 8, 10)));
+        assertEquals(Map.of("sim.py", 8), CpuPlacementService.parseScriptCpus(" sim.py = 8"));
+
+        assertThrows(IllegalArgumentException.class, () -> CpuPlacementService.parseCpuList("3-1"));
+        assertThrows(IllegalArgumentException.class, () -> CpuPlacementService.parseCpuList("a-b"));
+        assertThrows(IllegalArgumentException.class, () -> CpuPlacementService.parseScriptCpus("sim.py=0"));
+        ReflectionTestUtils.setField(placement, "cpusPerRun", 0);
+        assertThrows(IllegalArgumentException.class, placement::start);
+    }
+
+    private static BatchExecution execution(Long id, String scriptPath) {
+        return BatchExecution.builder()
+                .id(id)
+                .scriptPath(scriptPath)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .build();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.PipelineExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ExecutionReconcilerTest {
+
+    @Mock
+    private BatchExecutionRepository executionRepository;
+
+    @Mock
+    private PipelineExecutionRepository pipelineRepository;
+
+    @Mock
+    private ExecutionScheduler executionScheduler;
+
+    @Mock
+    private ScriptExecutionService scriptExecutionService;
+
+    @Mock
+    private ClusterCoordinator clusterCoordinator;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private CgroupLimiter cgroupLimiter;
+
+    private ExecutionReconciler reconciler;
+
+    /** Processes the reconciler finds by pid; the test JVM stands in for a surviving script. */
+    private final Map<Long, ProcessHandle> processes = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        reconciler = new ExecutionReconciler(executionRepository, pipelineRepository, executionScheduler,
+                scriptExecutionService, clusterCoordinator, metricsService, cgroupLimiter) {
+            @Override
+            Optional<ProcessHandle> findProcess(long pid) {
+                return Optional.ofNullable(processes.get(pid));
+            }
+        };
+        ReflectionTestUtils.setField(reconciler, "enabled", true);
+    }
+
+    @Test
+    void reconcile_ShouldReattachSurvivorsAndFailLostRuns() {
+        // Arrange
+        ProcessHandle self = ProcessHandle.current();
+        processes.put(self.pid(), self);
+        BatchExecution survivor = running(1L, self.pid(), startOf(self));
+        BatchExecution reusedPid = running(2L, self.pid(), startOf(self).minusHours(1));
+        BatchExecution dead = running(3L, 999_999L, startOf(self));
+        BatchExecution neverStarted = running(4L, null, null);
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.RUNNING), isNull(), eq(0L),
+                any(Pageable.class))).thenReturn(List.of(survivor, reusedPid, dead, neverStarted));
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.PENDING), isNull(), eq(0L),
+                any(Pageable.class))).thenReturn(List.of());
+        CompletableFuture<Void> reattached = new CompletableFuture<>();
+        when(scriptExecutionService.reattach(survivor, self)).thenReturn(reattached);
+        when(executionRepository.failUnfinished(eq(List.of(2L, 3L, 4L)), eq(BatchExecution.ExecutionStatus.RUNNING),
+                any(LocalDateTime.class), eq(ExecutionReconciler.INTERRUPTED))).thenReturn(3);
+
+        // Act
+        reconciler.reconcile();
+
+        // Assert
+        InOrder order = inOrder(scriptExecutionService, cgroupLimiter);
+        order.verify(scriptExecutionService).reattach(survivor, self);
+        order.verify(cgroupLimiter).removeUnclaimed();
+        verify(executionScheduler).adopt(survivor, reattached);
+        verify(metricsService, times(3)).statusChanged(null, BatchExecution.ExecutionStatus.FAILED);
+        verify(pipelineRepository).failRunning(any(LocalDateTime.class), eq(ExecutionReconciler.PIPELINE_INTERRUPTED));
+        verify(clusterCoordinator, never()).hold(any(), any());
+    }
+
+    @Test
+    void reconcile_ShouldRequeuePendingRunsAndFailOrphanedPipelineSteps() {
+        // Arrange
+        BatchExecution standalone = pending(1L, null);
+        BatchExecution step = pending(2L, 10L);
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.RUNNING), isNull(), eq(0L),
+                any(Pageable.class))).thenReturn(List.of());
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.PENDING), isNull(), eq(0L),
+                any(Pageable.class))).thenReturn(List.of(standalone, step));
+        when(executionRepository.failUnfinished(eq(List.of(2L)), eq(BatchExecution.ExecutionStatus.PENDING),
+                any(LocalDateTime.class), eq(ExecutionReconciler.INTERRUPTED))).thenReturn(1);
+
+        // Act
+        reconciler.reconcile();
+
+        // Assert
+        verify(executionScheduler).submit(standalone);
+        verify(executionScheduler, never()).submit(step);
+        verify(metricsService).statusChanged(null, BatchExecution.ExecutionStatus.PENDING);
+        verify(metricsService).statusChanged(null, BatchExecution.ExecutionStatus.FAILED);
+    }
+
+    @Test
+    void reconcile_ShouldPageThroughLargeBacklogsById() {
+        // Arrange
+        List<BatchExecution> firstPage = LongStream.rangeClosed(1, 500).mapToObj(id -> running(id, null, null)).toList();
+        List<BatchExecution> secondPage = List.of(running(501L, null, null));
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.RUNNING), isNull(), eq(0L),
+                any(Pageable.class))).thenReturn(firstPage);
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.RUNNING), isNull(), eq(500L),
+                any(Pageable.class))).thenReturn(secondPage);
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.PENDING), isNull(), eq(0L),
+                any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        reconciler.reconcile();
+
+        // Assert
+        verify(executionRepository).failUnfinished(eq(firstPage.stream().map(BatchExecution::getId).toList()),
+                eq(BatchExecution.ExecutionStatus.RUNNING), any(LocalDateTime.class), any());
+        verify(executionRepository).failUnfinished(eq(List.of(501L)),
+                eq(BatchExecution.ExecutionStatus.RUNNING), any(LocalDateTime.class), any());
+    }
+
+    @Test
+    void reconcile_InCluster_ShouldOnlyTouchThisNodesRuns() {
+        // Arrange
+        ProcessHandle self = ProcessHandle.current();
+        processes.put(self.pid(), self);
+        BatchExecution survivor = running(1L, self.pid(), startOf(self));
+        BatchExecution dead = running(2L, 999_999L, startOf(self));
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        when(clusterCoordinator.isEnabled()).thenReturn(true);
+        when(clusterCoordinator.nodeId()).thenReturn("node-a");
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.RUNNING), eq("node-a"), eq(0L),
+                any(Pageable.class))).thenReturn(List.of(survivor, dead));
+        when(executionRepository.findByStatusAfter(eq(BatchExecution.ExecutionStatus.PENDING), eq("node-a"), eq(0L),
+                any(Pageable.class))).thenReturn(List.of(pending(3L, null)));
+        when(scriptExecutionService.reattach(survivor, self)).thenReturn(done);
+
+        // Act
+        reconciler.reconcile();
+
+        // Assert
+        verify(clusterCoordinator).hold(1L, done);
+        verify(executionRepository).releaseClaims("node-a", List.of(3L));
+        verify(executionRepository, never()).failUnfinished(anyList(), any(), any(), any());
+        verify(executionScheduler, never()).submit(any());
+        verify(pipelineRepository, never()).failRunning(any(), any());
+    }
+
+    @Test
+    void reconcile_WhenDisabled_ShouldDoNothing() {
+        ReflectionTestUtils.setField(reconciler, "enabled", false);
+
+        reconciler.reconcile();
+
+        verify(executionRepository, never()).findByStatusAfter(any(), any(), any(), any());
+        verify(cgroupLimiter).removeUnclaimed();
+    }
+
+    private static LocalDateTime startOf(ProcessHandle process) {
+        return LocalDateTime.ofInstant(process.info().startInstant().orElseThrow(), ZoneId.systemDefault());
+    }
+
+    private static BatchExecution running(Long id, Long pid, LocalDateTime processStartedAt) {
+        return BatchExecution.builder()
+                .id(id)
+                .scriptPath("/scripts/a.sh")
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .pid(pid)
+                .processStartedAt(processStartedAt)
+                .build();
+    }
+
+    private static BatchExecution pending(Long id, Long pipelineId) {
+        return BatchExecution.builder()
+                .id(id)
+                .scriptPath("/scripts/a.sh")
+                .status(BatchExecution.ExecutionStatus.PENDING)
+                .pipelineId(pipelineId)
+                .build();
+    }
+}
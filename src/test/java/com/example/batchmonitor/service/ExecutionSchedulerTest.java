@@ -0,0 +1,302 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ExecutionSchedulerTest {
+
+    @Mock
+    private ScriptExecutionService scriptExecutionService;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private ClusterCoordinator clusterCoordinator;
+
+    @InjectMocks
+    private ExecutionScheduler scheduler;
+
+    /** Runs started by the scheduler, in start order, with the futures handed back for them. */
+    private final Map<BatchExecution, CompletableFuture<String>> started = new LinkedHashMap<>();
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 1);
+        lenient().when(scriptExecutionService.executeScript(any(BatchExecution.class))).thenAnswer(invocation -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            started.put(invocation.getArgument(0), future);
+            return future;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void submit_ShouldShareSlotsInProportionToWeight() {
+        // Arrange
+        configure("etl=3,reporting=1", "", 0);
+        submit("etl", BatchExecution.Priority.NORMAL, 20);
+        submit("reporting", BatchExecution.Priority.NORMAL, 20);
+
+        // Act
+        List<String> order = drain(16);
+
+        // Assert
+        assertEquals(12, order.stream().filter("etl"::equals).count());
+        assertEquals(4, order.stream().filter("reporting"::equals).count());
+    }
+
+    @Test
+    void submit_ShouldStartHigherPriorityFirst() {
+        // Arrange
+        configure("", "", 0);
+        submit("etl", BatchExecution.Priority.NORMAL, 1);
+        submit("etl", BatchExecution.Priority.LOW, 1);
+        submit("reporting", BatchExecution.Priority.LOW, 1);
+        submit("reporting", BatchExecution.Priority.HIGH, 1);
+
+        // Act
+        drain(4);
+
+        // Assert
+        List<BatchExecution.Priority> priorities = started.keySet().stream().map(BatchExecution::getPriority).toList();
+        assertEquals(List.of(BatchExecution.Priority.NORMAL, BatchExecution.Priority.HIGH,
+                BatchExecution.Priority.LOW, BatchExecution.Priority.LOW), priorities);
+    }
+
+    @Test
+    void submit_ShouldRespectGlobalAndOwnerLimits() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 4);
+        configure("", "reporting=1", 2);
+
+        // Act
+        submit("etl", BatchExecution.Priority.NORMAL, 5);
+        submit("reporting", BatchExecution.Priority.NORMAL, 5);
+        submit("adhoc", BatchExecution.Priority.NORMAL, 5);
+
+        // Assert
+        assertEquals(4, scheduler.runningCount());
+        assertEquals(11, scheduler.queuedCount());
+        assertEquals(Map.of("etl", 2L, "reporting", 1L, "adhoc", 1L), runningByOwner());
+
+        finish("reporting");
+        assertEquals(Map.of("etl", 2L, "adhoc", 2L), runningByOwner());
+    }
+
+    @Test
+    void submit_ShouldNotLetIdleOwnerBankCredit() {
+        // Arrange
+        configure("", "", 0);
+        submit("etl", BatchExecution.Priority.NORMAL, 30);
+        drain(20);
+
+        // Act
+        submit("reporting", BatchExecution.Priority.NORMAL, 30);
+        List<String> order = drain(10);
+
+        // Assert
+        long reporting = order.stream().filter("reporting"::equals).count();
+        assertTrue(reporting >= 4 && reporting <= 6, "reporting got " + reporting + " of 10 slots");
+    }
+
+    @Test
+    void submit_ShouldReleaseSlotWhenRunFailsOrCannotStart() {
+        // Arrange
+        configure("", "", 0);
+        CompletableFuture<String> first = submit("etl", BatchExecution.Priority.NORMAL, 1).get(0);
+        CompletableFuture<String> second = submit("etl", BatchExecution.Priority.NORMAL, 1).get(0);
+        submit("etl", BatchExecution.Priority.NORMAL, 1);
+        doThrow(new IllegalStateException("no process"))
+                .when(scriptExecutionService).executeScript(argThat(execution -> execution.getId() == 2L));
+
+        // Act
+        started.values().iterator().next().completeExceptionally(new IllegalStateException("boom"));
+
+        // Assert
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        verify(scriptExecutionService).updateExecutionFailure(
+                argThat(execution -> execution.getId() == 2L), eq("Failed to start: no process"), isNull());
+        assertEquals(2, started.size());
+        assertEquals(1, scheduler.runningCount());
+        assertEquals(0, scheduler.queuedCount());
+        verify(metricsService, times(3)).recordSchedulerWait(eq("etl"), anyLong());
+    }
+
+    @Test
+    void submit_InTransaction_ShouldQueueOnlyAfterCommit() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 2);
+        configure("", "", 0);
+        TransactionSynchronizationManager.initSynchronization();
+        CompletableFuture<String> committed = submit("etl", BatchExecution.Priority.NORMAL, 1).get(0);
+        CompletableFuture<String> rolledBack = submit("etl", BatchExecution.Priority.NORMAL, 1).get(0);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        verify(scriptExecutionService, never()).executeScript(any());
+
+        // Act
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        synchronizations.get(1).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        verify(scriptExecutionService, timeout(2000)).executeScript(argThat(execution -> execution.getId() == 1L));
+        assertTrue(rolledBack.isCompletedExceptionally());
+        assertEquals(1, started.size());
+        started.values().iterator().next().complete("done");
+        assertEquals("done", committed.join());
+    }
+
+    @Test
+    void submit_InCluster_ShouldLeaveRunsToClaimingNodes() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 2);
+        when(clusterCoordinator.isEnabled()).thenReturn(true);
+        CompletableFuture<String> clusterResult = new CompletableFuture<>();
+        when(clusterCoordinator.submit(any(BatchExecution.class))).thenReturn(clusterResult);
+        configure("", "", 0);
+
+        // Act
+        CompletableFuture<String> submitted = submit("etl", BatchExecution.Priority.NORMAL, 1).get(0);
+
+        // Assert
+        assertSame(clusterResult, submitted);
+        verify(scriptExecutionService, never()).executeScript(any());
+        verify(clusterCoordinator).registerWorker(any(), any(), any());
+        assertEquals(2, scheduler.freeSlots());
+
+        // A claimed run takes a local slot like any other
+        CompletableFuture<String> claimed = scheduler.runClaimed(BatchExecution.builder().id(99L).owner("etl").build());
+        assertEquals(1, scheduler.freeSlots());
+        started.values().iterator().next().complete("done");
+        assertEquals("done", claimed.join());
+        assertEquals(2, scheduler.freeSlots());
+    }
+
+    @Test
+    void adopt_ShouldHoldASlotUntilTheReattachedRunEnds() {
+        // Arrange
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 1);
+        configure("", "", 0);
+        CompletableFuture<Void> reattached = new CompletableFuture<>();
+
+        // Act
+        scheduler.adopt(BatchExecution.builder().id(99L).owner("etl").build(), reattached);
+        submit("etl", BatchExecution.Priority.NORMAL, 1);
+
+        // Assert
+        assertEquals(1, scheduler.runningCount());
+        assertEquals(1, scheduler.queuedCount());
+        assertTrue(started.isEmpty());
+
+        reattached.complete(null);
+        assertEquals(1, started.size());
+        assertEquals(0, scheduler.queuedCount());
+    }
+
+    @Test
+    void start_ShouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> configure("etl=0", "", 0));
+        assertThrows(IllegalArgumentException.class, () -> configure("etl", "", 0));
+        assertThrows(IllegalArgumentException.class, () -> configure("", "etl=x", 0));
+        assertEquals(Map.of("etl", 3, "reporting", 1),
+                ExecutionScheduler.parseOwnerValues(" etl = 3, reporting=1 ", "weights"));
+    }
+
+    private void configure(String weights, String ownerLimits, int defaultOwnerLimit) {
+        ReflectionTestUtils.setField(scheduler, "weightsConfig", weights);
+        ReflectionTestUtils.setField(scheduler, "ownerLimitsConfig", ownerLimits);
+        ReflectionTestUtils.setField(scheduler, "defaultOwnerMaxConcurrent", defaultOwnerLimit);
+        scheduler.start();
+    }
+
+    private List<CompletableFuture<String>> submit(String owner, BatchExecution.Priority priority, int count) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(scheduler.submit(BatchExecution.builder()
+                    .id(ids.incrementAndGet())
+                    .owner(owner)
+                    .priority(priority)
+                    .status(BatchExecution.ExecutionStatus.PENDING)
+                    .build()));
+        }
+        return results;
+    }
+
+    /** Finishes running runs one at a time in start order and returns their owners. */
+    private List<String> drain(int runs) {
+        List<String> owners = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            Map.Entry<BatchExecution, CompletableFuture<String>> running = started.entrySet().stream()
+                    .filter(entry -> !entry.getValue().isDone())
+                    .findFirst()
+                    .orElseThrow();
+            owners.add(running.getKey().getOwner());
+            running.getValue().complete("done");
+        }
+        return owners;
+    }
+
+    private void finish(String owner) {
+        started.entrySet().stream()
+                .filter(entry -> owner.equals(entry.getKey().getOwner()) && !entry.getValue().isDone())
+                .findFirst()
+                .orElseThrow()
+                .getValue()
+                .complete("done");
+    }
+
+    private Map<String, Long> runningByOwner() {
+        Map<String, Long> running = new LinkedHashMap<>();
+        started.forEach((execution, future) -> {
+            if (!future.isDone()) {
+                running.merge(execution.getOwner(), 1L, Long::sum);
+            }
+        });
+        return running;
+    }
+}
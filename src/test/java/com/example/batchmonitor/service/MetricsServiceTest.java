@@ -0,0 +1,129 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsServiceTest {
+
+    private SimpleMeterRegistry registry;
+    private MetricsService metricsService;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metricsService = new MetricsService(registry, 2);
+    }
+
+    @Test
+    void recordStdoutLine_ShouldCountLinesAndBytesPerScript() {
+        metricsService.recordStdoutLine("/scripts/etl.sh", "hello");
+        metricsService.recordStdoutLine("/scripts/etl.sh", "héllo");
+        metricsService.recordStderrLine("/scripts/etl.sh", "oops");
+
+        assertEquals(2.0, registry.get("batch.output.lines")
+                .tags("script", "etl.sh", "stream", "stdout").counter().count());
+        assertEquals(13.0, registry.get("batch.output.bytes")
+                .tags("script", "etl.sh", "stream", "stdout").counter().count());
+        assertEquals(1.0, registry.get("batch.output.lines")
+                .tags("script", "etl.sh", "stream", "stderr").counter().count());
+    }
+
+    @Test
+    void scriptTag_ShouldFallBackToOtherBeyondLimit() {
+        metricsService.recordSpawn("/scripts/a.sh", 1_000);
+        metricsService.recordSpawn("/scripts/b.sh", 1_000);
+        metricsService.recordSpawn("/scripts/c.sh", 1_000);
+        metricsService.recordSpawn("/scripts/a.sh", 1_000);
+
+        assertEquals(2, registry.get("batch.process.spawn").tags("script", "a.sh").timer().count());
+        assertEquals(1, registry.get("batch.process.spawn").tags("script", "b.sh").timer().count());
+        assertEquals(1, registry.get("batch.process.spawn")
+                .tags("script", MetricsService.OTHER_SCRIPT).timer().count());
+        assertNull(registry.find("batch.process.spawn").tags("script", "c.sh").timer());
+    }
+
+    @Test
+    void recordLogPersist_ShouldRecordLatencyAndBatchSize() {
+        metricsService.recordLogPersist("/scripts/a.sh", 25, TimeUnit.MILLISECONDS.toNanos(4));
+
+        assertEquals(4.0, registry.get("batch.log.persist").timer().totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(25.0, registry.get("batch.log.persist.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void recordSpoolDelivery_ShouldRecordLatencyAndLinesPerTarget() {
+        metricsService.recordSpoolDelivery("database", 40, TimeUnit.MILLISECONDS.toNanos(3));
+        metricsService.recordSpoolDelivery("database", 10, TimeUnit.MILLISECONDS.toNanos(1));
+        metricsService.recordSpoolDelivery("websocket", 50, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(2, registry.get("batch.output.spool.delivery").tags("target", "database").timer().count());
+        assertEquals(50.0, registry.get("batch.output.spool.delivery.lines")
+                .tags("target", "database").summary().totalAmount());
+        assertEquals(1, registry.get("batch.output.spool.delivery.lines")
+                .tags("target", "websocket").summary().count());
+    }
+
+    @Test
+    void recordAlert_ShouldCountPerRule() {
+        metricsService.recordAlert("oom");
+        metricsService.recordAlert("oom");
+        metricsService.recordAlert("warnings");
+
+        assertEquals(2.0, registry.get("batch.alerts.fired").tags("rule", "oom").counter().count());
+        assertEquals(1.0, registry.get("batch.alerts.fired").tags("rule", "warnings").counter().count());
+    }
+
+    @Test
+    void recordWebSocketSend_ShouldTagByMessageType() {
+        metricsService.recordWebSocketSend("console", 100);
+        metricsService.recordWebSocketSend("console", 100);
+        metricsService.recordWebSocketSend("status", 100);
+
+        assertEquals(2, registry.get("batch.websocket.send").tags("type", "console").timer().count());
+        assertEquals(1, registry.get("batch.websocket.send").tags("type", "status").timer().count());
+    }
+
+    @Test
+    void recordSchedulerWait_ShouldTagByOwnerAndReportQueueDepth() {
+        metricsService.recordSchedulerWait("etl", TimeUnit.MILLISECONDS.toNanos(30));
+        metricsService.recordSchedulerWait("reporting", TimeUnit.MILLISECONDS.toNanos(10));
+        metricsService.recordSchedulerWait("adhoc", TimeUnit.MILLISECONDS.toNanos(10));
+        metricsService.registerSchedulerQueue(() -> 7);
+
+        assertEquals(30.0, registry.get("batch.scheduler.wait").tags("owner", "etl").timer()
+                .totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, registry.get("batch.scheduler.wait")
+                .tags("owner", MetricsService.OTHER_SCRIPT).timer().count());
+        assertEquals(7.0, registry.get("batch.scheduler.queued").gauge().value());
+    }
+
+    @Test
+    void statusChanged_ShouldTrackActiveExecutionsAndFinishedCounts() {
+        metricsService.statusChanged(null, BatchExecution.ExecutionStatus.PENDING);
+        metricsService.statusChanged(null, BatchExecution.ExecutionStatus.PENDING);
+        metricsService.statusChanged(BatchExecution.ExecutionStatus.PENDING, BatchExecution.ExecutionStatus.RUNNING);
+
+        assertEquals(1.0, registry.get("batch.executions.active").tags("status", "PENDING").gauge().value());
+        assertEquals(1.0, registry.get("batch.executions.active").tags("status", "RUNNING").gauge().value());
+
+        metricsService.statusChanged(BatchExecution.ExecutionStatus.RUNNING, BatchExecution.ExecutionStatus.FAILED);
+
+        assertEquals(0, metricsService.activeCount(BatchExecution.ExecutionStatus.RUNNING));
+        assertEquals(1.0, registry.get("batch.executions.finished").tags("status", "FAILED").counter().count());
+    }
+
+    @Test
+    void utf8Length_ShouldCountEncodedBytesPlusTerminator() {
+        assertEquals(0, MetricsService.utf8Length(null));
+        assertEquals(1, MetricsService.utf8Length(""));
+        assertEquals(4, MetricsService.utf8Length("abc"));
+        assertEquals(3, MetricsService.utf8Length("é"));
+        assertEquals(5, MetricsService.utf8Length("😀"));
+    }
+}
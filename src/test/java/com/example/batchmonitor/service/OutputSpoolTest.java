@@ -0,0 +1,283 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.ExecutionLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutputSpoolTest {
+
+    @Mock
+    private ExecutionLogRepository logRepository;
+
+    @Mock
+    private BatchExecutionRepository executionRepository;
+
+    @Mock
+    private WebSocketService webSocketService;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    /** Entries the database accepted. */
+    private final List<ExecutionLog> stored = new CopyOnWriteArrayList<>();
+
+    /** Messages published to WebSocket clients. */
+    private final List<ConsoleOutput> published = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+
+    private final List<OutputSpool> spools = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(logRepository.saveAll(any())).thenAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            List<ExecutionLog> entries = invocation.getArgument(0);
+            if (entries.stream().anyMatch(entry -> entry.getMessage().equals("rejected"))) {
+                throw new DataIntegrityViolationException("Value too long");
+            }
+            stored.addAll(entries);
+            return entries;
+        });
+        lenient().when(executionRepository.existsById(anyLong())).thenAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            return true;
+        });
+        lenient().doAnswer(invocation -> published.addAll(invocation.getArgument(0)))
+                .when(webSocketService).sendConsoleBatch(any());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (OutputSpool spool : spools) {
+            spool.stop();
+        }
+    }
+
+    @Test
+    void append_ShouldStoreAndPublishEveryLineInOrder() throws IOException {
+        // Arrange
+        OutputSpool spool = start(10_000);
+
+        // Act
+        spool.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "one", LocalDateTime.of(2026, 1, 2, 3, 4, 5, 6000));
+        spool.append(1L, "job.sh", ExecutionLog.LogType.STDERR, "two", LocalDateTime.now());
+        spool.append(2L, "job.sh", ExecutionLog.LogType.STDOUT, "x".repeat(3000), LocalDateTime.now());
+
+        // Assert
+        assertTrue(spool.awaitDelivered());
+        assertEquals(List.of(1L, 2L, 3L), stored.stream().map(ExecutionLog::getSequence).toList());
+        assertEquals("one", stored.get(0).getMessage());
+        assertEquals(LocalDateTime.of(2026, 1, 2, 3, 4, 5, 6000), stored.get(0).getTimestamp());
+        assertEquals(ExecutionLog.LogType.STDERR, stored.get(1).getLogType());
+        assertEquals(ExecutionLog.MESSAGE_LENGTH, stored.get(2).getMessage().length());
+        assertEquals(List.of(1L, 2L, 3L), published.stream().map(ConsoleOutput::getSequence).toList());
+        assertEquals(ConsoleOutput.OutputType.STDERR, published.get(1).getType());
+        assertEquals(2L, published.get(2).getExecutionId());
+        verify(metricsService, atLeastOnce()).recordLogPersist(eq("job.sh"), anyInt(), anyLong());
+    }
+
+    @Test
+    void awaitDeliveredForExecution_ShouldNotWaitForOtherExecutions() throws IOException {
+        // Arrange
+        OutputSpool spool = start(200);
+        ReflectionTestUtils.setField(spool, "retryIntervalMillis", 50L);
+        spool.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "one", LocalDateTime.now());
+        assertTrue(spool.awaitDelivered(1L));
+
+        // Act: execution 2 appends while the database is down
+        databaseDown.set(true);
+        spool.append(2L, "job.sh", ExecutionLog.LogType.STDOUT, "two", LocalDateTime.now());
+
+        // Assert
+        assertTrue(spool.awaitDelivered(1L));
+        assertTrue(spool.awaitDelivered(3L));
+        assertFalse(spool.awaitDelivered(2L));
+        assertFalse(spool.isStored(2L));
+        assertTrue(spool.isStored(1L));
+        databaseDown.set(false);
+        assertTrue(spool.awaitDelivered(2L));
+        assertTrue(spool.isStored(2L));
+    }
+
+    @Test
+    void append_ShouldPublishRunsOfOneExecutionTogether() throws IOException {
+        // Arrange: the first publish fails once every line is appended, so the retry reads them back as one batch
+        OutputSpool spool = start(10_000);
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        AtomicBoolean brokerDown = new AtomicBoolean(true);
+        CountDownLatch appended = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (brokerDown.getAndSet(false)) {
+                assertTrue(appended.await(5, TimeUnit.SECONDS));
+                throw new IllegalStateException("Broker unavailable");
+            }
+            List<ConsoleOutput> lines = invocation.getArgument(0);
+            batches.add(lines.stream().map(ConsoleOutput::getExecutionId).toList());
+            return null;
+        }).when(webSocketService).sendConsoleBatch(any());
+
+        // Act
+        for (long executionId : new long[] {1, 1, 2, 1}) {
+            spool.append(executionId, "job.sh", ExecutionLog.LogType.STDOUT, "line", LocalDateTime.now());
+        }
+        appended.countDown();
+
+        // Assert
+        assertTrue(spool.awaitDelivered());
+        assertEquals(List.of(List.of(1L, 1L), List.of(2L), List.of(1L)), batches);
+    }
+
+    @Test
+    void append_DuringDatabaseOutage_ShouldKeepLinesUntilTheDatabaseIsBack() throws Exception {
+        // Arrange
+        OutputSpool spool = start(10_000);
+        databaseDown.set(true);
+
+        // Act
+        for (int i = 1; i <= 3; i++) {
+            spool.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "line " + i, LocalDateTime.now());
+        }
+        Thread.sleep(100);
+
+        // Assert
+        assertEquals(0, spool.delivered(OutputSpool.DATABASE));
+        assertTrue(stored.isEmpty());
+        assertEquals(3, published.size(), "WebSocket clients are not held up by the database");
+
+        databaseDown.set(false);
+        assertTrue(spool.awaitDelivered());
+        assertEquals(List.of("line 1", "line 2", "line 3"), stored.stream().map(ExecutionLog::getMessage).toList());
+    }
+
+    @Test
+    void append_ShouldDropOnlyTheLineTheDatabaseRejects() throws IOException {
+        // Arrange
+        OutputSpool spool = start(10_000);
+
+        // Act
+        spool.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "before", LocalDateTime.now());
+        spool.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "rejected", LocalDateTime.now());
+        spool.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "after", LocalDateTime.now());
+
+        // Assert
+        assertTrue(spool.awaitDelivered());
+        assertEquals(List.of("before", "after"), stored.stream().map(ExecutionLog::getMessage).toList());
+        assertEquals(3, spool.delivered(OutputSpool.DATABASE));
+    }
+
+    @Test
+    void start_ShouldStoreLinesLeftFromBeforeARestartOnce() throws IOException {
+        // Arrange: the first instance stops while the database is unreachable
+        databaseDown.set(true);
+        OutputSpool first = start(100);
+        for (int i = 1; i <= 3; i++) {
+            first.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "line " + i, LocalDateTime.now());
+        }
+        first.stop();
+        spools.remove(first);
+        databaseDown.set(false);
+        // Line 1 made it to the database before the old instance went away
+        when(logRepository.findSequences(anyCollection(), anyLong(), anyLong())).thenReturn(Set.of(1L));
+
+        // Act
+        OutputSpool second = start(10_000);
+        long next = second.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "line 4", LocalDateTime.now());
+
+        // Assert
+        assertTrue(second.awaitDelivered());
+        assertEquals(4, next);
+        assertEquals(List.of(2L, 3L, 4L), stored.stream().map(ExecutionLog::getSequence).toList());
+    }
+
+    @Test
+    void append_ShouldRollSegmentsAndDeleteDeliveredOnes() throws IOException {
+        // Arrange
+        OutputSpool spool = start(10_000);
+        ReflectionTestUtils.setField(spool, "segmentSizeKb", 64);
+
+        // Act
+        for (int i = 0; i < 5000; i++) {
+            spool.append(1L, "job.sh", ExecutionLog.LogType.STDOUT, "Processed record " + i, LocalDateTime.now());
+        }
+
+        // Assert
+        assertTrue(spool.awaitDelivered());
+        assertEquals(5000, stored.size());
+        assertEquals(5000L, stored.get(4999).getSequence());
+        assertEquals(1, spool.segmentCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.toString().endsWith(".seg")).count());
+        }
+    }
+
+    @Test
+    void start_ShouldRefuseADirectoryInUse() throws IOException {
+        start(10_000);
+
+        assertThrows(IllegalStateException.class, () -> start(10_000));
+    }
+
+    private OutputSpool start(long flushTimeoutMillis) throws IOException {
+        OutputSpool spool = new OutputSpool(logRepository, executionRepository, webSocketService, metricsService,
+                new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(spool, "enabled", true);
+        ReflectionTestUtils.setField(spool, "directory", directory.toString());
+        ReflectionTestUtils.setField(spool, "segmentSizeKb", 8192);
+        ReflectionTestUtils.setField(spool, "batchSize", 500);
+        ReflectionTestUtils.setField(spool, "retryIntervalMillis", 20L);
+        ReflectionTestUtils.setField(spool, "flushTimeoutMillis", flushTimeoutMillis);
+        spool.start();
+        spools.add(spool);
+        return spool;
+    }
+}
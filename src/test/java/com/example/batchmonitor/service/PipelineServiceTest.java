@@ -0,0 +1,425 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.PipelineRequest;
+import com.example.batchmonitor.dto.PipelineResponse;
+import com.example.batchmonitor.dto.PipelineStep;
+import com.example.batchmonitor.dto.ProgressUpdate;
+import com.example.batchmonitor.dto.SweepRequest;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.PipelineExecution;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.PipelineExecutionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PipelineServiceTest {
+
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    @Mock
+    private PipelineExecutionRepository pipelineRepository;
+
+    @Mock
+    private BatchExecutionRepository executionRepository;
+
+    @Mock
+    private BatchExecutionService batchExecutionService;
+
+    @Mock
+    private ScriptExecutionService scriptExecutionService;
+
+    @Mock
+    private ExecutionScheduler executionScheduler;
+
+    @Mock
+    private WebSocketService webSocketService;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate();
+
+    @InjectMocks
+    private PipelineService pipelineService;
+
+    @Captor
+    private ArgumentCaptor<List<BatchExecution>> savedSteps;
+
+    @Captor
+    private ArgumentCaptor<List<BatchExecution>> skippedSteps;
+
+    /** Futures handed out by the mocked scheduler, by step id; created by whichever of submit and finish comes first. */
+    private final Map<String, CompletableFuture<String>> runs = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.setTransactionManager(transactionManager);
+        ReflectionTestUtils.setField(pipelineService, "maxConcurrent", 5);
+        ReflectionTestUtils.setField(pipelineService, "progressIntervalMillis", 60_000L);
+        ReflectionTestUtils.setField(pipelineService, "maxSteps", 100);
+        pipelineService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipelineService.stop();
+    }
+
+    @Test
+    void startPipeline_ShouldFanOutAfterDependencyAndPassOutputDownstream() {
+        // Arrange - extract, then three transforms in parallel, then load
+        stubPersistence();
+        PipelineRequest request = PipelineRequest.builder()
+                .name("nightly")
+                .steps(List.of(
+                        step("extract", "extract.sh", null),
+                        step("t1", "transform.py", "--in ${steps.extract.output}", "extract"),
+                        step("t2", "transform.py", "--part 2", "extract"),
+                        step("t3", "transform.py", "--part 3", "extract"),
+                        step("load", "load.sh", "--after ${steps.t3.executionId}", "t1", "t2")))
+                .build();
+
+        // Act
+        PipelineResponse response = pipelineService.startPipeline(request);
+
+        // Assert - only the root starts
+        assertEquals(BatchExecution.ExecutionStatus.RUNNING, response.getStatus());
+        assertEquals(List.of("extract", "t1", "t2", "t3", "load"),
+                response.getSteps().stream().map(PipelineResponse.Step::getId).toList());
+        assertEquals(List.of("t1", "t2", "t3"), response.getSteps().get(4).getDependsOn());
+        assertEquals(Set.of("extract"), runs.keySet());
+
+        BatchExecution extract = execution("extract");
+        extract.setOutputFilePath("/logs/execution_1.log");
+        finish(extract, BatchExecution.ExecutionStatus.COMPLETED);
+        awaitLaunched("t1", "t2", "t3");
+        assertEquals("--in /logs/execution_1.log", execution("t1").getParameters());
+        assertFalse(runs.containsKey("load"));
+
+        finish(execution("t1"), BatchExecution.ExecutionStatus.COMPLETED);
+        finish(execution("t2"), BatchExecution.ExecutionStatus.COMPLETED);
+        finish(execution("t3"), BatchExecution.ExecutionStatus.COMPLETED);
+        awaitLaunched("load");
+        assertEquals("--after 4", execution("load").getParameters());
+
+        finish(execution("load"), BatchExecution.ExecutionStatus.COMPLETED);
+        ProgressUpdate last = awaitFinalUpdate();
+        assertEquals("COMPLETED", last.getStatus());
+        assertEquals(100.0, last.getProgress());
+        verify(scriptExecutionService, never()).failPending(any(), anyString());
+    }
+
+    @Test
+    void startPipeline_ShouldSkipStepsDownstreamOfFailureButFinishOtherBranches() {
+        // Arrange
+        stubPersistence();
+        PipelineRequest request = PipelineRequest.builder()
+                .steps(List.of(
+                        step("a", "a.sh", null),
+                        step("b", "b.sh", null),
+                        step("c", "c.sh", null, "a"),
+                        step("d", "d.sh", null, "c")))
+                .build();
+        pipelineService.startPipeline(request);
+        assertEquals(Set.of("a", "b"), runs.keySet());
+
+        // Act
+        finish(execution("a"), BatchExecution.ExecutionStatus.FAILED);
+        verify(scriptExecutionService, timeout(TIMEOUT_MILLIS)).failPending(
+                skippedSteps.capture(), eq("Skipped: upstream step 'a' did not complete"));
+        assertEquals(List.of("c", "d"), skippedSteps.getValue().stream().map(BatchExecution::getPipelineStep).toList());
+        finish(execution("b"), BatchExecution.ExecutionStatus.COMPLETED);
+
+        // Assert
+        ProgressUpdate last = awaitFinalUpdate();
+        assertEquals("FAILED", last.getStatus());
+        ArgumentCaptor<PipelineExecution> saved = ArgumentCaptor.forClass(PipelineExecution.class);
+        verify(pipelineRepository, atLeastOnce()).save(saved.capture());
+        assertEquals("Steps did not complete: a, c, d", saved.getValue().getErrorMessage());
+        assertEquals(Set.of("a", "b"), runs.keySet());
+    }
+
+    @Test
+    void startPipeline_ShouldNotExceedMaxParallel() {
+        // Arrange
+        stubPersistence();
+        PipelineRequest request = PipelineRequest.builder()
+                .maxParallel(2)
+                .steps(List.of(step("x", "x.sh", null), step("y", "y.sh", null), step("z", "z.sh", null)))
+                .build();
+
+        // Act
+        pipelineService.startPipeline(request);
+
+        // Assert
+        assertEquals(Set.of("x", "y"), runs.keySet());
+        finish(execution("y"), BatchExecution.ExecutionStatus.COMPLETED);
+        awaitLaunched("z");
+    }
+
+    @Test
+    void startPipeline_WhenStepsCannotBeSaved_ShouldRollBackThePipeline() {
+        // Arrange
+        when(pipelineRepository.save(any(PipelineExecution.class))).thenAnswer(invocation -> {
+            PipelineExecution pipeline = invocation.getArgument(0);
+            pipeline.setId(10L);
+            return pipeline;
+        });
+        when(batchExecutionService.resolveScriptPath(anyString())).thenAnswer(invocation -> "/scripts/" + invocation.getArgument(0));
+        when(executionRepository.saveAll(anyList())).thenThrow(new IllegalStateException("insert failed"));
+        PipelineRequest request = PipelineRequest.builder()
+                .steps(List.of(step("a", "a.sh", null)))
+                .build();
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> pipelineService.startPipeline(request));
+
+        // Assert - one transaction for both inserts, rolled back; nothing left to schedule
+        verify(transactionManager).getTransaction(any());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verifyNoInteractions(executionScheduler);
+        pipelineService.publishProgress();
+        verifyNoInteractions(webSocketService);
+    }
+
+    @Test
+    void startPipeline_ShouldRejectInvalidDefinitions() {
+        // Act & Assert
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startPipeline(PipelineRequest.builder()
+                .steps(List.of(step("a", "a.sh", null, "b"), step("b", "b.sh", null, "a"))).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startPipeline(PipelineRequest.builder()
+                .steps(List.of(step("a", "a.sh", null, "missing"))).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startPipeline(PipelineRequest.builder()
+                .steps(List.of(step("a", "a.sh", null), step("a", "b.sh", null))).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startPipeline(PipelineRequest.builder()
+                .steps(List.of(step("a", "a.sh", "--in ${steps.nope.output}"))).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startPipeline(PipelineRequest.builder()
+                .steps(List.of()).build()));
+        verifyNoInteractions(pipelineRepository, executionScheduler);
+    }
+
+    @Test
+    void startSweep_ShouldRunScriptOncePerItemUnderTheCap() {
+        // Arrange
+        stubPersistence();
+        SweepRequest request = SweepRequest.builder()
+                .name("partitions")
+                .owner("etl")
+                .priority(BatchExecution.Priority.LOW)
+                .scriptName("partition.sh")
+                .parameters("--partition ${item} --verbose")
+                .rangeStart(0)
+                .rangeEnd(4)
+                .maxParallel(2)
+                .build();
+
+        // Act
+        PipelineResponse response = pipelineService.startSweep(request);
+
+        // Assert
+        assertEquals(5, response.getTotalSteps());
+        assertEquals(Set.of("1", "2"), runs.keySet());
+        assertEquals("--partition 0 --verbose", execution("1").getParameters());
+        assertEquals("--partition 4 --verbose", execution("5").getParameters());
+        assertEquals("/scripts/partition.sh", execution("5").getScriptPath());
+        assertEquals("etl", execution("5").getOwner());
+        assertEquals(BatchExecution.Priority.LOW, execution("5").getPriority());
+        verify(executionRepository).saveAll(anyList());
+
+        finish(execution("1"), BatchExecution.ExecutionStatus.COMPLETED);
+        finish(execution("2"), BatchExecution.ExecutionStatus.FAILED);
+        awaitLaunched("3", "4");
+        finish(execution("3"), BatchExecution.ExecutionStatus.COMPLETED);
+        finish(execution("4"), BatchExecution.ExecutionStatus.COMPLETED);
+        awaitLaunched("5");
+        finish(execution("5"), BatchExecution.ExecutionStatus.COMPLETED);
+
+        ProgressUpdate last = awaitFinalUpdate();
+        assertEquals("FAILED", last.getStatus());
+        assertEquals(5, last.getTotalSteps());
+        assertEquals(4, last.getCompletedSteps());
+        assertEquals(1, last.getFailedSteps());
+    }
+
+    @Test
+    void startSweep_ShouldRejectInvalidRequests() {
+        // Arrange
+        SweepRequest.SweepRequestBuilder valid = SweepRequest.builder()
+                .scriptName("partition.sh")
+                .parameters("--partition ${item}");
+
+        // Act & Assert
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startSweep(valid
+                .parameters("--partition 1").items(List.of("1")).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startSweep(valid
+                .parameters("--partition ${item}").items(List.of("1")).rangeStart(1).rangeEnd(2).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startSweep(valid
+                .items(null).rangeStart(5).rangeEnd(4).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startSweep(valid
+                .rangeStart(0).rangeEnd(Integer.MAX_VALUE).build()));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.startSweep(valid
+                .rangeStart(null).rangeEnd(null).build()));
+        verifyNoInteractions(pipelineRepository, executionRepository);
+    }
+
+    @Test
+    void topologicalOrder_ShouldKeepDeclarationOrderBetweenIndependentSteps() {
+        // Arrange
+        PipelineRequest request = PipelineRequest.builder()
+                .steps(List.of(
+                        step("report", "r.sh", null, "merge"),
+                        step("merge", "m.sh", "${steps.left.output} ${steps.right.output}"),
+                        step("right", "b.sh", null),
+                        step("left", "a.sh", null)))
+                .build();
+
+        // Act
+        List<String> order = PipelineService.topologicalOrder(PipelineService.dependencies(request));
+
+        // Assert
+        assertEquals(List.of("right", "left", "merge", "report"), order);
+    }
+
+    @Test
+    void publishProgress_ShouldAverageStepsAndSkipUnchangedValues() {
+        // Arrange
+        stubPersistence();
+        pipelineService.startPipeline(PipelineRequest.builder()
+                .steps(List.of(step("a", "a.sh", null), step("b", "b.sh", null)))
+                .build());
+        execution("a").setProgress(50.0);
+
+        // Act
+        pipelineService.publishProgress();
+        pipelineService.publishProgress();
+
+        // Assert
+        ArgumentCaptor<ProgressUpdate> updates = ArgumentCaptor.forClass(ProgressUpdate.class);
+        verify(webSocketService).sendPipelineProgress(updates.capture());
+        assertEquals(10L, updates.getValue().getPipelineId());
+        assertNull(updates.getValue().getExecutionId());
+        assertEquals(25.0, updates.getValue().getProgress());
+        assertEquals(25.0, pipelineService.getPipeline(10L).getProgress());
+    }
+
+    @Test
+    void parseDefinition_ShouldReadYaml() {
+        // Act
+        PipelineRequest request = pipelineService.parseDefinition("""
+                name: nightly
+                maxParallel: 3
+                steps:
+                  - id: extract
+                    scriptName: extract.sh
+                  - id: load
+                    scriptName: load.sh
+                    parameters: --in ${steps.extract.output}
+                    dependsOn: [extract]
+                """);
+
+        // Assert
+        assertEquals("nightly", request.getName());
+        assertEquals(3, request.getMaxParallel());
+        assertEquals(2, request.getSteps().size());
+        assertEquals("--in ${steps.extract.output}", request.getSteps().get(1).getParameters());
+        assertEquals(List.of("extract"), request.getSteps().get(1).getDependsOn());
+        assertThrows(BatchExecutionException.class, () -> pipelineService.parseDefinition("- just a list"));
+        assertThrows(BatchExecutionException.class, () -> pipelineService.parseDefinition("steps: [unclosed"));
+    }
+
+    private void stubPersistence() {
+        when(pipelineRepository.save(any(PipelineExecution.class))).thenAnswer(invocation -> {
+            PipelineExecution pipeline = invocation.getArgument(0);
+            if (pipeline.getId() == null) {
+                pipeline.setId(10L);
+            }
+            return pipeline;
+        });
+        AtomicLong ids = new AtomicLong();
+        when(executionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<BatchExecution> steps = invocation.getArgument(0);
+            steps.forEach(step -> step.setId(ids.incrementAndGet()));
+            return steps;
+        });
+        when(batchExecutionService.resolveScriptPath(anyString())).thenAnswer(invocation -> "/scripts/" + invocation.getArgument(0));
+        lenient().when(executionScheduler.submit(any(BatchExecution.class))).thenAnswer(invocation -> {
+            BatchExecution step = invocation.getArgument(0);
+            return runs.computeIfAbsent(step.getPipelineStep(), key -> new CompletableFuture<>());
+        });
+    }
+
+    private BatchExecution execution(String stepId) {
+        verify(executionRepository).saveAll(savedSteps.capture());
+        return savedSteps.getValue().stream()
+                .filter(step -> stepId.equals(step.getPipelineStep()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * Mimics ScriptExecutionService: the status is final before the future
+     * completes. A verified submit may not have returned its future yet.
+     */
+    private void finish(BatchExecution step, BatchExecution.ExecutionStatus status) {
+        step.setStatus(status);
+        runs.computeIfAbsent(step.getPipelineStep(), key -> new CompletableFuture<>()).complete("output");
+    }
+
+    private void awaitLaunched(String... stepIds) {
+        for (String stepId : stepIds) {
+            verify(executionScheduler, timeout(TIMEOUT_MILLIS))
+                    .submit(argThat(step -> stepId.equals(step.getPipelineStep())));
+        }
+    }
+
+    private ProgressUpdate awaitFinalUpdate() {
+        ArgumentCaptor<ProgressUpdate> updates = ArgumentCaptor.forClass(ProgressUpdate.class);
+        verify(webSocketService, timeout(TIMEOUT_MILLIS).atLeastOnce()).sendPipelineProgress(
+                argThat(update -> !"RUNNING".equals(update.getStatus())));
+        verify(webSocketService, atLeastOnce()).sendPipelineProgress(updates.capture());
+        return updates.getValue();
+    }
+
+    private static PipelineStep step(String id, String scriptName, String parameters, String... dependsOn) {
+        return PipelineStep.builder()
+                .id(id)
+                .scriptName(scriptName)
+                .parameters(parameters)
+                .dependsOn(List.of(dependsOn))
+                .build();
+    }
+}
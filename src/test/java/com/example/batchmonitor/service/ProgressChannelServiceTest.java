@@ -0,0 +1,165 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ProgressChannelServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ProgressChannelService progressChannelService;
+
+    private final List<Double> received = new CopyOnWriteArrayList<>();
+
+    private final BatchExecution execution = BatchExecution.builder()
+            .id(1L)
+            .status(BatchExecution.ExecutionStatus.RUNNING)
+            .progressChannel(true)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        progressChannelService = new ProgressChannelService(new CpuPlacementService());
+        ReflectionTestUtils.setField(progressChannelService, "enabled", true);
+        ReflectionTestUtils.setField(progressChannelService, "directory", tempDir.resolve("progress").toString());
+    }
+
+    @Test
+    void open_ShouldDeliverRecordsTheScriptWrites() throws Exception {
+        assumeMkfifo();
+
+        // Arrange
+        Optional<ProgressChannelService.Channel> opened = progressChannelService.open(execution, received::add);
+        assertTrue(opened.isPresent());
+        ProgressChannelService.Channel channel = opened.get();
+        assertTrue(progressChannelService.isOpen(execution));
+
+        // Act - every record reopens the pipe, as a shell redirection does
+        ProcessBuilder script = new ProcessBuilder("sh", "-c",
+                "for record in 25 25% 'not progress' 1/2 150 3/4; do echo \"$record\" > \"$"
+                        + ProgressChannelService.PATH_VARIABLE + "\"; done");
+        script.environment().put(ProgressChannelService.PATH_VARIABLE, channel.path().toString());
+        Process process = script.start();
+        assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+        boolean drained = channel.finish(5000);
+        channel.close();
+
+        // Assert
+        assertTrue(drained);
+        assertEquals(List.of(25.0, 50.0, 75.0), received);
+        assertFalse(progressChannelService.isOpen(execution));
+        assertFalse(Files.exists(channel.path()));
+    }
+
+    @Test
+    void close_ShouldStopAReaderWaitingForRecords() throws Exception {
+        assumeMkfifo();
+
+        // Arrange
+        ProgressChannelService.Channel channel = progressChannelService.open(execution, received::add).orElseThrow();
+
+        // Act - a background child of the script still holds the pipe
+        try (var writer = Files.newOutputStream(channel.path())) {
+            writer.write("10\n".getBytes());
+            writer.flush();
+            assertFalse(channel.finish(200));
+            channel.close();
+        }
+
+        // Assert
+        assertEquals(List.of(10.0), received);
+        assertFalse(Files.exists(channel.path()));
+    }
+
+    @Test
+    void reopen_ShouldFollowAnExistingChannel() throws Exception {
+        assumeMkfifo();
+
+        // Arrange - the pipe a previous instance created and did not remove
+        Path path = progressChannelService.pathOf(1L);
+        Files.createDirectories(path.getParent());
+        assertEquals(0, new ProcessBuilder("mkfifo", path.toString()).start().waitFor());
+
+        // Act
+        ProgressChannelService.Channel channel = progressChannelService.reopen(execution, received::add).orElseThrow();
+        Files.writeString(path, "3/8\n");
+        boolean drained = channel.finish(5000);
+        channel.close();
+
+        // Assert
+        assertTrue(drained);
+        assertEquals(List.of(37.5), received);
+    }
+
+    @Test
+    void open_WhenNotRequested_ShouldReturnEmpty() {
+        BatchExecution plain = BatchExecution.builder().id(2L).build();
+
+        assertTrue(progressChannelService.open(plain, received::add).isEmpty());
+        assertTrue(progressChannelService.reopen(plain, received::add).isEmpty());
+        assertFalse(progressChannelService.isOpen(plain));
+    }
+
+    @Test
+    void open_WhenDisabled_ShouldReturnEmpty() {
+        ReflectionTestUtils.setField(progressChannelService, "enabled", false);
+
+        assertFalse(progressChannelService.isRequested(execution));
+        assertTrue(progressChannelService.open(execution, received::add).isEmpty());
+    }
+
+    @Test
+    void open_WhenThePipeCannotBeCreated_ShouldReturnEmpty() throws IOException {
+        // A regular file where the directory should be
+        Path blocked = Files.createFile(tempDir.resolve("blocked"));
+        ReflectionTestUtils.setField(progressChannelService, "directory", blocked.resolve("progress").toString());
+
+        assertTrue(progressChannelService.open(execution, received::add).isEmpty());
+        assertFalse(progressChannelService.isOpen(execution));
+    }
+
+    @Test
+    void reopen_WithoutAPipe_ShouldReturnEmpty() {
+        assertTrue(progressChannelService.reopen(execution, received::add).isEmpty());
+    }
+
+    @Test
+    void parseRecord_ShouldAcceptPercentagesAndRatios() {
+        assertEquals(42.5, ProgressChannelService.parseRecord("42.5"));
+        assertEquals(42.5, ProgressChannelService.parseRecord(" 42.5 % "));
+        assertEquals(0.0, ProgressChannelService.parseRecord("0"));
+        assertEquals(100.0, ProgressChannelService.parseRecord("100%"));
+        assertEquals(37.5, ProgressChannelService.parseRecord("3/8"));
+        assertEquals(37.5, ProgressChannelService.parseRecord("3 / 8"));
+    }
+
+    @Test
+    void parseRecord_ShouldRejectAnythingElse() {
+        assertNull(ProgressChannelService.parseRecord(""));
+        assertNull(ProgressChannelService.parseRecord("Progress: 50%"));
+        assertNull(ProgressChannelService.parseRecord("150"));
+        assertNull(ProgressChannelService.parseRecord("-1"));
+        assertNull(ProgressChannelService.parseRecord("9/8"));
+        assertNull(ProgressChannelService.parseRecord("1/0"));
+        assertNull(ProgressChannelService.parseRecord("NaN"));
+    }
+
+    private static void assumeMkfifo() {
+        assumeTrue(!System.getProperty("os.name").toLowerCase().contains("win"), "Named pipes need mkfifo");
+    }
+}
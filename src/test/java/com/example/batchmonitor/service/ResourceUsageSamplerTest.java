@@ -0,0 +1,112 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ResourceUsageSample;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceUsageSamplerTest {
+
+    @Mock
+    private WebSocketService webSocketService;
+
+    @Mock
+    private CgroupLimiter cgroupLimiter;
+
+    @InjectMocks
+    private ResourceUsageSampler sampler;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sampler, "samplingIntervalMillis", 1000L);
+        ReflectionTestUtils.setField(sampler, "bufferCapacity", 10);
+        ReflectionTestUtils.setField(sampler, "retainedExecutions", 2);
+    }
+
+    @Test
+    void register_ShouldTakeInitialSample() {
+        sampler.register(1L, ProcessHandle.current());
+
+        List<ResourceUsageSample> samples = sampler.getSamples(1L);
+        assertEquals(1, samples.size());
+        assertTrue(samples.get(0).getProcessCount() >= 1);
+        assertTrue(samples.get(0).getCpuTimeMillis() > 0, "Current JVM must have consumed CPU time");
+    }
+
+    @Test
+    void sampleAll_ShouldSampleLiveProcessesAndBroadcast() {
+        sampler.register(1L, ProcessHandle.current());
+
+        sampler.sampleAll();
+
+        assertEquals(2, sampler.getSamples(1L).size());
+        verify(webSocketService).sendResourceUsage(any(ResourceUsageSample.class));
+    }
+
+    @Test
+    void unregister_ShouldStopSamplingButKeepHistory() {
+        sampler.register(1L, ProcessHandle.current());
+        sampler.unregister(1L);
+
+        sampler.sampleAll();
+
+        assertEquals(1, sampler.getSamples(1L).size());
+        verify(webSocketService, never()).sendResourceUsage(any());
+    }
+
+    @Test
+    void register_ShouldEvictOldestFinishedExecutions() {
+        for (long id = 1; id <= 3; id++) {
+            sampler.register(id, ProcessHandle.current());
+            sampler.unregister(id);
+        }
+
+        assertTrue(sampler.getSamples(1L).isEmpty());
+        assertFalse(sampler.getSamples(3L).isEmpty());
+    }
+
+    @Test
+    void sample_ShouldReadCgroupCountersWhenRunHasGroup(@TempDir Path group) throws IOException {
+        Files.writeString(group.resolve("cpu.stat"), "usage_usec 2500000\nuser_usec 2000000\n");
+        Files.writeString(group.resolve("memory.current"), "104857600\n");
+        Files.writeString(group.resolve("pids.current"), "7\n");
+        when(cgroupLimiter.groupPath(1L)).thenReturn(group);
+
+        sampler.register(1L, ProcessHandle.current());
+        Files.writeString(group.resolve("cpu.stat"), "usage_usec 3000000\n");
+        sampler.unregister(1L);
+
+        List<ResourceUsageSample> samples = sampler.getSamples(1L);
+        assertEquals(2, samples.size(), "A group's final totals are sampled on unregister");
+        assertEquals(2500, samples.get(0).getCpuTimeMillis());
+        assertEquals(104857600, samples.get(0).getRssBytes());
+        assertEquals(7, samples.get(0).getProcessCount());
+        assertEquals(3000, samples.get(1).getCpuTimeMillis());
+    }
+
+    @Test
+    void readRssBytes_ShouldReadCurrentProcessOnLinux() {
+        long rss = ResourceUsageSampler.readRssBytes(ProcessHandle.current().pid());
+
+        if (System.getProperty("os.name").toLowerCase().contains("linux")) {
+            assertTrue(rss > 0);
+        } else {
+            assertEquals(0, rss);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.entity.ExecutionLog;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.repository.ExecutionLogRepository;
+import com.example.batchmonitor.repository.projection.ConsoleLine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResultCacheServiceTest {
+
+    @Mock
+    private ExecutionLogRepository logRepository;
+
+    @Mock
+    private ConsoleOutputService consoleOutputService;
+
+    @Mock
+    private ScriptExecutionService scriptExecutionService;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @InjectMocks
+    private ResultCacheService cacheService;
+
+    @TempDir
+    Path tempDir;
+
+    private Path scriptsDir;
+    private Path cacheDir;
+    private Path script;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        scriptsDir = Files.createDirectories(tempDir.resolve("scripts"));
+        cacheDir = tempDir.resolve("cache");
+        script = Files.writeString(scriptsDir.resolve("report.py"), "print('report')\n");
+        Files.writeString(scriptsDir.resolve("data.csv"), "a,b\n1,2\n");
+        configure(cacheService, 86400, 512);
+        cacheService.start();
+        lenient().when(consoleOutputService.isStored(any())).thenReturn(true);
+    }
+
+    @Test
+    void cacheKey_ShouldDependOnScriptParametersAndInputs() throws IOException {
+        // Arrange
+        String base = cacheService.cacheKey(script.toString(), "--day 1", List.of("data.csv"));
+
+        // Act & Assert
+        assertEquals(base, cacheService.cacheKey(script.toString(), "  --day   1 ", List.of("data.csv")));
+        assertEquals(base, cacheService.cacheKey(script.toString(), "--day 1",
+                List.of(scriptsDir.resolve("data.csv").toString(), "data.csv")));
+        assertNotEquals(base, cacheService.cacheKey(script.toString(), "--day 2", List.of("data.csv")));
+        assertNotEquals(base, cacheService.cacheKey(script.toString(), "--day 1", null));
+
+        Files.writeString(scriptsDir.resolve("data.csv"), "a,b\n1,3\n");
+        assertNotEquals(base, cacheService.cacheKey(script.toString(), "--day 1", List.of("data.csv")));
+
+        Files.writeString(script, "print('changed')\n");
+        String changedScript = cacheService.cacheKey(script.toString(), "--day 1", List.of("data.csv"));
+        assertNotEquals(base, changedScript);
+    }
+
+    @Test
+    void cacheKey_ShouldRejectMissingInputAndSkipMissingScript() {
+        assertThrows(BatchExecutionException.class,
+                () -> cacheService.cacheKey(script.toString(), null, List.of("missing.csv")));
+        assertNull(cacheService.cacheKey(scriptsDir.resolve("missing.py").toString(), null, null));
+    }
+
+    @Test
+    void storeAndReplay_ShouldRecreateOutputAndConsole() throws IOException {
+        // Arrange
+        BatchExecution source = completedExecution(1L, 0);
+        String key = cacheService.cacheKey(script.toString(), "--day 1", List.of("data.csv"));
+        LocalDateTime now = LocalDateTime.now();
+        when(logRepository.findConsoleLines(eq(1L), anyCollection())).thenReturn(List.of(
+                new ConsoleLine(1L, "report line", now, ExecutionLog.LogType.STDOUT),
+                new ConsoleLine(1L, "a warning", now, ExecutionLog.LogType.STDERR)));
+        cacheService.store(key, source, List.of("data.csv"), "report output");
+
+        BatchExecution replayed = BatchExecution.builder().id(2L).scriptPath(script.toString())
+                .status(BatchExecution.ExecutionStatus.PENDING).build();
+        Path outputFile = tempDir.resolve("execution_2.log");
+        when(scriptExecutionService.createLogFile(replayed)).thenReturn(outputFile);
+
+        // Act
+        Optional<ResultCacheService.CachedResult> cached = cacheService.lookup(key);
+        boolean served = cacheService.replay(replayed, cached.orElseThrow());
+
+        // Assert
+        assertTrue(served);
+        assertEquals(1L, cached.get().meta().sourceExecutionId());
+        assertEquals("report output", Files.readString(outputFile));
+        assertEquals(outputFile.toString(), replayed.getOutputFilePath());
+        assertEquals(0, replayed.getExitCode());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ExecutionLog>> logs = ArgumentCaptor.forClass(List.class);
+        verify(logRepository).saveAll(logs.capture());
+        assertEquals(List.of("report line", "a warning"), logs.getValue().stream().map(ExecutionLog::getMessage).toList());
+        assertEquals(ExecutionLog.LogType.STDERR, logs.getValue().get(1).getLogType());
+        assertSame(replayed, logs.getValue().get(0).getBatchExecution());
+        verify(consoleOutputService).logSystemMessage(replayed, "Result served from cache of execution 1");
+        verify(scriptExecutionService).updateExecutionSuccess(replayed);
+        verify(metricsService).recordLogPersist(eq(script.toString()), eq(2), anyLong());
+    }
+
+    @Test
+    void store_ShouldIgnoreFailedRuns() {
+        // Act
+        cacheService.store("key", completedExecution(1L, 1), null, "output");
+
+        // Assert
+        assertEquals(0, cacheService.size());
+        verifyNoInteractions(logRepository);
+    }
+
+    @Test
+    void store_ShouldSkipRunWhoseScriptChangedMeanwhile() throws IOException {
+        // Arrange
+        String key = cacheService.cacheKey(script.toString(), "--day 1", List.of("data.csv"));
+        Files.writeString(script, "print('edited during the run')\n");
+
+        // Act
+        cacheService.store(key, completedExecution(1L, 0), List.of("data.csv"), "output");
+
+        // Assert
+        assertEquals(0, cacheService.size());
+    }
+
+    @Test
+    void store_ShouldSkipRunWhoseConsoleIsNotFullyStored() throws IOException {
+        // Arrange
+        BatchExecution execution = completedExecution(1L, 0);
+        String key = cacheService.cacheKey(script.toString(), "--day 1", List.of("data.csv"));
+        when(consoleOutputService.isStored(execution)).thenReturn(false);
+
+        // Act
+        cacheService.store(key, execution, List.of("data.csv"), "output");
+
+        // Assert
+        assertEquals(0, cacheService.size());
+        verifyNoInteractions(logRepository);
+    }
+
+    @Test
+    void store_ShouldEvictLeastRecentlyUsedEntriesBeyondMaxSize() throws IOException {
+        // Arrange - three entries of ~400 KB in a 1 MB cache
+        ResultCacheService smallCache = newService(86400, 1);
+        String output = "x".repeat(400 * 1024);
+        String first = storeWithParameters(smallCache, "1", output);
+        String second = storeWithParameters(smallCache, "2", output);
+        assertTrue(smallCache.lookup(first).isPresent());
+
+        // Act
+        String third = storeWithParameters(smallCache, "3", output);
+
+        // Assert
+        assertEquals(2, smallCache.size());
+        assertTrue(smallCache.lookup(first).isPresent());
+        assertTrue(smallCache.lookup(second).isEmpty());
+        assertTrue(smallCache.lookup(third).isPresent());
+        assertFalse(Files.exists(cacheDir.resolve(second)));
+    }
+
+    @Test
+    void start_ShouldRestoreIndexAndDropExpiredEntries() throws IOException {
+        // Arrange
+        String fresh = storeWithParameters(cacheService, "1", "fresh");
+        String stale = storeWithParameters(cacheService, "2", "stale");
+        Path staleMeta = cacheDir.resolve(stale).resolve(ResultCacheService.META_FILE);
+        Files.writeString(staleMeta, Files.readString(staleMeta).replaceAll("\"createdAt\":\\d+", "\"createdAt\":0"));
+        Files.createDirectories(cacheDir.resolve(fresh + ".tmp-leftover"));
+
+        // Act
+        ResultCacheService restarted = newService(86400, 512);
+
+        // Assert
+        assertEquals(1, restarted.size());
+        assertTrue(restarted.lookup(fresh).isPresent());
+        assertFalse(Files.exists(cacheDir.resolve(stale)));
+        assertFalse(Files.exists(cacheDir.resolve(fresh + ".tmp-leftover")));
+    }
+
+    @Test
+    void lookup_ShouldMissWhenDisabled() {
+        // Arrange
+        ResultCacheService disabled = new ResultCacheService(logRepository, consoleOutputService,
+                scriptExecutionService, metricsService);
+        ReflectionTestUtils.setField(disabled, "enabled", false);
+
+        // Act
+        disabled.start();
+
+        // Assert
+        assertFalse(disabled.isEnabled());
+        assertTrue(disabled.lookup("key").isEmpty());
+    }
+
+    private String storeWithParameters(ResultCacheService service, String parameters, String output) {
+        String key = service.cacheKey(script.toString(), parameters, null);
+        BatchExecution execution = completedExecution(Long.parseLong(parameters), 0);
+        execution.setParameters(parameters);
+        lenient().when(logRepository.findConsoleLines(any(), anyCollection())).thenReturn(List.of());
+        service.store(key, execution, null, output);
+        return key;
+    }
+
+    private BatchExecution completedExecution(Long id, int exitCode) {
+        return BatchExecution.builder()
+                .id(id)
+                .scriptPath(script.toString())
+                .parameters("--day 1")
+                .status(BatchExecution.ExecutionStatus.COMPLETED)
+                .exitCode(exitCode)
+                .build();
+    }
+
+    private ResultCacheService newService(long ttlSeconds, long maxSizeMb) {
+        ResultCacheService service = new ResultCacheService(logRepository, consoleOutputService,
+                scriptExecutionService, metricsService);
+        configure(service, ttlSeconds, maxSizeMb);
+        service.start();
+        return service;
+    }
+
+    private void configure(ResultCacheService service, long ttlSeconds, long maxSizeMb) {
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "cacheDirectory", cacheDir.toString());
+        ReflectionTestUtils.setField(service, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(service, "maxSizeMb", maxSizeMb);
+        ReflectionTestUtils.setField(service, "baseScriptsDir", scriptsDir.toString());
+    }
+}
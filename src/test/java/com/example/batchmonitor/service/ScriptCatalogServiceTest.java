@@ -0,0 +1,190 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.ScriptInfo;
+import com.example.batchmonitor.dto.ScriptPage;
+import com.example.batchmonitor.entity.BatchExecution;
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.repository.BatchExecutionRepository;
+import com.example.batchmonitor.repository.projection.ScriptRunStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScriptCatalogServiceTest {
+
+    @Mock
+    private ScriptDirectoryMonitor directoryMonitor;
+
+    @Mock
+    private BatchExecutionRepository executionRepository;
+
+    @InjectMocks
+    private ScriptCatalogService catalogService;
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = tempDir.toAbsolutePath().normalize();
+        Files.writeString(root.resolve("backup.sh"), "echo backup\n");
+        Files.writeString(root.resolve("report.py"), "print('report')\n");
+        Files.writeString(root.resolve("notes.txt"), "not a script\n");
+        Files.createDirectories(root.resolve("etl/nightly"));
+        Files.writeString(root.resolve("etl/nightly/load.pl"), "print 'load';\n");
+        Files.createDirectories(root.resolve(".git"));
+        Files.writeString(root.resolve(".git/hook.sh"), "echo hidden\n");
+        Files.createDirectories(root.resolve("logs"));
+        Files.writeString(root.resolve("logs/execution_1"), "log output\n");
+
+        when(directoryMonitor.getBaseDirectory()).thenReturn(root);
+        lenient().when(executionRepository.findRunStats(anyCollection())).thenReturn(List.of());
+        ReflectionTestUtils.setField(catalogService, "logsDirectory", root.resolve("logs").toString());
+        catalogService.start();
+    }
+
+    @Test
+    void start_ShouldIndexScriptsRecursivelySkippingHiddenLogsAndNonScripts() {
+        // Act
+        ScriptPage page = catalogService.listScripts(null, null, 0, 100);
+
+        // Assert
+        assertEquals(3, page.getTotal());
+        assertEquals(List.of("backup.sh", "etl/nightly/load.pl", "report.py"),
+                page.getScripts().stream().map(ScriptInfo::getName).toList());
+        assertEquals(ScriptInfo.ScriptType.PERL, page.getScripts().get(1).getType());
+        verify(directoryMonitor).addListener(any());
+    }
+
+    @Test
+    void listScripts_ShouldFilterAndPage() {
+        // Act
+        ScriptPage byType = catalogService.listScripts(null, ScriptInfo.ScriptType.PYTHON, 0, 100);
+        ScriptPage byQuery = catalogService.listScripts("NIGHT", null, 0, 100);
+        ScriptPage secondPage = catalogService.listScripts(null, null, 1, 2);
+
+        // Assert
+        assertEquals(List.of("report.py"), byType.getScripts().stream().map(ScriptInfo::getName).toList());
+        assertEquals(List.of("etl/nightly/load.pl"), byQuery.getScripts().stream().map(ScriptInfo::getName).toList());
+        assertEquals(3, secondPage.getTotal());
+        assertEquals(List.of("report.py"), secondPage.getScripts().stream().map(ScriptInfo::getName).toList());
+    }
+
+    @Test
+    void onChange_ShouldApplyCreateModifyAndDelete() throws IOException {
+        // Arrange
+        Path created = Files.writeString(root.resolve("new_job.rb"), "puts 'hi'\n");
+
+        // Act
+        catalogService.onChange(created, StandardWatchEventKinds.ENTRY_CREATE);
+        Files.writeString(created, "puts 'hello world'\n");
+        catalogService.onChange(created, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        // Assert
+        ScriptInfo info = catalogService.getScript("new_job.rb");
+        assertEquals(ScriptInfo.ScriptType.RUBY, info.getType());
+        assertEquals("puts 'hello world'\n".length(), info.getSizeBytes());
+
+        // Act
+        Files.delete(created);
+        catalogService.onChange(created, StandardWatchEventKinds.ENTRY_DELETE);
+
+        // Assert
+        assertEquals(3, catalogService.size());
+    }
+
+    @Test
+    void onChange_ShouldDropEverythingUnderDeletedDirectory() {
+        // Act
+        catalogService.onChange(root.resolve("etl"), StandardWatchEventKinds.ENTRY_DELETE);
+
+        // Assert
+        assertEquals(2, catalogService.size());
+        assertThrows(BatchExecutionException.class, () -> catalogService.getScript("etl/nightly/load.pl"));
+    }
+
+    @Test
+    void onChange_ShouldIgnoreLogsDirectory() throws IOException {
+        // Arrange
+        Path log = Files.writeString(root.resolve("logs/execution_2"), "output\n");
+
+        // Act
+        catalogService.onChange(log, StandardWatchEventKinds.ENTRY_CREATE);
+
+        // Assert
+        assertEquals(3, catalogService.size());
+    }
+
+    @Test
+    void getScript_ShouldIncludeChecksumAndRunStats() throws Exception {
+        // Arrange
+        String scriptPath = root.resolve("backup.sh").toString();
+        LocalDateTime start = LocalDateTime.now();
+        when(executionRepository.findRunStats(argThat(paths -> paths.contains(scriptPath))))
+                .thenReturn(List.of(new ScriptRunStats(scriptPath, 4L, 9L, start, start.plusSeconds(3),
+                        BatchExecution.ExecutionStatus.COMPLETED, 0)));
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest("echo backup\n".getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        ScriptInfo info = catalogService.getScript("./backup.sh");
+
+        // Assert
+        assertEquals(expected, info.getChecksum());
+        assertEquals(scriptPath, info.getScriptPath());
+        assertEquals(4L, info.getRunCount());
+        assertEquals(9L, info.getLastExecutionId());
+        assertEquals(BatchExecution.ExecutionStatus.COMPLETED, info.getLastRunStatus());
+    }
+
+    @Test
+    void getScript_ShouldThrowForUnknownScript() {
+        assertThrows(BatchExecutionException.class, () -> catalogService.getScript("missing.sh"));
+    }
+
+    @Test
+    void rescan_ShouldPickUpChangesMadeWithoutEvents() throws IOException {
+        // Arrange
+        Files.delete(root.resolve("report.py"));
+        Files.writeString(root.resolve("deploy.ps1"), "Write-Host deploy\n");
+
+        // Act
+        catalogService.rescan();
+
+        // Assert
+        assertEquals(List.of("backup.sh", "deploy.ps1", "etl/nightly/load.pl"),
+                catalogService.listScripts(null, null, 0, 100).getScripts().stream()
+                        .map(ScriptInfo::getName).toList());
+    }
+
+    @Test
+    void scriptType_ShouldMatchInterpreterSelection() {
+        assertEquals(ScriptInfo.ScriptType.SHELL, ScriptInfo.ScriptType.fromFileName("run"));
+        assertEquals(ScriptInfo.ScriptType.SHELL, ScriptInfo.ScriptType.fromFileName("run.SH"));
+        assertEquals(ScriptInfo.ScriptType.BATCH, ScriptInfo.ScriptType.fromFileName("run.cmd"));
+        assertNull(ScriptInfo.ScriptType.fromFileName("readme.md"));
+    }
+}
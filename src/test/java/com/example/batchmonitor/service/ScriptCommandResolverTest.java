@@ -0,0 +1,184 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.util.ScriptUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ScriptCommandResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ScriptDirectoryMonitor directoryMonitor;
+    private ScriptCommandResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        directoryMonitor = new ScriptDirectoryMonitor();
+        ReflectionTestUtils.setField(directoryMonitor, "baseScriptsDir", tempDir.toString());
+        ReflectionTestUtils.setField(directoryMonitor, "watchEnabled", false);
+        resolver = new ScriptCommandResolver(directoryMonitor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        directoryMonitor.stop();
+    }
+
+    @Test
+    void discoverInterpreters_ShouldUseAbsolutePathsFromPath() throws IOException {
+        assumeTrue(ScriptUtils.isUnixSystem());
+        // Arrange
+        Path bin = Files.createDirectories(tempDir.resolve("bin"));
+        Path bash = Files.writeString(bin.resolve("bash"), "#!/bin/sh\n");
+        bash.toFile().setExecutable(true);
+        Path script = Files.writeString(tempDir.resolve("job.sh"), "echo hi\n");
+
+        // Act
+        resolver.discoverInterpreters(bin.toString());
+        List<String> command = resolver.resolve(script.toString(), "a  b");
+
+        // Assert
+        assertEquals(Map.of("bash", bash.toAbsolutePath().toString()), resolver.getInterpreters());
+        assertEquals(List.of(bash.toAbsolutePath().toString(), script.toString(), "a", "b"), command);
+    }
+
+    @Test
+    void resolve_ShouldCacheCommandPerScript() throws IOException {
+        // Arrange
+        resolver.discoverInterpreters("");
+        Path script = Files.writeString(tempDir.resolve("job.py"), "print('hi')\n");
+
+        // Act
+        List<String> first = resolver.resolve(script.toString(), "x");
+        List<String> second = resolver.resolve(tempDir.resolve("./job.py").toString(), null);
+
+        // Assert
+        assertEquals(1, resolver.cachedCommandCount());
+        assertEquals(first.subList(0, first.size() - 1), second);
+        assertEquals("x", first.get(first.size() - 1));
+    }
+
+    @Test
+    void resolve_ShouldReturnIndependentLists() throws IOException {
+        // Arrange
+        resolver.discoverInterpreters("");
+        Path script = Files.writeString(tempDir.resolve("job.sh"), "echo hi\n");
+
+        // Act
+        List<String> first = resolver.resolve(script.toString(), null);
+        first.add("mutated");
+        List<String> second = resolver.resolve(script.toString(), null);
+
+        // Assert
+        assertFalse(second.contains("mutated"));
+    }
+
+    @Test
+    void resolve_ShouldReloadOnlyWhenModificationTimeChanges() throws IOException {
+        assumeTrue(ScriptUtils.isUnixSystem());
+        // Arrange - loading a script sets its executable bit, so the bit shows whether it was reloaded
+        resolver.discoverInterpreters("");
+        Path script = Files.writeString(tempDir.resolve("job.sh"), "echo hi\n");
+        FileTime original = Files.getLastModifiedTime(script);
+        resolver.resolve(script.toString(), null);
+        assertTrue(Files.isExecutable(script));
+
+        // Act - unchanged modification time uses the cache
+        script.toFile().setExecutable(false);
+        Files.setLastModifiedTime(script, original);
+        resolver.resolve(script.toString(), null);
+
+        // Assert
+        assertFalse(Files.isExecutable(script));
+
+        // Act - a new modification time reloads the script
+        Files.setLastModifiedTime(script, FileTime.fromMillis(original.toMillis() + 1000));
+        resolver.resolve(script.toString(), null);
+
+        // Assert
+        assertTrue(Files.isExecutable(script));
+        assertEquals(1, resolver.cachedCommandCount());
+    }
+
+    @Test
+    void resolve_ShouldThrowForMissingScript() {
+        // Arrange
+        resolver.discoverInterpreters("");
+
+        // Act & Assert
+        assertThrows(BatchExecutionException.class,
+                () -> resolver.resolve(tempDir.resolve("missing.sh").toString(), null));
+        assertEquals(0, resolver.cachedCommandCount());
+    }
+
+    @Test
+    void resolve_ShouldThrowOnceCachedScriptIsDeletedWithoutWatcher() throws IOException {
+        // Arrange
+        resolver.discoverInterpreters("");
+        Path script = Files.writeString(tempDir.resolve("job.sh"), "echo hi\n");
+        resolver.resolve(script.toString(), null);
+
+        // Act
+        Files.delete(script);
+
+        // Assert
+        assertThrows(BatchExecutionException.class, () -> resolver.resolve(script.toString(), null));
+    }
+
+    @Test
+    void watcher_ShouldInvalidateCachedCommandOnChange() throws Exception {
+        // Arrange
+        Path script = Files.writeString(tempDir.resolve("job.sh"), "echo hi\n");
+        ReflectionTestUtils.setField(directoryMonitor, "watchEnabled", true);
+        directoryMonitor.start();
+        resolver.start();
+        resolver.resolve(script.toString(), null);
+        assertEquals(1, resolver.cachedCommandCount());
+
+        // Act
+        Files.delete(script);
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (resolver.cachedCommandCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, resolver.cachedCommandCount());
+        assertThrows(BatchExecutionException.class, () -> resolver.resolve(script.toString(), null));
+    }
+
+    @Test
+    void invalidate_ShouldDropScriptsUnderDeletedDirectory() throws IOException {
+        // Arrange
+        resolver.discoverInterpreters("");
+        Path dir = Files.createDirectories(tempDir.resolve("nested"));
+        Path first = Files.writeString(dir.resolve("a.sh"), "echo a\n");
+        Path second = Files.writeString(dir.resolve("b.sh"), "echo b\n");
+        resolver.resolve(first.toString(), null);
+        resolver.resolve(second.toString(), null);
+        Files.delete(first);
+        Files.delete(second);
+        Files.delete(dir);
+
+        // Act
+        resolver.invalidate(dir);
+
+        // Assert
+        assertEquals(0, resolver.cachedCommandCount());
+    }
+}
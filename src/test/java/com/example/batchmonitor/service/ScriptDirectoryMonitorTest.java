@@ -0,0 +1,89 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.util.DirectoryWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptDirectoryMonitorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ScriptDirectoryMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        monitor = new ScriptDirectoryMonitor();
+        ReflectionTestUtils.setField(monitor, "baseScriptsDir", tempDir.toString());
+        ReflectionTestUtils.setField(monitor, "watchEnabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    void start_ShouldFanOutEventsToAllListeners() throws Exception {
+        // Arrange
+        List<Path> first = new CopyOnWriteArrayList<>();
+        List<Path> second = new CopyOnWriteArrayList<>();
+        monitor.addListener(recording(first));
+        monitor.addListener(recording(second));
+        monitor.start();
+
+        // Act
+        Path script = Files.writeString(tempDir.resolve("job.sh"), "echo hi\n");
+
+        // Assert
+        Path expected = script.toAbsolutePath().normalize();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((!first.contains(expected) || !second.contains(expected)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(first.contains(expected));
+        assertTrue(second.contains(expected));
+        assertTrue(monitor.isWatching());
+        assertTrue(monitor.covers(expected));
+    }
+
+    @Test
+    void start_ShouldNotWatchWhenDisabledOrBlank() {
+        // Arrange
+        ReflectionTestUtils.setField(monitor, "watchEnabled", false);
+
+        // Act
+        monitor.start();
+
+        // Assert
+        assertFalse(monitor.isWatching());
+        assertFalse(monitor.covers(tempDir.resolve("job.sh").toAbsolutePath()));
+
+        ReflectionTestUtils.setField(monitor, "baseScriptsDir", "");
+        assertNull(monitor.getBaseDirectory());
+    }
+
+    private static DirectoryWatcher.Listener recording(List<Path> paths) {
+        return new DirectoryWatcher.Listener() {
+            @Override
+            public void onChange(Path path, WatchEvent.Kind<Path> kind) {
+                paths.add(path);
+            }
+
+            @Override
+            public void onOverflow() {
+            }
+        };
+    }
+}
@@ -3,10 +3,13 @@ package com.example.batchmonitor.service;
 import com.example.batchmonitor.dto.ProgressUpdate;
 import com.example.batchmonitor.entity.BatchExecution;
 import com.example.batchmonitor.exception.BatchExecutionException;
+import com.example.batchmonitor.exception.ClaimLostException;
+import com.example.batchmonitor.exception.MemoryLimitExceededException;
 import com.example.batchmonitor.exception.ScriptExecutionException;
 import com.example.batchmonitor.repository.BatchExecutionRepository;
 import com.example.batchmonitor.util.ProcessStreamReader;
 import com.example.batchmonitor.util.ScriptUtils;
+import com.example.batchmonitor.util.WarmInterpreter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,12 +25,18 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -48,6 +57,27 @@ class ScriptExecutionServiceTest {
     @Mock
     private WebSocketService webSocketService;
 
+    @Mock
+    private ResourceUsageSampler resourceUsageSampler;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private ScriptCommandResolver scriptCommandResolver;
+
+    @Mock
+    private WarmPoolService warmPoolService;
+
+    @Mock
+    private CgroupLimiter cgroupLimiter;
+
+    @Mock
+    private CpuPlacementService cpuPlacementService;
+
+    @Mock
+    private ProgressChannelService progressChannelService;
+
     @InjectMocks
     private ScriptExecutionService scriptExecutionService;
 
@@ -125,7 +155,7 @@ class ScriptExecutionServiceTest {
                     List.of("cmd.exe", "/c", scriptFile.toString(), "--param", "value") :
                     List.of("bash", scriptFile.toString(), "--param", "value");
 
-            scriptUtilsMock.when(() -> ScriptUtils.buildCommand(anyString(), anyString()))
+            when(scriptCommandResolver.resolve(anyString(), anyString()))
                     .thenReturn(mockCommand);
 
             // Mock reading file content - specifically from our log file
@@ -178,6 +208,15 @@ class ScriptExecutionServiceTest {
                             update.getProgress() == 100.0 &&
                             "COMPLETED".equals(update.getStatus())));
 
+            // Verify the process was sampled for its lifetime
+            verify(resourceUsageSampler).register(eq(1L), any());
+            verify(resourceUsageSampler).unregister(1L);
+
+            // Verify hot path metrics were recorded
+            verify(metricsService).recordSpawn(eq(scriptFile.toString()), anyLong());
+            verify(metricsService).statusChanged(BatchExecution.ExecutionStatus.PENDING, BatchExecution.ExecutionStatus.RUNNING);
+            verify(metricsService).statusChanged(BatchExecution.ExecutionStatus.RUNNING, BatchExecution.ExecutionStatus.COMPLETED);
+
             // Verify output processing
             verify(consoleOutputService, atLeastOnce()).processStandardOutput(eq(testExecution), anyString());
             verify(consoleOutputService).logSystemMessage(same(testExecution),
@@ -194,7 +233,7 @@ class ScriptExecutionServiceTest {
                     List.of("cmd.exe", "/c", scriptFile.toString(), "--param", "value") :
                     List.of("bash", scriptFile.toString(), "--param", "value");
 
-            scriptUtilsMock.when(() -> ScriptUtils.buildCommand(anyString(), anyString()))
+            when(scriptCommandResolver.resolve(anyString(), anyString()))
                     .thenReturn(mockCommand);
 
             // Mock process execution
@@ -249,6 +288,118 @@ class ScriptExecutionServiceTest {
         }
     }
 
+    @Test
+    void executeScript_OomKilledInCgroup() throws Exception {
+        // Arrange
+        List<String> command = List.of("bash", scriptFile.toString(), "--param", "value");
+        List<String> wrapped = List.of("/bin/sh", "-c", "echo $$ > \"$0\" && exec \"$@\"", "cgroup.procs");
+        CgroupLimiter.Group group = new CgroupLimiter.Group(1L, tempDir.resolve("exec-1"),
+                new CgroupLimiter.Limits(null, 64L * 1024 * 1024, null));
+        when(scriptCommandResolver.resolve(anyString(), anyString())).thenReturn(command);
+        when(cgroupLimiter.create(testExecution)).thenReturn(Optional.of(group));
+        when(cgroupLimiter.wrap(group, command)).thenReturn(wrapped);
+        when(cgroupLimiter.oomKilled(group)).thenReturn(true);
+
+        ProcessBuilder mockProcessBuilder = mock(ProcessBuilder.class);
+        Process mockProcess = mock(Process.class);
+        when(mockProcess.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(mockProcess.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(mockProcess.waitFor(anyLong(), any())).thenReturn(true);
+        when(mockProcess.exitValue()).thenReturn(137);
+        when(mockProcessBuilder.directory(any(File.class))).thenReturn(mockProcessBuilder);
+        when(mockProcessBuilder.start()).thenReturn(mockProcess);
+        doReturn(mockProcessBuilder).when(spyScriptExecutionService).createProcessBuilder(wrapped);
+        doReturn(logFile).when(spyScriptExecutionService).createLogFile(any(BatchExecution.class));
+
+        // Act
+        CompletableFuture<String> future = spyScriptExecutionService.executeScript(testExecution);
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(MemoryLimitExceededException.class, exception.getCause());
+        assertEquals(BatchExecution.ExecutionStatus.OOM_KILLED, testExecution.getStatus());
+        assertEquals(137, testExecution.getExitCode());
+        assertTrue(testExecution.getErrorMessage().contains("memory limit of 67108864 bytes"));
+        verify(metricsService).statusChanged(BatchExecution.ExecutionStatus.RUNNING,
+                BatchExecution.ExecutionStatus.OOM_KILLED);
+        verify(webSocketService).sendStatusUpdate(1L, "OOM_KILLED");
+        verify(cgroupLimiter).release(group);
+    }
+
+    @Test
+    void executeScript_PinnedToPlacementCpus() throws Exception {
+        // Arrange
+        List<String> command = List.of("bash", scriptFile.toString(), "--param", "value");
+        List<String> pinned = List.of("taskset", "-c", "8-11", "bash", scriptFile.toString(), "--param", "value");
+        CpuPlacementService.Placement placement = new CpuPlacementService.Placement(1L, List.of(8, 9, 10, 11), 1);
+        when(scriptCommandResolver.resolve(anyString(), anyString())).thenReturn(command);
+        when(cpuPlacementService.acquire(testExecution)).thenReturn(Optional.of(placement));
+        when(cpuPlacementService.wrap(placement, command)).thenReturn(pinned);
+
+        ProcessBuilder mockProcessBuilder = mock(ProcessBuilder.class);
+        Process mockProcess = mock(Process.class);
+        when(mockProcess.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(mockProcess.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(mockProcess.waitFor(anyLong(), any())).thenReturn(true);
+        when(mockProcess.exitValue()).thenReturn(0);
+        when(mockProcessBuilder.directory(any(File.class))).thenReturn(mockProcessBuilder);
+        when(mockProcessBuilder.start()).thenReturn(mockProcess);
+        doReturn(mockProcessBuilder).when(spyScriptExecutionService).createProcessBuilder(pinned);
+        doReturn(logFile).when(spyScriptExecutionService).createLogFile(any(BatchExecution.class));
+
+        // Act
+        String result = spyScriptExecutionService.executeScript(testExecution).get();
+
+        // Assert
+        assertEquals("Test successful output", result);
+        assertEquals("8-11", testExecution.getCpuSet());
+        assertEquals(BatchExecution.ExecutionStatus.COMPLETED, testExecution.getStatus());
+        verify(cpuPlacementService).release(placement);
+    }
+
+    @Test
+    void executeScript_WithProgressChannel() throws Exception {
+        // Arrange
+        List<String> command = List.of("bash", scriptFile.toString(), "--param", "value");
+        when(scriptCommandResolver.resolve(anyString(), anyString())).thenReturn(command);
+        ProgressChannelService.Channel channel = mock(ProgressChannelService.Channel.class);
+        when(channel.path()).thenReturn(tempDir.resolve("execution_1.progress"));
+        when(channel.finish(anyLong())).thenReturn(true);
+        when(progressChannelService.open(same(testExecution), any())).thenAnswer(invocation -> {
+            // The script reports progress while it runs
+            DoubleConsumer onProgress = invocation.getArgument(1);
+            onProgress.accept(40.0);
+            return Optional.of(channel);
+        });
+
+        Map<String, String> environment = new HashMap<>();
+        ProcessBuilder mockProcessBuilder = mock(ProcessBuilder.class);
+        Process mockProcess = mock(Process.class);
+        when(mockProcess.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(mockProcess.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(mockProcess.waitFor(anyLong(), any())).thenReturn(true);
+        when(mockProcess.exitValue()).thenReturn(0);
+        when(mockProcessBuilder.directory(any(File.class))).thenReturn(mockProcessBuilder);
+        when(mockProcessBuilder.environment()).thenReturn(environment);
+        when(mockProcessBuilder.start()).thenReturn(mockProcess);
+        doReturn(mockProcessBuilder).when(spyScriptExecutionService).createProcessBuilder(command);
+        doReturn(logFile).when(spyScriptExecutionService).createLogFile(any(BatchExecution.class));
+
+        // Act
+        spyScriptExecutionService.executeScript(testExecution).get();
+
+        // Assert
+        assertEquals(tempDir.resolve("execution_1.progress").toString(),
+                environment.get(ProgressChannelService.PATH_VARIABLE));
+        verify(consoleOutputService).processProgress(testExecution, 40.0);
+        // The channel is drained before the final status is announced, and removed afterwards
+        InOrder order = inOrder(channel, webSocketService);
+        order.verify(channel).finish(anyLong());
+        order.verify(webSocketService).sendStatusUpdate(1L, "COMPLETED");
+        order.verify(channel).close();
+        assertEquals(BatchExecution.ExecutionStatus.COMPLETED, testExecution.getStatus());
+    }
+
     /**
      * Test execution timeout handling.
      */
@@ -261,7 +412,7 @@ class ScriptExecutionServiceTest {
                     List.of("cmd.exe", "/c", scriptFile.toString(), "--param", "value") :
                     List.of("bash", scriptFile.toString(), "--param", "value");
 
-            scriptUtilsMock.when(() -> ScriptUtils.buildCommand(anyString(), anyString()))
+            when(scriptCommandResolver.resolve(anyString(), anyString()))
                     .thenReturn(mockCommand);
 
             // Mock process execution with timeout
@@ -313,7 +464,7 @@ class ScriptExecutionServiceTest {
     void executeScript_ProcessInterrupted() throws Exception {
         // Setup mocks for interruption scenario
         try (MockedStatic<ScriptUtils> scriptUtilsMock = Mockito.mockStatic(ScriptUtils.class)) {
-            scriptUtilsMock.when(() -> ScriptUtils.buildCommand(anyString(), anyString()))
+            when(scriptCommandResolver.resolve(anyString(), anyString()))
                     .thenReturn(List.of(scriptFile.toString()));
 
             ProcessBuilder mockProcessBuilder = mock(ProcessBuilder.class);
@@ -356,6 +507,47 @@ class ScriptExecutionServiceTest {
         }
     }
 
+    /**
+     * Test that pooled .py executions route output and exit code like spawned ones.
+     */
+    @Test
+    void executeScript_WarmPool() throws Exception {
+        try (MockedStatic<ScriptUtils> scriptUtilsMock = Mockito.mockStatic(ScriptUtils.class)) {
+            scriptUtilsMock.when(() -> ScriptUtils.readFileContent(anyString()))
+                    .thenReturn("Test successful output");
+
+            // Arrange - the pool replays output through the consumers it is given
+            WarmInterpreter.Job job = mock(WarmInterpreter.Job.class);
+            when(warmPoolService.supports(scriptFile.toString())).thenReturn(true);
+            when(warmPoolService.submit(eq(scriptFile.toString()), eq("--param value"), any(File.class), any(), any()))
+                    .thenAnswer(invocation -> {
+                        Consumer<String> stdout = invocation.getArgument(3);
+                        Consumer<String> stderr = invocation.getArgument(4);
+                        stdout.accept("warm output");
+                        stderr.accept("warm warning");
+                        return job;
+                    });
+            when(job.toHandle(anyLong(), any())).thenReturn(Optional.of(ProcessHandle.current()));
+            when(job.waitFor(anyLong(), any())).thenReturn(true);
+            when(job.exitValue()).thenReturn(0);
+            doReturn(logFile).when(spyScriptExecutionService).createLogFile(any(BatchExecution.class));
+
+            // Act
+            String result = spyScriptExecutionService.executeScript(testExecution).get();
+
+            // Assert
+            assertEquals("Test successful output", result);
+            assertEquals(BatchExecution.ExecutionStatus.COMPLETED, testExecution.getStatus());
+            assertEquals(0, testExecution.getExitCode());
+            verify(consoleOutputService).processStandardOutput(testExecution, "warm output");
+            verify(consoleOutputService).processErrorOutput(testExecution, "warm warning");
+            verify(resourceUsageSampler).register(1L, ProcessHandle.current());
+            verify(metricsService).recordSpawn(eq(scriptFile.toString()), anyLong());
+            verify(spyScriptExecutionService, never()).createProcessBuilder(anyList());
+            verify(scriptCommandResolver, never()).resolve(anyString(), anyString());
+        }
+    }
+
     /**
      * Test for updateExecutionSuccess method.
      */
@@ -380,6 +572,11 @@ class ScriptExecutionServiceTest {
         verify(consoleOutputService).logSystemMessage(execution, "Script execution completed successfully");
         verify(webSocketService).sendStatusUpdate(1L, "COMPLETED");
 
+        // Console lines still in the output spool are delivered before the status is announced
+        InOrder order = inOrder(consoleOutputService, webSocketService);
+        order.verify(consoleOutputService).awaitDelivered(execution);
+        order.verify(webSocketService).sendStatusUpdate(1L, "COMPLETED");
+
         ArgumentCaptor<ProgressUpdate> updateCaptor = ArgumentCaptor.forClass(ProgressUpdate.class);
         verify(webSocketService).sendProgressUpdate(updateCaptor.capture());
 
@@ -418,6 +615,139 @@ class ScriptExecutionServiceTest {
         verify(webSocketService).sendStatusUpdate(1L, "FAILED");
     }
 
+    @Test
+    void updateExecutionFailure_WhenNeverStarted_ShouldNotWaitForOutput() {
+        // Arrange - e.g. a pipeline step skipped because its upstream failed
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.PENDING)
+                .build();
+
+        // Act
+        scriptExecutionService.updateExecutionFailure(execution, "Skipped", null);
+
+        // Assert
+        assertEquals(BatchExecution.ExecutionStatus.FAILED, execution.getStatus());
+        verify(consoleOutputService, never()).awaitDelivered(any());
+        verify(webSocketService).sendStatusUpdate(1L, "FAILED");
+    }
+
+    @Test
+    void updateExecutionSuccess_WhenTheClaimWasLost_ShouldKeepTheOtherNodesOutcome() {
+        // Arrange - another node failed the run after this node stalled past its lease
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .startTime(LocalDateTime.now())
+                .nodeId("node-a")
+                .build();
+        when(executionRepository.finishClaimed(eq(1L), eq("node-a"), eq(BatchExecution.ExecutionStatus.COMPLETED),
+                any(), eq(100.0), isNull(), isNull())).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(ClaimLostException.class, () -> scriptExecutionService.updateExecutionSuccess(execution));
+        verify(executionRepository, never()).save(any());
+        verify(webSocketService, never()).sendStatusUpdate(anyLong(), anyString());
+        verify(metricsService).statusChanged(BatchExecution.ExecutionStatus.RUNNING, null);
+    }
+
+    @Test
+    void updateExecutionFailure_OfAClaimedRun_ShouldOnlyWriteWhileItIsHeld() {
+        // Arrange
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .startTime(LocalDateTime.now())
+                .nodeId("node-a")
+                .build();
+        when(executionRepository.finishClaimed(eq(1L), eq("node-a"), eq(BatchExecution.ExecutionStatus.FAILED),
+                any(), isNull(), eq(3), eq("boom"))).thenReturn(1);
+
+        // Act
+        scriptExecutionService.updateExecutionFailure(execution, "boom", 3);
+
+        // Assert
+        verify(executionRepository, never()).save(any());
+        verify(webSocketService).sendStatusUpdate(1L, "FAILED");
+    }
+
+    @Test
+    void failPending_ShouldFailAllRunsInOneUpdate() {
+        // Arrange
+        BatchExecution first = BatchExecution.builder().id(1L).status(BatchExecution.ExecutionStatus.PENDING).build();
+        BatchExecution second = BatchExecution.builder().id(2L).status(BatchExecution.ExecutionStatus.PENDING).build();
+
+        // Act
+        scriptExecutionService.failPending(List.of(first, second), "Skipped: upstream step 'a' did not complete");
+
+        // Assert
+        verify(executionRepository).failUnfinished(eq(List.of(1L, 2L)), eq(BatchExecution.ExecutionStatus.PENDING),
+                any(), eq("Skipped: upstream step 'a' did not complete"));
+        verify(executionRepository, never()).save(any());
+        assertEquals(BatchExecution.ExecutionStatus.FAILED, second.getStatus());
+        assertEquals("Skipped: upstream step 'a' did not complete", second.getErrorMessage());
+        verify(metricsService, times(2)).statusChanged(BatchExecution.ExecutionStatus.PENDING,
+                BatchExecution.ExecutionStatus.FAILED);
+        verify(webSocketService).sendStatusUpdate(2L, "FAILED");
+    }
+
+    /**
+     * Test for reattach: a process this test started stands in for a script
+     * that survived a restart of the monitor.
+     */
+    @Test
+    void reattach_ShouldFollowOutputAndFailWithUnknownExitCode() throws Exception {
+        assumeTrue(Files.isDirectory(Path.of("/proc/self/fd")), "Re-attaching needs /proc");
+
+        // Arrange
+        Process survivor = new ProcessBuilder("sh", "-c", "sleep 0.5; echo line1").start();
+        // Like a restarted monitor, the test keeps no end of the child's pipes
+        survivor.getInputStream().close();
+        survivor.getErrorStream().close();
+        survivor.getOutputStream().close();
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .startTime(LocalDateTime.now())
+                .build();
+
+        // Act
+        scriptExecutionService.reattach(execution, survivor.toHandle()).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        verify(consoleOutputService).processStandardOutput(execution, "line1");
+        verify(resourceUsageSampler).register(1L, survivor.toHandle());
+        verify(resourceUsageSampler).unregister(1L);
+        assertEquals(BatchExecution.ExecutionStatus.FAILED, execution.getStatus());
+        assertTrue(execution.getErrorMessage().startsWith("Exit code unknown"));
+        assertNull(execution.getExitCode());
+    }
+
+    @Test
+    void reattach_ShouldTakeBackCgroupAndPlacementAndReportOomKill() throws Exception {
+        // Arrange
+        Process survivor = new ProcessBuilder("sh", "-c", "sleep 0.2").start();
+        BatchExecution execution = BatchExecution.builder()
+                .id(1L)
+                .status(BatchExecution.ExecutionStatus.RUNNING)
+                .startTime(LocalDateTime.now())
+                .build();
+        CgroupLimiter.Group group = new CgroupLimiter.Group(1L, tempDir.resolve("exec-1"),
+                new CgroupLimiter.Limits(null, 64L * 1024 * 1024, null));
+        CpuPlacementService.Placement placement = new CpuPlacementService.Placement(1L, List.of(2, 3), 0);
+        when(cgroupLimiter.adopt(execution)).thenReturn(Optional.of(group));
+        when(cpuPlacementService.adopt(execution, survivor.toHandle())).thenReturn(Optional.of(placement));
+        when(cgroupLimiter.oomKilled(group)).thenReturn(true);
+
+        // Act
+        scriptExecutionService.reattach(execution, survivor.toHandle()).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(BatchExecution.ExecutionStatus.OOM_KILLED, execution.getStatus());
+        verify(cgroupLimiter).release(group);
+        verify(cpuPlacementService).release(placement);
+    }
+
     /**
      * Test for createLogFile method.
      */
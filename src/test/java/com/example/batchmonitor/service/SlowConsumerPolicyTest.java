@@ -0,0 +1,208 @@
+package com.example.batchmonitor.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class SlowConsumerPolicyTest {
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private WebSocketHandler stompHandler;
+
+    @Mock
+    private WebSocketSession socket;
+
+    private SlowConsumerPolicy policy;
+
+    private WebSocketHandler handler;
+
+    private final CountDownLatch clientReads = new CountDownLatch(1);
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        policy = new SlowConsumerPolicy(metricsService);
+        ReflectionTestUtils.setField(policy, "enabled", true);
+        ReflectionTestUtils.setField(policy, "backlogBytes", 1000L);
+        ReflectionTestUtils.setField(policy, "thresholdMillis", 50L);
+        ReflectionTestUtils.setField(policy, "sampleIntervalMillis", 60_000L);
+        ReflectionTestUtils.setField(policy, "recoveryMillis", 10_000L);
+        ReflectionTestUtils.setField(policy, "consoleTopic", "/topic/console-output");
+        ReflectionTestUtils.setField(policy, "consoleBinaryTopic", "/topic/console-output-binary");
+        policy.start();
+        handler = policy.decorate(stompHandler);
+        lenient().when(socket.getId()).thenReturn("s1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientReads.countDown();
+        sender.shutdownNow();
+    }
+
+    @Test
+    void preSend_ShouldPassEverythingToAClientKeepingUp() throws Exception {
+        // Arrange
+        connect().sendMessage(new TextMessage("CONNECTED"));
+
+        // Act & Assert
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(policy.preSend(message("s1", "sub-0", "/topic/console-output/7"), null));
+        }
+        assertEquals(0, policy.slowSessions());
+    }
+
+    @Test
+    void preSend_WhileAWriteIsBlocked_ShouldSampleConsoleOutputOnly() throws Exception {
+        // Arrange
+        blockWrites(connect());
+
+        // Act
+        Message<?> first = policy.preSend(message("s1", "sub-0", "/topic/console-output"), null);
+        int passed = 0;
+        for (int i = 0; i < 9; i++) {
+            passed += policy.preSend(message("s1", "sub-0", "/topic/console-output"), null) == null ? 0 : 1;
+        }
+        Message<?> otherSubscription = policy.preSend(message("s1", "sub-1", "/topic/console-output-binary/7"), null);
+        Message<?> status = policy.preSend(message("s1", "sub-2", "/topic/status"), null);
+        Message<?> relayed = policy.preSend(message("s1", "sub-3", "/relay/topic/console-output/7"), null);
+        Message<?> otherSession = policy.preSend(message("s2", "sub-0", "/topic/console-output"), null);
+
+        // Assert
+        assertNotNull(first);
+        assertEquals(0, passed);
+        assertNotNull(otherSubscription);
+        assertNotNull(status);
+        assertNotNull(relayed);
+        assertNotNull(otherSession);
+        assertNull(policy.preSend(message("s1", "sub-3", "/relay/topic/console-output/7"), null));
+        verify(metricsService, times(10)).recordSampledOut();
+        assertEquals(1, policy.slowSessions());
+    }
+
+    @Test
+    void preSend_WhenTooMuchWaitsForTheClient_ShouldSampleConsoleOutput() throws Exception {
+        // Arrange: two status events are queued but not yet written
+        WebSocketSession session = connect();
+        policy.preSend(message("s1", "sub-2", "/topic/status", new byte[600]), null);
+        policy.preSend(message("s1", "sub-2", "/topic/status", new byte[600]), null);
+
+        // Act
+        Message<?> first = policy.preSend(message("s1", "sub-0", "/topic/console-output"), null);
+        Message<?> second = policy.preSend(message("s1", "sub-0", "/topic/console-output"), null);
+
+        // Assert
+        assertNotNull(first);
+        assertNull(second);
+        assertEquals(1, policy.slowSessions());
+
+        // The writes complete, so the backlog no longer counts against the client once recovery is over
+        session.sendMessage(new TextMessage("MESSAGE"));
+        session.sendMessage(new TextMessage("MESSAGE"));
+        ReflectionTestUtils.setField(policy, "recoveryMillis", 1L);
+        Thread.sleep(5);
+        assertNotNull(policy.preSend(message("s1", "sub-0", "/topic/console-output"), null));
+    }
+
+    @Test
+    void preSend_AfterTheClientCatchesUp_ShouldResumeAndReportWhatWasSkipped() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(policy, "recoveryMillis", 100L);
+        blockWrites(connect());
+        policy.preSend(message("s1", "sub-0", "/topic/console-output"), null);
+        for (int i = 0; i < 5; i++) {
+            policy.preSend(message("s1", "sub-0", "/topic/console-output"), null);
+        }
+
+        // Act
+        clientReads.countDown();
+        Thread.sleep(200);
+        Message<?> next = policy.preSend(message("s1", "sub-0", "/topic/console-output"), null);
+        Message<?> after = policy.preSend(message("s1", "sub-0", "/topic/console-output"), null);
+
+        // Assert
+        assertNotNull(next);
+        assertEquals("5", SimpMessageHeaderAccessor.wrap(next).getFirstNativeHeader(SlowConsumerPolicy.SKIPPED_HEADER));
+        assertNotNull(after);
+        assertNull(SimpMessageHeaderAccessor.wrap(after).getFirstNativeHeader(SlowConsumerPolicy.SKIPPED_HEADER));
+        assertEquals(0, policy.slowSessions());
+    }
+
+    @Test
+    void decorate_ShouldForgetClosedSessions() throws Exception {
+        blockWrites(connect());
+
+        handler.afterConnectionClosed(socket, CloseStatus.NORMAL);
+
+        assertEquals(0, policy.slowSessions());
+        verify(stompHandler).afterConnectionClosed(socket, CloseStatus.NORMAL);
+    }
+
+    @Test
+    void start_ShouldRejectANonPositiveThreshold() {
+        ReflectionTestUtils.setField(policy, "thresholdMillis", 0L);
+
+        assertThrows(IllegalArgumentException.class, () -> policy.start());
+    }
+
+    /** Opens the session and returns the one the STOMP handler was given. */
+    private WebSocketSession connect() throws Exception {
+        handler.afterConnectionEstablished(socket);
+        ArgumentCaptor<WebSocketSession> session = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(stompHandler).afterConnectionEstablished(session.capture());
+        return session.getValue();
+    }
+
+    /** Starts a write the client does not read until the test ends, and waits past the threshold. */
+    private void blockWrites(WebSocketSession session) throws Exception {
+        doAnswer(invocation -> clientReads.await(10, TimeUnit.SECONDS)).when(socket).sendMessage(any());
+        sender.submit(() -> {
+            session.sendMessage(new TextMessage("MESSAGE"));
+            return null;
+        });
+        Thread.sleep(150);
+    }
+
+    private static Message<byte[]> message(String sessionId, String subscriptionId, String destination) {
+        return message(sessionId, subscriptionId, destination, new byte[0]);
+    }
+
+    private static Message<byte[]> message(String sessionId, String subscriptionId, String destination,
+                                           byte[] payload) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setDestination(destination);
+        return MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.dto.MetricPoint;
+import com.example.batchmonitor.dto.StructuredOutputEvent;
+import com.example.batchmonitor.entity.BatchExecution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class StructuredOutputServiceTest {
+
+    @Mock
+    private WebSocketService webSocketService;
+
+    private StructuredOutputService structuredOutputService;
+
+    private final BatchExecution execution = BatchExecution.builder()
+            .id(1L)
+            .structuredOutput(true)
+            .status(BatchExecution.ExecutionStatus.RUNNING)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        structuredOutputService = new StructuredOutputService(webSocketService);
+        ReflectionTestUtils.setField(structuredOutputService, "enabled", true);
+        ReflectionTestUtils.setField(structuredOutputService, "capacity", 100);
+        ReflectionTestUtils.setField(structuredOutputService, "maxMetrics", 3);
+        ReflectionTestUtils.setField(structuredOutputService, "retainedExecutions", 2);
+        structuredOutputService.start();
+    }
+
+    @Test
+    void process_ShouldRecordMetricsAndPublishTheEvent() {
+        // Act
+        StructuredOutputEvent first = structuredOutputService.process(execution,
+                "{\"progress\":0.25,\"rowsDone\":100,\"stage\":\"load\"}");
+        structuredOutputService.process(execution, "{\"progress\":0.5,\"rowsDone\":200}");
+
+        // Assert
+        assertNotNull(first);
+        assertEquals(25.0, first.getProgress(), 1e-9);
+        assertEquals(Map.of("stage", "load"), first.getFields());
+        verify(webSocketService).sendStructuredOutput(first);
+        List<MetricPoint> rows = structuredOutputService.getMetric(1L, "rowsDone");
+        assertEquals(List.of(100.0, 200.0), rows.stream().map(MetricPoint::getValue).toList());
+        assertEquals(Map.of("progress", 0.5, "rowsDone", 200.0), structuredOutputService.getLatestMetrics(1L));
+    }
+
+    @Test
+    void process_ShouldIgnorePlainTextAndEmptyObjects() {
+        assertNull(structuredOutputService.process(execution, "Processed 100 rows"));
+        assertNull(structuredOutputService.process(execution, "{}"));
+
+        verify(webSocketService, never()).sendStructuredOutput(any());
+        assertTrue(structuredOutputService.getLatestMetrics(1L).isEmpty());
+    }
+
+    @Test
+    void process_ShouldKeepAtMostMaxMetricsPerExecution() {
+        structuredOutputService.process(execution, "{\"a\":1,\"b\":2,\"c\":3,\"d\":4}");
+        structuredOutputService.process(execution, "{\"a\":5,\"e\":6}");
+
+        assertEquals(Map.of("a", 5.0, "b", 2.0, "c", 3.0), structuredOutputService.getLatestMetrics(1L));
+        assertTrue(structuredOutputService.getMetric(1L, "d").isEmpty());
+    }
+
+    @Test
+    void getMetric_ShouldForgetTheLeastRecentlyUsedExecutions() {
+        for (long id = 1; id <= 3; id++) {
+            structuredOutputService.process(BatchExecution.builder().id(id).build(), "{\"rows\":" + id + "}");
+        }
+
+        assertTrue(structuredOutputService.getMetric(1L, "rows").isEmpty());
+        assertEquals(1, structuredOutputService.getMetric(3L, "rows").size());
+    }
+
+    @Test
+    void isEnabled_ShouldRequireTheExecutionToOptIn() {
+        assertTrue(structuredOutputService.isEnabled(execution));
+        assertFalse(structuredOutputService.isEnabled(BatchExecution.builder().id(2L).build()));
+
+        ReflectionTestUtils.setField(structuredOutputService, "enabled", false);
+        assertFalse(structuredOutputService.isEnabled(execution));
+    }
+}
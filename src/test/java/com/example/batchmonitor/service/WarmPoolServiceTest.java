@@ -0,0 +1,178 @@
+package com.example.batchmonitor.service;
+
+import com.example.batchmonitor.util.ScriptUtils;
+import com.example.batchmonitor.util.WarmInterpreter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WarmPoolServiceTest {
+
+    @Mock
+    private ScriptCommandResolver scriptCommandResolver;
+
+    @Mock
+    private CpuPlacementService cpuPlacementService;
+
+    @InjectMocks
+    private WarmPoolService warmPoolService;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        warmPoolService.stop();
+    }
+
+    @Test
+    void supports_ShouldBeFalseWhenDisabled() {
+        // Arrange
+        configure(false, 2, 100);
+
+        // Act
+        warmPoolService.start();
+
+        // Assert
+        assertFalse(warmPoolService.supports("/scripts/job.py"));
+        assertEquals(0, warmPoolService.idleCount());
+        verifyNoInteractions(scriptCommandResolver);
+    }
+
+    @Test
+    void submit_ShouldRunScriptAndReturnWorkerToPool() throws Exception {
+        // Arrange
+        startPool(2, 100);
+        Path script = Files.writeString(tempDir.resolve("job.py"), "import sys\nprint('hello', *sys.argv[1:])\n");
+        List<String> stdout = new CopyOnWriteArrayList<>();
+
+        // Act
+        WarmInterpreter.Job job = warmPoolService.submit(script.toString(), " a  b ", tempDir.toFile(),
+                stdout::add, line -> fail("unexpected stderr: " + line));
+
+        // Assert
+        assertTrue(warmPoolService.supports(script.toString()));
+        assertFalse(warmPoolService.supports("/scripts/job.sh"));
+        assertTrue(job.waitFor(10, TimeUnit.SECONDS));
+        assertEquals(0, job.exitValue());
+        assertEquals(List.of("hello a b"), stdout);
+        awaitIdle(2);
+    }
+
+    @Test
+    void submit_ShouldStartExtraWorkerWhenPoolIsBusy() throws Exception {
+        // Arrange
+        startPool(1, 100);
+        Path slow = Files.writeString(tempDir.resolve("slow.py"), "import time\ntime.sleep(60)\n");
+        Path fast = Files.writeString(tempDir.resolve("fast.py"), "print('fast')\n");
+        WarmInterpreter.Job busy = warmPoolService.submit(slow.toString(), null, tempDir.toFile(), line -> { }, line -> { });
+        List<String> stdout = new CopyOnWriteArrayList<>();
+
+        // Act
+        WarmInterpreter.Job job = warmPoolService.submit(fast.toString(), null, tempDir.toFile(), stdout::add, line -> { });
+
+        // Assert
+        assertTrue(job.waitFor(10, TimeUnit.SECONDS));
+        assertEquals(List.of("fast"), stdout);
+        assertTrue(busy.toHandle(10, TimeUnit.SECONDS).isPresent());
+        busy.destroyForcibly();
+        assertTrue(busy.waitFor(10, TimeUnit.SECONDS));
+        awaitIdle(1);
+    }
+
+    @Test
+    void release_ShouldReplaceWorkersThatReachedTheirJobLimit() throws Exception {
+        // Arrange
+        startPool(1, 1);
+        Path script = Files.writeString(tempDir.resolve("pid.py"), "import os\nprint(os.getppid())\n");
+        List<String> parents = new CopyOnWriteArrayList<>();
+
+        // Act
+        for (int i = 0; i < 2; i++) {
+            WarmInterpreter.Job job = warmPoolService.submit(script.toString(), null, tempDir.toFile(),
+                    parents::add, line -> { });
+            assertTrue(job.waitFor(10, TimeUnit.SECONDS));
+            awaitIdle(1);
+        }
+
+        // Assert
+        assertEquals(2, parents.size());
+        assertNotEquals(parents.get(0), parents.get(1), "Each job should run on a fresh worker");
+    }
+
+    @Test
+    void submit_ShouldApplyConfiguredRlimitsToTheJob() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(warmPoolService, "memory", "2G");
+        ReflectionTestUtils.setField(warmPoolService, "cpuSeconds", 30L);
+        ReflectionTestUtils.setField(warmPoolService, "openFiles", 64L);
+        startPool(1, 100);
+        Path script = Files.writeString(tempDir.resolve("limits.py"), """
+                import resource
+                print(*resource.getrlimit(resource.RLIMIT_AS), *resource.getrlimit(resource.RLIMIT_CPU),
+                      *resource.getrlimit(resource.RLIMIT_NOFILE))
+                """);
+        List<String> stdout = new CopyOnWriteArrayList<>();
+
+        // Act
+        WarmInterpreter.Job job = warmPoolService.submit(script.toString(), null, tempDir.toFile(),
+                stdout::add, line -> fail("unexpected stderr: " + line));
+
+        // Assert
+        assertTrue(job.waitFor(10, TimeUnit.SECONDS));
+        assertEquals(0, job.exitValue());
+        assertEquals(List.of("2147483648 2147483648 30 30 64 64"), stdout);
+    }
+
+    @Test
+    void start_ShouldRejectAnInvalidMemoryLimit() {
+        configure(true, 1, 100);
+        ReflectionTestUtils.setField(warmPoolService, "memory", "lots");
+
+        assertThrows(IllegalArgumentException.class, () -> warmPoolService.start());
+    }
+
+    private void startPool(int size, int maxJobsPerWorker) {
+        assumeTrue(ScriptUtils.isUnixSystem(), "Warm pool needs fork");
+        String python = ScriptCommandResolver.findExecutable("python3", System.getenv("PATH"))
+                .map(Path::toString).orElse(null);
+        assumeTrue(python != null, "python3 is not installed");
+        when(scriptCommandResolver.getInterpreters()).thenReturn(Map.of("python3", python));
+        when(cpuPlacementService.wrapUnplaced(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        configure(true, size, maxJobsPerWorker);
+        warmPoolService.start();
+        assertEquals(size, warmPoolService.idleCount());
+    }
+
+    private void configure(boolean enabled, int size, int maxJobsPerWorker) {
+        ReflectionTestUtils.setField(warmPoolService, "enabled", enabled);
+        ReflectionTestUtils.setField(warmPoolService, "poolSize", size);
+        ReflectionTestUtils.setField(warmPoolService, "maxJobsPerWorker", maxJobsPerWorker);
+        ReflectionTestUtils.setField(warmPoolService, "preload", "json");
+    }
+
+    private void awaitIdle(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (warmPoolService.idleCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, warmPoolService.idleCount());
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.batchmonitor.service;
 
+import com.example.batchmonitor.dto.AlertEvent;
 import com.example.batchmonitor.dto.ConsoleOutput;
+import com.example.batchmonitor.dto.ConsoleSummary;
 import com.example.batchmonitor.dto.ProgressUpdate;
+import com.example.batchmonitor.dto.ResourceUsageSample;
+import com.example.batchmonitor.dto.StructuredOutputEvent;
+import com.example.batchmonitor.util.ConsoleFrameCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -14,13 +19,20 @@ import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class WebSocketServiceTest {
@@ -28,15 +40,32 @@ class WebSocketServiceTest {
     @Mock
     private SimpMessagingTemplate messagingTemplate;
 
-    @InjectMocks
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private WebSocketSubscriptions subscriptions;
+
+    @Mock
+    private ConsoleLiveView liveView;
+
     private WebSocketService webSocketService;
 
     @BeforeEach
     void setUp() {
+        webSocketService = new WebSocketService(new InJvmMessageRelay(messagingTemplate, subscriptions), metricsService,
+                liveView);
+
         // Set topic paths via reflection
         ReflectionTestUtils.setField(webSocketService, "progressTopic", "/topic/progress");
         ReflectionTestUtils.setField(webSocketService, "consoleTopic", "/topic/console-output");
+        ReflectionTestUtils.setField(webSocketService, "consoleBinaryTopic", "/topic/console-output-binary");
+        ReflectionTestUtils.setField(webSocketService, "consoleSummaryTopic", "/topic/console-summary");
+        ReflectionTestUtils.setField(webSocketService, "alertsTopic", "/topic/alerts");
+        ReflectionTestUtils.setField(webSocketService, "structuredTopic", "/topic/structured-output");
         ReflectionTestUtils.setField(webSocketService, "statusTopic", "/topic/status");
+        ReflectionTestUtils.setField(webSocketService, "resourcesTopic", "/topic/resources");
+        ReflectionTestUtils.setField(webSocketService, "pipelinesTopic", "/topic/pipeline-progress");
     }
 
     @Test
@@ -53,6 +82,21 @@ class WebSocketServiceTest {
 
         // Verify interaction with messaging template
         verify(messagingTemplate).convertAndSend(eq("/topic/progress"), eq(update));
+        verify(metricsService).recordWebSocketSend(eq("progress"), anyLong());
+    }
+
+    @Test
+    void testSendPipelineProgress() {
+        ProgressUpdate update = ProgressUpdate.builder()
+                .pipelineId(3L)
+                .progress(40.0)
+                .status("RUNNING")
+                .build();
+
+        webSocketService.sendPipelineProgress(update);
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/pipeline-progress"), eq(update));
+        verify(metricsService).recordWebSocketSend(eq("pipeline"), anyLong());
     }
 
     @Test
@@ -64,6 +108,51 @@ class WebSocketServiceTest {
         verify(messagingTemplate).convertAndSend(
                 eq("/topic/status"),
                 eq(Map.of("executionId", 1L, "status", "COMPLETED")));
+        verify(liveView).finished(1L);
+    }
+
+    @Test
+    void testSendStatusUpdate_ShouldKeepTheLiveViewOfARunningExecution() {
+        webSocketService.sendStatusUpdate(1L, "RUNNING");
+
+        verify(liveView, never()).finished(anyLong());
+    }
+
+    @Test
+    void testSendAlert() {
+        AlertEvent alert = AlertEvent.builder().executionId(1L).rule("oom").count(1).build();
+
+        webSocketService.sendAlert(alert);
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/alerts"), eq(alert));
+        verify(metricsService).recordWebSocketSend(eq("alert"), anyLong());
+    }
+
+    @Test
+    void testSendStructuredOutput() {
+        StructuredOutputEvent event = StructuredOutputEvent.builder()
+                .executionId(1L)
+                .progress(40.0)
+                .metrics(Map.of("rowsDone", 1200.0))
+                .build();
+
+        webSocketService.sendStructuredOutput(event);
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/structured-output"), eq(event));
+        verify(metricsService).recordWebSocketSend(eq("structured"), anyLong());
+    }
+
+    @Test
+    void testSendResourceUsage() {
+        ResourceUsageSample sample = ResourceUsageSample.builder()
+                .executionId(1L)
+                .timestamp(LocalDateTime.now())
+                .rssBytes(1024)
+                .build();
+
+        webSocketService.sendResourceUsage(sample);
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/resources"), eq(sample));
     }
 
     @Test
@@ -84,6 +173,108 @@ class WebSocketServiceTest {
         verify(messagingTemplate).convertAndSend(eq("/topic/console-output"), eq(output));
     }
 
+    @Test
+    void testSendConsoleOutput_AlsoToExecutionTopicWhenWatched() {
+        // Arrange
+        when(subscriptions.isWatched("/topic/console-output/1")).thenReturn(true);
+        ConsoleOutput watched = ConsoleOutput.builder()
+                .executionId(1L)
+                .message("watched")
+                .type(ConsoleOutput.OutputType.STDOUT)
+                .build();
+        ConsoleOutput unwatched = ConsoleOutput.builder()
+                .executionId(2L)
+                .message("unwatched")
+                .type(ConsoleOutput.OutputType.STDOUT)
+                .build();
+
+        // Act
+        webSocketService.sendConsoleOutput(watched);
+        webSocketService.sendConsoleOutput(unwatched);
+
+        // Assert
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output/1"), eq(watched));
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output"), eq(unwatched));
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/console-output/2"), any(Object.class));
+    }
+
+    @Test
+    void testSendConsoleBatch_ShouldSendOneBinaryFrameToBinarySubscribers() {
+        // Arrange
+        when(subscriptions.isWatched(anyString())).thenAnswer(
+                invocation -> invocation.<String>getArgument(0).startsWith("/topic/console-output-binary"));
+        List<ConsoleOutput> lines = List.of(
+                ConsoleOutput.builder().executionId(1L).message("first").timestamp(LocalDateTime.of(2026, 1, 1, 0, 0))
+                        .type(ConsoleOutput.OutputType.STDOUT).sequence(7L).build(),
+                ConsoleOutput.builder().executionId(1L).message("second").timestamp(LocalDateTime.of(2026, 1, 1, 0, 1))
+                        .type(ConsoleOutput.OutputType.STDERR).sequence(9L).build());
+
+        // Act
+        webSocketService.sendConsoleBatch(lines);
+
+        // Assert: JSON subscribers still get every line on its own
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output"), eq(lines.get(0)));
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output"), eq(lines.get(1)));
+        ArgumentCaptor<byte[]> frame = ArgumentCaptor.forClass(byte[].class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output-binary"), frame.capture());
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output-binary/1"), any(byte[].class));
+        assertEquals(lines, ConsoleFrameCodec.decode(frame.getValue()));
+        verify(metricsService).recordWebSocketSend(eq("console-binary"), anyLong());
+    }
+
+    @Test
+    void testSendConsoleOutput_ShouldNotEncodeFramesNobodyWatches() {
+        webSocketService.sendConsoleOutput(ConsoleOutput.builder()
+                .executionId(1L)
+                .message("json only")
+                .type(ConsoleOutput.OutputType.STDOUT)
+                .build());
+
+        verify(messagingTemplate, never()).convertAndSend(startsWith("/topic/console-output-binary"), any(Object.class));
+        verify(metricsService, never()).recordWebSocketSend(eq("console-binary"), anyLong());
+    }
+
+    @Test
+    void testSendConsoleBatch_ShouldLeaveLinesTheLiveViewSkipsOutOfTheLiveTopics() {
+        // Arrange
+        when(subscriptions.isWatched(anyString())).thenAnswer(
+                invocation -> invocation.<String>getArgument(0).equals("/topic/console-output-binary"));
+        ConsoleOutput sent = ConsoleOutput.builder().executionId(1L).message("sent")
+                .type(ConsoleOutput.OutputType.STDOUT).build();
+        ConsoleOutput skipped = ConsoleOutput.builder().executionId(1L).message("skipped")
+                .type(ConsoleOutput.OutputType.STDOUT).build();
+        when(liveView.skip(any())).thenAnswer(invocation -> invocation.getArgument(0) == skipped);
+        StepVerifier.FirstStep<ConsoleOutput> stream = StepVerifier.create(webSocketService.getConsoleOutputStream());
+
+        // Act
+        webSocketService.sendConsoleBatch(List.of(sent, skipped));
+
+        // Assert: the stream behind the spool still sees every line
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output"), eq(sent));
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/console-output"), eq(skipped));
+        ArgumentCaptor<byte[]> frame = ArgumentCaptor.forClass(byte[].class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-output-binary"), frame.capture());
+        assertEquals(List.of(sent), ConsoleFrameCodec.decode(frame.getValue()));
+        stream.expectNext(sent).expectNext(skipped).thenCancel().verify();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStart_ShouldSendLiveViewSummaries() {
+        // Arrange
+        ArgumentCaptor<Consumer<ConsoleSummary>> listener = ArgumentCaptor.forClass(Consumer.class);
+        webSocketService.start();
+        verify(liveView).addListener(listener.capture());
+        ConsoleSummary summary = ConsoleSummary.builder().executionId(1L).sampled(true).lines(5000).build();
+
+        // Act
+        listener.getValue().accept(summary);
+
+        // Assert
+        verify(messagingTemplate).convertAndSend(eq("/topic/console-summary"), eq(summary));
+        verify(metricsService).recordWebSocketSend(eq("summary"), anyLong());
+    }
+
     @Test
     void testGetConsoleOutputStream() {
         // Create test data
@@ -0,0 +1,71 @@
+package com.example.batchmonitor.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketSubscriptionsTest {
+
+    private WebSocketSubscriptions subscriptions;
+
+    /** Changes reported to the listener, as "+destination" or "-destination". */
+    private final List<String> changes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        subscriptions = new WebSocketSubscriptions();
+        subscriptions.addListener((destination, watched) -> changes.add((watched ? "+" : "-") + destination));
+    }
+
+    @Test
+    void subscribed_ShouldReportOnlyFirstAndLastSubscriber() {
+        subscriptions.subscribed("s1", "sub-0", "/topic/console-output/42");
+        subscriptions.subscribed("s2", "sub-0", "/topic/console-output/42");
+        subscriptions.unsubscribed("s1", "sub-0");
+
+        assertTrue(subscriptions.isWatched("/topic/console-output/42"));
+        assertEquals(List.of("+/topic/console-output/42"), changes);
+
+        subscriptions.unsubscribed("s2", "sub-0");
+
+        assertFalse(subscriptions.isWatched("/topic/console-output/42"));
+        assertEquals(List.of("+/topic/console-output/42", "-/topic/console-output/42"), changes);
+    }
+
+    @Test
+    void disconnected_ShouldDropEverySubscriptionOfTheSession() {
+        subscriptions.subscribed("s1", "sub-0", "/topic/status");
+        subscriptions.subscribed("s1", "sub-1", "/topic/progress/7");
+        subscriptions.subscribed("s2", "sub-0", "/topic/status");
+
+        subscriptions.disconnected("s1");
+        subscriptions.disconnected("s1");
+        subscriptions.unsubscribed("s3", "sub-0");
+
+        assertEquals(Set.of("/topic/status"), subscriptions.destinations());
+        assertEquals(List.of("+/topic/status", "+/topic/progress/7", "-/topic/progress/7"), changes);
+    }
+
+    @Test
+    void onSubscribe_ShouldReadStompHeaders() {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        headers.setSessionId("s1");
+        headers.setSubscriptionId("sub-0");
+        headers.setDestination("/topic/resources/3");
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+
+        subscriptions.onSubscribe(new SessionSubscribeEvent(this, message));
+
+        assertTrue(subscriptions.isWatched("/topic/resources/3"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.batchmonitor.util;
+
+import com.example.batchmonitor.dto.ConsoleOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsoleFrameCodecTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 4, 5, 6, 7, 123_456_000);
+
+    @Test
+    void decode_ShouldRestoreEncodedLines() {
+        // Arrange
+        List<ConsoleOutput> lines = List.of(
+                line("Starting", START, ConsoleOutput.OutputType.STDOUT, 1_000_000L),
+                line("Zürich ✓ 日本", START.plusNanos(250_000), ConsoleOutput.OutputType.STDERR, 1_000_003L),
+                // Out of order timestamps and sequences take negative deltas
+                line("", START.minusSeconds(5), ConsoleOutput.OutputType.STDOUT, 999_999L),
+                line("no timestamp or sequence", null, ConsoleOutput.OutputType.STDOUT, null),
+                line("x".repeat(5000), LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1000), ConsoleOutput.OutputType.STDOUT, 5L));
+
+        // Act
+        List<ConsoleOutput> decoded = ConsoleFrameCodec.decode(ConsoleFrameCodec.encode(lines));
+
+        // Assert
+        assertEquals(lines, decoded);
+    }
+
+    @Test
+    void encode_ShouldTakeAFractionOfTheJsonSize() throws Exception {
+        // Arrange
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<ConsoleOutput> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add(line("Processed record " + i, START.plusNanos(i * 1_500_000L),
+                    ConsoleOutput.OutputType.STDOUT, 40_000L + i * 2));
+        }
+        int json = 0;
+        for (ConsoleOutput line : lines) {
+            json += objectMapper.writeValueAsBytes(line).length;
+        }
+
+        // Act
+        byte[] single = ConsoleFrameCodec.encode(lines.subList(0, 1));
+        byte[] batch = ConsoleFrameCodec.encode(lines);
+
+        // Assert
+        assertTrue(single.length * 3 < objectMapper.writeValueAsBytes(lines.get(0)).length,
+                "single line frame of " + single.length + " bytes");
+        assertTrue(batch.length * 4 < json, "50 line frame of " + batch.length + " bytes against " + json + " as JSON");
+    }
+
+    @Test
+    void encode_ShouldRejectLinesOfSeveralExecutions() {
+        List<ConsoleOutput> lines = List.of(
+                line("a", START, ConsoleOutput.OutputType.STDOUT, 1L),
+                ConsoleOutput.builder().executionId(43L).message("b").type(ConsoleOutput.OutputType.STDOUT).build());
+
+        assertThrows(IllegalArgumentException.class, () -> ConsoleFrameCodec.encode(lines));
+        assertThrows(IllegalArgumentException.class, () -> ConsoleFrameCodec.encode(List.of()));
+    }
+
+    @Test
+    void decode_ShouldRejectTruncatedAndForeignFrames() {
+        byte[] frame = ConsoleFrameCodec.encode(List.of(line("hello", START, ConsoleOutput.OutputType.STDOUT, 1L)));
+        byte[] foreign = frame.clone();
+        foreign[0] = 2;
+
+        assertThrows(IllegalArgumentException.class, () -> ConsoleFrameCodec.decode(Arrays.copyOf(frame, frame.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> ConsoleFrameCodec.decode(foreign));
+        assertThrows(IllegalArgumentException.class, () -> ConsoleFrameCodec.decode(new byte[0]));
+    }
+
+    private static ConsoleOutput line(String message, LocalDateTime timestamp, ConsoleOutput.OutputType type,
+                                      Long sequence) {
+        return ConsoleOutput.builder()
+                .executionId(42L)
+                .message(message)
+                .timestamp(timestamp)
+                .type(type)
+                .sequence(sequence)
+                .build();
+    }
+}
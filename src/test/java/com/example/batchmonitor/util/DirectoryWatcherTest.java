@@ -0,0 +1,116 @@
+package com.example.batchmonitor.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private DirectoryWatcher watcher;
+
+    @AfterEach
+    void tearDown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    @Test
+    void start_ShouldReportCreateAndDeleteInRoot() throws Exception {
+        // Arrange
+        startWatcher();
+
+        // Act
+        Path file = Files.writeString(tempDir.resolve("a.sh"), "echo a\n");
+        awaitEvent("ENTRY_CREATE " + file);
+        Files.delete(file);
+
+        // Assert
+        awaitEvent("ENTRY_DELETE " + file);
+    }
+
+    @Test
+    void start_ShouldWatchExistingSubdirectories() throws Exception {
+        // Arrange
+        Path nested = Files.createDirectories(tempDir.resolve("one/two"));
+        startWatcher();
+
+        // Act
+        Path file = Files.writeString(nested.resolve("b.py"), "print('b')\n");
+
+        // Assert
+        awaitEvent("ENTRY_CREATE " + file);
+    }
+
+    @Test
+    void newDirectory_ShouldBeRegisteredAndItsFilesReported() throws Exception {
+        // Arrange
+        startWatcher();
+
+        // Act
+        Path dir = Files.createDirectories(tempDir.resolve("late"));
+        awaitEvent("ENTRY_CREATE " + dir);
+        Path file = Files.writeString(dir.resolve("c.sh"), "echo c\n");
+
+        // Assert
+        awaitEvent("ENTRY_CREATE " + file);
+    }
+
+    @Test
+    void covers_ShouldMatchPathsUnderRootWhileRunning() throws IOException {
+        // Arrange
+        startWatcher();
+
+        // Act & Assert
+        assertTrue(watcher.covers(tempDir.resolve("x/y.sh").toAbsolutePath()));
+        assertFalse(watcher.covers(tempDir.getParent().resolve("elsewhere.sh").toAbsolutePath()));
+
+        watcher.close();
+        assertFalse(waitUntilStopped(), "Watcher must stop covering paths once closed");
+    }
+
+    private void startWatcher() throws IOException {
+        watcher = new DirectoryWatcher(tempDir, "test-watcher", new DirectoryWatcher.Listener() {
+            @Override
+            public void onChange(Path path, WatchEvent.Kind<Path> kind) {
+                events.add(kind.name() + " " + path);
+            }
+
+            @Override
+            public void onOverflow() {
+                events.add(StandardWatchEventKinds.OVERFLOW.name());
+            }
+        });
+        watcher.start();
+    }
+
+    private void awaitEvent(String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!events.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(events.contains(expected), "Expected " + expected + " in " + events);
+    }
+
+    private boolean waitUntilStopped() {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (watcher.covers(tempDir.resolve("x").toAbsolutePath()) && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        return watcher.covers(tempDir.resolve("x").toAbsolutePath());
+    }
+}
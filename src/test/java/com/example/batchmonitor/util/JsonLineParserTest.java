@@ -0,0 +1,70 @@
+package com.example.batchmonitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLineParserTest {
+
+    @Test
+    void parse_ShouldExtractProgressMetricsAndFields() {
+        // Act
+        JsonLineParser.Result result = JsonLineParser.parse(
+                "  {\"progress\":0.4,\"rowsDone\":1200,\"stage\":\"load\",\"ok\":true,\"skip\":null} ");
+
+        // Assert
+        assertNotNull(result);
+        assertEquals(40.0, result.progress(), 1e-9);
+        assertEquals(Map.of("progress", 0.4, "rowsDone", 1200.0, "ok", 1.0), result.metrics());
+        assertEquals(Map.of("stage", "load"), result.fields());
+        assertEquals(List.of("progress", "rowsDone", "ok"), List.copyOf(result.metrics().keySet()));
+    }
+
+    @Test
+    void parse_ShouldNameNestedValuesByPathAndSkipArrays() {
+        JsonLineParser.Result result = JsonLineParser.parse(
+                "{\"stats\":{\"rows\":5,\"db\":{\"ms\":1.5}},\"ids\":[1,2,{\"x\":3}],\"after\":2}");
+
+        assertNotNull(result);
+        assertEquals(Map.of("stats.rows", 5.0, "stats.db.ms", 1.5, "after", 2.0), result.metrics());
+        assertNull(result.progress());
+    }
+
+    @Test
+    void parse_ShouldIgnoreValuesNestedTooDeep() {
+        JsonLineParser.Result result = JsonLineParser.parse("{\"a\":{\"b\":{\"c\":{\"d\":1,\"e\":{\"f\":2}}}},\"g\":3}");
+
+        assertNotNull(result);
+        assertEquals(Map.of("a.b.c.d", 1.0, "g", 3.0), result.metrics());
+    }
+
+    @Test
+    void parse_ShouldTakePercentAndIgnoreProgressOutOfRange() {
+        assertEquals(55.5, JsonLineParser.parse("{\"percent\":55.5}").progress(), 1e-9);
+        assertNull(JsonLineParser.parse("{\"progress\":40}").progress());
+        assertNull(JsonLineParser.parse("{\"job\":{\"progress\":0.5}}").progress());
+    }
+
+    @Test
+    void parse_ShouldTreatAnythingElseAsPlainText() {
+        assertNull(JsonLineParser.parse("Progress: 40%"));
+        assertNull(JsonLineParser.parse("{not json}"));
+        assertNull(JsonLineParser.parse("{\"a\":1} {\"b\":2}"));
+        assertNull(JsonLineParser.parse("{\"a\":1"));
+        assertNull(JsonLineParser.parse("[1,2]"));
+        assertNull(JsonLineParser.parse("{"));
+        assertNull(JsonLineParser.parse(null));
+    }
+
+    @Test
+    void isCandidate_ShouldOnlyLookAtTheEnds() {
+        assertTrue(JsonLineParser.isCandidate("\t{\"a\":1}  "));
+        assertTrue(JsonLineParser.isCandidate("{ whatever }"));
+        assertFalse(JsonLineParser.isCandidate("log {\"a\":1}"));
+        assertFalse(JsonLineParser.isCandidate("   "));
+        assertFalse(JsonLineParser.isCandidate(""));
+    }
+}
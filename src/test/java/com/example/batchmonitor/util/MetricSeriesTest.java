@@ -0,0 +1,52 @@
+package com.example.batchmonitor.util;
+
+import com.example.batchmonitor.dto.MetricPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricSeriesTest {
+
+    @Test
+    void add_ShouldGrowUpToCapacityAndKeepOrder() {
+        MetricSeries series = new MetricSeries(40);
+
+        for (int i = 0; i < 40; i++) {
+            series.add(1_000L * i, i);
+        }
+
+        List<MetricPoint> points = series.toPoints();
+        assertEquals(40, points.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, points.get(i).getValue());
+        }
+    }
+
+    @Test
+    void add_BeyondCapacity_ShouldDropTheOldestPoints() {
+        MetricSeries series = new MetricSeries(20);
+
+        for (int i = 0; i < 50; i++) {
+            series.add(1_000L * i, i);
+        }
+
+        List<MetricPoint> points = series.toPoints();
+        assertEquals(20, series.size());
+        assertEquals(30.0, points.get(0).getValue());
+        assertEquals(49.0, points.get(19).getValue());
+        assertEquals(49.0, series.latest().getValue());
+    }
+
+    @Test
+    void latest_OfAnEmptySeries_ShouldBeNull() {
+        assertNull(new MetricSeries(5).latest());
+        assertTrue(new MetricSeries(5).toPoints().isEmpty());
+    }
+
+    @Test
+    void constructor_ShouldRejectANonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new MetricSeries(0));
+    }
+}
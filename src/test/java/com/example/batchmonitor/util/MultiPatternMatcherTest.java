@@ -0,0 +1,88 @@
+package com.example.batchmonitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiPatternMatcherTest {
+
+    @Test
+    void match_ShouldFindOverlappingAndNestedPatterns() {
+        // Arrange
+        MultiPatternMatcher matcher = new MultiPatternMatcher(List.of("he", "she", "his", "hers", "x"));
+
+        // Act
+        BitSet found = matcher.match("ushers");
+
+        // Assert: "she" and "he" end at the same character, "hers" right after
+        assertEquals(bits(0, 1, 3), found);
+        assertEquals(bits(0, 2), matcher.match("this he"));
+        assertTrue(matcher.match("").isEmpty());
+        assertTrue(matcher.match("nothing to see").isEmpty());
+    }
+
+    @Test
+    void match_ShouldHandleCharactersOutsideAscii() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(List.of("Zürich", "日本", "ERROR"));
+
+        assertEquals(bits(0, 1), matcher.match("Zürich → 日本"));
+        assertTrue(matcher.match("Zurich 日 本 error").isEmpty());
+    }
+
+    @Test
+    void match_ShouldReportDuplicatePatternsUnderEachIndex() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(List.of("WARN", "WARN"));
+
+        assertEquals(bits(0, 1), matcher.match("[WARN] disk"));
+    }
+
+    @Test
+    void match_ShouldAgreeWithContainsForManyPatterns() {
+        // Arrange: a small alphabet makes patterns overlap a lot
+        Random random = new Random(7);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            patterns.add(randomText(random, 1 + random.nextInt(6)));
+        }
+        MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+
+        for (int line = 0; line < 500; line++) {
+            String text = randomText(random, random.nextInt(80));
+
+            // Act
+            BitSet found = matcher.match(text);
+
+            // Assert
+            for (int i = 0; i < patterns.size(); i++) {
+                assertEquals(text.contains(patterns.get(i)), found.get(i), patterns.get(i) + " in " + text);
+            }
+        }
+    }
+
+    @Test
+    void constructor_ShouldRejectEmptyPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> new MultiPatternMatcher(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new MultiPatternMatcher(List.of("ok", "")));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append("abcdé".charAt(random.nextInt(5)));
+        }
+        return text.toString();
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
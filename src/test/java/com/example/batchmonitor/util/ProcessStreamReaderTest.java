@@ -7,9 +7,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -89,4 +92,45 @@ class ProcessStreamReaderTest {
         // we just ensure the test doesn't hang or crash
         assertFalse(completed);
     }
+
+    @Test
+    void testProcessStreamReader_WaitForTimeout() throws Exception {
+        // Create a pipe whose writer stays open, like a background child holding stdout
+        PipedOutputStream writer = new PipedOutputStream();
+        InputStream inputStream = new PipedInputStream(writer);
+        List<String> output = new CopyOnWriteArrayList<>();
+
+        ProcessStreamReader reader = new ProcessStreamReader(inputStream, output::add);
+        reader.start();
+        writer.write("Line 1\n".getBytes(StandardCharsets.UTF_8));
+        writer.flush();
+
+        // The stream is still open, so the reader cannot finish
+        assertFalse(reader.waitFor(100));
+        assertEquals(List.of("Line 1"), output);
+
+        // Once the writer closes, the reader drains to the end of the stream
+        writer.write("Line 2\n".getBytes(StandardCharsets.UTF_8));
+        writer.close();
+        assertTrue(reader.waitFor(5000));
+        assertEquals(List.of("Line 1", "Line 2"), output);
+    }
+
+    @Test
+    void testProcessStreamReader_KeepsReadingWhenConsumerFails() throws InterruptedException {
+        InputStream inputStream = new ByteArrayInputStream("Line 1\nLine 2\n".getBytes(StandardCharsets.UTF_8));
+        List<String> output = new CopyOnWriteArrayList<>();
+
+        // The first line fails, e.g. because the database is unreachable
+        ProcessStreamReader reader = new ProcessStreamReader(inputStream, line -> {
+            if (line.equals("Line 1")) {
+                throw new IllegalStateException("Connection refused");
+            }
+            output.add(line);
+        });
+        reader.start();
+
+        assertTrue(reader.waitFor(5000));
+        assertEquals(List.of("Line 2"), output);
+    }
 }
@@ -0,0 +1,59 @@
+package com.example.batchmonitor.util;
+
+import com.example.batchmonitor.dto.ResourceUsageSample;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceSampleBufferTest {
+
+    @Test
+    void testToSamples_ReturnsChronologicalOrderWithCpuPercent() {
+        ResourceSampleBuffer buffer = new ResourceSampleBuffer(4);
+        buffer.add(1_000, 0, 100, 1);
+        buffer.add(2_000, 500_000_000L, 200, 2); // 0.5s CPU over 1s wall = 50%
+
+        List<ResourceUsageSample> samples = buffer.toSamples(7L);
+
+        assertEquals(2, samples.size());
+        assertEquals(7L, samples.get(0).getExecutionId());
+        assertEquals(100, samples.get(0).getRssBytes());
+        assertEquals(0.0, samples.get(0).getCpuPercent());
+        assertEquals(200, samples.get(1).getRssBytes());
+        assertEquals(500, samples.get(1).getCpuTimeMillis());
+        assertEquals(50.0, samples.get(1).getCpuPercent(), 0.001);
+        assertEquals(2, samples.get(1).getProcessCount());
+    }
+
+    @Test
+    void testAdd_OverwritesOldestWhenFull() {
+        ResourceSampleBuffer buffer = new ResourceSampleBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i * 1_000L, 0, i, 1);
+        }
+
+        List<ResourceUsageSample> samples = buffer.toSamples(1L);
+
+        assertEquals(3, buffer.size());
+        assertEquals(3, samples.size());
+        assertEquals(3, samples.get(0).getRssBytes());
+        assertEquals(4, samples.get(1).getRssBytes());
+        assertEquals(5, samples.get(2).getRssBytes());
+        assertEquals(5, buffer.latest(1L).getRssBytes());
+    }
+
+    @Test
+    void testLatest_EmptyBuffer() {
+        ResourceSampleBuffer buffer = new ResourceSampleBuffer(2);
+
+        assertNull(buffer.latest(1L));
+        assertTrue(buffer.toSamples(1L).isEmpty());
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ResourceSampleBuffer(0));
+    }
+}
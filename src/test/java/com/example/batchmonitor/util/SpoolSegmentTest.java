@@ -0,0 +1,79 @@
+package com.example.batchmonitor.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpoolSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAppendAndRead_ReturnsRecordsInOrder() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(directory, 10, 4096);
+
+        assertTrue(segment.append(10, 7L, 1_000_000L, (byte) 0, bytes("first")));
+        assertTrue(segment.append(11, 8L, 2_000_000L, (byte) 1, bytes("zweite Zeile ü")));
+
+        SpoolSegment.Record first = segment.read(0);
+        SpoolSegment.Record second = segment.read(first.next());
+        assertEquals(10, first.sequence());
+        assertEquals(7L, first.executionId());
+        assertEquals(1_000_000L, first.timestampMicros());
+        assertEquals("first", first.text());
+        assertEquals(11, second.sequence());
+        assertEquals((byte) 1, second.type());
+        assertEquals("zweite Zeile ü", second.text());
+        assertNull(segment.read(second.next()));
+        assertEquals(11, segment.lastSequence());
+        segment.close();
+    }
+
+    @Test
+    void testAppend_RefusesRecordsThatDoNotFit() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(directory, 1, 64);
+
+        assertTrue(segment.append(1, 1L, 0, (byte) 0, bytes("x".repeat(64 - SpoolSegment.RECORD_OVERHEAD))));
+        assertFalse(segment.append(2, 1L, 0, (byte) 0, bytes("y")));
+        assertEquals(64, segment.limit());
+        segment.close();
+    }
+
+    @Test
+    void testOpen_FindsCompleteRecordsAndIgnoresTornOne() throws IOException {
+        SpoolSegment segment = SpoolSegment.create(directory, 5, 4096);
+        segment.append(5, 1L, 0, (byte) 0, bytes("a"));
+        segment.append(6, 1L, 0, (byte) 0, bytes("b"));
+        int end = segment.limit();
+        segment.force();
+        segment.close();
+        // A crash after the body of the next record was written but before its length
+        Path file = directory.resolve("00000000000000000005.seg");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 7}), end);
+        }
+
+        SpoolSegment reopened = SpoolSegment.open(file);
+
+        assertEquals(5, reopened.firstSequence());
+        assertEquals(6, reopened.lastSequence());
+        assertEquals(end, reopened.limit());
+        assertEquals("b", reopened.read(reopened.read(0).next()).text());
+        assertTrue(SpoolSegment.isSegment(file));
+        assertFalse(SpoolSegment.isSegment(directory.resolve("database.cursor")));
+        reopened.delete();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
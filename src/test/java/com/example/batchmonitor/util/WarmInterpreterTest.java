@@ -0,0 +1,157 @@
+package com.example.batchmonitor.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the real worker script; skipped where python3 is not installed.
+ */
+class WarmInterpreterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> stdout = new CopyOnWriteArrayList<>();
+    private final List<String> stderr = new CopyOnWriteArrayList<>();
+    private WarmInterpreter interpreter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        assumeTrue(ScriptUtils.isUnixSystem(), "Warm interpreters need fork");
+        String python = pythonOnPath();
+        assumeTrue(python != null, "python3 is not installed");
+
+        String source = new ClassPathResource("warmpool/worker.py").getContentAsString(StandardCharsets.UTF_8);
+        interpreter = new WarmInterpreter(List.of(python, "-u", "-c", source, "json"), "warm-test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (interpreter != null) {
+            interpreter.close();
+        }
+    }
+
+    @Test
+    void run_ShouldDeliverOutputArgumentsAndExitCode() throws Exception {
+        // Arrange
+        Path script = Files.writeString(tempDir.resolve("job.py"), """
+                import os, sys
+                print("args", sys.argv[1:])
+                print("cwd", os.getcwd())
+                print("oops", file=sys.stderr)
+                sys.exit(3)
+                """);
+
+        // Act
+        WarmInterpreter.Job job = run(script, List.of("--limit", "10"));
+
+        // Assert
+        assertTrue(job.waitFor(10, TimeUnit.SECONDS));
+        assertEquals(3, job.exitValue());
+        assertEquals(List.of("args ['--limit', '10']", "cwd " + tempDir.toRealPath()), stdout);
+        assertEquals(List.of("oops"), stderr);
+        assertTrue(interpreter.isIdle());
+    }
+
+    @Test
+    void run_ShouldIsolateConsecutiveJobsInSeparateChildren() throws Exception {
+        // Arrange
+        Path script = Files.writeString(tempDir.resolve("state.py"), """
+                import json, os
+                json.touched = getattr(json, "touched", 0) + 1
+                print(os.getpid(), json.touched)
+                """);
+
+        // Act
+        WarmInterpreter.Job first = run(script, List.of());
+        assertTrue(first.waitFor(10, TimeUnit.SECONDS));
+        WarmInterpreter.Job second = run(script, List.of());
+        assertTrue(second.waitFor(10, TimeUnit.SECONDS));
+
+        // Assert - each job sees a fresh copy of the preloaded module in a new process
+        assertEquals(2, stdout.size());
+        assertTrue(stdout.get(0).endsWith(" 1"));
+        assertTrue(stdout.get(1).endsWith(" 1"));
+        assertNotEquals(stdout.get(0), stdout.get(1));
+        assertEquals(2, interpreter.getJobsRun());
+        assertTrue(interpreter.isAlive());
+    }
+
+    @Test
+    void run_ShouldReportUncaughtExceptionsOnStderr() throws Exception {
+        // Arrange
+        Path script = Files.writeString(tempDir.resolve("fail.py"), "print('before')\nraise ValueError('boom')\n");
+
+        // Act
+        WarmInterpreter.Job job = run(script, List.of());
+
+        // Assert
+        assertTrue(job.waitFor(10, TimeUnit.SECONDS));
+        assertEquals(1, job.exitValue());
+        assertEquals(List.of("before"), stdout);
+        assertEquals("ValueError: boom", stderr.get(stderr.size() - 1));
+    }
+
+    @Test
+    void destroyForcibly_ShouldKillJobButKeepWorker() throws Exception {
+        // Arrange
+        Path script = Files.writeString(tempDir.resolve("sleep.py"), "import time\nprint('sleeping')\ntime.sleep(60)\n");
+        WarmInterpreter.Job job = run(script, List.of());
+        assertTrue(job.toHandle(10, TimeUnit.SECONDS).isPresent());
+
+        // Act
+        job.destroyForcibly();
+
+        // Assert
+        assertTrue(job.waitFor(10, TimeUnit.SECONDS));
+        assertEquals(128 + 9, job.exitValue());
+        assertTrue(interpreter.isAlive());
+        assertTrue(interpreter.isIdle());
+    }
+
+    @Test
+    void run_ShouldRejectSecondJobWhileBusy() throws Exception {
+        // Arrange
+        Path script = Files.writeString(tempDir.resolve("slow.py"), "import time\ntime.sleep(60)\n");
+        WarmInterpreter.Job job = run(script, List.of());
+        assertTrue(job.toHandle(10, TimeUnit.SECONDS).isPresent());
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> run(script, List.of()));
+        job.destroyForcibly();
+    }
+
+    private WarmInterpreter.Job run(Path script, List<String> args) throws IOException {
+        return interpreter.run(script.toString(), args, tempDir.toString(), stdout::add, stderr::add);
+    }
+
+    private static String pythonOnPath() {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            Path candidate = Path.of(dir, "python3");
+            if (Files.isExecutable(candidate)) {
+                return candidate.toString();
+            }
+        }
+        return null;
+    }
+}